@@ -0,0 +1,145 @@
+package ee.forgr.capacitor.social.login.benchmarks;
+
+import ee.forgr.capacitor.social.login.helpers.ConnectionPrewarmer;
+import java.util.concurrent.TimeUnit;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Latency of the token exchange after the redirect, over TLS to a local server: on a new client, as without
+ * {@link ConnectionPrewarmer}, and on a client whose connection to the token endpoint's origin was warmed while
+ * the user was in the browser. Only the exchange itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionPrewarmerBenchmark {
+
+    private static final String TOKEN_RESPONSE = "{\"access_token\":\"at\",\"token_type\":\"Bearer\",\"expires_in\":3600}";
+
+    private MockWebServer server;
+    private HandshakeCertificates clientCertificates;
+    private HttpUrl tokenUrl;
+
+    @Setup
+    public void setUp() throws Exception {
+        HeldCertificate localhost = new HeldCertificate.Builder().addSubjectAlternativeName("localhost").build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder().heldCertificate(localhost).build();
+        clientCertificates = new HandshakeCertificates.Builder().addTrustedCertificate(localhost.certificate()).build();
+
+        server = new MockWebServer();
+        server.useHttps(serverCertificates.sslSocketFactory(), false);
+        server.setDispatcher(
+            new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if ("HEAD".equals(request.getMethod())) {
+                        return new MockResponse().setResponseCode(405);
+                    }
+                    return new MockResponse().setBody(TOKEN_RESPONSE);
+                }
+            }
+        );
+        server.start();
+        tokenUrl = server.url("/oauth/token");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    /**
+     * A client nothing has connected with yet.
+     */
+    @State(Scope.Thread)
+    public static class ColdClient {
+
+        OkHttpClient client;
+
+        @Setup(Level.Invocation)
+        public void setUp(ConnectionPrewarmerBenchmark benchmark) {
+            client = benchmark.newClient();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            client.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * A client with a pooled connection to the token endpoint's origin, as left by {@link ConnectionPrewarmer#keepWarm}.
+     */
+    @State(Scope.Thread)
+    public static class PrewarmedClient {
+
+        OkHttpClient client;
+
+        @Setup(Level.Invocation)
+        public void setUp(ConnectionPrewarmerBenchmark benchmark) throws InterruptedException {
+            client = benchmark.newClient();
+            ConnectionPrewarmer.Handle handle = ConnectionPrewarmer.getInstance().keepWarm(client, benchmark.tokenUrl.toString());
+            try {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (client.connectionPool().idleConnectionCount() == 0) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException("Prewarm did not complete");
+                    }
+                    Thread.sleep(1);
+                }
+            } finally {
+                handle.cancel();
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            client.connectionPool().evictAll();
+        }
+    }
+
+    @Benchmark
+    public String coldExchange(ColdClient cold) throws Exception {
+        return exchange(cold.client);
+    }
+
+    @Benchmark
+    public String prewarmedExchange(PrewarmedClient prewarmed) throws Exception {
+        return exchange(prewarmed.client);
+    }
+
+    private OkHttpClient newClient() {
+        return new OkHttpClient.Builder()
+            .sslSocketFactory(clientCertificates.sslSocketFactory(), clientCertificates.trustManager())
+            .build();
+    }
+
+    private String exchange(OkHttpClient client) throws Exception {
+        Request request = new Request.Builder()
+            .url(tokenUrl)
+            .post(new FormBody.Builder().add("grant_type", "authorization_code").add("code", "abc").build())
+            .build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+}
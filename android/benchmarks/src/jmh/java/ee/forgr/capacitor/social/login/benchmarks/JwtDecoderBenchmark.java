@@ -0,0 +1,68 @@
+package ee.forgr.capacitor.social.login.benchmarks;
+
+import ee.forgr.capacitor.social.login.helpers.JwtDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link JwtDecoder} with the split + Base64 + {@code new JSONObject} decoding it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtDecoderBenchmark {
+
+    private String idToken;
+
+    @Setup
+    public void setUp() {
+        // Shape of a Google ID token payload.
+        String payload =
+            "{\"iss\":\"https://accounts.google.com\",\"azp\":\"1234567890-abc.apps.googleusercontent.com\"," +
+            "\"aud\":\"1234567890-abc.apps.googleusercontent.com\",\"sub\":\"110169484474386276334\"," +
+            "\"hd\":\"example.com\",\"email\":\"jane.doe@example.com\",\"email_verified\":true," +
+            "\"at_hash\":\"HK6E_P6Dh8Y93mRNtsDB1Q\",\"nonce\":\"0394852-3190485-2490358\",\"name\":\"Jane Doe\"," +
+            "\"picture\":\"https://lh3.googleusercontent.com/a/ACg8ocJ-example=s96-c\",\"given_name\":\"Jane\"," +
+            "\"family_name\":\"Doe\",\"iat\":1735686000,\"exp\":1735689600}";
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        idToken =
+            encoder.encodeToString("{\"alg\":\"RS256\",\"kid\":\"a1b2c3\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8)) +
+            "." +
+            encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) +
+            "." +
+            encoder.encodeToString(new byte[256]);
+    }
+
+    @Benchmark
+    public long legacySplitAndParseExpiry() throws Exception {
+        String[] parts = idToken.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        return new JSONObject(payload).getLong("exp");
+    }
+
+    @Benchmark
+    public long jwtDecoderReadExpiry() {
+        return JwtDecoder.readExpiry(idToken);
+    }
+
+    @Benchmark
+    public Object legacySplitAndParseAll() throws Exception {
+        String[] parts = idToken.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        return new JSONObject(payload);
+    }
+
+    @Benchmark
+    public Object jwtDecoderDecodePayload() throws Exception {
+        return JwtDecoder.decodePayload(idToken);
+    }
+}
@@ -0,0 +1,144 @@
+package ee.forgr.capacitor.social.login.benchmarks;
+
+import ee.forgr.capacitor.social.login.helpers.BoundedResponseBody;
+import ee.forgr.capacitor.social.login.oauth.Pkce;
+import ee.forgr.capacitor.social.login.oauth.TokenRefresher;
+import ee.forgr.capacitor.social.login.oauth.TokenRequests;
+import ee.forgr.capacitor.social.login.oauth.TokenResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * The OAuth2/Twitter hot paths from the {@code oauth} package: PKCE generation (against the per-login
+ * {@code new SecureRandom()} it replaced), token response decoding, token request bodies, and
+ * {@link TokenRefresher} with the token endpoint answered in-process, single-threaded and contended.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OAuthCoreBenchmark {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final byte[] TOKEN_RESPONSE = (
+        "{\"access_token\":\"ya29.a0AfB_byC-example-access-token\",\"token_type\":\"Bearer\",\"expires_in\":3599," +
+        "\"refresh_token\":\"1//0g-example-refresh-token\",\"scope\":\"openid email profile\"," +
+        "\"id_token\":\"eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiIxMjMifQ.c2ln\",\"extra\":{\"nested\":[1,2,3]}}"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicReference<JSONObject> tokens = new AtomicReference<>();
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private TokenRefresher refresher;
+
+    @Setup
+    public void setUp() throws Exception {
+        tokens.set(new JSONObject().put("accessToken", "stale").put("refreshToken", "rt").put("expiresAt", now.get() + 3_600_000L));
+        JSONObject config = new JSONObject().put("appId", "client").put("accessTokenEndpoint", "https://idp.example.com/token");
+        // Answer the token endpoint without a socket, so only the client-side work is measured.
+        OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor((chain) ->
+                new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(TOKEN_RESPONSE, JSON))
+                    .build()
+            )
+            .build();
+        refresher = new TokenRefresher(
+            "benchmark",
+            new TokenRefresher.Store() {
+                @Override
+                public JSONObject readTokens() {
+                    return tokens.get();
+                }
+
+                @Override
+                public boolean replaceTokens(JSONObject previous, JSONObject value) {
+                    return tokens.compareAndSet(previous, value);
+                }
+
+                @Override
+                public JSONObject readRefreshConfig() {
+                    return config;
+                }
+            },
+            client,
+            now::get
+        );
+    }
+
+    @Benchmark
+    public String legacyPkce() throws Exception {
+        SecureRandom secureRandom = new SecureRandom();
+        byte[] code = new byte[64];
+        secureRandom.nextBytes(code);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String verifier = encoder.encodeToString(code);
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(verifier.getBytes(StandardCharsets.US_ASCII));
+        return encoder.encodeToString(hash);
+    }
+
+    @Benchmark
+    public String pkce() {
+        return Pkce.codeChallenge(Pkce.generateCodeVerifier());
+    }
+
+    @Benchmark
+    public Object decodeTokenResponse() throws Exception {
+        JSONObject payload = BoundedResponseBody.readFields(ResponseBody.create(TOKEN_RESPONSE, JSON), TokenResponse.FIELDS);
+        return TokenResponse.parse(payload, 3600, now.get());
+    }
+
+    @Benchmark
+    public Object authorizationCodeBody() {
+        return TokenRequests.authorizationCode(
+            "client",
+            "4/0AeaYSHexample-code",
+            "com.example.app:/oauth2redirect",
+            "dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk",
+            null,
+            Map.of("audience", "https://api.example.com")
+        ).build();
+    }
+
+    @Benchmark
+    public String refresh() throws Exception {
+        return refresher.refreshReplacing(tokens.get().getString("accessToken"));
+    }
+
+    /**
+     * Callers that all saw the same stale token: after the first refresh the rest are answered from the store.
+     */
+    @Benchmark
+    @Threads(8)
+    public String contendedRefresh() throws Exception {
+        return refresher.refreshReplacing("stale");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contendedFreshAccessToken() throws Exception {
+        return refresher.getFreshAccessToken();
+    }
+}
@@ -0,0 +1,95 @@
+package ee.forgr.capacitor.social.login.benchmarks;
+
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Plugin call throughput when JS fires calls from many threads at once: each call makes a small provider state
+ * change (pending login, session map) and resolves. Through the {@link StateLoop}, where the call is posted and
+ * the caller waits for its answer, against the same change made under a lock on the caller's thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StateLoopBenchmark {
+
+    private final Map<String, String> sessions = new HashMap<>();
+    private String pendingCall;
+    private long calls;
+    private ExecutorService thread;
+    private StateLoop loop;
+
+    @Setup
+    public void setUp() {
+        thread = Executors.newSingleThreadExecutor();
+        loop = new StateLoop(thread, (e) -> {
+            throw e;
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        thread.shutdownNow();
+        thread.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public String loop() {
+        return viaLoop();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contendedLoop() {
+        return viaLoop();
+    }
+
+    @Benchmark
+    public String locked() {
+        return viaLock();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contendedLocked() {
+        return viaLock();
+    }
+
+    private String viaLoop() {
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        loop.execute(() -> answer.complete(transition()));
+        return answer.join();
+    }
+
+    private String viaLock() {
+        synchronized (this) {
+            return transition();
+        }
+    }
+
+    /**
+     * Start a login, then settle it: what a login call and its token callback do to provider state.
+     */
+    private String transition() {
+        long call = ++calls;
+        pendingCall = "call-" + call;
+        String resolved = pendingCall;
+        pendingCall = null;
+        sessions.put("oauth2:provider-" + (call & 7), resolved);
+        return resolved;
+    }
+}
@@ -0,0 +1,92 @@
+package ee.forgr.capacitor.social.login;
+
+import android.content.Context;
+import android.content.Intent;
+import com.getcapacitor.JSObject;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONObject;
+
+/**
+ * Compile-time stub used when Apple is disabled via provider pinning
+ * ({@code socialLogin.apple.include=false}).
+ * <p>
+ * Replaces the Custom Tabs / WebView Sign in with Apple flow so disabled builds do not dex or verify it.
+ */
+public class AppleProvider implements AsyncSocialProvider {
+
+    private static final String DISABLED_MESSAGE =
+        "Apple Sign-In provider is disabled. Dependencies are not available. Ensure JWT decode and CustomTabs dependencies are included in your app's build.gradle";
+
+    public AppleProvider(
+        String redirectUrl,
+        String clientId,
+        HostActivity host,
+        Context context,
+        boolean useProperTokenExchange,
+        boolean useBroadcastChannel
+    ) {
+        // Stub - configuration unused
+    }
+
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        // Stub - no Apple sessions to report
+    }
+
+    public void setDeadlines(OperationDeadlines deadlines) {
+        // Stub - no network calls
+    }
+
+    public void setAccountStore(AccountStore store) {
+        // Stub - no accounts to store
+    }
+
+    public void setStateLoop(StateLoop loop) {
+        // Stub - no state to confine
+    }
+
+    public void initialize() {
+        throw new RuntimeException(DISABLED_MESSAGE);
+    }
+
+    public void handleIntent(Intent intent) {
+        // Stub - no authorization in flight
+    }
+
+    @Override
+    public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        return disabled();
+    }
+
+    private static <T> CompletableFuture<T> disabled() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ProviderException.reject(result, DISABLED_MESSAGE);
+        return result;
+    }
+}
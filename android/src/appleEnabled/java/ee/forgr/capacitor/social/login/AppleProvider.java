@@ -0,0 +1,1046 @@
+package ee.forgr.capacitor.social.login;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.Window;
+import android.view.WindowManager;
+import android.webkit.ConsoleMessage;
+import android.webkit.WebChromeClient;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+import android.widget.ImageButton;
+import android.widget.ProgressBar;
+import androidx.annotation.NonNull;
+import androidx.browser.customtabs.CustomTabsCallback;
+import androidx.browser.customtabs.CustomTabsClient;
+import androidx.browser.customtabs.CustomTabsIntent;
+import androidx.browser.customtabs.CustomTabsServiceConnection;
+import androidx.browser.customtabs.CustomTabsSession;
+import androidx.browser.trusted.TrustedWebActivityIntentBuilder;
+import com.auth0.android.jwt.JWT;
+import com.getcapacitor.JSObject;
+import com.google.androidbrowserhelper.trusted.TwaLauncher;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AccountSwitchable;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.BoundedResponseBody;
+import ee.forgr.capacitor.social.login.helpers.CancellationScope;
+import ee.forgr.capacitor.social.login.helpers.ClaimsCache;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.HttpResilience;
+import ee.forgr.capacitor.social.login.helpers.JwtDecoder;
+import ee.forgr.capacitor.social.login.helpers.LoginCancellable;
+import ee.forgr.capacitor.social.login.helpers.LoginTracer;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.PendingCall;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.SessionSnapshot;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+public class AppleProvider implements AsyncSocialProvider, AccountSwitchable, LoginCancellable {
+
+    private static final String LOG_TAG = "AppleProvider";
+    private static final String DEFAULT_SCOPE = "name%20email";
+    private static final String AUTHURL = "https://appleid.apple.com/auth/authorize";
+    private static final String TOKENURL = "https://appleid.apple.com/auth/token";
+    private static final String SHARED_PREFERENCE_NAME = "APPLE_LOGIN_Q16ob0k_SHARED_PERF";
+    private static final String APPLE_DATA_PREFERENCE = "APPLE_LOGIN_APPLE_DATA_83b2d6db-17fe-49c9-8c33-e3f5d02f9f84";
+    private static final String USER_CANCELLED_CODE = "USER_CANCELLED";
+
+    // Answered by whichever of the redirect, the code exchange, the WebView and cancelLogin takes it first.
+    private final PendingCall lastcall = new PendingCall();
+    private volatile CancellationScope loginCancellation;
+    private String appleAuthURLFull;
+
+    private String idToken;
+    private String refreshToken;
+    private String accessToken;
+    private TokenLifecycleMonitor tokenLifecycleMonitor;
+    private OperationDeadlines deadlines = OperationDeadlines.defaults();
+    private AccountStore accountStore;
+    private StateLoop stateLoop = StateLoop.inline();
+    private final SessionSnapshot sessionSnapshot;
+    private final OkHttpClient httpClient = new OkHttpClient();
+
+    private final String clientId;
+    private final String redirectUrl;
+    private final HostActivity host;
+    private final Context context;
+    private final boolean useProperTokenExchange;
+    private final boolean useBroadcastChannel;
+
+    // Custom Tabs state, guarded by customTabsLock: the service callbacks run on the main thread, login prefetches
+    // from the state loop and launches on the main thread.
+    private final Object customTabsLock = new Object();
+    private CustomTabsClient customTabsClient;
+    private CustomTabsSession currentSession;
+    // URL to prefetch once the service connects, when login started before the binding completed.
+    private String pendingMayLaunchUrl;
+    // Binding of the latest provider; re-initializing releases the previous one.
+    private static CustomTabsServiceConnection boundConnection;
+    CustomTabsServiceConnection connection = new CustomTabsServiceConnection() {
+        @Override
+        public void onCustomTabsServiceConnected(@NonNull ComponentName name, CustomTabsClient client) {
+            client.warmup(0);
+            synchronized (customTabsLock) {
+                customTabsClient = client;
+                CustomTabsSession session = customTabsSession();
+                if (session != null) {
+                    session.mayLaunchUrl(Uri.parse(pendingMayLaunchUrl != null ? pendingMayLaunchUrl : AUTHURL), null, null);
+                }
+                pendingMayLaunchUrl = null;
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            synchronized (customTabsLock) {
+                customTabsClient = null;
+                currentSession = null;
+            }
+        }
+    };
+
+    public AppleProvider(
+        String redirectUrl,
+        String clientId,
+        HostActivity host,
+        Context context,
+        boolean useProperTokenExchange,
+        boolean useBroadcastChannel
+    ) {
+        this.redirectUrl = redirectUrl;
+        this.clientId = clientId;
+        this.host = host;
+        this.context = context.getApplicationContext();
+        this.sessionSnapshot = SessionSnapshot.getInstance(this.context);
+        this.useProperTokenExchange = useProperTokenExchange;
+        this.useBroadcastChannel = useBroadcastChannel;
+    }
+
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        this.tokenLifecycleMonitor = monitor;
+    }
+
+    public void setDeadlines(OperationDeadlines deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    public void setAccountStore(AccountStore store) {
+        this.accountStore = store;
+    }
+
+    /**
+     * Where token responses and web view redirects are handled; the plugin's state loop, which also runs the calls.
+     */
+    public void setStateLoop(StateLoop loop) {
+        this.stateLoop = loop;
+    }
+
+    public void initialize() {
+        if (!useBroadcastChannel) {
+            bindCustomTabsService();
+        }
+
+        JSONObject object = sessionSnapshot.getOrSeed("apple", () ->
+            context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE).getString(APPLE_DATA_PREFERENCE, null)
+        );
+
+        if (object == null) {
+            Log.i(SocialLoginPlugin.LOG_TAG, "No data to restore for apple login");
+            return;
+        }
+        String idToken = object.optString("idToken", null);
+        String refreshToken = object.optString("refreshToken", null);
+        String accessToken = object.optString("accessToken", null);
+        AppleProvider.this.idToken = idToken;
+        AppleProvider.this.refreshToken = refreshToken;
+        AppleProvider.this.accessToken = accessToken;
+        Log.i(SocialLoginPlugin.LOG_TAG, String.format("Apple restoreState: %s", object));
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.track("apple", null, idTokenExpiresAt(idToken));
+        }
+    }
+
+    public void handleIntent(Intent intent) {
+        // Extract information from the URI
+        Uri data = intent.getData();
+
+        // Data should never be null
+        assert data != null;
+
+        String scheme = data.getScheme(); // "capgo-demo-app"
+        String host = data.getHost(); // "path"
+        String path = data.getPath(); // Additional path segments
+        String query = data.getQuery(); // Query parameters
+
+        Log.i(SocialLoginPlugin.LOG_TAG, String.format("Received apple login intent: %s, %s, %s, %s", scheme, host, path, query));
+
+        handleUrl(data.toString());
+        //    if (data.toString().contains("success=")) {
+        //      this.currentSession.
+        //    }
+    }
+
+    @Override
+    public CompletableFuture<JSObject> loginAsync(JSONObject config) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        // Register the login immediately so the redirect and WebView callbacks can always complete it
+        if (!this.lastcall.start(result)) {
+            ProviderException.reject(result, "Last call is not null");
+            return result;
+        }
+        this.loginCancellation = new CancellationScope();
+        // Covers browser launch, user think-time and redirect delivery back to the app.
+        LoginTracer.getInstance().startSpan("apple", null, "authorization");
+
+        // Check if Broadcast Channel is enabled
+        boolean useBroadcastChannel = config.optBoolean("useBroadcastChannel", this.useBroadcastChannel);
+
+        if (useBroadcastChannel) {
+            // Use Broadcast Channel approach - simplified flow
+            loginWithBroadcastChannel(config);
+        } else {
+            // Use traditional URL redirect approach
+            loginWithRedirect(config);
+        }
+        return result;
+    }
+
+    private void loginWithBroadcastChannel(JSONObject config) {
+        String state = UUID.randomUUID().toString();
+
+        // Extract scopes from config
+        String scopes = DEFAULT_SCOPE;
+        if (config.has("scopes")) {
+            try {
+                JSONArray scopesArray = config.getJSONArray("scopes");
+                if (scopesArray.length() > 0) {
+                    scopes = String.join("%20", toStringArray(scopesArray));
+                }
+            } catch (JSONException e) {
+                Log.e(SocialLoginPlugin.LOG_TAG, "Error parsing scopes", e);
+            }
+        }
+
+        String nonce = null;
+        if (config.has("nonce")) {
+            try {
+                nonce = config.getString("nonce");
+            } catch (JSONException e) {
+                Log.e(SocialLoginPlugin.LOG_TAG, "Error parsing nonce", e);
+            }
+        }
+
+        // For Broadcast Channel, we use a special redirect URI that handles the channel communication
+        String broadcastRedirectUri = "https://capacitor-social-login.firebaseapp.com/__/auth/handler";
+
+        this.appleAuthURLFull =
+            AUTHURL +
+            "?client_id=" +
+            this.clientId +
+            "&redirect_uri=" +
+            broadcastRedirectUri +
+            "&response_type=code&scope=" +
+            scopes +
+            "&response_mode=form_post&state=" +
+            state;
+
+        if (nonce != null) {
+            this.appleAuthURLFull += "&nonce=" + nonce;
+        }
+
+        Activity activity = host.get();
+        if (activity == null) {
+            LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "no activity");
+            rejectLogin("No activity to open the login in", null);
+            return;
+        }
+
+        activity.runOnUiThread(() -> {
+            LoginTracer.getInstance().startSpan("apple", null, "browserLaunch");
+            setupBroadcastChannelWebview(activity, appleAuthURLFull);
+            LoginTracer.getInstance().endSpan("apple", null, "browserLaunch");
+        });
+    }
+
+    private void loginWithRedirect(JSONObject config) {
+        String state = UUID.randomUUID().toString();
+
+        // Extract scopes from config
+        String scopes = DEFAULT_SCOPE;
+        if (config.has("scopes")) {
+            try {
+                JSONArray scopesArray = config.getJSONArray("scopes");
+                if (scopesArray.length() > 0) {
+                    scopes = String.join("%20", toStringArray(scopesArray));
+                }
+            } catch (JSONException e) {
+                Log.e(SocialLoginPlugin.LOG_TAG, "Error parsing scopes", e);
+            }
+        }
+
+        String nonce = null;
+        if (config.has("nonce")) {
+            try {
+                nonce = config.getString("nonce");
+            } catch (JSONException e) {
+                Log.e(SocialLoginPlugin.LOG_TAG, "Error parsing nonce", e);
+            }
+        }
+
+        this.appleAuthURLFull =
+            AUTHURL +
+            "?client_id=" +
+            this.clientId +
+            "&redirect_uri=" +
+            this.redirectUrl +
+            "&response_type=code&scope=" +
+            scopes +
+            "&response_mode=form_post&state=" +
+            state;
+
+        if (nonce != null) {
+            this.appleAuthURLFull += "&nonce=" + nonce;
+        }
+
+        Activity activity = host.get();
+        if (activity == null) {
+            LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "no activity");
+            rejectLogin("No activity to open the login in", null);
+            return;
+        }
+
+        String authUrl = this.appleAuthURLFull;
+        // Start loading the page now; the launch below waits for the main thread.
+        prefetch(authUrl);
+        activity.runOnUiThread(() -> {
+            LoginTracer.getInstance().startSpan("apple", null, "browserLaunch");
+            setupWebview(activity, authUrl);
+            LoginTracer.getInstance().endSpan("apple", null, "browserLaunch");
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (this.idToken == null || this.idToken.isEmpty()) {
+            ProviderException.reject(result, "Not logged in; Cannot logout");
+            return result;
+        }
+
+        context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+        sessionSnapshot.put("apple", null);
+        ClaimsCache.getInstance().evict(this.idToken);
+        this.idToken = null;
+        this.refreshToken = null;
+        this.accessToken = null;
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.revoked("apple", null);
+        }
+        if (accountStore != null) {
+            accountStore.removeActive("apple");
+        }
+        LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_SUCCESS);
+
+        result.complete(null);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        if (this.idToken != null && !this.idToken.isEmpty()) {
+            result.complete(new JSObject().put("jwt", this.idToken));
+        } else {
+            ProviderException.reject(result, "Apple-login not logged in!");
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (this.idToken != null && !this.idToken.isEmpty()) {
+            try {
+                JWT jwt = new JWT(this.idToken);
+                result.complete(!jwt.isExpired(0));
+            } catch (Exception e) {
+                ProviderException.reject(result, "Error checking login status", e);
+            }
+        } else {
+            result.complete(false);
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        ProviderException.reject(result, "Not implemented");
+        return result;
+    }
+
+    /**
+     * Cancel the running login: the Broadcast Channel WebView is closed and a code exchange in flight is
+     * cancelled. A Custom Tabs page stays open, but its redirect is no longer consumed.
+     */
+    @Override
+    public boolean cancelLogin(String providerId) {
+        CompletableFuture<JSObject> login = this.lastcall.take();
+        if (login == null) {
+            return false;
+        }
+        if (this.loginCancellation != null) {
+            this.loginCancellation.cancel();
+            this.loginCancellation = null;
+        }
+        LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_CANCELLED);
+        ProviderException.reject(login, "Apple login cancelled", USER_CANCELLED_CODE);
+        return true;
+    }
+
+    /**
+     * Resolve the login, unless cancelLogin or another callback (redirect and WebView message can both arrive)
+     * already answered it.
+     */
+    private void resolveLogin(JSObject response) {
+        CompletableFuture<JSObject> login = this.lastcall.take();
+        if (login != null) {
+            login.complete(response);
+        }
+    }
+
+    private void rejectLogin(String message, Exception e) {
+        CompletableFuture<JSObject> login = this.lastcall.take();
+        if (login != null) {
+            ProviderException.reject(login, message, e);
+        }
+    }
+
+    public void handleUrl(String url) {
+        if (!this.lastcall.isPending()) {
+            Log.e(SocialLoginPlugin.LOG_TAG, "handleUrl called but lastcall is null");
+            return;
+        }
+        LoginTracer.getInstance().mark("apple", null, "redirectReceived");
+        LoginTracer.getInstance().endSpan("apple", null, "authorization");
+
+        Uri uri = Uri.parse(url);
+        String success = uri.getQueryParameter("success");
+        if ("true".equals(success)) {
+            String accessToken = uri.getQueryParameter("access_token");
+            if (accessToken != null) {
+                // We have proper tokens from the backend
+                String refreshToken = uri.getQueryParameter("refresh_token");
+                String idToken = uri.getQueryParameter("id_token");
+                try {
+                    persistState(idToken, refreshToken, accessToken);
+                    JSObject result = new JSObject();
+                    result.put("accessToken", createAccessTokenObject(accessToken));
+                    result.put("profile", createProfileObject(idToken));
+                    result.put("idToken", idToken);
+
+                    // For proper token exchange mode, don't include authorization code
+                    if (!useProperTokenExchange) {
+                        result.put("authorizationCode", (String) null);
+                    }
+
+                    JSObject response = new JSObject();
+                    response.put("provider", "apple");
+                    response.put("result", result);
+
+                    LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_SUCCESS);
+                    resolveLogin(response);
+                } catch (JSONException e) {
+                    Log.e(SocialLoginPlugin.LOG_TAG, "Cannot persist state", e);
+                    LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "cannot persist state");
+                    rejectLogin("Cannot persist state", e);
+                }
+            } else {
+                // We only have authorization code, need to exchange it
+                String appleAuthCode = uri.getQueryParameter("code");
+                String appleClientSecret = uri.getQueryParameter("client_secret");
+
+                if (useProperTokenExchange) {
+                    // In proper token exchange mode, we should have received proper tokens
+                    // from the backend. If we only got an auth code, reject the call.
+                    LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "authorization code only");
+                    rejectLogin("Expected proper tokens from backend but received authorization code only", null);
+                } else {
+                    // Legacy mode: exchange the authorization code for tokens
+                    requestForAccessToken(appleAuthCode, appleClientSecret);
+                    return; // Don't clear lastcall here, it will be cleared in the callback
+                }
+            }
+        } else {
+            LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "no authorization code");
+            rejectLogin("We couldn't get the Auth Code", null);
+        }
+    }
+
+    private void requestForAccessToken(String code, String clientSecret) {
+        FormBody formBody = new FormBody.Builder()
+            .add("grant_type", "authorization_code")
+            .add("code", code)
+            .add("redirect_uri", redirectUrl)
+            .add("client_id", clientId)
+            .add("client_secret", clientSecret)
+            .build();
+
+        Request request = new Request.Builder().url(TOKENURL).post(formBody).build();
+        CancellationScope cancellation = this.loginCancellation;
+
+        LoginTracer.getInstance().startSpan("apple", null, "codeExchange");
+        HttpResilience.getInstance()
+            .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.SINGLE_GUARDED,
+                deadlines.start(OperationDeadlines.CODE_EXCHANGE),
+                cancellation,
+                new Callback() {
+                    @Override
+                    public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                        stateLoop.execute(() -> {
+                            if (cancellation != null && cancellation.isCancelled()) {
+                                return;
+                            }
+                            LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "token exchange failed");
+                            CompletableFuture<JSObject> pending = AppleProvider.this.lastcall.take();
+                            if (pending != null) {
+                                ProviderException.reject(pending, "Cannot get access_token", OperationDeadlines.errorCode(e), e);
+                            } else {
+                                Log.e(SocialLoginPlugin.LOG_TAG, "Cannot get access_token: lastcall is null. Error: " + e.getMessage(), e);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                        if (cancellation != null && cancellation.isCancelled()) {
+                            response.close();
+                            return;
+                        }
+                        JSONObject jsonObject;
+                        try {
+                            if (!response.isSuccessful()) throw new IOException("Unexpected code " + response);
+
+                            jsonObject = BoundedResponseBody.readFields(
+                                Objects.requireNonNull(response.body()),
+                                "access_token",
+                                "refresh_token",
+                                "id_token"
+                            );
+                        } catch (Exception e) {
+                            stateLoop.execute(() -> rejectTokenResponse(cancellation, e));
+                            return;
+                        } finally {
+                            response.close();
+                        }
+                        stateLoop.execute(() -> {
+                            if (cancellation != null && cancellation.isCancelled()) {
+                                return;
+                            }
+                            handleTokenResponse(jsonObject, cancellation);
+                        });
+                    }
+                }
+            );
+    }
+
+    private void handleTokenResponse(JSONObject jsonObject, CancellationScope cancellation) {
+        try {
+            String accessToken = jsonObject.getString("access_token");
+            String refreshToken = jsonObject.getString("refresh_token");
+            String idToken = jsonObject.getString("id_token");
+            LoginTracer.getInstance().endSpan("apple", null, "codeExchange");
+
+            persistState(idToken, refreshToken, accessToken);
+
+            // Create proper response with all tokens
+            JSObject result = new JSObject();
+            result.put("accessToken", createAccessTokenObject(accessToken));
+            result.put("profile", createProfileObject(idToken));
+            result.put("idToken", idToken);
+
+            // For legacy mode, we don't include authorization code in the response
+            // since we've already exchanged it for proper tokens
+
+            JSObject appleResponse = new JSObject();
+            appleResponse.put("provider", "apple");
+            appleResponse.put("result", result);
+
+            LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_SUCCESS);
+            CompletableFuture<JSObject> pending = lastcall.take();
+            if (pending != null) {
+                pending.complete(appleResponse);
+            } else {
+                Log.e(
+                    SocialLoginPlugin.LOG_TAG,
+                    "Cannot resolve access_token response: lastcall is null. Response: " + appleResponse.toString()
+                );
+            }
+        } catch (Exception e) {
+            rejectTokenResponse(cancellation, e);
+        }
+    }
+
+    private void rejectTokenResponse(CancellationScope cancellation, Exception e) {
+        if (cancellation != null && cancellation.isCancelled()) {
+            return;
+        }
+        LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, e.getMessage());
+        CompletableFuture<JSObject> pending = lastcall.take();
+        if (pending != null) {
+            ProviderException.reject(pending, "Cannot get access_token", e);
+        } else {
+            Log.e(SocialLoginPlugin.LOG_TAG, "Cannot get access_token: lastcall is null. Error: " + e.getMessage(), e);
+        }
+    }
+
+    private void persistState(String idToken, String refreshToken, String accessToken) throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put("idToken", idToken);
+        object.put("refreshToken", refreshToken);
+        object.put("accessToken", accessToken);
+
+        String previousIdToken = AppleProvider.this.idToken;
+        AppleProvider.this.idToken = idToken;
+        AppleProvider.this.refreshToken = refreshToken;
+        AppleProvider.this.accessToken = accessToken;
+
+        context
+            .getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putString(APPLE_DATA_PREFERENCE, object.toString())
+            .apply();
+        sessionSnapshot.put("apple", object);
+
+        String subject = AccountStore.subjectFromIdToken(idToken);
+        if (accountStore != null && subject != null) {
+            accountStore.save("apple", subject, AccountStore.labelFromIdToken(idToken), object);
+        }
+
+        if (tokenLifecycleMonitor != null && idToken != null && !idToken.equals(previousIdToken)) {
+            if (previousIdToken == null || previousIdToken.isEmpty()) {
+                tokenLifecycleMonitor.issued("apple", null, idTokenExpiresAt(idToken));
+            } else {
+                tokenLifecycleMonitor.refreshed("apple", null, idTokenExpiresAt(idToken));
+            }
+        }
+    }
+
+    @Override
+    public void restoreSession(String providerId, JSONObject session) {
+        context
+            .getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putString(APPLE_DATA_PREFERENCE, session.toString())
+            .apply();
+        sessionSnapshot.put("apple", session);
+        AppleProvider.this.idToken = session.optString("idToken", null);
+        AppleProvider.this.refreshToken = session.optString("refreshToken", null);
+        AppleProvider.this.accessToken = session.optString("accessToken", null);
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.track("apple", null, idTokenExpiresAt(AppleProvider.this.idToken));
+        }
+    }
+
+    private static Long idTokenExpiresAt(String idToken) {
+        Long exp = ClaimsCache.getInstance().expiry(idToken);
+        return exp != null ? exp * 1000L : null;
+    }
+
+    public CustomTabsSession getCustomTabsSession() {
+        synchronized (customTabsLock) {
+            return customTabsSession();
+        }
+    }
+
+    private CustomTabsSession customTabsSession() {
+        if (customTabsClient == null) {
+            return null;
+        }
+
+        if (currentSession == null) {
+            currentSession = customTabsClient.newSession(
+                new CustomTabsCallback() {
+                    @Override
+                    public void onNavigationEvent(int navigationEvent, Bundle extras) {
+                        // Launch-to-loaded latency of the Apple page; compare warm and cold launches in the timeline.
+                        if (navigationEvent == NAVIGATION_FINISHED) {
+                            LoginTracer.getInstance().endSpan("apple", null, "authPageLoad");
+                        } else if (navigationEvent == NAVIGATION_FAILED || navigationEvent == NAVIGATION_ABORTED) {
+                            LoginTracer.getInstance().endSpan("apple", null, "authPageLoad", "navigation " + navigationEvent);
+                        }
+                    }
+                }
+            );
+        }
+        return currentSession;
+    }
+
+    /**
+     * Bind the default browser's Custom Tabs service so it is connected and warmed up before the first login.
+     * Bound to the application context, which outlives the activity the provider was created with.
+     */
+    private void bindCustomTabsService() {
+        Context appContext = context.getApplicationContext();
+        String packageName = CustomTabsClient.getPackageName(appContext, null);
+        if (packageName == null) {
+            Log.i(SocialLoginPlugin.LOG_TAG, "No Custom Tabs browser; Apple login will open without warmup");
+            return;
+        }
+        synchronized (AppleProvider.class) {
+            if (boundConnection != null) {
+                try {
+                    appContext.unbindService(boundConnection);
+                } catch (IllegalArgumentException e) {
+                    // Never connected or already unbound by the system.
+                }
+                boundConnection = null;
+            }
+            if (CustomTabsClient.bindCustomTabsService(appContext, packageName, connection)) {
+                boundConnection = connection;
+            } else {
+                Log.w(SocialLoginPlugin.LOG_TAG, "Could not bind Custom Tabs service of " + packageName);
+            }
+        }
+    }
+
+    /**
+     * Let the browser start loading {@code url} while the launch of the Custom Tab waits for the main thread, or
+     * as soon as the service connects if it has not yet.
+     */
+    private void prefetch(String url) {
+        synchronized (customTabsLock) {
+            CustomTabsSession session = customTabsSession();
+            if (session != null) {
+                session.mayLaunchUrl(Uri.parse(url), null, null);
+            } else {
+                pendingMayLaunchUrl = url;
+            }
+        }
+    }
+
+    @SuppressLint("SetJavaScriptEnabled")
+    private void setupWebview(Activity activity, String url) {
+        CustomTabsSession session = getCustomTabsSession();
+        // "warm": the service was connected and the URL prefetched; "cold": launched without a session.
+        LoginTracer.getInstance().mark("apple", null, session != null ? "browserWarm" : "browserCold");
+        if (session != null) {
+            LoginTracer.getInstance().startSpan("apple", null, "authPageLoad");
+        }
+        CustomTabsIntent.Builder builder = new CustomTabsIntent.Builder(session);
+
+        builder.build().launchUrl(activity, Uri.parse(url));
+        synchronized (customTabsLock) {
+            // Launched: a service connecting from now on has nothing left to prefetch.
+            pendingMayLaunchUrl = null;
+        }
+    }
+
+    @SuppressLint("SetJavaScriptEnabled")
+    private void setupBroadcastChannelWebview(Activity activity, String url) {
+        // Create a custom WebView with Broadcast Channel support
+        Dialog dialog = new Dialog(activity);
+        dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
+        dialog.setCancelable(true);
+        dialog.getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
+
+        WebView webView = new WebView(activity);
+        webView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        if (loginCancellation != null) {
+            loginCancellation.onCancel(() ->
+                activity.runOnUiThread(() -> {
+                    dialog.dismiss();
+                    webView.destroy();
+                })
+            );
+        }
+
+        // Enable JavaScript
+        WebSettings webSettings = webView.getSettings();
+        webSettings.setJavaScriptEnabled(true);
+        webSettings.setDomStorageEnabled(true);
+        webSettings.setSupportMultipleWindows(false);
+
+        // Set up Broadcast Channel communication
+        webView.addJavascriptInterface(new BroadcastChannelInterface(), "AndroidBridge");
+
+        // Set up WebViewClient to handle redirects
+        webView.setWebViewClient(
+            new WebViewClient() {
+                @Override
+                public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+                    String url = request.getUrl().toString();
+
+                    // Check if this is the Broadcast Channel redirect
+                    if (url.contains("capacitor-social-login.firebaseapp.com")) {
+                        // Extract authorization code from URL parameters
+                        Uri uri = Uri.parse(url);
+                        // The WebView needs its answer now; the login itself is settled on the state loop.
+                        stateLoop.execute(() -> {
+                            String success = uri.getQueryParameter("success");
+
+                            if (!lastcall.isPending()) {
+                                Log.e(SocialLoginPlugin.LOG_TAG, "setupBroadcastChannelWebview: lastcall is null");
+                                return;
+                            }
+                            LoginTracer.getInstance().mark("apple", null, "redirectReceived");
+
+                            if ("true".equals(success)) {
+                                String accessToken = uri.getQueryParameter("access_token");
+                                if (accessToken != null) {
+                                    // We have proper tokens from the backend
+                                    String refreshToken = uri.getQueryParameter("refresh_token");
+                                    String idToken = uri.getQueryParameter("id_token");
+                                    try {
+                                        persistState(idToken, refreshToken, accessToken);
+                                        JSObject result = new JSObject();
+                                        result.put("accessToken", createAccessTokenObject(accessToken));
+                                        result.put("profile", createProfileObject(idToken));
+                                        result.put("idToken", idToken);
+
+                                        JSObject response = new JSObject();
+                                        response.put("provider", "apple");
+                                        response.put("result", result);
+
+                                        resolveLogin(response);
+                                    } catch (JSONException e) {
+                                        Log.e(SocialLoginPlugin.LOG_TAG, "Cannot persist state", e);
+                                        rejectLogin("Cannot persist state", e);
+                                    }
+                                } else {
+                                    // We only have authorization code, need to handle it
+                                    String appleAuthCode = uri.getQueryParameter("code");
+                                    String appleClientSecret = uri.getQueryParameter("client_secret");
+
+                                    if (useProperTokenExchange) {
+                                        // For Broadcast Channel, we can handle the token exchange directly
+                                        // or pass the authorization code back to the client
+                                        JSObject result = new JSObject();
+                                        result.put("authorizationCode", appleAuthCode);
+                                        result.put("idToken", ""); // Will be filled by client-side token exchange
+
+                                        JSObject response = new JSObject();
+                                        response.put("provider", "apple");
+                                        response.put("result", result);
+
+                                        resolveLogin(response);
+                                    } else {
+                                        // Legacy mode: use authorization code as access token
+                                        JSObject result = new JSObject();
+                                        result.put("accessToken", createAccessTokenObject(appleAuthCode));
+                                        result.put("profile", createProfileObject(""));
+                                        result.put("idToken", "");
+
+                                        JSObject response = new JSObject();
+                                        response.put("provider", "apple");
+                                        response.put("result", result);
+
+                                        resolveLogin(response);
+                                    }
+                                }
+                            } else {
+                                rejectLogin("Authentication failed", null);
+                            }
+                            LoginTracer.getInstance().finish(
+                                "apple",
+                                null,
+                                "true".equals(success) ? LoginTracer.STATUS_SUCCESS : LoginTracer.STATUS_ERROR
+                            );
+                        });
+                        dialog.dismiss();
+                        return true;
+                    }
+
+                    return super.shouldOverrideUrlLoading(view, request);
+                }
+            }
+        );
+
+        // Inject Broadcast Channel polyfill and setup
+        webView.setWebChromeClient(
+            new WebChromeClient() {
+                @Override
+                public boolean onConsoleMessage(ConsoleMessage consoleMessage) {
+                    Log.d("WebView", consoleMessage.message());
+                    return super.onConsoleMessage(consoleMessage);
+                }
+            }
+        );
+
+        dialog.setContentView(webView);
+
+        // Set dialog to fullscreen
+        WindowManager.LayoutParams lp = new WindowManager.LayoutParams();
+        lp.copyFrom(dialog.getWindow().getAttributes());
+        lp.width = WindowManager.LayoutParams.MATCH_PARENT;
+        lp.height = WindowManager.LayoutParams.MATCH_PARENT;
+        dialog.getWindow().setAttributes(lp);
+
+        // Load the Apple authentication URL
+        webView.loadUrl(url);
+
+        // Inject Broadcast Channel setup after page loads
+        webView.setWebViewClient(
+            new WebViewClient() {
+                @Override
+                public void onPageFinished(WebView view, String url) {
+                    super.onPageFinished(view, url);
+
+                    // Inject Broadcast Channel setup
+                    String broadcastChannelScript =
+                        "javascript:" +
+                        "if (!window.BroadcastChannel) {" +
+                        "  window.BroadcastChannel = function(name) {" +
+                        "    this.name = name;" +
+                        "    this.onmessage = null;" +
+                        "    this.postMessage = function(data) {" +
+                        "      if (window.AndroidBridge) {" +
+                        "        window.AndroidBridge.postMessage(JSON.stringify({channel: this.name, data: data}));" +
+                        "      }" +
+                        "    };" +
+                        "    window.addEventListener('message', (event) => {" +
+                        "      if (this.onmessage) {" +
+                        "        this.onmessage({data: event.data});" +
+                        "      }" +
+                        "    });" +
+                        "  };" +
+                        "}" +
+                        "console.log('Broadcast Channel polyfill loaded');";
+
+                    view.evaluateJavascript(broadcastChannelScript, null);
+                }
+            }
+        );
+
+        dialog.show();
+    }
+
+    // JavaScript interface for Broadcast Channel communication
+    private class BroadcastChannelInterface {
+
+        @android.webkit.JavascriptInterface
+        public void postMessage(String message) {
+            // Called on a WebView binder thread.
+            stateLoop.execute(() -> {
+                try {
+                    JSONObject data = new JSONObject(message);
+                    String channel = data.getString("channel");
+                    JSONObject messageData = data.getJSONObject("data");
+
+                    Log.d("BroadcastChannel", "Received message from channel: " + channel);
+                    Log.d("BroadcastChannel", "Message data: " + messageData.toString());
+
+                    // Handle authentication messages
+                    if ("auth".equals(channel)) {
+                        if (!lastcall.isPending()) {
+                            Log.e(SocialLoginPlugin.LOG_TAG, "BroadcastChannelInterface.postMessage: lastcall is null");
+                            return;
+                        }
+
+                        String type = messageData.getString("type");
+                        LoginTracer.getInstance().mark("apple", null, "broadcastMessage");
+                        if ("success".equals(type)) {
+                            // Handle successful authentication
+                            String idToken = messageData.optString("idToken", "");
+                            String accessToken = messageData.optString("accessToken", "");
+
+                            try {
+                                persistState(idToken, "refresh_token_placeholder", accessToken);
+                                JSObject result = new JSObject();
+                                result.put("accessToken", createAccessTokenObject(accessToken));
+                                result.put("profile", createProfileObject(idToken));
+                                result.put("idToken", idToken);
+
+                                JSObject response = new JSObject();
+                                response.put("provider", "apple");
+                                response.put("result", result);
+
+                                LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_SUCCESS);
+                                resolveLogin(response);
+                            } catch (JSONException e) {
+                                Log.e(SocialLoginPlugin.LOG_TAG, "Cannot create response", e);
+                                LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, "cannot create response");
+                                rejectLogin("Cannot create response", e);
+                            }
+                        } else if ("error".equals(type)) {
+                            String error = messageData.optString("error", "Authentication failed");
+                            LoginTracer.getInstance().finish("apple", null, LoginTracer.STATUS_ERROR, error);
+                            rejectLogin(error, null);
+                        }
+                    }
+                } catch (JSONException e) {
+                    Log.e("BroadcastChannel", "Error parsing message", e);
+                    rejectLogin("Error parsing authentication message", e);
+                }
+            });
+        }
+    }
+
+    private JSObject createAccessTokenObject(String accessToken) {
+        JSObject tokenObject = new JSObject();
+        tokenObject.put("token", accessToken);
+        // Add other fields if available
+        return tokenObject;
+    }
+
+    private JSObject createProfileObject(String idToken) {
+        JSObject profileObject = new JSObject();
+        // Parse the ID token to extract user information
+        // This is a simplified example. In practice, you should properly decode and verify the JWT.
+        try {
+            JSONObject claims = JwtDecoder.readClaims(idToken, "sub", "email");
+            profileObject.put("user", claims.optString("sub"));
+            profileObject.put("email", claims.optString("email"));
+            // Apple doesn't provide given name and family name in the ID token
+            profileObject.put("givenName", JSONObject.NULL);
+            profileObject.put("familyName", JSONObject.NULL);
+        } catch (JSONException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Error parsing ID token", e);
+        }
+        return profileObject;
+    }
+
+    // Helper method to convert JSONArray to String array
+    private String[] toStringArray(JSONArray array) throws JSONException {
+        String[] stringArray = new String[array.length()];
+        for (int i = 0; i < array.length(); i++) {
+            stringArray[i] = array.getString(i);
+        }
+        return stringArray;
+    }
+}
@@ -1,9 +1,15 @@
 package ee.forgr.capacitor.social.login;
 
-import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
+import com.getcapacitor.JSObject;
 import com.getcapacitor.PluginCall;
-import ee.forgr.capacitor.social.login.helpers.SocialProvider;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import java.util.concurrent.CompletableFuture;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -14,13 +20,21 @@ import org.json.JSONObject;
  * Lives in the plugin package (not {@code com.facebook.*}) so disabled builds
  * ship zero Facebook Login class signatures for privacy scanners.
  */
-public class FacebookProvider implements SocialProvider {
+public class FacebookProvider implements AsyncSocialProvider {
 
     private static final String DISABLED_MESSAGE =
         "Facebook provider is disabled. Dependencies are not available. Ensure Facebook Login dependencies are included in your app's build.gradle";
 
-    public FacebookProvider(Activity activity) {
-        // Stub - activity unused
+    public FacebookProvider(HostActivity host, Context context) {
+        // Stub - host and context unused
+    }
+
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        // Stub - no Facebook sessions to report
+    }
+
+    public void setStateLoop(StateLoop loop) {
+        // Stub - no state to confine
     }
 
     public void initialize(JSONObject config) {
@@ -28,28 +42,34 @@ public class FacebookProvider implements SocialProvider {
     }
 
     @Override
-    public void login(PluginCall call, JSONObject config) {
-        call.reject(DISABLED_MESSAGE);
+    public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+        return disabled();
     }
 
     @Override
-    public void logout(PluginCall call) {
-        call.reject(DISABLED_MESSAGE);
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        return disabled();
     }
 
     @Override
-    public void getAuthorizationCode(PluginCall call) {
-        call.reject(DISABLED_MESSAGE);
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        return disabled();
     }
 
     @Override
-    public void isLoggedIn(PluginCall call) {
-        call.reject(DISABLED_MESSAGE);
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        return disabled();
     }
 
     @Override
-    public void refresh(PluginCall call) {
-        call.reject(DISABLED_MESSAGE);
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        return disabled();
+    }
+
+    private static <T> CompletableFuture<T> disabled() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ProviderException.reject(result, DISABLED_MESSAGE);
+        return result;
     }
 
     public boolean handleOnActivityResult(int requestCode, int resultCode, Intent data) {
@@ -59,4 +79,12 @@ public class FacebookProvider implements SocialProvider {
     public void getProfile(JSONArray fieldsArray, PluginCall call) {
         call.reject(DISABLED_MESSAGE);
     }
+
+    public void verifyIdToken(String idToken, PluginCall call) {
+        call.reject(DISABLED_MESSAGE);
+    }
+
+    public JSONObject getBootstrapStats() {
+        return new JSONObject();
+    }
 }
@@ -1,270 +1,574 @@
 package ee.forgr.capacitor.social.login;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import androidx.activity.result.ActivityResultRegistryOwner;
 import androidx.annotation.Nullable;
 import com.facebook.AccessToken;
+import com.facebook.AuthenticationToken;
 import com.facebook.CallbackManager;
 import com.facebook.FacebookCallback;
 import com.facebook.FacebookException;
 import com.facebook.FacebookSdk;
 import com.facebook.GraphRequest;
+import com.facebook.GraphRequestBatch;
+import com.facebook.GraphResponse;
 import com.facebook.login.LoginBehavior;
 import com.facebook.login.LoginManager;
 import com.facebook.login.LoginResult;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.PluginCall;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.GraphProfileCache;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
 import ee.forgr.capacitor.social.login.helpers.JsonHelper;
-import ee.forgr.capacitor.social.login.helpers.SocialProvider;
+import ee.forgr.capacitor.social.login.helpers.JwksVerifier;
+import ee.forgr.capacitor.social.login.helpers.LoginTracer;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.Stats;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.CountDownLatch;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-public class FacebookProvider implements SocialProvider {
+public class FacebookProvider implements AsyncSocialProvider {
 
     private static final String LOG_TAG = "FacebookProvider";
     private static final String USER_CANCELLED_CODE = "USER_CANCELLED";
+    private static final List<String> LOGIN_PROFILE_FIELDS = Arrays.asList("id", "name", "email", "picture.type(large)");
+
+    static final long BOOTSTRAP_TIMEOUT_MS = 10_000;
+    private static final String NOT_READY_CODE = "SDK_NOT_READY";
+    // Login waits this long for the profile it resolves with.
+    static final long PROFILE_TIMEOUT_MS = 15_000;
+    private static final String PROFILE_TIMEOUT_CODE = "PROFILE_TIMEOUT";
+
+    // SDK bootstrap, then Graph batches: one thread, so no Graph request can run before the SDK is up.
+    private static final ExecutorService facebookExecutor = Executors.newSingleThreadExecutor();
+    // Profile lookups that missed the cache, sent together as one GraphRequestBatch on facebookExecutor.
+    private final List<PendingProfile> pendingProfiles = new ArrayList<>();
+    private final GraphProfileCache profileCache = GraphProfileCache.getInstance();
+
+    private final HostActivity host;
+    private final Context context;
+    private volatile CallbackManager callbackManager;
+    private TokenLifecycleMonitor tokenLifecycleMonitor;
+    private final JwksVerifier jwksVerifier;
+    private final CompletableFuture<Void> bootstrap = new CompletableFuture<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private StateLoop stateLoop = StateLoop.inline();
+    private volatile String bootstrapError;
+    private volatile long bootstrapNanos = -1;
+
+    public FacebookProvider(HostActivity host, Context context) {
+        this.host = host;
+        this.context = context.getApplicationContext();
+        this.jwksVerifier = JwksVerifier.facebook(this.context);
+    }
 
-    private Activity activity;
-    private CallbackManager callbackManager;
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        this.tokenLifecycleMonitor = monitor;
+    }
 
-    public FacebookProvider(Activity activity) {
-        this.activity = activity;
+    /**
+     * Where calls made during the bootstrap continue once it is done; the plugin's state loop, which also runs
+     * the calls.
+     */
+    public void setStateLoop(StateLoop loop) {
+        this.stateLoop = loop;
     }
 
+    /**
+     * Validate {@code config} and start the SDK bootstrap on a background thread; calls made meanwhile continue
+     * once it is done, see {@link #whenReady}. {@code autoInit}, {@code autoLogAppEvents} and
+     * {@code advertiserIDCollection} override the manifest's {@code com.facebook.sdk.*} values when set; they are
+     * applied before {@code sdkInitialize}, which reads them.
+     */
     public void initialize(JSONObject config) {
+        String facebookAppId;
+        String facebookClientToken;
         try {
-            // Set Facebook App ID
-            String facebookAppId = config.getString("appId");
-            FacebookSdk.setApplicationId(facebookAppId);
+            facebookAppId = config.getString("appId");
+            facebookClientToken = config.getString("clientToken");
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Error initializing Facebook SDK", e);
+            throw new RuntimeException("Failed to initialize Facebook SDK: " + e.getMessage());
+        }
+        Boolean autoInit = config.has("autoInit") ? config.optBoolean("autoInit") : null;
+        Boolean autoLogAppEvents = config.has("autoLogAppEvents") ? config.optBoolean("autoLogAppEvents") : null;
+        Boolean advertiserIDCollection = config.has("advertiserIDCollection") ? config.optBoolean("advertiserIDCollection") : null;
 
-            // Set Facebook Client Token
-            String facebookClientToken = config.getString("clientToken");
-            FacebookSdk.setClientToken(facebookClientToken);
+        facebookExecutor.execute(() -> {
+            long started = System.nanoTime();
+            try {
+                FacebookSdk.setApplicationId(facebookAppId);
+                FacebookSdk.setClientToken(facebookClientToken);
+                if (autoInit != null) {
+                    FacebookSdk.setAutoInitEnabled(autoInit);
+                }
+                if (autoLogAppEvents != null) {
+                    FacebookSdk.setAutoLogAppEventsEnabled(autoLogAppEvents);
+                }
+                if (advertiserIDCollection != null) {
+                    FacebookSdk.setAdvertiserIDCollectionEnabled(advertiserIDCollection);
+                }
+                FacebookSdk.sdkInitialize(context);
 
-            // Initialize Facebook SDK
-            FacebookSdk.sdkInitialize(activity.getApplicationContext());
+                this.callbackManager = CallbackManager.Factory.create();
 
-            this.callbackManager = CallbackManager.Factory.create();
+                AccessToken current = AccessToken.getCurrentAccessToken();
+                if (tokenLifecycleMonitor != null && current != null) {
+                    tokenLifecycleMonitor.track("facebook", null, current.getExpires().getTime());
+                }
 
-            LoginManager.getInstance().registerCallback(
-                callbackManager,
-                new FacebookCallback<LoginResult>() {
-                    @Override
-                    public void onSuccess(LoginResult loginResult) {
-                        Log.d(LOG_TAG, "LoginManager.onSuccess");
-                    }
+                LoginManager.getInstance().registerCallback(
+                    callbackManager,
+                    new FacebookCallback<LoginResult>() {
+                        @Override
+                        public void onSuccess(LoginResult loginResult) {
+                            Log.d(LOG_TAG, "LoginManager.onSuccess");
+                        }
 
-                    @Override
-                    public void onCancel() {
-                        Log.d(LOG_TAG, "LoginManager.onCancel");
-                    }
+                        @Override
+                        public void onCancel() {
+                            Log.d(LOG_TAG, "LoginManager.onCancel");
+                        }
 
-                    @Override
-                    public void onError(FacebookException exception) {
-                        Log.e(LOG_TAG, "LoginManager.onError", exception);
+                        @Override
+                        public void onError(FacebookException exception) {
+                            Log.e(LOG_TAG, "LoginManager.onError", exception);
+                        }
                     }
-                }
-            );
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, "Error initializing Facebook SDK", e);
-            throw new RuntimeException("Failed to initialize Facebook SDK: " + e.getMessage());
+                );
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Error initializing Facebook SDK", e);
+                bootstrapError = "Failed to initialize Facebook SDK: " + e.getMessage();
+            } finally {
+                bootstrapNanos = System.nanoTime() - started;
+                bootstrap.complete(null);
+            }
+        });
+    }
+
+    /**
+     * {@code body}, run once the bootstrap started by {@link #initialize} is done. A call made during the
+     * bootstrap continues on the state loop when it finishes instead of blocking the loop until then; it is
+     * rejected with {@code SDK_NOT_READY} if the bootstrap failed or takes longer than {@link #BOOTSTRAP_TIMEOUT_MS}.
+     */
+    private <T> CompletableFuture<T> whenReady(Supplier<CompletableFuture<T>> body) {
+        if (bootstrap.isDone()) {
+            return bootstrapError == null ? body.get() : notReady(bootstrapError);
         }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable timeout = () ->
+            stateLoop.execute(() -> ProviderException.reject(result, "Facebook SDK is still initializing", NOT_READY_CODE));
+        mainHandler.postDelayed(timeout, BOOTSTRAP_TIMEOUT_MS);
+        bootstrap.thenRun(() ->
+            stateLoop.execute(() -> {
+                mainHandler.removeCallbacks(timeout);
+                if (result.isDone()) {
+                    return;
+                }
+                if (bootstrapError != null) {
+                    ProviderException.reject(result, bootstrapError, NOT_READY_CODE);
+                    return;
+                }
+                body
+                    .get()
+                    .whenComplete((value, error) -> {
+                        if (error != null) {
+                            result.completeExceptionally(error);
+                        } else {
+                            result.complete(value);
+                        }
+                    });
+            })
+        );
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> notReady(String message) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ProviderException.reject(result, message, NOT_READY_CODE);
+        return result;
+    }
+
+    /**
+     * Bootstrap state for diagnostics: {@code ready}, {@code bootstrapMs} once done, {@code error} if it failed.
+     */
+    public JSONObject getBootstrapStats() {
+        return Stats.of(
+            "ready",
+            bootstrap.isDone() && bootstrapError == null,
+            "bootstrapMs",
+            bootstrapNanos >= 0 ? bootstrapNanos / 1_000_000.0 : null,
+            "error",
+            bootstrapError
+        );
     }
 
     @Override
-    public void login(PluginCall call, JSONObject config) {
-        try {
-            Collection<String> permissions = JsonHelper.jsonArrayToList(config.getJSONArray("permissions"));
-            boolean limitedLogin = config.optBoolean("limitedLogin", false);
-            String nonce = config.optString("nonce", "");
+    public CompletableFuture<JSObject> loginAsync(JSONObject config) {
+        return whenReady(() -> {
+            CompletableFuture<JSObject> login = new CompletableFuture<>();
+            Activity activity = host.get();
+            if (activity == null) {
+                ProviderException.reject(login, "No activity to open the login in");
+                return login;
+            }
+            try {
+                Collection<String> permissions = JsonHelper.jsonArrayToList(config.getJSONArray("permissions"));
+                boolean limitedLogin = config.optBoolean("limitedLogin", false);
+                String nonce = config.optString("nonce", "");
+                List<String> profileFields = new ArrayList<>(LOGIN_PROFILE_FIELDS);
+                JSONArray extraFields = config.optJSONArray("profileFields");
+                if (extraFields != null) {
+                    profileFields.addAll(JsonHelper.jsonArrayToList(extraFields));
+                }
 
-            LoginManager.getInstance().registerCallback(
-                callbackManager,
-                new FacebookCallback<LoginResult>() {
-                    @Override
-                    public void onSuccess(LoginResult loginResult) {
-                        Log.d(LOG_TAG, "LoginManager.onSuccess");
-                        AccessToken accessToken = loginResult.getAccessToken();
-                        boolean isLimitedLogin =
-                            loginResult.getAuthenticationToken() != null &&
-                            loginResult.getAuthenticationToken().getToken() != null &&
-                            !loginResult.getAuthenticationToken().getToken().isEmpty();
-                        JSObject result = new JSObject();
-                        if (isLimitedLogin) {
-                            result.put("accessToken", null);
-                        } else {
-                            result.put("accessToken", createAccessTokenObject(accessToken));
+                LoginManager.getInstance().registerCallback(
+                    callbackManager,
+                    new FacebookCallback<LoginResult>() {
+                        @Override
+                        public void onSuccess(LoginResult loginResult) {
+                            Log.d(LOG_TAG, "LoginManager.onSuccess");
+                            stateLoop.execute(() -> finishLogin(login, loginResult, profileFields, nonce));
                         }
-                        result.put("profile", createProfileObject(accessToken));
-                        result.put(
-                            "idToken",
-                            loginResult.getAuthenticationToken() != null ? loginResult.getAuthenticationToken().getToken() : null
-                        );
-                        result.put("isLimitedLogin", isLimitedLogin);
-
-                        JSObject response = new JSObject();
-                        response.put("provider", "facebook");
-                        response.put("result", result);
-
-                        call.resolve(response);
-                    }
 
-                    @Override
-                    public void onCancel() {
-                        Log.d(LOG_TAG, "LoginManager.onCancel");
-                        call.reject("Login cancelled", USER_CANCELLED_CODE);
-                    }
+                        @Override
+                        public void onCancel() {
+                            Log.d(LOG_TAG, "LoginManager.onCancel");
+                            stateLoop.execute(() -> {
+                                LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_CANCELLED);
+                                ProviderException.reject(login, "Login cancelled", USER_CANCELLED_CODE);
+                            });
+                        }
 
-                    @Override
-                    public void onError(FacebookException exception) {
-                        Log.e(LOG_TAG, "LoginManager.onError", exception);
-                        call.reject(exception.getMessage());
+                        @Override
+                        public void onError(FacebookException exception) {
+                            Log.e(LOG_TAG, "LoginManager.onError", exception);
+                            stateLoop.execute(() -> {
+                                LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_ERROR, exception.getMessage());
+                                ProviderException.reject(login, exception.getMessage(), exception);
+                            });
+                        }
                     }
-                }
-            );
+                );
 
-            LoginManager loginManager = LoginManager.getInstance();
-            if (limitedLogin) {
-                Log.w(LOG_TAG, "Limited login is not available for Android");
-            }
+                LoginManager loginManager = LoginManager.getInstance();
+                if (limitedLogin) {
+                    Log.w(LOG_TAG, "Limited login is not available for Android");
+                }
 
-            loginManager.setLoginBehavior(LoginBehavior.NATIVE_WITH_FALLBACK);
-            if (!nonce.isEmpty()) {
-                loginManager.logIn((ActivityResultRegistryOwner) activity, callbackManager, permissions, nonce);
-            } else {
-                loginManager.logIn((ActivityResultRegistryOwner) activity, callbackManager, permissions);
+                loginManager.setLoginBehavior(LoginBehavior.NATIVE_WITH_FALLBACK);
+                LoginTracer.getInstance().startSpan("facebook", null, "authorization");
+                if (!nonce.isEmpty()) {
+                    loginManager.logIn((ActivityResultRegistryOwner) activity, callbackManager, permissions, nonce);
+                } else {
+                    loginManager.logIn((ActivityResultRegistryOwner) activity, callbackManager, permissions);
+                }
+            } catch (JSONException e) {
+                ProviderException.reject(login, "Invalid login options format", e);
             }
-        } catch (JSONException e) {
-            call.reject("Invalid login options format");
-        }
+            return login;
+        });
     }
 
     @Override
-    public void logout(PluginCall call) {
-        LoginManager.getInstance().logOut();
-        call.resolve();
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        return whenReady(() -> {
+            LoginManager.getInstance().logOut();
+            profileCache.clear();
+            if (tokenLifecycleMonitor != null) {
+                tokenLifecycleMonitor.revoked("facebook", null);
+            }
+            LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_SUCCESS);
+            return CompletableFuture.completedFuture(null);
+        });
     }
 
     @Override
-    public void getAuthorizationCode(PluginCall call) {
-        AccessToken accessToken = AccessToken.getCurrentAccessToken();
-        if (accessToken != null && !accessToken.isExpired()) {
-            call.resolve(new JSObject().put("accessToken", accessToken.getToken()));
-        } else {
-            call.reject("No valid access token found");
-        }
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        return whenReady(() -> {
+            CompletableFuture<JSObject> code = new CompletableFuture<>();
+            AccessToken accessToken = AccessToken.getCurrentAccessToken();
+            if (accessToken != null && !accessToken.isExpired()) {
+                code.complete(new JSObject().put("accessToken", accessToken.getToken()));
+            } else {
+                ProviderException.reject(code, "No valid access token found");
+            }
+            return code;
+        });
     }
 
     @Override
-    public void isLoggedIn(PluginCall call) {
-        AccessToken accessToken = AccessToken.getCurrentAccessToken();
-        call.resolve(new JSObject().put("isLoggedIn", accessToken != null && !accessToken.isExpired()));
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        return whenReady(() -> {
+            CompletableFuture<Boolean> loggedIn = new CompletableFuture<>();
+            AccessToken accessToken = AccessToken.getCurrentAccessToken();
+            AuthenticationToken authenticationToken = AuthenticationToken.getCurrentAuthenticationToken();
+            if ((accessToken != null && !accessToken.isExpired()) || authenticationToken == null) {
+                loggedIn.complete(accessToken != null && !accessToken.isExpired());
+                return loggedIn;
+            }
+            // Limited Login: no usable access token, the session is as good as its locally verified token.
+            jwksVerifier.verify(
+                authenticationToken.getToken(),
+                JwksVerifier.FACEBOOK_ISSUERS,
+                FacebookSdk.getApplicationId(),
+                null,
+                new JwksVerifier.VerifyCallback() {
+                    @Override
+                    public void onVerified(JSONObject claims) {
+                        stateLoop.execute(() -> loggedIn.complete(true));
+                    }
+
+                    @Override
+                    public void onError(String message, String errorCode) {
+                        stateLoop.execute(() -> loggedIn.complete(false));
+                    }
+                }
+            );
+            return loggedIn;
+        });
     }
 
     @Override
-    public void refresh(PluginCall call) {
-        // Not implemented for Facebook
-        AccessToken accessToken = AccessToken.getCurrentAccessToken();
-        if (accessToken == null) {
-            call.reject("No access token?");
-            return;
-        }
-        if (!accessToken.isDataAccessExpired() && !accessToken.isExpired()) {
-            JSObject ret = new JSObject();
-            ret.put("accessToken", accessToken.getToken());
-            call.resolve(ret);
-            return;
-        }
-        AccessToken.refreshCurrentAccessTokenAsync(
-            new AccessToken.AccessTokenRefreshCallback() {
-                @Override
-                public void OnTokenRefreshed(@Nullable AccessToken accessToken) {
-                    if (accessToken == null) {
-                        call.reject("Success, but refresh token is null ???");
-                        return;
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        return whenReady(() -> {
+            CompletableFuture<JSObject> refresh = new CompletableFuture<>();
+            // Not implemented for Facebook
+            AccessToken accessToken = AccessToken.getCurrentAccessToken();
+            if (accessToken == null) {
+                ProviderException.reject(refresh, "No access token?");
+                return refresh;
+            }
+            if (!accessToken.isDataAccessExpired() && !accessToken.isExpired()) {
+                JSObject ret = new JSObject();
+                ret.put("accessToken", accessToken.getToken());
+                refresh.complete(ret);
+                return refresh;
+            }
+            AccessToken.refreshCurrentAccessTokenAsync(
+                new AccessToken.AccessTokenRefreshCallback() {
+                    @Override
+                    public void OnTokenRefreshed(@Nullable AccessToken accessToken) {
+                        stateLoop.execute(() -> {
+                            if (accessToken == null) {
+                                ProviderException.reject(refresh, "Success, but refresh token is null ???");
+                                return;
+                            }
+                            JSObject ret = new JSObject();
+                            ret.put("accessToken", accessToken.getToken());
+                            refresh.complete(ret);
+                        });
                     }
-                    JSObject ret = new JSObject();
-                    ret.put("accessToken", accessToken.getToken());
-                    call.resolve(ret);
-                }
 
-                @Override
-                public void OnTokenRefreshFailed(@Nullable FacebookException e) {
-                    if (e != null) {
-                        Log.e(SocialLoginPlugin.LOG_TAG, "Facebook token refresh error", e);
-                        call.reject(String.format("Cannot refresh token. %s", e.toString()));
-                    } else {
-                        call.reject("Cannot refresh token");
+                    @Override
+                    public void OnTokenRefreshFailed(@Nullable FacebookException e) {
+                        if (e != null) {
+                            Log.e(SocialLoginPlugin.LOG_TAG, "Facebook token refresh error", e);
+                        }
+                        stateLoop.execute(() -> {
+                            if (e != null) {
+                                ProviderException.reject(refresh, String.format("Cannot refresh token. %s", e.toString()), e);
+                            } else {
+                                ProviderException.reject(refresh, "Cannot refresh token");
+                            }
+                        });
                     }
                 }
-            }
-        );
+            );
+            return refresh;
+        });
     }
 
     public boolean handleOnActivityResult(int requestCode, int resultCode, Intent data) {
         Log.d(LOG_TAG, "FacebookProvider.handleOnActivityResult called");
-        if (callbackManager != null) {
+        // A login result implies a finished bootstrap; callbackManager is only read once it is published.
+        if (bootstrap.isDone() && callbackManager != null) {
             return callbackManager.onActivityResult(requestCode, resultCode, data);
         }
         return false;
     }
 
     public void getProfile(JSONArray fieldsArray, PluginCall call) {
-        AccessToken accessToken = AccessToken.getCurrentAccessToken();
-        if (accessToken == null || accessToken.isExpired()) {
-            call.reject("You're not logged in. Please login first to obtain an access token and try again.");
-            return;
-        }
+        AsyncSocialProvider.answer(call, getProfileAsync(fieldsArray));
+    }
 
-        String[] fieldsStrings = new String[fieldsArray.length()];
-        try {
-            for (int i = 0; i < fieldsArray.length(); i++) {
-                fieldsStrings[i] = fieldsArray.getString(i);
+    public CompletableFuture<JSObject> getProfileAsync(JSONArray fieldsArray) {
+        return whenReady(() -> {
+            CompletableFuture<JSObject> profileResult = new CompletableFuture<>();
+            AccessToken accessToken = AccessToken.getCurrentAccessToken();
+            if (accessToken == null || accessToken.isExpired()) {
+                ProviderException.reject(profileResult, "You're not logged in. Please login first to obtain an access token and try again.");
+                return profileResult;
             }
-        } catch (JSONException e) {
-            call.reject("Invalid fields format");
-            return;
-        }
 
-        String fieldsString = String.join(",", fieldsStrings);
+            String[] fieldsStrings = new String[fieldsArray.length()];
+            try {
+                for (int i = 0; i < fieldsArray.length(); i++) {
+                    fieldsStrings[i] = fieldsArray.getString(i);
+                }
+            } catch (JSONException e) {
+                ProviderException.reject(profileResult, "Invalid fields format", e);
+                return profileResult;
+            }
 
-        Bundle parameters = new Bundle();
-        parameters.putString("fields", fieldsString);
+            requestProfile(accessToken, Arrays.asList(fieldsStrings), (profile, error) ->
+                stateLoop.execute(() -> {
+                    if (error != null) {
+                        ProviderException.reject(profileResult, error);
+                        return;
+                    }
+                    try {
+                        JSObject result = new JSObject();
+                        result.put("profile", JSObject.fromJSONObject(profile));
+                        profileResult.complete(result);
+                    } catch (Exception e) {
+                        ProviderException.reject(profileResult, "Error parsing profile response: " + e.getMessage(), e);
+                    }
+                })
+            );
+            return profileResult;
+        });
+    }
 
-        GraphRequest request = GraphRequest.newMeRequest(accessToken, (jsonObject, response) -> {
-            if (response == null) {
-                call.reject("response is null from Facebook Graph");
-                return;
+    /**
+     * Verify a Limited Login authentication token ({@code idToken}, or the current one) against Facebook's JWKS
+     * and resolve with its claims.
+     */
+    public void verifyIdToken(String idToken, PluginCall call) {
+        AsyncSocialProvider.answer(call, verifyIdTokenAsync(idToken));
+    }
+
+    public CompletableFuture<JSObject> verifyIdTokenAsync(String idToken) {
+        return whenReady(() -> {
+            CompletableFuture<JSObject> verified = new CompletableFuture<>();
+            String token = idToken;
+            if (token == null || token.isEmpty()) {
+                AuthenticationToken current = AuthenticationToken.getCurrentAuthenticationToken();
+                token = current != null ? current.getToken() : null;
             }
-            if (response.getError() != null) {
-                call.reject(response.getError().getErrorMessage());
-                return;
+            if (token == null || token.isEmpty()) {
+                ProviderException.reject(verified, "No Facebook authentication token. Log in with Limited Login first or pass idToken.");
+                return verified;
             }
+            jwksVerifier.verify(
+                token,
+                JwksVerifier.FACEBOOK_ISSUERS,
+                FacebookSdk.getApplicationId(),
+                null,
+                new JwksVerifier.VerifyCallback() {
+                    @Override
+                    public void onVerified(JSONObject claims) {
+                        stateLoop.execute(() -> {
+                            try {
+                                JSObject result = new JSObject();
+                                result.put("claims", JSObject.fromJSONObject(claims));
+                                verified.complete(result);
+                            } catch (JSONException e) {
+                                ProviderException.reject(verified, "Error copying verified claims: " + e.getMessage(), e);
+                            }
+                        });
+                    }
 
-            if (jsonObject == null) {
-                call.reject("jsonObject is null from Facebook Graph");
+                    @Override
+                    public void onError(String message, String errorCode) {
+                        stateLoop.execute(() -> ProviderException.reject(verified, message, errorCode));
+                    }
+                }
+            );
+            return verified;
+        });
+    }
+
+    /**
+     * Complete {@code login} from the SDK's result, once its profile is in; runs on the state loop.
+     */
+    private void finishLogin(CompletableFuture<JSObject> login, LoginResult loginResult, List<String> profileFields, String nonce) {
+        AccessToken accessToken = loginResult.getAccessToken();
+        AuthenticationToken authenticationToken = loginResult.getAuthenticationToken();
+        boolean isLimitedLogin =
+            authenticationToken != null && authenticationToken.getToken() != null && !authenticationToken.getToken().isEmpty();
+        loginProfile(accessToken, profileFields).thenAccept((profile) -> {
+            if (profile == null) {
+                LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_ERROR, "profile timeout");
+                ProviderException.reject(login, "Timed out fetching the Facebook profile", PROFILE_TIMEOUT_CODE);
                 return;
             }
+            JSObject result = new JSObject();
+            if (isLimitedLogin) {
+                result.put("accessToken", null);
+            } else {
+                result.put("accessToken", createAccessTokenObject(accessToken));
+            }
+            result.put("profile", profile);
+            result.put("idToken", authenticationToken != null ? authenticationToken.getToken() : null);
+            result.put("isLimitedLogin", isLimitedLogin);
 
-            try {
-                JSObject profile = JSObject.fromJSONObject(jsonObject);
-                JSObject result = new JSObject();
-                result.put("profile", profile);
-                call.resolve(result);
-            } catch (Exception e) {
-                call.reject("Error parsing profile response: " + e.getMessage());
+            JSObject response = new JSObject();
+            response.put("provider", "facebook");
+            response.put("result", result);
+
+            if (tokenLifecycleMonitor != null && accessToken != null) {
+                tokenLifecycleMonitor.issued("facebook", null, accessToken.getExpires().getTime());
             }
-        });
+            if (!isLimitedLogin) {
+                LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_SUCCESS);
+                login.complete(response);
+                return;
+            }
+            jwksVerifier.verify(
+                authenticationToken.getToken(),
+                JwksVerifier.FACEBOOK_ISSUERS,
+                FacebookSdk.getApplicationId(),
+                nonce.isEmpty() ? null : nonce,
+                new JwksVerifier.VerifyCallback() {
+                    @Override
+                    public void onVerified(JSONObject claims) {
+                        stateLoop.execute(() -> {
+                            try {
+                                result.put("idTokenClaims", JSObject.fromJSONObject(claims));
+                            } catch (JSONException e) {
+                                Log.w(LOG_TAG, "Could not copy verified claims", e);
+                            }
+                            LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_SUCCESS);
+                            login.complete(response);
+                        });
+                    }
 
-        request.setParameters(parameters);
-        request.executeAsync();
+                    @Override
+                    public void onError(String message, String errorCode) {
+                        // Backends can still validate idToken themselves; only the local claims are left out.
+                        Log.w(LOG_TAG, "Authentication token not verified: " + message);
+                        stateLoop.execute(() -> {
+                            LoginTracer.getInstance().finish("facebook", null, LoginTracer.STATUS_SUCCESS);
+                            login.complete(response);
+                        });
+                    }
+                }
+            );
+        });
     }
 
     private JSObject createAccessTokenObject(AccessToken accessToken) {
@@ -280,44 +584,150 @@ public class FacebookProvider implements SocialProvider {
         return tokenObject;
     }
 
-    private JSObject createProfileObject(AccessToken accessToken) {
-        JSObject profileObject = new JSObject();
-        CountDownLatch latch = new CountDownLatch(1);
-
-        GraphRequest request = GraphRequest.newMeRequest(accessToken, (object, response) -> {
-            if (response.getError() != null) {
-                Log.e(LOG_TAG, "Error fetching profile", response.getError().getException());
-            } else {
-                profileObject.put("userID", object.optString("id", ""));
-                profileObject.put("email", object.optString("email", ""));
-                profileObject.put("name", object.optString("name", ""));
-
-                JSONObject pictureObject = object.optJSONObject("picture");
-                if (pictureObject != null) {
-                    JSONObject dataObject = pictureObject.optJSONObject("data");
-                    if (dataObject != null) {
-                        profileObject.put("imageURL", dataObject.optString("url", ""));
+    /**
+     * The login profile of {@code accessToken}, empty if Graph failed, or null if it did not answer within
+     * {@link #PROFILE_TIMEOUT_MS}. Completes on the state loop, which is not held while Graph answers.
+     */
+    private CompletableFuture<JSObject> loginProfile(AccessToken accessToken, List<String> fields) {
+        CompletableFuture<JSObject> profile = new CompletableFuture<>();
+        Runnable timeout = () ->
+            stateLoop.execute(() -> {
+                if (profile.complete(null)) {
+                    Log.e(LOG_TAG, "Profile fetch did not finish in " + PROFILE_TIMEOUT_MS + " ms");
+                }
+            });
+        mainHandler.postDelayed(timeout, PROFILE_TIMEOUT_MS);
+
+        requestProfile(accessToken, fields, (object, error) ->
+            stateLoop.execute(() -> {
+                mainHandler.removeCallbacks(timeout);
+                JSObject profileObject = new JSObject();
+                if (error != null) {
+                    Log.e(LOG_TAG, "Error fetching profile: " + error);
+                } else {
+                    profileObject.put("userID", object.optString("id", ""));
+                    profileObject.put("email", object.optString("email", ""));
+                    profileObject.put("name", object.optString("name", ""));
+
+                    JSONObject pictureObject = object.optJSONObject("picture");
+                    if (pictureObject != null) {
+                        JSONObject dataObject = pictureObject.optJSONObject("data");
+                        if (dataObject != null) {
+                            profileObject.put("imageURL", dataObject.optString("url", ""));
+                        }
                     }
                 }
+                profile.complete(profileObject);
+            })
+        );
+        return profile;
+    }
+
+    interface ProfileCallback {
+        /**
+         * Exactly one of {@code profile} and {@code error} is non-null.
+         */
+        void onProfile(JSONObject profile, String error);
+    }
+
+    private static final class PendingProfile {
+
+        final AccessToken accessToken;
+        final List<String> fields;
+        final ProfileCallback callback;
+
+        PendingProfile(AccessToken accessToken, List<String> fields, ProfileCallback callback) {
+            this.accessToken = accessToken;
+            this.fields = fields;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * {@code fields} of the user behind {@code accessToken}, from {@link GraphProfileCache} when it has them all.
+     * Misses queued while a batch is being sent go out together in the next {@link GraphRequestBatch}, with one
+     * {@code /me} request per access token asking for the union of their missing fields, split where two of them
+     * answer under the same key ({@link GraphProfileCache#partition}).
+     */
+    private void requestProfile(AccessToken accessToken, List<String> fields, ProfileCallback callback) {
+        if (accessToken == null) {
+            callback.onProfile(null, "No Facebook access token");
+            return;
+        }
+        JSONObject cached = profileCache.get(accessToken.getUserId(), accessToken.getToken(), fields);
+        if (cached != null) {
+            callback.onProfile(cached, null);
+            return;
+        }
+        synchronized (pendingProfiles) {
+            pendingProfiles.add(new PendingProfile(accessToken, fields, callback));
+            if (pendingProfiles.size() == 1) {
+                facebookExecutor.execute(this::flushProfileRequests);
             }
-            latch.countDown();
-        });
+        }
+    }
 
-        Bundle parameters = new Bundle();
-        parameters.putString("fields", "id,name,email,picture.type(large)");
-        request.setParameters(parameters);
+    private void flushProfileRequests() {
+        List<PendingProfile> batch;
+        synchronized (pendingProfiles) {
+            batch = new ArrayList<>(pendingProfiles);
+            pendingProfiles.clear();
+        }
 
-        new Thread(() -> {
-            request.executeAndWait();
-        })
-            .start();
+        Map<String, Set<String>> missingByToken = new HashMap<>();
+        Map<String, AccessToken> tokens = new HashMap<>();
+        for (PendingProfile pending : batch) {
+            String token = pending.accessToken.getToken();
+            tokens.put(token, pending.accessToken);
+            missingByToken
+                .computeIfAbsent(token, (t) -> new LinkedHashSet<>())
+                .addAll(profileCache.missing(pending.accessToken.getUserId(), token, pending.fields));
+        }
 
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            Log.e(LOG_TAG, "Interrupted while waiting for profile fetch", e);
+        Map<String, String> errors = new HashMap<>();
+        List<GraphRequest> requests = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> missing : missingByToken.entrySet()) {
+            AccessToken accessToken = tokens.get(missing.getKey());
+            for (List<String> fields : GraphProfileCache.partition(missing.getValue())) {
+                GraphRequest request = GraphRequest.newMeRequest(accessToken, (object, response) -> {
+                    String error = graphError(object, response);
+                    if (error != null) {
+                        errors.put(missing.getKey(), error);
+                    } else {
+                        profileCache.put(accessToken.getUserId(), missing.getKey(), fields, object);
+                    }
+                });
+                Bundle parameters = new Bundle();
+                parameters.putString("fields", String.join(",", fields));
+                request.setParameters(parameters);
+                requests.add(request);
+            }
+        }
+        if (!requests.isEmpty()) {
+            new GraphRequestBatch(requests).executeAndWait();
+        }
+
+        for (PendingProfile pending : batch) {
+            String token = pending.accessToken.getToken();
+            String error = errors.get(token);
+            JSONObject profile = error == null ? profileCache.get(pending.accessToken.getUserId(), token, pending.fields) : null;
+            if (profile == null && error == null) {
+                error = "Profile missing from Facebook Graph response";
+            }
+            pending.callback.onProfile(profile, error);
         }
+    }
 
-        return profileObject;
+    private static String graphError(JSONObject object, GraphResponse response) {
+        if (response == null) {
+            return "response is null from Facebook Graph";
+        }
+        if (response.getError() != null) {
+            return response.getError().getErrorMessage();
+        }
+        if (object == null) {
+            return "jsonObject is null from Facebook Graph";
+        }
+        return null;
     }
 }
@@ -0,0 +1,94 @@
+package ee.forgr.capacitor.social.login;
+
+import android.content.Context;
+import android.content.Intent;
+import com.getcapacitor.JSObject;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONObject;
+
+/**
+ * Compile-time stub used when Google is disabled via provider pinning
+ * ({@code socialLogin.google.include=false}).
+ * <p>
+ * Keeps the public surface apps reference (request code range) without shipping the
+ * Credential Manager / Play Services provider, so none of its classes are dexed or verified.
+ */
+public class GoogleProvider implements AsyncSocialProvider {
+
+    private static final String DISABLED_MESSAGE =
+        "Google provider is disabled. Dependencies are not available. Ensure Google Play Services Auth dependencies are included in your app's build.gradle";
+
+    public static final Integer REQUEST_AUTHORIZE_GOOGLE_MIN = 583892990;
+    public static final Integer REQUEST_AUTHORIZE_GOOGLE_MAX = REQUEST_AUTHORIZE_GOOGLE_MIN + 128;
+
+    public enum GoogleProviderLoginType {
+        ONLINE,
+        OFFLINE
+    }
+
+    public GoogleProvider(HostActivity host, Context context) {
+        // Stub - host and context unused
+    }
+
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        // Stub - no Google sessions to report
+    }
+
+    public void setDeadlines(OperationDeadlines deadlines) {
+        // Stub - no network calls
+    }
+
+    public void setAccountStore(AccountStore store) {
+        // Stub - no accounts to store
+    }
+
+    public void setStateLoop(StateLoop loop) {
+        // Stub - no state to confine
+    }
+
+    public void initialize(String clientId, GoogleProviderLoginType mode, String hostedDomain) {
+        throw new RuntimeException(DISABLED_MESSAGE);
+    }
+
+    public void handleAuthorizationIntent(int requestCode, Intent data) {
+        // Stub - no authorization in flight
+    }
+
+    @Override
+    public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        return disabled();
+    }
+
+    private static <T> CompletableFuture<T> disabled() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ProviderException.reject(result, DISABLED_MESSAGE);
+        return result;
+    }
+}
@@ -9,6 +9,7 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.Signature;
 import android.os.Build;
+import android.os.CancellationSignal;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.concurrent.futures.CallbackToFutureAdapter;
@@ -24,7 +25,6 @@ import androidx.credentials.exceptions.GetCredentialCancellationException;
 import androidx.credentials.exceptions.GetCredentialException;
 import androidx.credentials.exceptions.NoCredentialException;
 import com.getcapacitor.JSObject;
-import com.getcapacitor.PluginCall;
 import com.google.android.gms.auth.api.identity.AuthorizationRequest;
 import com.google.android.gms.auth.api.identity.AuthorizationResult;
 import com.google.android.gms.auth.api.identity.Identity;
@@ -34,7 +34,22 @@ import com.google.android.libraries.identity.googleid.GetGoogleIdOption;
 import com.google.android.libraries.identity.googleid.GetSignInWithGoogleOption;
 import com.google.android.libraries.identity.googleid.GoogleIdTokenCredential;
 import com.google.common.util.concurrent.ListenableFuture;
-import ee.forgr.capacitor.social.login.helpers.SocialProvider;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AccountSwitchable;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.CancellationScope;
+import ee.forgr.capacitor.social.login.helpers.ClaimsCache;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.HttpResilience;
+import ee.forgr.capacitor.social.login.helpers.JwtDecoder;
+import ee.forgr.capacitor.social.login.helpers.LoginCancellable;
+import ee.forgr.capacitor.social.login.helpers.LoginTracer;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.SessionSnapshot;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.Stats;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -43,7 +58,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.Executor;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -58,7 +75,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
-public class GoogleProvider implements SocialProvider {
+public class GoogleProvider implements AsyncSocialProvider, AccountSwitchable, LoginCancellable {
 
     private static final String LOG_TAG = "GoogleProvider";
     private static final String USER_CANCELLED_CODE = "USER_CANCELLED";
@@ -78,17 +95,29 @@ public class GoogleProvider implements SocialProvider {
     public static final Integer REQUEST_AUTHORIZE_GOOGLE_MIN = 583892990;
     public static final Integer REQUEST_AUTHORIZE_GOOGLE_MAX = REQUEST_AUTHORIZE_GOOGLE_MIN + GoogleProvider.FUTURE_LIST_LENGTH;
 
-    private final Activity activity;
+    private final HostActivity host;
     private final Context context;
     private CredentialManager credentialManager;
     private String clientId;
     private String[] scopes;
     private final List<CallbackToFutureAdapter.Completer<AuthorizationResult>> futuresList = new ArrayList<>(FUTURE_LIST_LENGTH);
 
+    // Token fields are written from Credential Manager, tokeninfo and plugin threads; guarded by this.
     private String idToken = null;
     private String accessToken = null;
+    // Epoch millis, learned from tokeninfo; 0 while unknown (AuthorizationResult carries no expiry).
+    private long accessTokenExpiresAt = 0;
     private GoogleProviderLoginType mode = GoogleProviderLoginType.ONLINE;
     private String hostedDomain = null;
+    private TokenLifecycleMonitor tokenLifecycleMonitor;
+    private OperationDeadlines deadlines = OperationDeadlines.defaults();
+    private AccountStore accountStore;
+    private StateLoop stateLoop = StateLoop.inline();
+    private final SessionSnapshot sessionSnapshot;
+    private final OkHttpClient httpClient = new OkHttpClient();
+    // The login waiting on Credential Manager, until its callback runs or cancelLogin takes it.
+    private CancellationScope loginCancellation;
+    private CompletableFuture<JSObject> loginResult;
 
     private static String maskClientId(String clientId) {
         if (clientId == null || clientId.isEmpty()) {
@@ -164,58 +193,98 @@ public class GoogleProvider implements SocialProvider {
         OFFLINE
     }
 
-    public GoogleProvider(Activity activity, Context context) {
-        this.activity = activity;
-        this.context = context;
+    public GoogleProvider(HostActivity host, Context context) {
+        this.host = host;
+        this.context = context.getApplicationContext();
+        this.sessionSnapshot = SessionSnapshot.getInstance(this.context);
 
         for (int i = 0; i < FUTURE_LIST_LENGTH; i++) {
             futuresList.add(null);
         }
     }
 
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        this.tokenLifecycleMonitor = monitor;
+    }
+
+    public void setDeadlines(OperationDeadlines deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    public void setAccountStore(AccountStore store) {
+        this.accountStore = store;
+    }
+
+    /**
+     * Where Credential Manager and authorization results are handled; the plugin's state loop, which also runs
+     * the calls.
+     */
+    public void setStateLoop(StateLoop loop) {
+        this.stateLoop = loop;
+    }
+
     public void initialize(String clientId, GoogleProviderLoginType mode, String hostedDomain) {
-        this.credentialManager = CredentialManager.create(activity);
+        this.credentialManager = CredentialManager.create(context);
         this.clientId = clientId;
         this.mode = mode;
         this.hostedDomain = hostedDomain;
         logGoogleCloudDiagnostics("initialize");
 
-        String data = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE).getString(GOOGLE_DATA_PREFERENCE, null);
+        JSONObject data = sessionSnapshot.getOrSeed("google", () ->
+            context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE).getString(GOOGLE_DATA_PREFERENCE, null)
+        );
 
-        if (data == null || data.isEmpty()) {
+        if (data == null) {
             Log.i(SocialLoginPlugin.LOG_TAG, "No data to restore for google login");
             return;
         }
-        try {
-            JSONObject object = new JSONObject(data);
-            GoogleProvider.this.idToken = object.optString("idToken", null);
-            String restoredAccessToken = object.optString("accessToken", null);
-            GoogleProvider.this.accessToken = restoredAccessToken != null && !restoredAccessToken.isEmpty() ? restoredAccessToken : null;
-            JSONArray storedScopes = object.optJSONArray("scopes");
-            if (storedScopes != null && storedScopes.length() > 0) {
-                List<String> scopesList = new ArrayList<>(storedScopes.length());
-                for (int i = 0; i < storedScopes.length(); i++) {
-                    String scope = storedScopes.optString(i, null);
-                    if (scope != null && !scope.isEmpty()) {
-                        scopesList.add(scope);
-                    }
-                }
-                if (!scopesList.isEmpty()) {
-                    GoogleProvider.this.scopes = scopesList.toArray(new String[0]);
+        applyStoredState(data);
+
+        Log.i(
+            SocialLoginPlugin.LOG_TAG,
+            String.format(
+                "Google restoreState: restored idToken=%s accessToken=%s scopes=%d",
+                GoogleProvider.this.idToken != null && !GoogleProvider.this.idToken.isEmpty(),
+                GoogleProvider.this.accessToken != null && !GoogleProvider.this.accessToken.isEmpty(),
+                GoogleProvider.this.scopes != null ? GoogleProvider.this.scopes.length : 0
+            )
+        );
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.track("google", null, idTokenExpiresAt(GoogleProvider.this.idToken));
+        }
+    }
+
+    private synchronized void applyStoredState(JSONObject object) {
+        GoogleProvider.this.idToken = object.optString("idToken", null);
+        String restoredAccessToken = object.optString("accessToken", null);
+        GoogleProvider.this.accessToken = restoredAccessToken != null && !restoredAccessToken.isEmpty() ? restoredAccessToken : null;
+        GoogleProvider.this.accessTokenExpiresAt = GoogleProvider.this.accessToken != null ? object.optLong("accessTokenExpiresAt", 0) : 0;
+        JSONArray storedScopes = object.optJSONArray("scopes");
+        if (storedScopes != null && storedScopes.length() > 0) {
+            List<String> scopesList = new ArrayList<>(storedScopes.length());
+            for (int i = 0; i < storedScopes.length(); i++) {
+                String scope = storedScopes.optString(i, null);
+                if (scope != null && !scope.isEmpty()) {
+                    scopesList.add(scope);
                 }
             }
+            if (!scopesList.isEmpty()) {
+                GoogleProvider.this.scopes = scopesList.toArray(new String[0]);
+            }
+        }
+    }
 
-            Log.i(
-                SocialLoginPlugin.LOG_TAG,
-                String.format(
-                    "Google restoreState: restored idToken=%s accessToken=%s scopes=%d",
-                    GoogleProvider.this.idToken != null && !GoogleProvider.this.idToken.isEmpty(),
-                    GoogleProvider.this.accessToken != null && !GoogleProvider.this.accessToken.isEmpty(),
-                    GoogleProvider.this.scopes != null ? GoogleProvider.this.scopes.length : 0
-                )
-            );
-        } catch (JSONException e) {
-            Log.e(SocialLoginPlugin.LOG_TAG, "Google restoreState: Failed to parse JSON", e);
+    @Override
+    public void restoreSession(String providerId, JSONObject session) {
+        context
+            .getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putString(GOOGLE_DATA_PREFERENCE, session.toString())
+            .apply();
+        sessionSnapshot.put("google", session);
+        applyStoredState(session);
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.track("google", null, idTokenExpiresAt(GoogleProvider.this.idToken));
         }
     }
 
@@ -245,7 +314,7 @@ public class GoogleProvider implements SocialProvider {
     }
 
     private void resolveOnlineLogin(
-        PluginCall call,
+        CompletableFuture<JSObject> login,
         JSObject response,
         JSObject resultObj,
         JSObject profile,
@@ -267,23 +336,34 @@ public class GoogleProvider implements SocialProvider {
             resultObj.put("responseType", "online");
             response.put("result", resultObj);
             persistState(idToken, accessToken);
-            call.resolve(response);
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_SUCCESS);
+            login.complete(response);
         } catch (Exception e) {
-            call.reject("Error resolving Google login: " + e.getMessage());
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+            ProviderException.reject(login, "Error resolving Google login: " + e.getMessage());
         }
     }
 
     public ListenableFuture<Boolean> accessTokenIsValid(String accessToken) {
+        return accessTokenIsValid(accessToken, deadlines.start(OperationDeadlines.VALIDATION));
+    }
+
+    private ListenableFuture<Boolean> accessTokenIsValid(String accessToken, OperationDeadlines.Deadline deadline) {
         return CallbackToFutureAdapter.getFuture((completer) -> {
-            OkHttpClient client = new OkHttpClient();
             Request tokenRequest = new Request.Builder().url(TOKEN_REQUEST_URL + "?" + "access_token=" + accessToken).get().build();
 
-            client
-                .newCall(tokenRequest)
+            HttpResilience.getInstance()
                 .enqueue(
+                    httpClient,
+                    tokenRequest,
+                    HttpResilience.RetryPolicy.IDEMPOTENT,
+                    deadline,
                     new Callback() {
                         @Override
-                        public void onFailure(@NonNull Call call, @NonNull IOException e) {}
+                        public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                            Log.w(LOG_TAG, String.format("Request to %s failed: %s", TOKEN_REQUEST_URL, e.getMessage()));
+                            completer.setException(e);
+                        }
 
                         @Override
                         public void onResponse(@NonNull Call httpCall, @NonNull Response httpResponse) throws IOException {
@@ -386,6 +466,8 @@ public class GoogleProvider implements SocialProvider {
                                 return;
                             }
 
+                            long expiresAt = System.currentTimeMillis() + expressInInt * 1000L;
+                            stateLoop.execute(() -> rememberAccessTokenExpiry(accessToken, expiresAt));
                             completer.set(expressInInt > 5);
                         }
                     }
@@ -395,29 +477,66 @@ public class GoogleProvider implements SocialProvider {
         });
     }
 
-    private boolean idTokenValid(String idToken) {
+    /**
+     * Store the expiry reported by tokeninfo so later checks of the same token stay offline; runs on the state
+     * loop, and does nothing if the session moved on to another token meanwhile.
+     */
+    private synchronized void rememberAccessTokenExpiry(String accessToken, long expiresAt) {
+        if (accessToken == null || !accessToken.equals(GoogleProvider.this.accessToken)) {
+            return;
+        }
+        GoogleProvider.this.accessTokenExpiresAt = expiresAt;
         try {
-            String[] parts = idToken.split("\\.");
-            if (parts.length != 3) {
-                return false;
-            }
-
-            // Decode payload (second part)
-            String payload = new String(android.util.Base64.decode(parts[1], android.util.Base64.DEFAULT));
-            JSONObject parsed = new JSONObject(payload);
+            persistState(GoogleProvider.this.idToken, accessToken, GoogleProvider.this.scopes);
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Failed to persist access token expiry", e);
+        }
+    }
 
-            // Get current time in seconds
-            long currentTime = System.currentTimeMillis() / 1000 + 5;
+    /**
+     * Whether the access token is still usable, answered from the stored expiry when known.
+     * Only a token whose expiry was never learned costs a tokeninfo round trip, which the state loop does not
+     * wait for: the future completes on the loop once tokeninfo answers, or fails when the validation budget
+     * runs out.
+     */
+    private CompletableFuture<Boolean> accessTokenValid(String accessToken) {
+        long expiresAt;
+        synchronized (this) {
+            expiresAt = accessToken.equals(GoogleProvider.this.accessToken) ? GoogleProvider.this.accessTokenExpiresAt : 0;
+        }
+        if (expiresAt > 0) {
+            // Same 5 s margin as the tokeninfo answer below.
+            return CompletableFuture.completedFuture(expiresAt - System.currentTimeMillis() > 5000);
+        }
+        CompletableFuture<Boolean> valid = new CompletableFuture<>();
+        ListenableFuture<Boolean> tokeninfo = accessTokenIsValid(accessToken, deadlines.start(OperationDeadlines.VALIDATION));
+        tokeninfo.addListener(
+            () -> {
+                try {
+                    valid.complete(tokeninfo.get());
+                } catch (ExecutionException e) {
+                    valid.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                } catch (InterruptedException | CancellationException e) {
+                    valid.completeExceptionally(e);
+                }
+            },
+            stateLoop
+        );
+        return valid;
+    }
 
-            // Check if token is expired
-            if (parsed.has("exp")) {
-                long expTime = parsed.getLong("exp");
-                return currentTime < expTime;
-            }
+    private boolean idTokenValid(String idToken) {
+        if (idToken == null) {
             return false;
-        } catch (Exception e) {
+        }
+        Long expTime = ClaimsCache.getInstance().expiry(idToken);
+        if (expTime == null) {
             return false;
         }
+
+        // Get current time in seconds
+        long currentTime = System.currentTimeMillis() / 1000 + 5;
+        return currentTime < expTime;
     }
 
     public String arrayFind(String[] array, String search) {
@@ -430,41 +549,60 @@ public class GoogleProvider implements SocialProvider {
     }
 
     @Override
-    public void login(PluginCall call, JSONObject config) {
+    public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        JSONObject own;
+        try {
+            own = new JSONObject(options != null ? options.toString() : "{}");
+        } catch (JSONException e) {
+            ProviderException.reject(result, "Error parsing options: " + e.getMessage());
+            return result;
+        }
+        signIn(result, own);
+        return result;
+    }
+
+    /**
+     * @param options this login's own copy, which the fallbacks below change before signing in again
+     */
+    private void signIn(CompletableFuture<JSObject> login, JSONObject options) {
         if (this.clientId == null || this.clientId.isEmpty()) {
-            call.reject("Google Sign-In failed: Client ID is not set");
+            ProviderException.reject(login, "Google Sign-In failed: Client ID is not set");
+            return;
+        }
+
+        Activity activity = host.get();
+        if (activity == null) {
+            ProviderException.reject(login, "Google Sign-In failed: no activity to show the sign-in on");
             return;
         }
 
-        if (this.mode == GoogleProviderLoginType.OFFLINE && !(this.activity instanceof ModifiedMainActivityForSocialLoginPlugin)) {
-            call.reject("You CANNOT use offline mode without modifying the main activity. Please follow the docs!");
+        if (this.mode == GoogleProviderLoginType.OFFLINE && !(activity instanceof ModifiedMainActivityForSocialLoginPlugin)) {
+            ProviderException.reject(login, "You CANNOT use offline mode without modifying the main activity. Please follow the docs!");
             return;
         }
 
         logGoogleCloudDiagnostics("login");
 
-        String nonce = config.optString("nonce");
-        JSONObject options = call.getObject("options", new JSObject());
+        String nonce = options.optString("nonce");
         boolean bottomUi = false;
         boolean forcePrompt = false;
         boolean filterByAuthorizedAccounts = false;
         boolean autoSelectEnabled = false;
 
         try {
-            if (options != null) {
-                bottomUi = options.has("style") && Objects.equals(options.getString("style"), "bottom");
-                filterByAuthorizedAccounts = options.has("filterByAuthorizedAccounts") && options.getBoolean("filterByAuthorizedAccounts");
-                autoSelectEnabled = options.has("autoSelectEnabled") && options.getBoolean("autoSelectEnabled");
-                forcePrompt = options.has("forcePrompt") && options.getBoolean("forcePrompt");
-            }
+            bottomUi = options.has("style") && Objects.equals(options.getString("style"), "bottom");
+            filterByAuthorizedAccounts = options.has("filterByAuthorizedAccounts") && options.getBoolean("filterByAuthorizedAccounts");
+            autoSelectEnabled = options.has("autoSelectEnabled") && options.getBoolean("autoSelectEnabled");
+            forcePrompt = options.has("forcePrompt") && options.getBoolean("forcePrompt");
         } catch (JSONException e) {
             Log.e(LOG_TAG, "Error parsing options", e);
-            call.reject("Error parsing options: " + e.getMessage());
+            ProviderException.reject(login, "Error parsing options: " + e.getMessage());
             return;
         }
 
         // Handle scopes
-        JSONArray scopesArray = config.optJSONArray("scopes");
+        JSONArray scopesArray = options.optJSONArray("scopes");
         Set<String> uniqueScopes = new HashSet<>();
 
         // Add default scopes
@@ -474,8 +612,8 @@ public class GoogleProvider implements SocialProvider {
 
         // Add custom scopes if provided
         if (scopesArray != null) {
-            if (!(this.activity instanceof ModifiedMainActivityForSocialLoginPlugin)) {
-                call.reject("You CANNOT use scopes without modifying the main activity. Please follow the docs!");
+            if (!(activity instanceof ModifiedMainActivityForSocialLoginPlugin)) {
+                ProviderException.reject(login, "You CANNOT use scopes without modifying the main activity. Please follow the docs!");
                 return;
             }
             for (int i = 0; i < scopesArray.length(); i++) {
@@ -537,35 +675,92 @@ public class GoogleProvider implements SocialProvider {
 
         GetCredentialRequest filteredRequest = requestBuilder.build();
 
-        // Execute credential request
-        Executor executor = Executors.newSingleThreadExecutor();
+        // Execute credential request; cancelling the login dismisses the Credential Manager UI.
+        CancellationSignal cancellationSignal = new CancellationSignal();
+        CancellationScope cancellation = new CancellationScope();
+        cancellation.onCancel(cancellationSignal::cancel);
+        synchronized (this) {
+            loginCancellation = cancellation;
+            loginResult = login;
+        }
+        LoginTracer.getInstance().startSpan("google", null, "credentialRequest");
         credentialManager.getCredentialAsync(
-            context,
+            activity,
             filteredRequest,
-            null,
-            executor,
+            cancellationSignal,
+            stateLoop,
             new CredentialManagerCallback<GetCredentialResponse, GetCredentialException>() {
                 @Override
                 public void onResult(GetCredentialResponse result) {
-                    handleSignInResult(result, call);
+                    if (!releaseLogin(cancellation)) {
+                        return;
+                    }
+                    LoginTracer.getInstance().endSpan("google", null, "credentialRequest");
+                    handleSignInResult(result, login, options);
                 }
 
                 @Override
                 public void onError(@NonNull GetCredentialException e) {
-                    handleSignInError(e, call, config);
+                    if (!releaseLogin(cancellation)) {
+                        return;
+                    }
+                    LoginTracer.getInstance().endSpan("google", null, "credentialRequest", e.getClass().getSimpleName());
+                    handleSignInError(e, login, options);
                 }
             }
         );
     }
 
+    /**
+     * @return false when cancelLogin already settled this login
+     */
+    private synchronized boolean releaseLogin(CancellationScope cancellation) {
+        if (loginCancellation != cancellation) {
+            return false;
+        }
+        loginCancellation = null;
+        loginResult = null;
+        return true;
+    }
+
+    /**
+     * Cancel a login waiting on Credential Manager. Once the credential is picked, the remaining authorization
+     * step runs to completion.
+     */
+    @Override
+    public boolean cancelLogin(String providerId) {
+        CancellationScope cancellation;
+        CompletableFuture<JSObject> login;
+        synchronized (this) {
+            cancellation = loginCancellation;
+            login = loginResult;
+            loginCancellation = null;
+            loginResult = null;
+        }
+        if (cancellation == null) {
+            return false;
+        }
+        cancellation.cancel();
+        LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_CANCELLED);
+        ProviderException.reject(login, "Google Sign-In cancelled", USER_CANCELLED_CODE);
+        return true;
+    }
+
     private void persistState(String idToken, String accessToken) throws JSONException {
         persistState(idToken, accessToken, GoogleProvider.this.scopes);
     }
 
-    private void persistState(String idToken, String accessToken, String[] scopes) throws JSONException {
+    private synchronized void persistState(String idToken, String accessToken, String[] scopes) throws JSONException {
         JSONObject object = new JSONObject();
         object.put("idToken", idToken);
         object.put("accessToken", accessToken != null ? accessToken : JSONObject.NULL);
+        if (accessToken == null || !accessToken.equals(GoogleProvider.this.accessToken)) {
+            // A new access token's lifetime is unknown until tokeninfo reports it.
+            GoogleProvider.this.accessTokenExpiresAt = 0;
+        }
+        if (GoogleProvider.this.accessTokenExpiresAt > 0) {
+            object.put("accessTokenExpiresAt", GoogleProvider.this.accessTokenExpiresAt);
+        }
         if (scopes != null && scopes.length > 0) {
             JSONArray scopesArray = new JSONArray();
             for (String scope : scopes) {
@@ -576,14 +771,46 @@ public class GoogleProvider implements SocialProvider {
             object.put("scopes", scopesArray);
         }
 
+        String previousIdToken = GoogleProvider.this.idToken;
         GoogleProvider.this.idToken = idToken;
         GoogleProvider.this.accessToken = accessToken;
 
-        activity
+        context
             .getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE)
             .edit()
             .putString(GOOGLE_DATA_PREFERENCE, object.toString())
             .apply();
+        sessionSnapshot.put("google", object);
+
+        String subject = AccountStore.subjectFromIdToken(idToken);
+        if (accountStore != null && subject != null) {
+            accountStore.save("google", subject, AccountStore.labelFromIdToken(idToken), object);
+        }
+
+        if (tokenLifecycleMonitor != null && idToken != null && !idToken.equals(previousIdToken)) {
+            if (previousIdToken == null || previousIdToken.isEmpty()) {
+                tokenLifecycleMonitor.issued("google", null, idTokenExpiresAt(idToken));
+            } else {
+                tokenLifecycleMonitor.refreshed("google", null, idTokenExpiresAt(idToken));
+            }
+        }
+    }
+
+    /**
+     * Forget {@code staleAccessToken} but keep the ID token session, unless a login or refresh has already
+     * replaced it; validating it took a round trip, so the session may have moved on.
+     */
+    private synchronized void dropAccessToken(String staleAccessToken) throws JSONException {
+        if (!staleAccessToken.equals(GoogleProvider.this.accessToken)) {
+            return;
+        }
+        GoogleProvider.this.accessToken = null;
+        persistState(GoogleProvider.this.idToken, null, GoogleProvider.this.scopes);
+    }
+
+    private static Long idTokenExpiresAt(String idToken) {
+        Long exp = ClaimsCache.getInstance().expiry(idToken);
+        return exp != null ? exp * 1000L : null;
     }
 
     private ListenableFuture<AuthorizationResult> getAuthorizationResult(Boolean forceRefreshToken) {
@@ -647,6 +874,11 @@ public class GoogleProvider implements SocialProvider {
                             return;
                         }
 
+                        Activity activity = host.get();
+                        if (activity == null) {
+                            completer.setException(new RuntimeException("No activity to show the authorization UI on"));
+                            return;
+                        }
                         futuresList.set(fututeIndex, completer);
 
                         try {
@@ -690,7 +922,7 @@ public class GoogleProvider implements SocialProvider {
         return future;
     }
 
-    private void handleSignInResult(GetCredentialResponse result, PluginCall call) {
+    private void handleSignInResult(GetCredentialResponse result, CompletableFuture<JSObject> login, JSONObject options) {
         try {
             Credential credential = result.getCredential();
             if (credential instanceof CustomCredential) {
@@ -700,10 +932,9 @@ public class GoogleProvider implements SocialProvider {
                     response.put("provider", "google");
                     JSObject resultObj = new JSObject();
 
-                    JSONObject options = call.getObject("options", new JSObject());
                     Boolean forceRefreshToken = false;
                     try {
-                        forceRefreshToken = options != null && options.has("forceRefreshToken") && options.getBoolean("forceRefreshToken");
+                        forceRefreshToken = options.has("forceRefreshToken") && options.getBoolean("forceRefreshToken");
                     } catch (JSONException e) {
                         Log.e(LOG_TAG, "Error parsing forceRefreshToken option", e);
                     }
@@ -711,28 +942,31 @@ public class GoogleProvider implements SocialProvider {
                     GoogleIdTokenCredential googleIdTokenCredential = GoogleIdTokenCredential.createFrom(credential.getData());
                     String idToken = googleIdTokenCredential.getIdToken();
 
+                    LoginTracer.getInstance().startSpan("google", null, "authorization");
                     ListenableFuture<AuthorizationResult> future = getAuthorizationResult(forceRefreshToken);
 
-                    // Use ExecutorService to retrieve the access token
-                    ExecutorService executor = Executors.newSingleThreadExecutor();
-
-                    executor.execute(
+                    // Handled on the state loop once authorized. handleAuthorizationIntent, which completes the future,
+                    // runs there too, so the loop must never wait on it.
+                    future.addListener(
                         new Runnable() {
                             @Override
                             public void run() {
                                 try {
                                     AuthorizationResult authResult = future.get();
+                                    LoginTracer.getInstance().endSpan("google", null, "authorization");
                                     if (GoogleProvider.this.mode == GoogleProviderLoginType.ONLINE) {
                                         // accessToken may be null: Credential Manager auth still succeeded.
-                                        resolveOnlineLogin(call, response, resultObj, user, idToken, authResult.getAccessToken());
+                                        resolveOnlineLogin(login, response, resultObj, user, idToken, authResult.getAccessToken());
                                     } else {
                                         if (authResult.getServerAuthCode() != null) {
                                             resultObj.put("responseType", "offline");
                                             resultObj.put("serverAuthCode", authResult.getServerAuthCode());
                                             response.put("result", resultObj);
-                                            call.resolve(response);
+                                            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_SUCCESS);
+                                            login.complete(response);
                                         } else {
-                                            call.reject("Failed to get serverAuthCode");
+                                            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, "no serverAuthCode");
+                                            ProviderException.reject(login, "Failed to get serverAuthCode");
                                         }
                                     }
                                 } catch (Exception e) {
@@ -748,15 +982,15 @@ public class GoogleProvider implements SocialProvider {
                                             "AuthorizationClient failed after successful Credential Manager auth; resolving with idToken only",
                                             e
                                         );
-                                        resolveOnlineLogin(call, response, resultObj, user, idToken, null);
+                                        resolveOnlineLogin(login, response, resultObj, user, idToken, null);
                                     } else {
-                                        call.reject("Error retrieving access token: " + e.getMessage());
+                                        LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+                                        ProviderException.reject(login, "Error retrieving access token: " + e.getMessage());
                                     }
-                                } finally {
-                                    executor.shutdown();
                                 }
                             }
-                        }
+                        },
+                        stateLoop
                     );
 
                     return; // The call will be resolved in the Runnable
@@ -764,9 +998,11 @@ public class GoogleProvider implements SocialProvider {
             }
 
             // If we reach here, something went wrong
-            call.reject("Failed to get Google credentials");
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, "unexpected credential type");
+            ProviderException.reject(login, "Failed to get Google credentials");
         } catch (Exception e) {
-            call.reject("Error handling sign-in result: " + e.getMessage());
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+            ProviderException.reject(login, "Error handling sign-in result: " + e.getMessage());
         }
     }
 
@@ -789,7 +1025,7 @@ public class GoogleProvider implements SocialProvider {
         CallbackToFutureAdapter.Completer<AuthorizationResult> future = futuresList.get(futureIndex);
 
         try {
-            AuthorizationResult authorizationResult = Identity.getAuthorizationClient(this.activity).getAuthorizationResultFromIntent(data);
+            AuthorizationResult authorizationResult = Identity.getAuthorizationClient(context).getAuthorizationResultFromIntent(data);
             future.set(authorizationResult);
         } catch (ApiException e) {
             Log.e(LOG_TAG, "Cannot get getAuthorizationResultFromIntent", e);
@@ -805,12 +1041,12 @@ public class GoogleProvider implements SocialProvider {
         return message != null && message.contains("Account reauth failed");
     }
 
-    private boolean isReauthRetry(PluginCall call) {
-        return call.getData().optBoolean(REAUTH_RETRY_FLAG, false);
+    private boolean isReauthRetry(JSONObject options) {
+        return options.optBoolean(REAUTH_RETRY_FLAG, false);
     }
 
-    private void markReauthRetry(PluginCall call) {
-        call.getData().put(REAUTH_RETRY_FLAG, true);
+    private void markReauthRetry(JSONObject options) {
+        Stats.put(options, REAUTH_RETRY_FLAG, true);
     }
 
     private void logAccountReauthFailedHelp(String errorMessage) {
@@ -833,24 +1069,24 @@ public class GoogleProvider implements SocialProvider {
         );
     }
 
-    private void retryLoginAfterReauthFailure(PluginCall call, JSONObject config, JSONObject options) {
+    private void retryLoginAfterReauthFailure(CompletableFuture<JSObject> login, JSONObject options) {
         try {
             options.put("style", "standard");
             options.put("filterByAuthorizedAccounts", false);
-            call.getData().put("options", options);
         } catch (JSONException ex) {
-            call.reject("Google Sign-In failed: " + ex.getMessage());
+            ProviderException.reject(login, "Google Sign-In failed: " + ex.getMessage());
             return;
         }
-        login(call, config);
+        signIn(login, options);
     }
 
-    private void handleAccountReauthFailed(GetCredentialException e, PluginCall call, JSONObject config, JSONObject options) {
+    private void handleAccountReauthFailed(GetCredentialException e, CompletableFuture<JSObject> login, JSONObject options) {
         String errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
 
-        if (isReauthRetry(call)) {
+        if (isReauthRetry(options)) {
             logAccountReauthFailedHelp(errorMessage);
-            call.reject(
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, errorMessage);
+            ProviderException.reject(login, 
                 "Google Sign-In failed: [16] Account reauth failed. The plugin cleared Credential Manager credential-selection state and retried once. " +
                     "If this affects only some users, check OAuth consent screen (External vs Internal, test users in Testing mode), " +
                     "Family Link accounts (ensure filterByAuthorizedAccounts is not set to true), and whether the user disabled Sign in with Google for your app. " +
@@ -863,19 +1099,19 @@ public class GoogleProvider implements SocialProvider {
             LOG_TAG,
             "Account reauth failed; clearing Credential Manager credential-selection state and retrying with standard sign-in flow."
         );
-        markReauthRetry(call);
+        markReauthRetry(options);
 
         clearCredentialManagerState(
             new CredentialManagerCallback<Void, Exception>() {
                 @Override
                 public void onResult(Void unused) {
-                    retryLoginAfterReauthFailure(call, config, options);
+                    retryLoginAfterReauthFailure(login, options);
                 }
 
                 @Override
                 public void onError(@NonNull Exception clearError) {
                     Log.w(LOG_TAG, "Failed to clear Credential Manager state before reauth retry; retrying sign-in anyway.", clearError);
-                    retryLoginAfterReauthFailure(call, config, options);
+                    retryLoginAfterReauthFailure(login, options);
                 }
             }
         );
@@ -900,13 +1136,14 @@ public class GoogleProvider implements SocialProvider {
         );
     }
 
-    private void handleSignInError(GetCredentialException e, PluginCall call, JSONObject config) {
+    private void handleSignInError(GetCredentialException e, CompletableFuture<JSObject> login, JSONObject options) {
         String errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
         Log.e(LOG_TAG, "Google Sign-In failed: " + errorMessage, e);
 
         if (isDeveloperConsoleMisconfiguration(errorMessage)) {
             logDeveloperConsoleMisconfigurationHelp(errorMessage);
-            call.reject(
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, errorMessage);
+            ProviderException.reject(login, 
                 "Google Sign-In failed: Google Cloud OAuth is not configured for this installed build (" +
                     errorMessage +
                     "). Check Logcat tag GoogleProvider for package, signingSha1, and webClientId, then see the Android troubleshooting section in the plugin README."
@@ -915,7 +1152,6 @@ public class GoogleProvider implements SocialProvider {
         }
 
         boolean isBottomUi = false;
-        JSONObject options = call.getObject("options", new JSObject());
         if (options.has("style")) {
             try {
                 isBottomUi = options.getString("style").equals("bottom");
@@ -924,11 +1160,12 @@ public class GoogleProvider implements SocialProvider {
             }
         }
         if (isAccountReauthFailed(errorMessage)) {
-            handleAccountReauthFailed(e, call, config, options);
+            handleAccountReauthFailed(e, login, options);
             return;
         }
         if (e instanceof GetCredentialCancellationException) {
-            call.reject("Google Sign-In cancelled by user", USER_CANCELLED_CODE, e);
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_CANCELLED);
+            ProviderException.reject(login, "Google Sign-In cancelled by user", USER_CANCELLED_CODE, e);
             return;
         }
         if (e instanceof NoCredentialException) {
@@ -952,24 +1189,25 @@ public class GoogleProvider implements SocialProvider {
                 // Note: Family Link supervised accounts may cause this error when filterByAuthorizedAccounts is true
                 try {
                     options.put("style", "standard");
-                    call.getData().put("options", options);
                 } catch (JSONException ex) {
-                    call.reject("Google Sign-In failed: " + ex.getMessage());
+                    ProviderException.reject(login, "Google Sign-In failed: " + ex.getMessage());
                     return;
                 }
-                login(call, config);
+                signIn(login, options);
             } else {
+                LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, errorMessage);
                 // If it's already standard UI, provide more detailed error message
                 if (filterByAuthorizedAccountsValue) {
-                    call.reject(
+                    ProviderException.reject(login, 
                         "Google Sign-In failed: No credentials available. If signing in with a Family Link supervised account, try setting filterByAuthorizedAccounts to false."
                     );
                 } else {
-                    call.reject("Google Sign-In failed: " + e.getMessage());
+                    ProviderException.reject(login, "Google Sign-In failed: " + e.getMessage());
                 }
             }
         } else {
-            call.reject("Google Sign-In failed: " + e.getMessage());
+            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, errorMessage);
+            ProviderException.reject(login, "Google Sign-In failed: " + e.getMessage());
         }
     }
 
@@ -991,21 +1229,8 @@ public class GoogleProvider implements SocialProvider {
                 user.put("imageUrl", googleIdTokenCredential.getProfilePictureUri());
 
                 try {
-                    String[] parts = googleIdTokenCredential.getIdToken().split("\\.");
-                    if (parts.length != 3) {
-                        throw new RuntimeException("JWT parts length != 3 (how is this possible??)");
-                    }
-
-                    // Decode payload (second part)
-                    String payload = new String(android.util.Base64.decode(parts[1], android.util.Base64.DEFAULT));
-                    JSONObject parsed = new JSONObject(payload);
-
-                    // Get current time in seconds
-                    long currentTime = System.currentTimeMillis() / 1000 + 5;
-
-                    // Check if token is expired
-                    if (parsed.has("sub")) {
-                        String sub = parsed.getString("sub");
+                    String sub = JwtDecoder.readSubject(googleIdTokenCredential.getIdToken());
+                    if (sub != null) {
                         user.put("id", sub);
                     } else {
                         throw new RuntimeException("No SUB field in the JWT");
@@ -1021,11 +1246,10 @@ public class GoogleProvider implements SocialProvider {
     private void clearCredentialManagerState(CredentialManagerCallback<Void, Exception> handler) {
         ClearCredentialStateRequest request = new ClearCredentialStateRequest();
 
-        Executor executor = Executors.newSingleThreadExecutor();
         credentialManager.clearCredentialStateAsync(
             request,
             null,
-            executor,
+            stateLoop,
             new CredentialManagerCallback<Void, ClearCredentialException>() {
                 @Override
                 public void onResult(Void result) {
@@ -1047,8 +1271,21 @@ public class GoogleProvider implements SocialProvider {
                 @Override
                 public void onResult(Void unused) {
                     context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE).edit().clear().apply();
-                    GoogleProvider.this.accessToken = null;
-                    GoogleProvider.this.idToken = null;
+                    String previousIdToken;
+                    synchronized (GoogleProvider.this) {
+                        sessionSnapshot.put("google", null);
+                        previousIdToken = GoogleProvider.this.idToken;
+                        GoogleProvider.this.accessToken = null;
+                        GoogleProvider.this.accessTokenExpiresAt = 0;
+                        GoogleProvider.this.idToken = null;
+                    }
+                    ClaimsCache.getInstance().evict(previousIdToken);
+                    if (tokenLifecycleMonitor != null) {
+                        tokenLifecycleMonitor.revoked("google", null);
+                    }
+                    if (accountStore != null) {
+                        accountStore.removeActive("google");
+                    }
                     handler.onResult(null);
                 }
 
@@ -1062,159 +1299,210 @@ public class GoogleProvider implements SocialProvider {
     }
 
     @Override
-    public void logout(PluginCall call) {
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
         if (this.mode == GoogleProviderLoginType.OFFLINE) {
-            call.reject("logout is not implemented when using offline mode");
-            return;
+            ProviderException.reject(result, "logout is not implemented when using offline mode");
+            return result;
         }
         rawLogout(
             new CredentialManagerCallback<Void, Exception>() {
                 @Override
                 public void onResult(Void unused) {
-                    call.resolve();
+                    LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_SUCCESS);
+                    result.complete(null);
                 }
 
                 @Override
                 public void onError(@NonNull Exception e) {
-                    call.reject("Failed to clear credential state: " + e.getMessage());
+                    LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+                    ProviderException.reject(result, "Failed to clear credential state: " + e.getMessage());
                 }
             }
         );
+        return result;
     }
 
     @Override
-    public void getAuthorizationCode(PluginCall call) {
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
         if (this.mode == GoogleProviderLoginType.OFFLINE) {
-            call.reject("getAuthorizationCode is not implemented when using offline mode");
-            return;
+            ProviderException.reject(result, "getAuthorizationCode is not implemented when using offline mode");
+            return result;
         }
-        if (GoogleProvider.this.idToken == null || GoogleProvider.this.idToken.isEmpty()) {
-            call.reject("User is not logged in");
-            return;
+        String idToken;
+        String accessToken;
+        synchronized (this) {
+            idToken = this.idToken;
+            accessToken = this.accessToken;
         }
-        try {
-            boolean isValidIdToken = idTokenValid(GoogleProvider.this.idToken);
-            if (!isValidIdToken) {
-                rawLogout(
-                    new CredentialManagerCallback<>() {
-                        @Override
-                        public void onResult(Void unused) {
-                            call.reject("User is not logged in");
-                        }
+        if (idToken == null || idToken.isEmpty()) {
+            ProviderException.reject(result, "User is not logged in");
+            return result;
+        }
+        if (!idTokenValid(idToken)) {
+            rawLogout(
+                new CredentialManagerCallback<>() {
+                    @Override
+                    public void onResult(Void unused) {
+                        ProviderException.reject(result, "User is not logged in");
+                    }
 
-                        @Override
-                        public void onError(@NonNull Exception e) {
-                            Log.e(LOG_TAG, "Saved id token isn't valid, but logout failed", e);
-                            call.reject("User is not logged in");
-                        }
+                    @Override
+                    public void onError(@NonNull Exception e) {
+                        Log.e(LOG_TAG, "Saved id token isn't valid, but logout failed", e);
+                        ProviderException.reject(result, "User is not logged in");
                     }
-                );
+                }
+            );
+            return result;
+        }
+
+        // Access token may be null for authentication-only sessions.
+        if (accessToken == null || accessToken.isEmpty()) {
+            result.complete(new JSObject().put("jwt", idToken).put("accessToken", JSONObject.NULL));
+            return result;
+        }
+        String checkedAccessToken = accessToken;
+        accessTokenValid(checkedAccessToken).whenComplete((valid, error) -> {
+            if (error != null) {
+                Log.e(LOG_TAG, "Error validating tokens", error);
+                ProviderException.reject(result, "Error validating tokens: " + error.getMessage(), OperationDeadlines.errorCode(error));
                 return;
             }
-
-            // Access token may be null for authentication-only sessions.
-            if (GoogleProvider.this.accessToken != null && !GoogleProvider.this.accessToken.isEmpty()) {
-                ListenableFuture<Boolean> accessTokenValidFuture = accessTokenIsValid(GoogleProvider.this.accessToken);
-                boolean isValidAccessToken = accessTokenValidFuture.get(7, TimeUnit.SECONDS);
-                if (!isValidAccessToken) {
+            JSObject response = new JSObject().put("jwt", idToken);
+            if (valid) {
+                response.put("accessToken", checkedAccessToken);
+            } else {
+                try {
                     // Keep the valid ID token session; clear only the stale access token.
-                    GoogleProvider.this.accessToken = null;
-                    persistState(GoogleProvider.this.idToken, null, GoogleProvider.this.scopes);
+                    dropAccessToken(checkedAccessToken);
+                } catch (JSONException e) {
+                    Log.e(LOG_TAG, "Error validating tokens", e);
+                    ProviderException.reject(result, "Error validating tokens: " + e.getMessage(), e);
+                    return;
                 }
+                response.put("accessToken", JSONObject.NULL);
             }
-
-            JSObject result = new JSObject().put("jwt", GoogleProvider.this.idToken);
-            if (GoogleProvider.this.accessToken != null && !GoogleProvider.this.accessToken.isEmpty()) {
-                result.put("accessToken", GoogleProvider.this.accessToken);
-            } else {
-                result.put("accessToken", JSONObject.NULL);
-            }
-            call.resolve(result);
-        } catch (Exception e) {
-            Log.e(LOG_TAG, "Error validating tokens", e);
-            call.reject("Error validating tokens: " + e.getMessage());
-        }
+            result.complete(response);
+        });
+        return result;
     }
 
     @Override
-    public void isLoggedIn(PluginCall call) {
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
         if (this.mode == GoogleProviderLoginType.OFFLINE) {
-            call.reject("isLoggedIn is not implemented when using offline mode");
-            return;
+            ProviderException.reject(result, "isLoggedIn is not implemented when using offline mode");
+            return result;
         }
-        if (GoogleProvider.this.idToken == null || GoogleProvider.this.idToken.isEmpty()) {
-            call.resolve(new JSObject().put("isLoggedIn", false));
-            return;
+        String idToken;
+        String accessToken;
+        synchronized (this) {
+            idToken = this.idToken;
+            accessToken = this.accessToken;
         }
-        try {
-            boolean isValidIdToken = idTokenValid(GoogleProvider.this.idToken);
-            if (!isValidIdToken) {
-                rawLogout(
-                    new CredentialManagerCallback<>() {
-                        @Override
-                        public void onResult(Void unused) {
-                            call.resolve(new JSObject().put("isLoggedIn", false));
-                        }
+        if (idToken == null || idToken.isEmpty()) {
+            result.complete(false);
+            return result;
+        }
+        if (!idTokenValid(idToken)) {
+            rawLogout(
+                new CredentialManagerCallback<>() {
+                    @Override
+                    public void onResult(Void unused) {
+                        result.complete(false);
+                    }
 
-                        @Override
-                        public void onError(@NonNull Exception e) {
-                            Log.e(LOG_TAG, "Saved id token isn't valid, but logout failed", e);
-                            call.resolve(new JSObject().put("isLoggedIn", false));
-                        }
+                    @Override
+                    public void onError(@NonNull Exception e) {
+                        Log.e(LOG_TAG, "Saved id token isn't valid, but logout failed", e);
+                        result.complete(false);
                     }
-                );
+                }
+            );
+            return result;
+        }
+
+        // Valid ID token is enough for authentication-only sessions.
+        if (accessToken == null || accessToken.isEmpty()) {
+            result.complete(true);
+            return result;
+        }
+        String checkedAccessToken = accessToken;
+        accessTokenValid(checkedAccessToken).whenComplete((valid, error) -> {
+            if (error != null) {
+                Log.e(LOG_TAG, "Error validating tokens", error);
+                ProviderException.reject(result, "Error validating tokens: " + error.getMessage(), OperationDeadlines.errorCode(error));
                 return;
             }
-
-            // Valid ID token is enough for authentication-only sessions.
-            if (GoogleProvider.this.accessToken != null && !GoogleProvider.this.accessToken.isEmpty()) {
-                ListenableFuture<Boolean> accessTokenValidFuture = accessTokenIsValid(GoogleProvider.this.accessToken);
-                boolean isValidAccessToken = accessTokenValidFuture.get(7, TimeUnit.SECONDS);
-                if (!isValidAccessToken) {
-                    GoogleProvider.this.accessToken = null;
-                    persistState(GoogleProvider.this.idToken, null, GoogleProvider.this.scopes);
+            if (!valid) {
+                try {
+                    dropAccessToken(checkedAccessToken);
+                } catch (JSONException e) {
+                    Log.e(LOG_TAG, "Error validating tokens", e);
+                    ProviderException.reject(result, "Error validating tokens: " + e.getMessage(), e);
+                    return;
                 }
             }
-            call.resolve(new JSObject().put("isLoggedIn", true));
-        } catch (Exception e) {
-            Log.e(LOG_TAG, "Error validating tokens", e);
-            call.reject("Error validating tokens: " + e.getMessage());
-        }
+            result.complete(true);
+        });
+        return result;
     }
 
     @Override
-    public void refresh(PluginCall call) {
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        CompletableFuture<JSObject> refreshResult = new CompletableFuture<>();
         if (this.mode == GoogleProviderLoginType.OFFLINE) {
             Log.w(LOG_TAG, OFFLINE_REFRESH_NOT_SUPPORTED_MESSAGE);
-            call.reject(OFFLINE_REFRESH_NOT_SUPPORTED_MESSAGE);
-            return;
+            ProviderException.reject(refreshResult, OFFLINE_REFRESH_NOT_SUPPORTED_MESSAGE);
+            return refreshResult;
         }
         if (this.clientId == null || this.clientId.isEmpty()) {
-            call.reject("Google Sign-In failed: Client ID is not set");
-            return;
+            ProviderException.reject(refreshResult, "Google Sign-In failed: Client ID is not set");
+            return refreshResult;
         }
         if (this.credentialManager == null) {
-            this.credentialManager = CredentialManager.create(activity);
+            this.credentialManager = CredentialManager.create(context);
         }
 
         // If tokens needed for the current session type are still valid, do nothing.
-        try {
-            if (GoogleProvider.this.idToken != null) {
-                boolean isValidIdToken = idTokenValid(GoogleProvider.this.idToken);
-                boolean accessOk = true;
-                if (GoogleProvider.this.accessToken != null && !GoogleProvider.this.accessToken.isEmpty()) {
-                    accessOk = accessTokenIsValid(GoogleProvider.this.accessToken).get(7, TimeUnit.SECONDS);
-                }
-                if (isValidIdToken && accessOk) {
-                    call.resolve();
-                    return;
-                }
-            }
-        } catch (Exception e) {
-            // Non-fatal: fall through to attempt refresh.
-            Log.w(LOG_TAG, "Error checking token validity during refresh", e);
+        LoginTracer.getInstance().startSpan("google", null, "tokenValidation");
+        String idToken;
+        String accessToken;
+        synchronized (this) {
+            idToken = this.idToken;
+            accessToken = this.accessToken;
         }
+        CompletableFuture<Boolean> tokensValid;
+        if (idToken == null || !idTokenValid(idToken)) {
+            tokensValid = CompletableFuture.completedFuture(false);
+        } else if (accessToken != null && !accessToken.isEmpty()) {
+            tokensValid = accessTokenValid(accessToken);
+        } else {
+            tokensValid = CompletableFuture.completedFuture(true);
+        }
+        tokensValid.whenComplete((valid, error) -> {
+            if (error != null) {
+                LoginTracer.getInstance().endSpan("google", null, "tokenValidation", error.getClass().getSimpleName());
+                // Non-fatal: fall through to attempt refresh.
+                Log.w(LOG_TAG, "Error checking token validity during refresh", error);
+            } else if (valid) {
+                LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_SUCCESS);
+                refreshResult.complete(new JSObject());
+                return;
+            } else {
+                LoginTracer.getInstance().endSpan("google", null, "tokenValidation");
+            }
+            refreshWithCredentialManager(refreshResult);
+        });
+        return refreshResult;
+    }
 
+    /**
+     * Refresh the session through Credential Manager, then the Authorization API; runs on the state loop.
+     */
+    private void refreshWithCredentialManager(CompletableFuture<JSObject> refreshResult) {
         // Ensure we have scopes for the authorization flow (may be null after restoreState).
         if (GoogleProvider.this.scopes == null || GoogleProvider.this.scopes.length == 0) {
             GoogleProvider.this.scopes = DEFAULT_SCOPES;
@@ -1232,24 +1520,29 @@ public class GoogleProvider implements SocialProvider {
             )
             .build();
 
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LoginTracer.getInstance().startSpan("google", null, "credentialRequest");
+        // Usually silent; when the user must pick an account again, the UI needs an Activity.
+        Activity activity = host.get();
         credentialManager.getCredentialAsync(
-            context,
+            activity != null ? activity : context,
             request,
             null,
-            executor,
+            stateLoop,
             new CredentialManagerCallback<GetCredentialResponse, GetCredentialException>() {
                 @Override
                 public void onResult(GetCredentialResponse result) {
+                    LoginTracer.getInstance().endSpan("google", null, "credentialRequest");
                     try {
                         Credential credential = result.getCredential();
                         if (!(credential instanceof CustomCredential)) {
-                            call.reject("Failed to refresh tokens: unexpected credential type");
+                            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, "unexpected credential type");
+                            ProviderException.reject(refreshResult, "Failed to refresh tokens: unexpected credential type");
                             return;
                         }
 
                         if (!GoogleIdTokenCredential.TYPE_GOOGLE_ID_TOKEN_CREDENTIAL.equals(credential.getType())) {
-                            call.reject("Failed to refresh tokens: unexpected credential subtype");
+                            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, "unexpected credential subtype");
+                            ProviderException.reject(refreshResult, "Failed to refresh tokens: unexpected credential subtype");
                             return;
                         }
 
@@ -1258,6 +1551,7 @@ public class GoogleProvider implements SocialProvider {
                         );
                         String newIdToken = googleIdTokenCredential.getIdToken();
 
+                        LoginTracer.getInstance().startSpan("google", null, "authorization");
                         ListenableFuture<AuthorizationResult> future = getAuthorizationResult(false);
 
                         ExecutorService authExecutor = Executors.newSingleThreadExecutor();
@@ -1265,50 +1559,65 @@ public class GoogleProvider implements SocialProvider {
                             new Runnable() {
                                 @Override
                                 public void run() {
+                                    // A thread of its own, so the 60 s limit holds without holding the state loop.
                                     try {
-                                        AuthorizationResult authResult = future.get(60, TimeUnit.SECONDS);
-                                        String newAccessToken = authResult.getAccessToken();
-                                        // Persist ID token even when access token is unavailable.
-                                        persistState(
-                                            newIdToken,
-                                            newAccessToken != null && !newAccessToken.isEmpty() ? newAccessToken : null,
-                                            GoogleProvider.this.scopes
-                                        );
-                                        call.resolve();
+                                        future.get(60, TimeUnit.SECONDS);
                                     } catch (Exception e) {
-                                        if (isAuthenticationOnlyScopes(GoogleProvider.this.scopes)) {
-                                            try {
-                                                // Authorization failed; still keep the refreshed ID token.
-                                                persistState(newIdToken, null, GoogleProvider.this.scopes);
-                                                call.resolve();
-                                            } catch (JSONException persistError) {
-                                                call.reject("Failed to refresh tokens: " + e.getMessage());
-                                            }
-                                        } else {
-                                            call.reject("Failed to refresh tokens: " + e.getMessage());
-                                        }
+                                        // Give up on an authorization that never finished; does nothing when it did.
+                                        future.cancel(false);
                                     } finally {
                                         authExecutor.shutdown();
                                     }
+                                    stateLoop.execute(() -> {
+                                        try {
+                                            AuthorizationResult authResult = future.get();
+                                            LoginTracer.getInstance().endSpan("google", null, "authorization");
+                                            String newAccessToken = authResult.getAccessToken();
+                                            // Persist ID token even when access token is unavailable.
+                                            persistState(
+                                                newIdToken,
+                                                newAccessToken != null && !newAccessToken.isEmpty() ? newAccessToken : null,
+                                                GoogleProvider.this.scopes
+                                            );
+                                            LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_SUCCESS);
+                                            refreshResult.complete(new JSObject());
+                                        } catch (Exception e) {
+                                            LoginTracer.getInstance().endSpan("google", null, "authorization", e.getClass().getSimpleName());
+                                            if (isAuthenticationOnlyScopes(GoogleProvider.this.scopes)) {
+                                                try {
+                                                    // Authorization failed; still keep the refreshed ID token.
+                                                    persistState(newIdToken, null, GoogleProvider.this.scopes);
+                                                    LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_SUCCESS);
+                                                    refreshResult.complete(new JSObject());
+                                                } catch (JSONException persistError) {
+                                                    LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+                                                    ProviderException.reject(refreshResult, "Failed to refresh tokens: " + e.getMessage());
+                                                }
+                                            } else {
+                                                LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+                                                ProviderException.reject(refreshResult, "Failed to refresh tokens: " + e.getMessage());
+                                            }
+                                        }
+                                    });
                                 }
                             }
                         );
                     } catch (Exception e) {
-                        call.reject("Failed to refresh tokens: " + e.getMessage());
-                    } finally {
-                        executor.shutdown();
+                        LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+                        ProviderException.reject(refreshResult, "Failed to refresh tokens: " + e.getMessage());
                     }
                 }
 
                 @Override
                 public void onError(@NonNull GetCredentialException e) {
+                    LoginTracer.getInstance().endSpan("google", null, "credentialRequest", e.getClass().getSimpleName());
                     if (e instanceof NoCredentialException) {
-                        call.reject("User not logged in");
-                        executor.shutdown();
+                        LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, "not logged in");
+                        ProviderException.reject(refreshResult, "User not logged in");
                         return;
                     }
-                    call.reject("Failed to refresh tokens: " + e.getMessage());
-                    executor.shutdown();
+                    LoginTracer.getInstance().finish("google", null, LoginTracer.STATUS_ERROR, e.getMessage());
+                    ProviderException.reject(refreshResult, "Failed to refresh tokens: " + e.getMessage());
                 }
             }
         );
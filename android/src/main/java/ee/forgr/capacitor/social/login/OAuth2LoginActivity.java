@@ -12,19 +12,55 @@ import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import java.lang.ref.WeakReference;
 
 public class OAuth2LoginActivity extends Activity {
 
     public static final String EXTRA_AUTH_URL = "authUrl";
     public static final String EXTRA_REDIRECT_URL = "redirectUrl";
     public static final String EXTRA_USER_CANCELLED = "userCancelled";
+    public static final String EXTRA_LOGIN_CANCELLED = "loginCancelled";
+
+    // The activity on screen, and the auth URL of a cancelled login whose activity was not created yet.
+    private static WeakReference<OAuth2LoginActivity> active;
+    private static String cancelledAuthUrl;
 
     private String redirectUrl;
+    private String authUrl;
+    private WebView webView;
+
+    /**
+     * Close the WebView of the login that opened {@code authUrl}, now or as soon as it is created. Its result
+     * carries {@link #EXTRA_LOGIN_CANCELLED} and must be ignored: the login was already settled.
+     */
+    static synchronized void cancel(String authUrl) {
+        OAuth2LoginActivity current = active != null ? active.get() : null;
+        if (current != null && authUrl.equals(current.authUrl)) {
+            current.runOnUiThread(current::finishCancelled);
+        } else {
+            cancelledAuthUrl = authUrl;
+        }
+    }
+
+    static boolean isLoginCancelled(Intent data) {
+        return data != null && data.getBooleanExtra(EXTRA_LOGIN_CANCELLED, false);
+    }
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        WebView webView = new WebView(this);
+        redirectUrl = getIntent().getStringExtra(EXTRA_REDIRECT_URL);
+        authUrl = getIntent().getStringExtra(EXTRA_AUTH_URL);
+        synchronized (OAuth2LoginActivity.class) {
+            if (authUrl != null && authUrl.equals(cancelledAuthUrl)) {
+                cancelledAuthUrl = null;
+                finishCancelled();
+                return;
+            }
+            active = new WeakReference<>(this);
+        }
+
+        webView = new WebView(this);
         webView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
         WebSettings settings = webView.getSettings();
         settings.setJavaScriptEnabled(true);
@@ -32,9 +68,6 @@ public class OAuth2LoginActivity extends Activity {
         settings.setLoadWithOverviewMode(true);
         settings.setUseWideViewPort(true);
 
-        redirectUrl = getIntent().getStringExtra(EXTRA_REDIRECT_URL);
-        final String authUrl = getIntent().getStringExtra(EXTRA_AUTH_URL);
-
         webView.setWebViewClient(
             new WebViewClient() {
                 @Override
@@ -105,8 +138,33 @@ public class OAuth2LoginActivity extends Activity {
         finish();
     }
 
+    private void finishCancelled() {
+        if (isFinishing()) {
+            return;
+        }
+        Intent data = new Intent();
+        data.putExtra(EXTRA_LOGIN_CANCELLED, true);
+        setResult(Activity.RESULT_CANCELED, data);
+        finish();
+    }
+
     @Override
     public void onBackPressed() {
         finishWithError("User cancelled", true);
     }
+
+    @Override
+    protected void onDestroy() {
+        synchronized (OAuth2LoginActivity.class) {
+            if (active != null && active.get() == this) {
+                active = null;
+            }
+        }
+        if (webView != null) {
+            webView.stopLoading();
+            webView.destroy();
+            webView = null;
+        }
+        super.onDestroy();
+    }
 }
@@ -0,0 +1,162 @@
+package ee.forgr.capacitor.social.login;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.SessionSnapshot;
+import ee.forgr.capacitor.social.login.oauth.TokenRefresher;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import okhttp3.Authenticator;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Native access to an OAuth2 provider's stored session, for app code that calls APIs without going through JS
+ * (background sync, push handlers). Works without a WebView or an initialized plugin: tokens come from the
+ * same storage {@link OAuth2Provider} writes, and refreshes use the token endpoint it recorded the last time
+ * the provider was initialized.
+ * <pre>
+ * OAuth2NativeSession session = OAuth2NativeSession.get(context, "github");
+ * OkHttpClient client = new OkHttpClient.Builder()
+ *     .addInterceptor(session.interceptor())
+ *     .authenticator(session.authenticator())
+ *     .build();
+ * </pre>
+ * Refreshes are single-flight ({@link TokenRefresher}): concurrent 401s for the same token wait for one refresh
+ * and retry with its result. Refreshed tokens are stored where {@code OAuth2Provider} reads them, so JS sees
+ * them too.
+ */
+public final class OAuth2NativeSession {
+
+    /**
+     * Tokens this close to expiry are refreshed before use.
+     */
+    static final long EXPIRY_SKEW_MS = TokenRefresher.EXPIRY_SKEW_MS;
+
+    private static final Map<String, OAuth2NativeSession> sessions = new HashMap<>();
+    private static final OkHttpClient sharedClient = new OkHttpClient();
+
+    /**
+     * Where the session lives; {@link OAuth2Provider}'s preferences and {@link SessionSnapshot} outside of tests.
+     */
+    interface Store extends TokenRefresher.Store {}
+
+    private final TokenRefresher refresher;
+
+    public static synchronized OAuth2NativeSession get(Context context, String providerId) {
+        OAuth2NativeSession session = sessions.get(providerId);
+        if (session == null) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences prefs = appContext.getSharedPreferences(OAuth2Provider.PREFS_NAME, Context.MODE_PRIVATE);
+            SessionSnapshot snapshot = SessionSnapshot.getInstance(appContext);
+            String snapshotKey = AccountStore.providerKey("oauth2", providerId);
+            String tokenKey = OAuth2Provider.tokenStorageKey(providerId);
+            session = new OAuth2NativeSession(
+                providerId,
+                new Store() {
+                    @Override
+                    public JSONObject readTokens() {
+                        return snapshot.getOrSeed(snapshotKey, () -> prefs.getString(tokenKey, null));
+                    }
+
+                    @Override
+                    public boolean replaceTokens(JSONObject previous, JSONObject tokens) {
+                        // The snapshot decides whether the refresh still applies; a logout meanwhile wins.
+                        if (!snapshot.replace(snapshotKey, previous, tokens)) {
+                            return false;
+                        }
+                        prefs.edit().putString(tokenKey, tokens.toString()).apply();
+                        return true;
+                    }
+
+                    @Override
+                    public JSONObject readRefreshConfig() {
+                        String raw = prefs.getString(OAuth2Provider.refreshConfigKey(providerId), null);
+                        try {
+                            return raw != null ? new JSONObject(raw) : null;
+                        } catch (JSONException e) {
+                            return null;
+                        }
+                    }
+                },
+                sharedClient,
+                System::currentTimeMillis
+            );
+            sessions.put(providerId, session);
+        }
+        return session;
+    }
+
+    OAuth2NativeSession(String providerId, Store store, OkHttpClient httpClient, LongSupplier clock) {
+        this.refresher = new TokenRefresher(providerId, store, httpClient, clock);
+    }
+
+    /**
+     * The stored access token as is, or null when signed out.
+     */
+    public String getAccessToken() {
+        return refresher.getAccessToken();
+    }
+
+    /**
+     * The stored access token, refreshed first if it expires within {@link #EXPIRY_SKEW_MS}. Blocks on the
+     * network when refreshing: do not call on the main thread.
+     *
+     * @return null when signed out
+     * @throws IOException when a needed refresh fails
+     */
+    public String getFreshAccessToken() throws IOException {
+        return refresher.getFreshAccessToken();
+    }
+
+    /**
+     * Adds {@code Authorization: Bearer <token>} to requests that have no {@code Authorization} header, refreshing
+     * a token about to expire first. Requests go out unchanged when signed out.
+     */
+    public Interceptor interceptor() {
+        return (chain) -> {
+            Request request = chain.request();
+            if (request.header("Authorization") != null) {
+                return chain.proceed(request);
+            }
+            String accessToken = getFreshAccessToken();
+            if (accessToken == null) {
+                return chain.proceed(request);
+            }
+            return chain.proceed(request.newBuilder().header("Authorization", "Bearer " + accessToken).build());
+        };
+    }
+
+    /**
+     * Answers a 401 to a request carrying this session's token by refreshing once and retrying with the new
+     * token. Gives up (returns null) for other credentials, after a retry already failed, or when the refresh fails.
+     */
+    public Authenticator authenticator() {
+        return (route, response) -> {
+            String sent = response.request().header("Authorization");
+            if (sent == null || !sent.startsWith("Bearer ") || response.priorResponse() != null) {
+                return null;
+            }
+            String refreshed;
+            try {
+                refreshed = refresher.refreshReplacing(sent.substring("Bearer ".length()));
+            } catch (IOException e) {
+                return null;
+            }
+            if (refreshed == null) {
+                return null;
+            }
+            return response.request().newBuilder().header("Authorization", "Bearer " + refreshed).build();
+        };
+    }
+
+    public JSONObject getStats() {
+        return refresher.getStats();
+    }
+}
@@ -5,18 +5,33 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
-import android.util.Base64;
 import android.util.Log;
 import androidx.browser.customtabs.CustomTabsIntent;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.PluginCall;
-import ee.forgr.capacitor.social.login.helpers.SocialProvider;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AccountSwitchable;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.BoundedResponseBody;
+import ee.forgr.capacitor.social.login.helpers.CancellationScope;
+import ee.forgr.capacitor.social.login.helpers.ClaimsCache;
+import ee.forgr.capacitor.social.login.helpers.ConnectionPrewarmer;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.HttpResilience;
+import ee.forgr.capacitor.social.login.helpers.LoginCancellable;
+import ee.forgr.capacitor.social.login.helpers.LoginTracer;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.PendingCall;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.SessionSnapshot;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import ee.forgr.capacitor.social.login.oauth.OidcDiscovery;
+import ee.forgr.capacitor.social.login.oauth.Pkce;
+import ee.forgr.capacitor.social.login.oauth.TokenRequests;
+import ee.forgr.capacitor.social.login.oauth.TokenResponse;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,8 +39,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.FormBody;
@@ -36,12 +52,15 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-public class OAuth2Provider implements SocialProvider {
+public class OAuth2Provider implements AsyncSocialProvider, AccountSwitchable, LoginCancellable {
 
     public static final int REQUEST_CODE = 9402;
     private static final String LOG_TAG = "OAuth2Provider";
     private static final String USER_CANCELLED_CODE = "USER_CANCELLED";
-    private static final String PREFS_NAME = "CapgoOAuth2ProviderPrefs";
+    static final String NATIVE_WEBVIEW_UNSUPPORTED_CODE = "NATIVE_WEBVIEW_UNSUPPORTED";
+    private static final String NATIVE_WEBVIEW_UNSUPPORTED_MESSAGE =
+        "The OAuth2 WebView login can only be started from JavaScript; set androidUseCustomTabs to log in from native code.";
+    static final String PREFS_NAME = "CapgoOAuth2ProviderPrefs";
     private static final String PREFS_KEY_PREFIX = "OAuth2Tokens_";
     private static final String CUSTOM_TABS_PENDING_IN_PROGRESS = "OAuth2CustomTabsInProgress";
     private static final String CUSTOM_TABS_PENDING_PROVIDER_ID = "OAuth2CustomTabsProviderId";
@@ -54,28 +73,66 @@ public class OAuth2Provider implements SocialProvider {
         void launchForResult(Intent intent, int requestCode);
     }
 
-    private final Activity activity;
+    private final HostActivity host;
     private final Context context;
     private final OkHttpClient httpClient;
 
     // Map of providerId -> OAuth2ProviderConfig
     private final Map<String, OAuth2ProviderConfig> providers = new HashMap<>();
-
-    private PluginCall pendingCall;
-    private OAuth2PendingState pendingState;
-    private boolean pendingUseCustomTabs;
+    // Map of providerId -> per-operation time budgets
+    private final Map<String, OperationDeadlines> deadlines = new HashMap<>();
+
+    // Written on the plugin thread and read from OkHttp and UI callbacks; whoever takes pendingCall answers it.
+    private final PendingCall pendingCall = new PendingCall();
+    private volatile PluginCall loginBridgeCall;
+    private volatile OAuth2PendingState pendingState;
+    private volatile boolean pendingUseCustomTabs;
+    private volatile ConnectionPrewarmer.Handle prewarmHandle;
+    // The running login's calls and UI, and its provider id while pendingState does not exist yet (discovery).
+    private volatile CancellationScope loginCancellation;
+    private volatile String loginProviderId;
     private ActivityLauncher activityLauncher;
+    private TokenLifecycleMonitor tokenLifecycleMonitor;
+    private AccountStore accountStore;
+    private StateLoop stateLoop = StateLoop.inline();
+    private final SessionSnapshot sessionSnapshot;
 
     public void setActivityLauncher(ActivityLauncher launcher) {
         this.activityLauncher = launcher;
     }
 
-    public PluginCall getPendingCall() {
-        return pendingCall;
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        this.tokenLifecycleMonitor = monitor;
+    }
+
+    public void setAccountStore(AccountStore store) {
+        this.accountStore = store;
+    }
+
+    /**
+     * Where discovery, token and resource responses are handled; the plugin's state loop, which also runs the calls.
+     */
+    public void setStateLoop(StateLoop loop) {
+        this.stateLoop = loop;
     }
 
-    public void setPendingCall(PluginCall call) {
-        this.pendingCall = call;
+    /**
+     * The bridge call of the running login, through which the WebView's activity result reaches the plugin; null
+     * for logins started from native code.
+     */
+    public PluginCall getLoginBridgeCall() {
+        return loginBridgeCall;
+    }
+
+    /**
+     * Hand a login the bridge restored (after process death) its call back, unless one is pending already.
+     */
+    public void restorePendingCall(PluginCall call) {
+        CompletableFuture<JSObject> restored = new CompletableFuture<>();
+        if (pendingCall.start(restored)) {
+            loginBridgeCall = call;
+            AsyncSocialProvider.answer(call, restored);
+        }
     }
 
     private static class OAuth2ProviderConfig {
@@ -163,28 +220,53 @@ public class OAuth2Provider implements SocialProvider {
         }
     }
 
-    public OAuth2Provider(Activity activity, Context context) {
-        this.activity = activity;
-        this.context = context;
+    public OAuth2Provider(HostActivity host, Context context) {
+        this.host = host;
+        this.context = context.getApplicationContext();
+        this.sessionSnapshot = SessionSnapshot.getInstance(this.context);
+        // Backstop only: token, discovery and resource calls are bounded by their OperationDeadlines budget.
         this.httpClient = new OkHttpClient.Builder().connectTimeout(30, TimeUnit.SECONDS).readTimeout(30, TimeUnit.SECONDS).build();
     }
 
     private interface DiscoveryCallback {
         void onSuccess(OAuth2ProviderConfig config);
 
-        void onError(String message);
+        /**
+         * @param errorCode error code to reject with (e.g. DISCOVERY_TIMEOUT), or null
+         */
+        void onError(String message, String errorCode);
     }
 
-    private static String trimTrailingSlashes(String s) {
-        if (s == null) return null;
-        int end = s.length();
-        while (end > 0 && s.charAt(end - 1) == '/') end--;
-        return s.substring(0, end);
+    private OperationDeadlines getDeadlines(String providerId) {
+        OperationDeadlines configured = deadlines.get(providerId);
+        return configured != null ? configured : OperationDeadlines.defaults();
+    }
+
+    /**
+     * @param parent deadline of the operation that needs discovery (code exchange, refresh), or null when
+     *               discovery is a step of its own
+     */
+    private void ensureDiscovered(
+        String providerId,
+        OAuth2ProviderConfig config,
+        OperationDeadlines.Deadline parent,
+        DiscoveryCallback cb
+    ) {
+        ensureDiscovered(providerId, config, parent, null, cb);
     }
 
-    private void ensureDiscovered(String providerId, OAuth2ProviderConfig config, DiscoveryCallback cb) {
+    /**
+     * @param cancellation the login the discovery request belongs to, or null
+     */
+    private void ensureDiscovered(
+        String providerId,
+        OAuth2ProviderConfig config,
+        OperationDeadlines.Deadline parent,
+        CancellationScope cancellation,
+        DiscoveryCallback cb
+    ) {
         if (config == null) {
-            cb.onError("OAuth2 provider '" + providerId + "' not found");
+            cb.onError("OAuth2 provider '" + providerId + "' not found", null);
             return;
         }
         if (config.issuerUrl == null || config.issuerUrl.isEmpty()) {
@@ -201,44 +283,63 @@ public class OAuth2Provider implements SocialProvider {
             return;
         }
 
-        String issuer = trimTrailingSlashes(config.issuerUrl);
-        String discoveryUrl = issuer + "/.well-known/openid-configuration";
+        String discoveryUrl = OidcDiscovery.documentUrl(config.issuerUrl);
         Request req = new Request.Builder().url(discoveryUrl).get().build();
         if (config.logsEnabled) {
             Log.d(LOG_TAG, "Discovering OIDC configuration at: " + discoveryUrl);
         }
-        httpClient
-            .newCall(req)
+        LoginTracer.getInstance().startSpan("oauth2", providerId, "discovery");
+        DiscoveryCallback traced = new DiscoveryCallback() {
+            @Override
+            public void onSuccess(OAuth2ProviderConfig resolved) {
+                LoginTracer.getInstance().endSpan("oauth2", providerId, "discovery");
+                stateLoop.execute(() -> {
+                    providers.put(providerId, resolved);
+                    SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                    SharedPreferences.Editor editor = prefs.edit();
+                    if (persistRefreshConfig(prefs, editor, providerId, resolved)) {
+                        editor.apply();
+                    }
+                    cb.onSuccess(resolved);
+                });
+            }
+
+            @Override
+            public void onError(String message, String errorCode) {
+                LoginTracer.getInstance().endSpan("oauth2", providerId, "discovery", message);
+                stateLoop.execute(() -> cb.onError(message, errorCode));
+            }
+        };
+        HttpResilience.getInstance()
             .enqueue(
+                httpClient,
+                req,
+                HttpResilience.RetryPolicy.IDEMPOTENT,
+                getDeadlines(providerId).start(OperationDeadlines.DISCOVERY, parent),
+                cancellation,
                 new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
-                        cb.onError("OIDC discovery failed: " + e.getMessage());
+                        traced.onError("OIDC discovery failed: " + e.getMessage(), OperationDeadlines.errorCode(e));
                     }
 
                     @Override
                     public void onResponse(Call call, Response response) throws IOException {
                         if (!response.isSuccessful()) {
-                            cb.onError("OIDC discovery failed: HTTP " + response.code());
+                            traced.onError("OIDC discovery failed: HTTP " + response.code(), null);
                             return;
                         }
-                        String body = response.body() != null ? response.body().string() : "";
                         try {
-                            JSONObject json = new JSONObject(body);
-                            String auth = json.optString("authorization_endpoint", null);
-                            String token = json.optString("token_endpoint", null);
-                            String endSession = json.optString("end_session_endpoint", null);
+                            OidcDiscovery discovered = OidcDiscovery.parse(
+                                BoundedResponseBody.readFields(response.body(), OidcDiscovery.FIELDS)
+                            );
 
                             OAuth2ProviderConfig resolved = new OAuth2ProviderConfig(
                                 config.appId,
                                 config.clientSecret,
                                 config.issuerUrl,
-                                (config.authorizationBaseUrl != null && !config.authorizationBaseUrl.isEmpty())
-                                    ? config.authorizationBaseUrl
-                                    : auth,
-                                (config.accessTokenEndpoint != null && !config.accessTokenEndpoint.isEmpty())
-                                    ? config.accessTokenEndpoint
-                                    : token,
+                                OidcDiscovery.prefer(config.authorizationBaseUrl, discovered.authorizationEndpoint),
+                                OidcDiscovery.prefer(config.accessTokenEndpoint, discovered.tokenEndpoint),
                                 config.redirectUrl,
                                 config.resourceUrl,
                                 config.responseType,
@@ -249,16 +350,17 @@ public class OAuth2Provider implements SocialProvider {
                                 config.prompt,
                                 config.additionalTokenParameters,
                                 config.additionalResourceHeaders,
-                                (config.logoutUrl != null && !config.logoutUrl.isEmpty()) ? config.logoutUrl : endSession,
+                                OidcDiscovery.prefer(config.logoutUrl, discovered.endSessionEndpoint),
                                 config.postLogoutRedirectUrl,
                                 config.additionalLogoutParameters,
                                 config.androidUseCustomTabs,
                                 config.logsEnabled
                             );
-                            providers.put(providerId, resolved);
-                            cb.onSuccess(resolved);
+                            traced.onSuccess(resolved);
                         } catch (JSONException e) {
-                            cb.onError("Failed to parse OIDC discovery response");
+                            traced.onError("Failed to parse OIDC discovery response", null);
+                        } catch (IOException e) {
+                            traced.onError("Failed to read OIDC discovery response: " + e.getMessage(), null);
                         }
                     }
                 }
@@ -272,6 +374,9 @@ public class OAuth2Provider implements SocialProvider {
      */
     public List<String> initializeProviders(JSONObject configs) throws JSONException {
         List<String> errors = new ArrayList<>();
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit();
+        boolean refreshConfigsChanged = false;
 
         Iterator<String> keys = configs.keys();
         while (keys.hasNext()) {
@@ -350,7 +455,24 @@ public class OAuth2Provider implements SocialProvider {
                 config.optBoolean("logsEnabled", false)
             );
 
+            OperationDeadlines providerDeadlines;
+            try {
+                providerDeadlines = OperationDeadlines.fromConfig(config.optJSONObject("timeouts"));
+            } catch (IllegalArgumentException e) {
+                errors.add("oauth2." + providerId + "." + e.getMessage());
+                continue;
+            }
+
             providers.put(providerId, providerConfig);
+            deadlines.put(providerId, providerDeadlines);
+            refreshConfigsChanged |= persistRefreshConfig(prefs, editor, providerId, providerConfig);
+
+            if (tokenLifecycleMonitor != null) {
+                OAuth2StoredTokens stored = loadStoredTokens(providerId);
+                if (stored != null) {
+                    tokenLifecycleMonitor.track("oauth2", providerId, stored.expiresAt);
+                }
+            }
 
             if (providerConfig.logsEnabled) {
                 Log.d(
@@ -359,6 +481,9 @@ public class OAuth2Provider implements SocialProvider {
                 );
             }
         }
+        if (refreshConfigsChanged) {
+            editor.apply();
+        }
 
         return errors;
     }
@@ -379,28 +504,87 @@ public class OAuth2Provider implements SocialProvider {
     }
 
     private String getTokenStorageKey(String providerId) {
+        return tokenStorageKey(providerId);
+    }
+
+    static String tokenStorageKey(String providerId) {
         return PREFS_KEY_PREFIX + providerId;
     }
 
+    static String refreshConfigKey(String providerId) {
+        return PREFS_KEY_PREFIX + providerId + "_refreshConfig";
+    }
+
+    /**
+     * Record what a refresh needs, so {@link OAuth2NativeSession} can refresh in a process where the plugin was
+     * never initialized. Stored next to the tokens it refreshes; unchanged configs are not rewritten.
+     *
+     * @return whether {@code editor} got a change to apply
+     */
+    private boolean persistRefreshConfig(SharedPreferences prefs, SharedPreferences.Editor editor, String providerId, OAuth2ProviderConfig config) {
+        try {
+            JSONObject refreshConfig = new JSONObject();
+            refreshConfig.put("appId", config.appId);
+            refreshConfig.putOpt("clientSecret", config.clientSecret);
+            refreshConfig.putOpt("accessTokenEndpoint", config.accessTokenEndpoint);
+            if (config.additionalTokenParameters != null) {
+                refreshConfig.put("additionalTokenParameters", new JSONObject(config.additionalTokenParameters));
+            }
+            String value = refreshConfig.toString();
+            if (value.equals(prefs.getString(refreshConfigKey(providerId), null))) {
+                return false;
+            }
+            editor.putString(refreshConfigKey(providerId), value);
+            return true;
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Failed to persist OAuth2 refresh config", e);
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+        return login(options, null);
+    }
+
     @Override
     public void login(PluginCall call, JSONObject config) {
+        AsyncSocialProvider.answer(call, login(config, call));
+    }
+
+    /**
+     * @param bridgeCall the JS call of this login, which a WebView login launches its activity with; null when
+     *                   the login comes from native code
+     */
+    private CompletableFuture<JSObject> login(JSONObject config, PluginCall bridgeCall) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
         String providerId = config != null ? config.optString("providerId", null) : null;
         if (providerId == null || providerId.isEmpty()) {
-            call.reject("providerId is required for oauth2 login");
-            return;
+            ProviderException.reject(result, "providerId is required for oauth2 login");
+            return result;
         }
 
         OAuth2ProviderConfig providerConfig = getProvider(providerId);
         if (providerConfig == null) {
-            call.reject("OAuth2 provider '" + providerId + "' is not initialized. Call initialize() first.");
-            return;
+            LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "not initialized");
+            ProviderException.reject(result, "OAuth2 provider '" + providerId + "' is not initialized. Call initialize() first.");
+            return result;
         }
 
-        if (pendingCall != null) {
-            call.reject("Another OAuth2 login is already running.");
-            return;
+        // The plugin routes the WebView's result back through the bridge call, which a native login has none of.
+        if (bridgeCall == null && activityLauncher != null && !providerConfig.androidUseCustomTabs) {
+            LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "native WebView login");
+            ProviderException.reject(result, NATIVE_WEBVIEW_UNSUPPORTED_MESSAGE, NATIVE_WEBVIEW_UNSUPPORTED_CODE);
+            return result;
         }
 
+        // Pending from here on, so that a login still in discovery blocks another one and can be cancelled.
+        if (!pendingCall.start(result)) {
+            ProviderException.reject(result, "Another OAuth2 login is already running.");
+            return result;
+        }
+        loginBridgeCall = bridgeCall;
+
         String loginScope = providerConfig.scope;
         if (config.has("scope") || config.has("scopes")) {
             String normalized = normalizeScopeValue(config.has("scope") ? config.opt("scope") : config.opt("scopes"));
@@ -414,19 +598,13 @@ public class OAuth2Provider implements SocialProvider {
             redirect = config.optString("redirectUrl", providerConfig.redirectUrl);
         }
 
-        String state = config.has("state") ? config.optString("state", UUID.randomUUID().toString()) : UUID.randomUUID().toString();
+        String state = config.has("state") ? config.optString("state", Pkce.generateState()) : Pkce.generateState();
 
         String codeVerifier = config.has("codeVerifier") ? config.optString("codeVerifier", null) : null;
         if (codeVerifier == null || codeVerifier.isEmpty()) {
-            codeVerifier = generateCodeVerifier();
-        }
-        String codeChallenge;
-        try {
-            codeChallenge = generateCodeChallenge(codeVerifier);
-        } catch (NoSuchAlgorithmException e) {
-            call.reject("Unable to generate code challenge", e);
-            return;
+            codeVerifier = Pkce.generateCodeVerifier();
         }
+        String codeChallenge = Pkce.codeChallenge(codeVerifier);
 
         final String finalState = state;
         final String finalCodeVerifier = codeVerifier;
@@ -434,20 +612,50 @@ public class OAuth2Provider implements SocialProvider {
         final String finalLoginScope = loginScope;
         final String finalCodeChallenge = codeChallenge;
 
+        final CancellationScope cancellation = new CancellationScope();
+        loginCancellation = cancellation;
+        loginProviderId = providerId;
+
         // Resolve endpoints via discovery if needed, then start the login activity.
         ensureDiscovered(
             providerId,
             providerConfig,
+            null,
+            cancellation,
             new DiscoveryCallback() {
                 @Override
                 public void onSuccess(OAuth2ProviderConfig resolved) {
+                    if (cancellation.isCancelled()) {
+                        return;
+                    }
                     if (resolved.authorizationBaseUrl == null || resolved.authorizationBaseUrl.isEmpty()) {
-                        call.reject("Missing authorization endpoint (discovery may have failed)");
+                        if (!pendingCall.claim(result)) {
+                            return;
+                        }
+                        LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "missing authorization endpoint");
+                        ProviderException.reject(result, "Missing authorization endpoint (discovery may have failed)");
+                        cleanupPending();
+                        return;
+                    }
+                    final Activity activity = host.get();
+                    if (activity == null) {
+                        if (!pendingCall.claim(result)) {
+                            return;
+                        }
+                        LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "no activity");
+                        ProviderException.reject(result, "No activity to open the login in");
+                        cleanupPending();
                         return;
                     }
 
                     pendingState = new OAuth2PendingState(providerId, finalState, finalCodeVerifier, finalRedirect, finalLoginScope);
-                    pendingCall = call;
+
+                    // Open the token/resource connections while the user is busy in the browser.
+                    prewarmHandle = ConnectionPrewarmer.getInstance().keepWarm(
+                        httpClient,
+                        "code".equals(resolved.responseType) ? resolved.accessTokenEndpoint : null,
+                        resolved.resourceUrl
+                    );
 
                     Uri.Builder builder = Uri.parse(resolved.authorizationBaseUrl)
                         .buildUpon()
@@ -499,6 +707,8 @@ public class OAuth2Provider implements SocialProvider {
                         Log.d(LOG_TAG, "Opening authorization URL: " + builder.build().toString());
                     }
 
+                    // Covers browser launch, user think-time and redirect delivery back to the app.
+                    LoginTracer.getInstance().startSpan("oauth2", providerId, "authorization");
                     pendingUseCustomTabs = resolved.androidUseCustomTabs;
                     if (resolved.androidUseCustomTabs) {
                         if (resolved.logsEnabled) {
@@ -506,42 +716,105 @@ public class OAuth2Provider implements SocialProvider {
                         }
                         final String authUrl = builder.build().toString();
                         activity.runOnUiThread(() -> {
-                            if (!launchCustomTabs(authUrl)) {
+                            if (cancellation.isCancelled()) {
+                                return;
+                            }
+                            LoginTracer.getInstance().startSpan("oauth2", providerId, "browserLaunch");
+                            if (!launchCustomTabs(activity, authUrl)) {
                                 // No Custom Tabs browser — fall back to embedded WebView
                                 pendingUseCustomTabs = false;
                                 clearPersistedCustomTabsState();
-                                launchWebViewActivity(authUrl, finalRedirect);
+                                launchWebViewActivity(activity, authUrl, finalRedirect);
                             }
+                            LoginTracer.getInstance().endSpan("oauth2", providerId, "browserLaunch");
                         });
                         return;
                     }
 
-                    activity.runOnUiThread(() -> launchWebViewActivity(builder.build().toString(), finalRedirect));
+                    activity.runOnUiThread(() -> {
+                        if (cancellation.isCancelled()) {
+                            return;
+                        }
+                        LoginTracer.getInstance().startSpan("oauth2", providerId, "browserLaunch");
+                        launchWebViewActivity(activity, builder.build().toString(), finalRedirect);
+                        LoginTracer.getInstance().endSpan("oauth2", providerId, "browserLaunch");
+                    });
                 }
 
                 @Override
-                public void onError(String message) {
-                    call.reject(message);
+                public void onError(String message, String errorCode) {
+                    if (cancellation.isCancelled() || !pendingCall.claim(result)) {
+                        return;
+                    }
+                    LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, message);
+                    ProviderException.reject(result, message, errorCode);
+                    cleanupPending();
                 }
             }
         );
+        return result;
+    }
+
+    /**
+     * Cancel the running login wherever it is: discovery, browser or WebView, code exchange or resource fetch.
+     * In-flight calls are cancelled and the WebView is closed; a Custom Tabs page stays open, but its redirect
+     * is no longer consumed.
+     */
+    @Override
+    public boolean cancelLogin(String providerId) {
+        OAuth2PendingState state = pendingState;
+        if (!pendingCall.isPending() && state == null) {
+            return false;
+        }
+        String running = state != null ? state.providerId : loginProviderId;
+        if (providerId != null && !providerId.isEmpty() && !providerId.equals(running)) {
+            return false;
+        }
+        CompletableFuture<JSObject> pending = pendingCall.take();
+        if (loginCancellation != null) {
+            loginCancellation.cancel();
+        }
+        if (running != null) {
+            LoginTracer.getInstance().finish("oauth2", running, LoginTracer.STATUS_CANCELLED);
+        }
+        if (pending != null) {
+            ProviderException.reject(pending, "OAuth2 login cancelled", USER_CANCELLED_CODE);
+        }
+        cleanupPending();
+        return true;
+    }
+
+    private static boolean isCancelled(CancellationScope cancellation) {
+        return cancellation != null && cancellation.isCancelled();
     }
 
     @Override
-    public void logout(PluginCall call) {
-        String providerId = call.getString("providerId");
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        String providerId = options != null ? options.optString("providerId", null) : null;
         if (providerId == null || providerId.isEmpty()) {
-            call.reject("providerId is required for oauth2 logout");
-            return;
+            ProviderException.reject(result, "providerId is required for oauth2 logout");
+            return result;
         }
 
         OAuth2StoredTokens stored = loadStoredTokens(providerId);
         context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().remove(getTokenStorageKey(providerId)).apply();
+        sessionSnapshot.put(AccountStore.providerKey("oauth2", providerId), null);
+        if (stored != null) {
+            ClaimsCache.getInstance().evict(stored.idToken);
+        }
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.revoked("oauth2", providerId);
+        }
+        if (accountStore != null) {
+            accountStore.removeActive(AccountStore.providerKey("oauth2", providerId));
+        }
 
         OAuth2ProviderConfig config = getProvider(providerId);
         ensureDiscovered(
             providerId,
             config,
+            null,
             new DiscoveryCallback() {
                 @Override
                 public void onSuccess(OAuth2ProviderConfig resolved) {
@@ -560,32 +833,39 @@ public class OAuth2Provider implements SocialProvider {
                             }
                         }
                         Intent browserIntent = new Intent(Intent.ACTION_VIEW, b.build());
-                        activity.runOnUiThread(() -> activity.startActivity(browserIntent));
+                        Activity activity = host.get();
+                        if (activity != null) {
+                            activity.runOnUiThread(() -> activity.startActivity(browserIntent));
+                        }
                     }
-                    call.resolve();
+                    LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_SUCCESS);
+                    result.complete(null);
                 }
 
                 @Override
-                public void onError(String message) {
+                public void onError(String message, String errorCode) {
                     // Logout still succeeds locally even if discovery fails
-                    call.resolve();
+                    LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_SUCCESS);
+                    result.complete(null);
                 }
             }
         );
+        return result;
     }
 
     @Override
-    public void getAuthorizationCode(PluginCall call) {
-        String providerId = call.getString("providerId");
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        String providerId = options != null ? options.optString("providerId", null) : null;
         if (providerId == null || providerId.isEmpty()) {
-            call.reject("providerId is required for oauth2 getAuthorizationCode");
-            return;
+            ProviderException.reject(result, "providerId is required for oauth2 getAuthorizationCode");
+            return result;
         }
 
         OAuth2StoredTokens tokens = loadStoredTokens(providerId);
         if (tokens == null) {
-            call.reject("OAuth2 access token not available for provider '" + providerId + "'");
-            return;
+            ProviderException.reject(result, "OAuth2 access token not available for provider '" + providerId + "'");
+            return result;
         }
         JSObject response = new JSObject();
         response.put("accessToken", tokens.accessToken);
@@ -596,58 +876,86 @@ public class OAuth2Provider implements SocialProvider {
             response.put("jwt", tokens.idToken);
         }
         response.put("tokenType", tokens.tokenType);
-        call.resolve(response);
+        result.complete(response);
+        return result;
     }
 
     @Override
-    public void isLoggedIn(PluginCall call) {
-        String providerId = call.getString("providerId");
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        String providerId = options != null ? options.optString("providerId", null) : null;
         if (providerId == null || providerId.isEmpty()) {
-            call.reject("providerId is required for oauth2 isLoggedIn");
-            return;
+            ProviderException.reject(result, "providerId is required for oauth2 isLoggedIn");
+            return result;
         }
 
         OAuth2StoredTokens tokens = loadStoredTokens(providerId);
-        boolean isValid = tokens != null && tokens.expiresAt > System.currentTimeMillis();
-        call.resolve(new JSObject().put("isLoggedIn", isValid));
+        result.complete(tokens != null && tokens.expiresAt > System.currentTimeMillis());
+        return result;
     }
 
     @Override
-    public void refresh(PluginCall call) {
-        JSObject options = call.getObject("options");
-        String providerId = options != null ? options.getString("providerId") : null;
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        String providerId = options != null ? options.optString("providerId", null) : null;
         if (providerId == null || providerId.isEmpty()) {
-            call.reject("providerId is required for oauth2 refresh");
-            return;
+            ProviderException.reject(result, "providerId is required for oauth2 refresh");
+            return result;
         }
 
         OAuth2ProviderConfig config = getProvider(providerId);
         if (config == null) {
-            call.reject("OAuth2 provider '" + providerId + "' is not initialized.");
-            return;
+            ProviderException.reject(result, "OAuth2 provider '" + providerId + "' is not initialized.");
+            return result;
         }
 
-        OAuth2StoredTokens tokens = loadStoredTokens(providerId);
+        JSONObject session = loadStoredSession(providerId);
+        OAuth2StoredTokens tokens = OAuth2StoredTokens.from(session);
         if (tokens == null || tokens.refreshToken == null) {
-            call.reject("OAuth2 refresh token is not available. Make sure offline_access scope is granted.");
-            return;
+            ProviderException.reject(result, "OAuth2 refresh token is not available. Make sure offline_access scope is granted.");
+            return result;
         }
-        refreshWithToken(call, providerId, config, tokens.refreshToken, null, true);
+        refreshWithToken(
+            result,
+            providerId,
+            config,
+            tokens.refreshToken,
+            session,
+            null,
+            true,
+            getDeadlines(providerId).start(OperationDeadlines.REFRESH)
+        );
+        return result;
     }
 
-    public void refreshTokenRaw(PluginCall call, String providerId, String refreshToken, JSONObject additionalParameters) {
+    /**
+     * Refresh with {@code refreshToken}, or the stored one when null, and resolve with the unwrapped token result.
+     */
+    public CompletableFuture<JSObject> refreshTokenRaw(String providerId, String refreshToken, JSONObject additionalParameters) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
         OAuth2ProviderConfig config = getProvider(providerId);
         if (config == null) {
-            call.reject("OAuth2 provider '" + providerId + "' is not initialized.");
-            return;
+            ProviderException.reject(result, "OAuth2 provider '" + providerId + "' is not initialized.");
+            return result;
         }
-        OAuth2StoredTokens stored = loadStoredTokens(providerId);
+        JSONObject session = loadStoredSession(providerId);
+        OAuth2StoredTokens stored = OAuth2StoredTokens.from(session);
         String effective = (refreshToken != null && !refreshToken.isEmpty()) ? refreshToken : (stored != null ? stored.refreshToken : null);
         if (effective == null || effective.isEmpty()) {
-            call.reject("OAuth2 refresh token is not available. Make sure offline_access scope is granted.");
-            return;
+            ProviderException.reject(result, "OAuth2 refresh token is not available. Make sure offline_access scope is granted.");
+            return result;
         }
-        refreshWithToken(call, providerId, config, effective, additionalParameters, false);
+        refreshWithToken(
+            result,
+            providerId,
+            config,
+            effective,
+            session,
+            additionalParameters,
+            false,
+            getDeadlines(providerId).start(OperationDeadlines.REFRESH)
+        );
+        return result;
     }
 
     public Long getAccessTokenExpirationDateMs(String providerId) {
@@ -675,30 +983,44 @@ public class OAuth2Provider implements SocialProvider {
         if (requestCode != REQUEST_CODE) {
             return false;
         }
-        if (pendingCall == null || pendingState == null) {
-            if (pendingCall != null) {
+        if (OAuth2LoginActivity.isLoginCancelled(data)) {
+            // Result of a WebView closed by cancelLogin, which already settled the login.
+            return true;
+        }
+        OAuth2PendingState state = pendingState;
+        if (!pendingCall.isPending() || state == null) {
+            CompletableFuture<JSObject> pending = pendingCall.take();
+            if (pending != null) {
                 // pendingCall was restored (e.g. via @ActivityCallback after process death)
                 // but pendingState (codeVerifier, state nonce, etc.) was lost. Cannot complete.
                 Log.e(LOG_TAG, "pendingCall present but pendingState is null — login state lost (process death?)");
-                pendingCall.reject("OAuth2 login state was lost (process death). Please retry.");
+                ProviderException.reject(pending, "OAuth2 login state was lost (process death). Please retry.");
                 cleanupPending();
             }
             return true;
         }
 
         if (resultCode != Activity.RESULT_OK) {
+            CompletableFuture<JSObject> pending = pendingCall.take();
+            if (pending == null) {
+                return true;
+            }
             boolean userCancelled = data != null && data.getBooleanExtra(OAuth2LoginActivity.EXTRA_USER_CANCELLED, false);
             String error = data != null ? data.getStringExtra("error") : "User cancelled";
             String message = error != null ? error : "User cancelled";
             if (userCancelled) {
-                pendingCall.reject(message, USER_CANCELLED_CODE);
+                LoginTracer.getInstance().finish("oauth2", state.providerId, LoginTracer.STATUS_CANCELLED);
+                ProviderException.reject(pending, message, USER_CANCELLED_CODE);
             } else {
-                pendingCall.reject(message);
+                LoginTracer.getInstance().finish("oauth2", state.providerId, LoginTracer.STATUS_ERROR, message);
+                ProviderException.reject(pending, message);
             }
             cleanupPending();
             return true;
         }
 
+        LoginTracer.getInstance().mark("oauth2", state.providerId, "redirectReceived");
+
         return processCallbackData(data);
     }
 
@@ -724,6 +1046,7 @@ public class OAuth2Provider implements SocialProvider {
             return false;
         }
 
+        LoginTracer.getInstance().mark("oauth2", pendingState.providerId, "redirectReceived");
         Intent data = callbackUriToIntent(uri);
 
         // Prevent handleOnResume from treating the return as cancellation while token exchange runs
@@ -742,6 +1065,7 @@ public class OAuth2Provider implements SocialProvider {
         }
 
         // Prefer consuming a redirect already attached to the activity intent (cold start / recreate)
+        Activity activity = host.get();
         Intent current = activity != null ? activity.getIntent() : null;
         if (current != null && Intent.ACTION_VIEW.equals(current.getAction()) && current.getData() != null) {
             if (handleRedirectUri(current.getData())) {
@@ -749,13 +1073,18 @@ public class OAuth2Provider implements SocialProvider {
             }
         }
 
-        if (pendingCall == null) {
+        CompletableFuture<JSObject> pending = pendingCall.take();
+        if (pending == null) {
             clearPersistedCustomTabsState();
             pendingUseCustomTabs = false;
             pendingState = null;
             return;
         }
-        pendingCall.reject("User cancelled", USER_CANCELLED_CODE);
+        OAuth2PendingState state = pendingState;
+        if (state != null) {
+            LoginTracer.getInstance().finish("oauth2", state.providerId, LoginTracer.STATUS_CANCELLED);
+        }
+        ProviderException.reject(pending, "User cancelled", USER_CANCELLED_CODE);
         cleanupPending();
     }
 
@@ -780,16 +1109,15 @@ public class OAuth2Provider implements SocialProvider {
     }
 
     private boolean processCallbackData(Intent data) {
-        if (pendingState == null) {
+        OAuth2PendingState state = pendingState;
+        if (state == null) {
             return true;
         }
+        LoginTracer.getInstance().endSpan("oauth2", state.providerId, "authorization");
 
         String returnedState = data != null ? data.getStringExtra("state") : null;
-        if (returnedState == null || !returnedState.equals(pendingState.state)) {
-            if (pendingCall != null) {
-                pendingCall.reject("State mismatch during OAuth2 login");
-            }
-            cleanupPending();
+        if (returnedState == null || !returnedState.equals(state.state)) {
+            rejectPending("State mismatch during OAuth2 login");
             return true;
         }
 
@@ -797,23 +1125,20 @@ public class OAuth2Provider implements SocialProvider {
         if (error != null) {
             String description = data.getStringExtra("error_description");
             String message = description != null ? description : error;
-            if (pendingCall != null) {
-                if (isUserDeniedRedirect(error, description)) {
-                    pendingCall.reject(message, USER_CANCELLED_CODE);
-                } else {
-                    pendingCall.reject(message);
-                }
+            boolean denied = isUserDeniedRedirect(error, description);
+            if (denied) {
+                LoginTracer.getInstance().finish("oauth2", state.providerId, LoginTracer.STATUS_CANCELLED);
             }
-            cleanupPending();
+            rejectPending(message, denied ? USER_CANCELLED_CODE : null, null);
             return true;
         }
 
         // Check for code (authorization code flow)
         String code = data != null ? data.getStringExtra("code") : null;
         if (code != null) {
-            if (pendingCall == null) {
+            if (!pendingCall.isPending()) {
                 // Process death: original JS call is gone — still exchange & store tokens.
-                Log.w(LOG_TAG, "Completing OAuth2 Custom Tabs callback without pending PluginCall (process death?)");
+                Log.w(LOG_TAG, "Completing OAuth2 Custom Tabs callback without a pending login (process death?)");
             }
             exchangeAuthorizationCode(code);
             return true;
@@ -822,24 +1147,35 @@ public class OAuth2Provider implements SocialProvider {
         // Check for access_token (implicit flow)
         String accessToken = data != null ? data.getStringExtra("access_token") : null;
         if (accessToken != null) {
-            if (pendingCall == null) {
-                Log.w(LOG_TAG, "Completing OAuth2 Custom Tabs implicit callback without pending PluginCall (process death?)");
+            if (!pendingCall.isPending()) {
+                Log.w(LOG_TAG, "Completing OAuth2 Custom Tabs implicit callback without a pending login (process death?)");
             }
             handleImplicitFlowResponse(data);
             return true;
         }
 
-        if (pendingCall != null) {
-            pendingCall.reject("No authorization code or access token in callback");
-        }
-        cleanupPending();
+        rejectPending("No authorization code or access token in callback");
         return true;
     }
 
-    private void launchWebViewActivity(String authUrl, String redirectUrl) {
+    private void launchWebViewActivity(Activity activity, String authUrl, String redirectUrl) {
+        if (activityLauncher != null && loginBridgeCall == null) {
+            // A native Custom Tabs login that found no browser; like login() refuses a native WebView login.
+            CancellationScope cancellation = loginCancellation;
+            stateLoop.execute(() -> {
+                if (cancellation == loginCancellation) {
+                    rejectPending(NATIVE_WEBVIEW_UNSUPPORTED_MESSAGE, NATIVE_WEBVIEW_UNSUPPORTED_CODE, null);
+                }
+            });
+            return;
+        }
+
         Intent intent = new Intent(activity, OAuth2LoginActivity.class);
         intent.putExtra(OAuth2LoginActivity.EXTRA_AUTH_URL, authUrl);
         intent.putExtra(OAuth2LoginActivity.EXTRA_REDIRECT_URL, redirectUrl);
+        if (loginCancellation != null) {
+            loginCancellation.onCancel(() -> OAuth2LoginActivity.cancel(authUrl));
+        }
 
         if (activityLauncher != null) {
             activityLauncher.launchForResult(intent, REQUEST_CODE);
@@ -856,7 +1192,7 @@ public class OAuth2Provider implements SocialProvider {
     /**
      * @return true if Custom Tabs launched successfully
      */
-    private boolean launchCustomTabs(String url) {
+    private boolean launchCustomTabs(Activity activity, String url) {
         try {
             persistCustomTabsState();
             CustomTabsIntent.Builder builder = new CustomTabsIntent.Builder();
@@ -963,15 +1299,13 @@ public class OAuth2Provider implements SocialProvider {
 
     private void handleImplicitFlowResponse(Intent data) {
         if (pendingState == null) {
-            if (pendingCall != null) {
-                pendingCall.reject("Internal error: missing pending state");
-                cleanupPending();
-            }
+            rejectPending("Internal error: missing pending state");
             return;
         }
 
         String providerId = pendingState.providerId;
         OAuth2ProviderConfig config = getProvider(providerId);
+        CancellationScope cancellation = loginCancellation;
 
         String accessToken = data.getStringExtra("access_token");
         String tokenType = data.getStringExtra("token_type");
@@ -987,16 +1321,24 @@ public class OAuth2Provider implements SocialProvider {
         // Fetch resource data if configured
         if (config != null && config.resourceUrl != null && !config.resourceUrl.isEmpty()) {
             fetchResource(
+                providerId,
                 config,
                 accessToken,
+                cancellation,
                 new ResourceCallback() {
                     @Override
                     public void onSuccess(JSONObject resourceData) {
+                        if (isCancelled(cancellation)) {
+                            return;
+                        }
                         completeLogin(providerId, accessToken, tokenType, expiresIn, expiresAt, null, idToken, scopes, resourceData);
                     }
 
                     @Override
                     public void onError(String message) {
+                        if (isCancelled(cancellation)) {
+                            return;
+                        }
                         if (config.logsEnabled) {
                             Log.w(LOG_TAG, "Failed to fetch resource: " + message);
                         }
@@ -1011,10 +1353,7 @@ public class OAuth2Provider implements SocialProvider {
 
     private void exchangeAuthorizationCode(String code) {
         if (pendingState == null) {
-            if (pendingCall != null) {
-                pendingCall.reject("Internal error: missing pending state");
-                cleanupPending();
-            }
+            rejectPending("Internal error: missing pending state");
             return;
         }
 
@@ -1022,162 +1361,197 @@ public class OAuth2Provider implements SocialProvider {
         OAuth2ProviderConfig config = getProvider(providerId);
 
         if (config == null) {
-            if (pendingCall != null) {
-                pendingCall.reject("OAuth2 provider '" + providerId + "' not found");
-            }
-            cleanupPending();
+            rejectPending("OAuth2 provider '" + providerId + "' not found");
             return;
         }
 
+        // One budget for the whole exchange, including a discovery fallback.
+        OperationDeadlines.Deadline deadline = getDeadlines(providerId).start(OperationDeadlines.CODE_EXCHANGE);
+        CancellationScope cancellation = loginCancellation;
+
         if (config.accessTokenEndpoint == null || config.accessTokenEndpoint.isEmpty()) {
             // Try discovery if issuerUrl exists
             ensureDiscovered(
                 providerId,
                 config,
+                deadline,
+                cancellation,
                 new DiscoveryCallback() {
                     @Override
                     public void onSuccess(OAuth2ProviderConfig resolved) {
+                        if (isCancelled(cancellation)) {
+                            return;
+                        }
                         if (resolved.accessTokenEndpoint == null || resolved.accessTokenEndpoint.isEmpty()) {
-                            if (pendingCall != null) {
-                                pendingCall.reject("No accessTokenEndpoint configured for code exchange");
-                            }
-                            cleanupPending();
+                            rejectPending("No accessTokenEndpoint configured for code exchange");
                             return;
                         }
-                        exchangeAuthorizationCodeWithConfig(code, resolved);
+                        exchangeAuthorizationCodeWithConfig(code, resolved, deadline, cancellation);
                     }
 
                     @Override
-                    public void onError(String message) {
-                        if (pendingCall != null) {
-                            pendingCall.reject(message);
+                    public void onError(String message, String errorCode) {
+                        if (isCancelled(cancellation)) {
+                            return;
                         }
-                        cleanupPending();
+                        rejectPending(message, errorCode, null);
                     }
                 }
             );
             return;
         }
 
-        exchangeAuthorizationCodeWithConfig(code, config);
+        exchangeAuthorizationCodeWithConfig(code, config, deadline, cancellation);
     }
 
-    private void exchangeAuthorizationCodeWithConfig(String code, OAuth2ProviderConfig config) {
+    private void exchangeAuthorizationCodeWithConfig(
+        String code,
+        OAuth2ProviderConfig config,
+        OperationDeadlines.Deadline deadline,
+        CancellationScope cancellation
+    ) {
         if (pendingState == null) {
             cleanupPending();
             return;
         }
         final String providerId = pendingState.providerId;
 
-        FormBody.Builder bodyBuilder = new FormBody.Builder()
-            .add("grant_type", "authorization_code")
-            .add("client_id", config.appId)
-            .add("code", code)
-            .add("redirect_uri", pendingState.redirectUri);
-
-        if (config.pkceEnabled) {
-            bodyBuilder.add("code_verifier", pendingState.codeVerifier);
-        }
-
-        if (config.clientSecret != null) {
-            bodyBuilder.add("client_secret", config.clientSecret);
-        }
-
-        if (config.additionalTokenParameters != null) {
-            for (Map.Entry<String, String> entry : config.additionalTokenParameters.entrySet()) {
-                bodyBuilder.add(entry.getKey(), entry.getValue());
-            }
-        }
+        FormBody body = TokenRequests.authorizationCode(
+            config.appId,
+            code,
+            pendingState.redirectUri,
+            config.pkceEnabled ? pendingState.codeVerifier : null,
+            config.clientSecret,
+            config.additionalTokenParameters
+        ).build();
 
-        Request request = new Request.Builder().url(config.accessTokenEndpoint).post(bodyBuilder.build()).build();
+        Request request = new Request.Builder().url(config.accessTokenEndpoint).post(body).build();
 
         if (config.logsEnabled) {
             Log.d(LOG_TAG, "Exchanging code at: " + config.accessTokenEndpoint);
         }
+        LoginTracer.getInstance().startSpan("oauth2", providerId, "codeExchange");
 
-        httpClient
-            .newCall(request)
+        HttpResilience.getInstance()
             .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.SINGLE_GUARDED,
+                deadline,
+                cancellation,
                 new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
-                        if (pendingCall != null) {
-                            pendingCall.reject("OAuth2 token exchange failed", e);
-                        }
-                        cleanupPending();
+                        stateLoop.execute(() -> {
+                            if (isCancelled(cancellation)) {
+                                return;
+                            }
+                            LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "token exchange failed");
+                            rejectPending("OAuth2 token exchange failed", OperationDeadlines.errorCode(e), e);
+                        });
                     }
 
                     @Override
                     public void onResponse(Call call, Response response) throws IOException {
+                        if (isCancelled(cancellation)) {
+                            response.close();
+                            return;
+                        }
                         if (!response.isSuccessful()) {
-                            String errorBody = response.body() != null ? response.body().string() : "";
-                            if (pendingCall != null) {
-                                pendingCall.reject("OAuth2 token exchange failed: " + errorBody);
-                            }
-                            cleanupPending();
+                            String errorBody = BoundedResponseBody.errorPreview(response.body());
+                            int code = response.code();
+                            stateLoop.execute(() -> {
+                                if (isCancelled(cancellation)) {
+                                    return;
+                                }
+                                LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "HTTP " + code);
+                                rejectPending("OAuth2 token exchange failed: " + errorBody);
+                            });
                             return;
                         }
-                        String responseBody = response.body() != null ? response.body().string() : "";
+                        JSONObject tokenPayload;
                         try {
-                            JSONObject tokenPayload = new JSONObject(responseBody);
-                            handleTokenSuccess(providerId, config, tokenPayload);
-                        } catch (JSONException e) {
-                            if (pendingCall != null) {
-                                pendingCall.reject("Failed to parse OAuth2 token response", e);
-                            }
-                            cleanupPending();
+                            tokenPayload = BoundedResponseBody.readFields(response.body(), TokenResponse.FIELDS);
+                        } catch (JSONException | IOException e) {
+                            stateLoop.execute(() -> {
+                                if (!isCancelled(cancellation)) {
+                                    rejectPending("Failed to parse OAuth2 token response", null, e);
+                                }
+                            });
+                            return;
                         }
+                        stateLoop.execute(() -> {
+                            if (isCancelled(cancellation)) {
+                                return;
+                            }
+                            LoginTracer.getInstance().endSpan("oauth2", providerId, "codeExchange");
+                            try {
+                                handleTokenSuccess(providerId, config, tokenPayload);
+                            } catch (JSONException e) {
+                                rejectPending("Failed to parse OAuth2 token response", null, e);
+                            }
+                        });
                     }
                 }
             );
     }
 
+    /**
+     * @param refreshedFrom the stored session when the refresh started; the result is only stored while that is
+     *                      still the current one
+     */
     private void refreshWithToken(
-        final PluginCall pluginCall,
+        final CompletableFuture<JSObject> result,
         String providerId,
         OAuth2ProviderConfig config,
         String refreshToken,
+        JSONObject refreshedFrom,
         JSONObject additionalParameters,
-        boolean wrapResponse
+        boolean wrapResponse,
+        OperationDeadlines.Deadline deadline
     ) {
         if (config.accessTokenEndpoint == null || config.accessTokenEndpoint.isEmpty()) {
             // Try discovery if issuerUrl exists
             ensureDiscovered(
                 providerId,
                 config,
+                deadline,
                 new DiscoveryCallback() {
                     @Override
                     public void onSuccess(OAuth2ProviderConfig resolved) {
                         if (resolved.accessTokenEndpoint == null || resolved.accessTokenEndpoint.isEmpty()) {
-                            pluginCall.reject("No accessTokenEndpoint configured for refresh");
+                            LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "missing token endpoint");
+                            ProviderException.reject(result, "No accessTokenEndpoint configured for refresh");
                             return;
                         }
-                        refreshWithToken(pluginCall, providerId, resolved, refreshToken, additionalParameters, wrapResponse);
+                        refreshWithToken(
+                            result,
+                            providerId,
+                            resolved,
+                            refreshToken,
+                            refreshedFrom,
+                            additionalParameters,
+                            wrapResponse,
+                            deadline
+                        );
                     }
 
                     @Override
-                    public void onError(String message) {
-                        pluginCall.reject(message);
+                    public void onError(String message, String errorCode) {
+                        LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, message);
+                        ProviderException.reject(result, message, errorCode);
                     }
                 }
             );
             return;
         }
 
-        FormBody.Builder bodyBuilder = new FormBody.Builder()
-            .add("grant_type", "refresh_token")
-            .add("refresh_token", refreshToken)
-            .add("client_id", config.appId);
-
-        if (config.clientSecret != null) {
-            bodyBuilder.add("client_secret", config.clientSecret);
-        }
-
-        if (config.additionalTokenParameters != null) {
-            for (Map.Entry<String, String> entry : config.additionalTokenParameters.entrySet()) {
-                bodyBuilder.add(entry.getKey(), entry.getValue());
-            }
-        }
+        FormBody.Builder bodyBuilder = TokenRequests.refresh(
+            config.appId,
+            refreshToken,
+            config.clientSecret,
+            config.additionalTokenParameters
+        );
 
         if (additionalParameters != null) {
             try {
@@ -1193,66 +1567,119 @@ public class OAuth2Provider implements SocialProvider {
 
         Request request = new Request.Builder().url(config.accessTokenEndpoint).post(bodyBuilder.build()).build();
 
-        httpClient
-            .newCall(request)
+        LoginTracer.getInstance().startSpan("oauth2", providerId, "tokenRefresh");
+        HttpResilience.getInstance()
             .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.IDEMPOTENT,
+                deadline,
                 new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
-                        pluginCall.reject("OAuth2 refresh failed", e);
+                        stateLoop.execute(() -> {
+                            LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "refresh failed");
+                            ProviderException.reject(result, "OAuth2 refresh failed", OperationDeadlines.errorCode(e), e);
+                        });
                     }
 
                     @Override
                     public void onResponse(Call call, Response response) throws IOException {
                         if (!response.isSuccessful()) {
-                            String errorBody = response.body() != null ? response.body().string() : "";
-                            pluginCall.reject("OAuth2 refresh failed: " + errorBody);
+                            String errorBody = BoundedResponseBody.errorPreview(response.body());
+                            int code = response.code();
+                            stateLoop.execute(() -> {
+                                LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "HTTP " + code);
+                                ProviderException.reject(result, "OAuth2 refresh failed: " + errorBody);
+                            });
                             return;
                         }
-                        String responseBody = response.body() != null ? response.body().string() : "";
+                        JSONObject tokenPayload;
                         try {
-                            JSONObject tokenPayload = new JSONObject(responseBody);
-                            handleTokenSuccess(providerId, config, tokenPayload, pluginCall, refreshToken, wrapResponse);
-                        } catch (JSONException e) {
-                            pluginCall.reject("Failed to parse OAuth2 refresh response", e);
+                            tokenPayload = BoundedResponseBody.readFields(response.body(), TokenResponse.FIELDS);
+                        } catch (JSONException | IOException e) {
+                            stateLoop.execute(() -> rejectRefreshResponse(result, providerId, e));
+                            return;
                         }
+                        LoginTracer.getInstance().endSpan("oauth2", providerId, "tokenRefresh");
+                        stateLoop.execute(() -> {
+                            try {
+                                handleTokenSuccess(
+                                    providerId,
+                                    config,
+                                    tokenPayload,
+                                    () -> result,
+                                    refreshToken,
+                                    refreshedFrom,
+                                    wrapResponse,
+                                    null,
+                                    null
+                                );
+                            } catch (JSONException e) {
+                                rejectRefreshResponse(result, providerId, e);
+                            }
+                        });
                     }
                 }
             );
     }
 
+    private static void rejectRefreshResponse(CompletableFuture<JSObject> result, String providerId, Exception e) {
+        LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "invalid refresh response");
+        ProviderException.reject(result, "Failed to parse OAuth2 refresh response", e);
+    }
+
     private void handleTokenSuccess(String providerId, OAuth2ProviderConfig config, JSONObject tokenPayload) throws JSONException {
-        handleTokenSuccess(providerId, config, tokenPayload, pendingCall, null, true);
-        cleanupPending();
+        // The login stays pending, and cancellable, until the resource fetch is done.
+        CancellationScope cancellation = loginCancellation;
+        handleTokenSuccess(providerId, config, tokenPayload, pendingCall::take, null, null, true, cancellation, () -> {
+            if (!isCancelled(cancellation)) {
+                cleanupPending();
+            }
+        });
     }
 
+    /**
+     * @param call the call to answer, taken once the result is ready; a login's is gone if it was cancelled
+     * @param refreshedFrom see {@link #refreshWithToken}; null for logins
+     * @param cancellation the login the resource fetch belongs to, null for refreshes
+     * @param onComplete run once the call was settled, or null
+     */
     private void handleTokenSuccess(
         String providerId,
         OAuth2ProviderConfig config,
         JSONObject tokenPayload,
-        PluginCall call,
+        Supplier<CompletableFuture<JSObject>> call,
         String fallbackRefreshToken,
-        boolean wrapResponse
+        JSONObject refreshedFrom,
+        boolean wrapResponse,
+        CancellationScope cancellation,
+        Runnable onComplete
     ) throws JSONException {
-        final String accessToken = tokenPayload.getString("access_token");
-        final String tokenType = tokenPayload.optString("token_type", "bearer");
-        final int expiresIn = tokenPayload.optInt("expires_in", 3600);
-        final String refreshToken = tokenPayload.has("refresh_token") ? tokenPayload.optString("refresh_token", null) : null;
-        final String effectiveRefreshToken = (refreshToken != null && !refreshToken.isEmpty()) ? refreshToken : fallbackRefreshToken;
-        final String idToken = tokenPayload.optString("id_token", null);
-        final String scopeRaw = tokenPayload.optString("scope", "");
-        final List<String> scopes = scopeRaw.isEmpty() ? Collections.emptyList() : Arrays.asList(scopeRaw.split(" "));
-
-        final long expiresAt = System.currentTimeMillis() + (long) expiresIn * 1000L;
+        // Refreshes always pass the refresh token they used; the login path has none yet.
+        final boolean refreshed = fallbackRefreshToken != null;
+        final TokenResponse tokens = TokenResponse.parse(tokenPayload, 3600, System.currentTimeMillis());
+        final String accessToken = tokens.accessToken;
+        final String tokenType = tokens.tokenType;
+        final int expiresIn = tokens.expiresIn;
+        final String effectiveRefreshToken = tokens.refreshTokenOr(fallbackRefreshToken);
+        final String idToken = tokens.idToken;
+        final List<String> scopes = tokens.scopes;
+        final long expiresAt = tokens.expiresAt;
 
         // Fetch resource data if configured
         if (config.resourceUrl != null && !config.resourceUrl.isEmpty()) {
             fetchResource(
+                providerId,
                 config,
                 accessToken,
+                cancellation,
                 new ResourceCallback() {
                     @Override
                     public void onSuccess(JSONObject resourceData) {
+                        if (isCancelled(cancellation)) {
+                            return;
+                        }
                         completeLogin(
                             providerId,
                             accessToken,
@@ -1264,12 +1691,20 @@ public class OAuth2Provider implements SocialProvider {
                             scopes,
                             resourceData,
                             call,
-                            wrapResponse
+                            wrapResponse,
+                            refreshed,
+                            refreshedFrom
                         );
+                        if (onComplete != null) {
+                            onComplete.run();
+                        }
                     }
 
                     @Override
                     public void onError(String message) {
+                        if (isCancelled(cancellation)) {
+                            return;
+                        }
                         if (config.logsEnabled) {
                             Log.w(LOG_TAG, "Failed to fetch resource: " + message);
                         }
@@ -1284,8 +1719,13 @@ public class OAuth2Provider implements SocialProvider {
                             scopes,
                             null,
                             call,
-                            wrapResponse
+                            wrapResponse,
+                            refreshed,
+                            refreshedFrom
                         );
+                        if (onComplete != null) {
+                            onComplete.run();
+                        }
                     }
                 }
             );
@@ -1301,8 +1741,13 @@ public class OAuth2Provider implements SocialProvider {
                 scopes,
                 null,
                 call,
-                wrapResponse
+                wrapResponse,
+                refreshed,
+                refreshedFrom
             );
+            if (onComplete != null) {
+                onComplete.run();
+            }
         }
     }
 
@@ -1327,8 +1772,10 @@ public class OAuth2Provider implements SocialProvider {
             idToken,
             scopes,
             resourceData,
-            pendingCall,
-            true
+            pendingCall::take,
+            true,
+            false,
+            null
         );
         cleanupPending();
     }
@@ -1343,12 +1790,30 @@ public class OAuth2Provider implements SocialProvider {
         String idToken,
         List<String> scopes,
         JSONObject resourceData,
-        PluginCall call,
-        boolean wrapResponse
+        Supplier<CompletableFuture<JSObject>> answer,
+        boolean wrapResponse,
+        boolean refreshed,
+        JSONObject refreshedFrom
     ) {
-        persistTokens(providerId, accessToken, refreshToken, idToken, tokenType, expiresAt, scopes);
+        if (!persistTokens(providerId, accessToken, refreshToken, idToken, tokenType, expiresAt, scopes, resourceData, refreshed, refreshedFrom)) {
+            LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_ERROR, "session changed");
+            CompletableFuture<JSObject> pending = answer.get();
+            if (pending != null) {
+                ProviderException.reject(pending, "OAuth2 session changed during refresh (logout or new login)");
+            }
+            return;
+        }
+        if (tokenLifecycleMonitor != null) {
+            if (refreshed) {
+                tokenLifecycleMonitor.refreshed("oauth2", providerId, expiresAt);
+            } else {
+                tokenLifecycleMonitor.issued("oauth2", providerId, expiresAt);
+            }
+        }
+        LoginTracer.getInstance().finish("oauth2", providerId, LoginTracer.STATUS_SUCCESS);
 
-        if (call == null) {
+        CompletableFuture<JSObject> pending = answer.get();
+        if (pending == null) {
             return;
         }
 
@@ -1377,9 +1842,9 @@ public class OAuth2Provider implements SocialProvider {
             JSObject response = new JSObject();
             response.put("provider", "oauth2");
             response.put("result", result);
-            call.resolve(response);
+            pending.complete(response);
         } else {
-            call.resolve(result);
+            pending.complete(result);
         }
     }
 
@@ -1388,7 +1853,13 @@ public class OAuth2Provider implements SocialProvider {
         void onError(String message);
     }
 
-    private void fetchResource(OAuth2ProviderConfig config, String accessToken, ResourceCallback callback) {
+    private void fetchResource(
+        String providerId,
+        OAuth2ProviderConfig config,
+        String accessToken,
+        CancellationScope cancellation,
+        ResourceCallback callback
+    ) {
         Request.Builder requestBuilder = new Request.Builder().url(config.resourceUrl).addHeader("Authorization", "Bearer " + accessToken);
 
         if (config.additionalResourceHeaders != null) {
@@ -1397,42 +1868,60 @@ public class OAuth2Provider implements SocialProvider {
             }
         }
 
-        httpClient
-            .newCall(requestBuilder.build())
+        LoginTracer.getInstance().startSpan("oauth2", providerId, "fetchResource");
+        HttpResilience.getInstance()
             .enqueue(
+                httpClient,
+                requestBuilder.build(),
+                HttpResilience.RetryPolicy.IDEMPOTENT,
+                getDeadlines(providerId).start(OperationDeadlines.RESOURCE),
+                cancellation,
                 new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
-                        callback.onError("Failed to fetch resource: " + e.getMessage());
+                        LoginTracer.getInstance().endSpan("oauth2", providerId, "fetchResource", e.getMessage());
+                        stateLoop.execute(() -> callback.onError("Failed to fetch resource: " + e.getMessage()));
                     }
 
                     @Override
                     public void onResponse(Call call, Response response) throws IOException {
                         if (!response.isSuccessful()) {
-                            String errorBody = response.body() != null ? response.body().string() : "";
-                            callback.onError("Failed to fetch resource: " + errorBody);
+                            String errorBody = BoundedResponseBody.errorPreview(response.body());
+                            LoginTracer.getInstance().endSpan("oauth2", providerId, "fetchResource", "HTTP " + response.code());
+                            stateLoop.execute(() -> callback.onError("Failed to fetch resource: " + errorBody));
                             return;
                         }
-                        String responseBody = response.body() != null ? response.body().string() : "";
                         try {
-                            JSONObject data = new JSONObject(responseBody);
-                            callback.onSuccess(data);
+                            JSONObject data = BoundedResponseBody.readObject(response.body());
+                            LoginTracer.getInstance().endSpan("oauth2", providerId, "fetchResource");
+                            stateLoop.execute(() -> callback.onSuccess(data));
                         } catch (JSONException e) {
-                            callback.onError("Failed to parse resource response");
+                            LoginTracer.getInstance().endSpan("oauth2", providerId, "fetchResource", "invalid JSON");
+                            stateLoop.execute(() -> callback.onError("Failed to parse resource response"));
+                        } catch (IOException e) {
+                            LoginTracer.getInstance().endSpan("oauth2", providerId, "fetchResource", e.getMessage());
+                            stateLoop.execute(() -> callback.onError("Failed to read resource response: " + e.getMessage()));
                         }
                     }
                 }
             );
     }
 
-    private void persistTokens(
+    /**
+     * @param refreshedFrom see {@link #refreshWithToken}; ignored for logins, which always replace the session
+     * @return false when a refresh was dropped because the session changed while it was in flight
+     */
+    private boolean persistTokens(
         String providerId,
         String accessToken,
         String refreshToken,
         String idToken,
         String tokenType,
         long expiresAt,
-        List<String> scopes
+        List<String> scopes,
+        JSONObject resourceData,
+        boolean refreshed,
+        JSONObject refreshedFrom
     ) {
         try {
             JSONObject stored = new JSONObject();
@@ -1442,42 +1931,107 @@ public class OAuth2Provider implements SocialProvider {
             stored.put("refreshToken", refreshToken);
             stored.put("idToken", idToken);
             stored.put("scope", new JSONArray(scopes));
+            // The snapshot decides whether a refresh still applies, so it is written first.
+            String key = AccountStore.providerKey("oauth2", providerId);
+            if (!refreshed) {
+                sessionSnapshot.put(key, stored);
+            } else if (!sessionSnapshot.replace(key, refreshedFrom, stored)) {
+                return false;
+            }
             SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
             prefs.edit().putString(getTokenStorageKey(providerId), stored.toString()).apply();
+            saveAccount(providerId, idToken, resourceData, stored);
         } catch (JSONException e) {
             Log.w(LOG_TAG, "Failed to persist OAuth2 tokens", e);
         }
+        return true;
     }
 
-    private OAuth2StoredTokens loadStoredTokens(String providerId) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String raw = prefs.getString(getTokenStorageKey(providerId), null);
-        if (raw == null || raw.isEmpty()) {
-            return null;
+    /**
+     * Keep a copy of the session for switchAccount, keyed by the ID token's {@code sub}, else the resource's
+     * {@code sub}/{@code id}. A refresh without a new ID token updates the active account.
+     */
+    private void saveAccount(String providerId, String idToken, JSONObject resourceData, JSONObject session) {
+        if (accountStore == null) {
+            return;
         }
-        try {
-            JSONObject object = new JSONObject(raw);
-            String accessToken = object.optString("accessToken", null);
-            if (accessToken == null || accessToken.isEmpty()) {
-                return null;
-            }
-            return new OAuth2StoredTokens(
-                accessToken,
-                object.optString("refreshToken", null),
-                object.optString("idToken", null),
-                object.optLong("expiresAt", 0L),
-                object.optString("tokenType", "bearer")
-            );
-        } catch (JSONException e) {
-            Log.w(LOG_TAG, "Failed to parse stored OAuth2 tokens", e);
-            return null;
+        String key = AccountStore.providerKey("oauth2", providerId);
+        String subject = AccountStore.subjectFromIdToken(idToken);
+        String label = AccountStore.labelFromIdToken(idToken);
+        if (subject == null && resourceData != null) {
+            subject = resourceData.optString("sub", resourceData.optString("id", ""));
+            label = resourceData.optString("email", resourceData.optString("login", resourceData.optString("name", "")));
+        }
+        if (subject == null || subject.isEmpty()) {
+            subject = accountStore.activeSubject(key);
+        }
+        if (subject == null) {
+            // Nothing identifies the account; the single current session is all we keep.
+            return;
+        }
+        List<String> evicted = accountStore.save(key, subject, label == null || label.isEmpty() ? null : label, session);
+        if (!evicted.isEmpty() && providers.containsKey(providerId) && providers.get(providerId).logsEnabled) {
+            Log.d(LOG_TAG, "Evicted least recently used accounts for '" + providerId + "': " + evicted);
+        }
+    }
+
+    @Override
+    public void restoreSession(String providerId, JSONObject session) {
+        context
+            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putString(getTokenStorageKey(providerId), session.toString())
+            .apply();
+        sessionSnapshot.put(AccountStore.providerKey("oauth2", providerId), session);
+        if (tokenLifecycleMonitor != null) {
+            long expiresAt = session.optLong("expiresAt", 0);
+            tokenLifecycleMonitor.track("oauth2", providerId, expiresAt > 0 ? expiresAt : null);
         }
     }
 
+    private OAuth2StoredTokens loadStoredTokens(String providerId) {
+        return OAuth2StoredTokens.from(loadStoredSession(providerId));
+    }
+
+    /**
+     * The stored session as the snapshot holds it, for refreshes to replace; null when signed out.
+     */
+    private JSONObject loadStoredSession(String providerId) {
+        return sessionSnapshot.getOrSeed(AccountStore.providerKey("oauth2", providerId), () ->
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(getTokenStorageKey(providerId), null)
+        );
+    }
+
+    /**
+     * Reject the running login, unless another path (cancelLogin, a late callback) already answered it, and
+     * clear its state.
+     */
+    private void rejectPending(String message) {
+        rejectPending(message, null, null);
+    }
+
+    private void rejectPending(String message, String code, Exception e) {
+        CompletableFuture<JSObject> pending = pendingCall.take();
+        if (pending != null) {
+            ProviderException.reject(pending, message, code, e);
+        }
+        cleanupPending();
+    }
+
     private void cleanupPending() {
-        pendingCall = null;
+        if (pendingState != null) {
+            // No-op after a successful completeLogin; otherwise the login ended on an error path.
+            LoginTracer.getInstance().finish("oauth2", pendingState.providerId, LoginTracer.STATUS_ERROR);
+        }
+        if (prewarmHandle != null) {
+            prewarmHandle.cancel();
+            prewarmHandle = null;
+        }
         pendingState = null;
         pendingUseCustomTabs = false;
+        loginCancellation = null;
+        loginProviderId = null;
+        loginBridgeCall = null;
         clearPersistedCustomTabsState();
     }
 
@@ -1506,19 +2060,6 @@ public class OAuth2Provider implements SocialProvider {
         return "";
     }
 
-    private static String generateCodeVerifier() {
-        SecureRandom secureRandom = new SecureRandom();
-        byte[] code = new byte[64];
-        secureRandom.nextBytes(code);
-        return Base64.encodeToString(code, Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
-    }
-
-    private static String generateCodeChallenge(String verifier) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(verifier.getBytes(StandardCharsets.US_ASCII));
-        return Base64.encodeToString(hash, Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
-    }
-
     private static class OAuth2StoredTokens {
 
         final String accessToken;
@@ -1534,5 +2075,22 @@ public class OAuth2Provider implements SocialProvider {
             this.expiresAt = expiresAt;
             this.tokenType = tokenType;
         }
+
+        static OAuth2StoredTokens from(JSONObject object) {
+            if (object == null) {
+                return null;
+            }
+            String accessToken = object.optString("accessToken", null);
+            if (accessToken == null || accessToken.isEmpty()) {
+                return null;
+            }
+            return new OAuth2StoredTokens(
+                accessToken,
+                object.optString("refreshToken", null),
+                object.optString("idToken", null),
+                object.optLong("expiresAt", 0L),
+                object.optString("tokenType", "bearer")
+            );
+        }
     }
 }
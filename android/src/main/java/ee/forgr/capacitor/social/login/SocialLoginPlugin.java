@@ -2,7 +2,8 @@ package ee.forgr.capacitor.social.login;
 
 import android.content.Intent;
 import android.net.Uri;
-import android.util.Base64;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 import androidx.activity.result.ActivityResult;
 import androidx.browser.customtabs.CustomTabsIntent;
@@ -13,10 +14,29 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.ActivityCallback;
 import com.getcapacitor.annotation.CapacitorPlugin;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AccountSwitchable;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.BoundedResponseBody;
+import ee.forgr.capacitor.social.login.helpers.CancellationScope;
+import ee.forgr.capacitor.social.login.helpers.ClaimsCache;
 import ee.forgr.capacitor.social.login.helpers.DependencyAvailabilityChecker;
+import ee.forgr.capacitor.social.login.helpers.GraphProfileCache;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.HttpResilience;
+import ee.forgr.capacitor.social.login.helpers.LoginCancellable;
+import ee.forgr.capacitor.social.login.helpers.LoginTracer;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.SessionSnapshot;
 import ee.forgr.capacitor.social.login.helpers.SocialProvider;
-import java.nio.charset.StandardCharsets;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -27,16 +47,61 @@ public class SocialLoginPlugin extends Plugin {
     private final String pluginVersion = "8.4.5";
 
     public static String LOG_TAG = "CapgoSocialLogin";
+    private static final String PLUGIN_DESTROYED_MESSAGE = "Plugin destroyed";
+    private static final String PLUGIN_DESTROYED_CODE = "PLUGIN_DESTROYED";
     public HashMap<String, SocialProvider> socialProviderHashMap = new HashMap<>();
 
     private PluginCall openSecureWindowSavedCall;
     private String openSecureWindowRedirectUri;
     private Uri pendingOAuth2RedirectUri;
 
+    // Providers resolve the Activity through this on every use, so a recreated Activity is never pinned.
+    private final HostActivity hostActivity = new HostActivity(this::getActivity);
+
+    // Every provider state change, and every read of socialProviderHashMap, runs on this thread; see StateLoop.
+    private HandlerThread stateThread;
+    private StateLoop stateLoop;
+    private boolean destroyed = false;
+
+    private final TokenLifecycleMonitor tokenLifecycleMonitor = new TokenLifecycleMonitor((type, provider, providerId, expiresAt) -> {
+        JSObject event = new JSObject();
+        event.put("type", type);
+        event.put("provider", provider);
+        if (providerId != null) {
+            event.put("providerId", providerId);
+        }
+        if (expiresAt != null) {
+            event.put("expiresAt", expiresAt);
+        }
+        notifyListeners("tokenLifecycle", event);
+    });
+
     @PluginMethod
     public void initialize(PluginCall call) {
+        runOnStateLoop(call, () -> initializeProviders(call));
+    }
+
+    /**
+     * The body of {@link #initialize}; must run on the state loop. Package-private for InitializeBenchmarkTest.
+     */
+    void initializeProviders(PluginCall call) {
         // Set plugin instance for config access
         DependencyAvailabilityChecker.setPluginInstance(this);
+        BoundedResponseBody.setMaxBytes(getConfig().getInt("maxResponseBytes", (int) BoundedResponseBody.DEFAULT_MAX_BYTES));
+
+        // One read for every provider's stored session; the providers below restore from memory.
+        SessionSnapshot.getInstance(this.getContext()).load();
+
+        AccountStore accountStore = AccountStore.getInstance(this.getContext());
+        Integer maxAccountsPerProvider = call.getInt("maxAccountsPerProvider");
+        if (maxAccountsPerProvider != null) {
+            try {
+                accountStore.setMaxAccountsPerProvider(maxAccountsPerProvider);
+            } catch (IllegalArgumentException e) {
+                call.reject(e.getMessage());
+                return;
+            }
+        }
 
         JSObject apple = call.getObject("apple");
         if (apple != null) {
@@ -67,19 +132,40 @@ public class SocialLoginPlugin extends Plugin {
             AppleProvider appleProvider = new AppleProvider(
                 androidAppleRedirect,
                 androidAppleClientId,
-                this.getActivity(),
+                hostActivity,
                 this.getContext(),
                 useProperTokenExchange,
                 useBroadcastChannel
             );
 
+            appleProvider.setTokenLifecycleMonitor(tokenLifecycleMonitor);
+            appleProvider.setAccountStore(accountStore);
+            appleProvider.setStateLoop(stateLoop());
+            try {
+                appleProvider.setDeadlines(OperationDeadlines.fromConfig(apple.optJSONObject("timeouts")));
+            } catch (IllegalArgumentException e) {
+                call.reject("apple." + e.getMessage());
+                return;
+            }
             appleProvider.initialize();
             this.socialProviderHashMap.put("apple", appleProvider);
         }
 
         JSObject google = call.getObject("google");
         if (google != null) {
-            GoogleProvider googleProvider = new GoogleProvider(this.getActivity(), this.getContext());
+            // Check if Google dependencies are available
+            if (!DependencyAvailabilityChecker.isProviderAvailable("google")) {
+                call.reject(
+                    "Google provider is disabled. " +
+                        "Dependencies are not available. Ensure Google Play Services Auth dependencies are included in your app's build.gradle"
+                );
+                return;
+            }
+
+            GoogleProvider googleProvider = new GoogleProvider(hostActivity, this.getContext());
+            googleProvider.setTokenLifecycleMonitor(tokenLifecycleMonitor);
+            googleProvider.setAccountStore(accountStore);
+            googleProvider.setStateLoop(stateLoop());
             String googleClientId = google.getString("webClientId");
             if (googleClientId == null || googleClientId.isEmpty()) {
                 call.reject("google.clientId is null or empty");
@@ -99,6 +185,12 @@ public class SocialLoginPlugin extends Plugin {
                     call.reject("google.mode != (online || offline)");
                     return;
             }
+            try {
+                googleProvider.setDeadlines(OperationDeadlines.fromConfig(google.optJSONObject("timeouts")));
+            } catch (IllegalArgumentException e) {
+                call.reject("google." + e.getMessage());
+                return;
+            }
             googleProvider.initialize(googleClientId, mode, hostedDomain);
             this.socialProviderHashMap.put("google", googleProvider);
         }
@@ -124,7 +216,9 @@ public class SocialLoginPlugin extends Plugin {
                 call.reject("facebook.clientToken is null or empty");
                 return;
             }
-            FacebookProvider facebookProvider = new FacebookProvider(this.getActivity());
+            FacebookProvider facebookProvider = new FacebookProvider(hostActivity, this.getContext());
+            facebookProvider.setTokenLifecycleMonitor(tokenLifecycleMonitor);
+            facebookProvider.setStateLoop(stateLoop());
             try {
                 facebookProvider.initialize(facebook);
                 this.socialProviderHashMap.put("facebook", facebookProvider);
@@ -155,11 +249,14 @@ public class SocialLoginPlugin extends Plugin {
                 call.reject("twitter.redirectUrl is null or empty");
                 return;
             }
-            TwitterProvider twitterProvider = new TwitterProvider(this.getActivity(), this.getContext());
+            TwitterProvider twitterProvider = new TwitterProvider(hostActivity, this.getContext());
+            twitterProvider.setTokenLifecycleMonitor(tokenLifecycleMonitor);
+            twitterProvider.setAccountStore(accountStore);
+            twitterProvider.setStateLoop(stateLoop());
             try {
                 twitterProvider.initialize(twitter);
                 this.socialProviderHashMap.put("twitter", twitterProvider);
-            } catch (JSONException e) {
+            } catch (JSONException | IllegalArgumentException e) {
                 call.reject("Failed to initialize Twitter provider: " + e.getMessage());
                 return;
             }
@@ -168,7 +265,10 @@ public class SocialLoginPlugin extends Plugin {
         JSObject oauth2 = call.getObject("oauth2");
         if (oauth2 != null && oauth2.length() > 0) {
             // oauth2 is now a map of providerId -> config: { "github": {...}, "azure": {...} }
-            OAuth2Provider oauth2Provider = new OAuth2Provider(this.getActivity(), this.getContext());
+            OAuth2Provider oauth2Provider = new OAuth2Provider(hostActivity, this.getContext());
+            oauth2Provider.setTokenLifecycleMonitor(tokenLifecycleMonitor);
+            oauth2Provider.setAccountStore(accountStore);
+            oauth2Provider.setStateLoop(stateLoop());
             try {
                 java.util.List<String> errors = oauth2Provider.initializeProviders(oauth2);
                 if (!errors.isEmpty()) {
@@ -176,14 +276,10 @@ public class SocialLoginPlugin extends Plugin {
                     return;
                 }
                 this.socialProviderHashMap.put("oauth2", oauth2Provider);
-                oauth2Provider.setActivityLauncher((intent, requestCode) -> {
-                    PluginCall loginCall = oauth2Provider.getPendingCall();
-                    if (loginCall != null) {
-                        startActivityForResult(loginCall, intent, "handleOAuth2ActivityResult");
-                    } else {
-                        Log.e(LOG_TAG, "OAuth2 activityLauncher fired but pendingCall is null, cannot route result");
-                    }
-                });
+                // Only called for logins with a bridge call; native ones cannot use the WebView, see OAuth2Provider.
+                oauth2Provider.setActivityLauncher((intent, requestCode) ->
+                    startActivityForResult(oauth2Provider.getLoginBridgeCall(), intent, "handleOAuth2ActivityResult")
+                );
                 // Replay a redirect that arrived before initialize (cold start / process death)
                 boolean handledRedirect = false;
                 if (pendingOAuth2RedirectUri != null) {
@@ -208,263 +304,449 @@ public class SocialLoginPlugin extends Plugin {
 
     @PluginMethod
     public void login(PluginCall call) {
-        String providerStr = call.getString("provider", "");
-        if (providerStr == null || providerStr.isEmpty()) {
-            call.reject("provider not provided");
-        }
-
-        JSONObject options = call.getObject("options", new JSObject());
+        runOnStateLoop(call, () -> {
+            String providerStr = call.getString("provider", "");
+            if (providerStr == null || providerStr.isEmpty()) {
+                call.reject("provider not provided");
+            }
 
-        SocialProvider provider = this.socialProviderHashMap.get(providerStr);
-        if (provider == null) {
-            // Check if provider is disabled (dependencies not available)
-            if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
-                call.reject(
-                    String.format(
-                        "Provider '%s' is disabled. Dependencies are not available. " +
-                            "Ensure required dependencies are included in your app's build.gradle",
-                        providerStr
-                    )
-                );
-            } else {
-                call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+            JSONObject options = call.getObject("options", new JSObject());
+
+            SocialProvider provider = this.socialProviderHashMap.get(providerStr);
+            if (provider == null) {
+                // Check if provider is disabled (dependencies not available)
+                if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
+                    call.reject(
+                        String.format(
+                            "Provider '%s' is disabled. Dependencies are not available. " +
+                                "Ensure required dependencies are included in your app's build.gradle",
+                            providerStr
+                        )
+                    );
+                } else {
+                    call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+                }
+                return;
             }
-            return;
-        }
 
-        provider.login(call, options);
+            LoginTracer.getInstance().begin("login", providerStr, traceProviderId(providerStr, options.optString("providerId", null)));
+            provider.login(call, options);
+        });
     }
 
     @PluginMethod
     public void logout(PluginCall call) {
-        String providerStr = call.getString("provider", "");
-        if (providerStr == null || providerStr.isEmpty()) {
-            call.reject("provider not provided");
-        }
+        runOnStateLoop(call, () -> {
+            String providerStr = call.getString("provider", "");
+            if (providerStr == null || providerStr.isEmpty()) {
+                call.reject("provider not provided");
+            }
 
-        SocialProvider provider = this.socialProviderHashMap.get(providerStr);
-        if (provider == null) {
-            // Check if provider is disabled (dependencies not available)
-            if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
-                call.reject(
-                    String.format(
-                        "Provider '%s' is disabled. Dependencies are not available. " +
-                            "Ensure required dependencies are included in your app's build.gradle",
-                        providerStr
-                    )
-                );
-            } else {
-                call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+            SocialProvider provider = this.socialProviderHashMap.get(providerStr);
+            if (provider == null) {
+                // Check if provider is disabled (dependencies not available)
+                if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
+                    call.reject(
+                        String.format(
+                            "Provider '%s' is disabled. Dependencies are not available. " +
+                                "Ensure required dependencies are included in your app's build.gradle",
+                            providerStr
+                        )
+                    );
+                } else {
+                    call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+                }
+                return;
             }
-            return;
-        }
 
-        provider.logout(call);
+            LoginTracer.getInstance().begin("logout", providerStr, traceProviderId(providerStr, call.getString("providerId")));
+            provider.logout(call);
+        });
     }
 
     @PluginMethod
     public void getAuthorizationCode(PluginCall call) {
-        String providerStr = call.getString("provider", "");
-        if (providerStr == null || providerStr.isEmpty()) {
-            call.reject("provider not provided");
-        }
+        runOnStateLoop(call, () -> {
+            String providerStr = call.getString("provider", "");
+            if (providerStr == null || providerStr.isEmpty()) {
+                call.reject("provider not provided");
+            }
 
-        SocialProvider provider = this.socialProviderHashMap.get(providerStr);
-        if (provider == null) {
-            // Check if provider is disabled (dependencies not available)
-            if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
-                call.reject(
-                    String.format(
-                        "Provider '%s' is disabled. Dependencies are not available. " +
-                            "Ensure required dependencies are included in your app's build.gradle",
-                        providerStr
-                    )
-                );
-            } else {
-                call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+            SocialProvider provider = this.socialProviderHashMap.get(providerStr);
+            if (provider == null) {
+                // Check if provider is disabled (dependencies not available)
+                if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
+                    call.reject(
+                        String.format(
+                            "Provider '%s' is disabled. Dependencies are not available. " +
+                                "Ensure required dependencies are included in your app's build.gradle",
+                            providerStr
+                        )
+                    );
+                } else {
+                    call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+                }
+                return;
             }
-            return;
-        }
 
-        provider.getAuthorizationCode(call);
+            provider.getAuthorizationCode(call);
+        });
     }
 
     @PluginMethod
     public void isLoggedIn(PluginCall call) {
-        String providerStr = call.getString("provider", "");
-        if (providerStr == null || providerStr.isEmpty()) {
-            call.reject("provider not provided");
-        }
+        runOnStateLoop(call, () -> {
+            String providerStr = call.getString("provider", "");
+            if (providerStr == null || providerStr.isEmpty()) {
+                call.reject("provider not provided");
+            }
 
-        SocialProvider provider = this.socialProviderHashMap.get(providerStr);
-        if (provider == null) {
-            // Check if provider is disabled (dependencies not available)
-            if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
-                call.reject(
-                    String.format(
-                        "Provider '%s' is disabled. Dependencies are not available. " +
-                            "Ensure required dependencies are included in your app's build.gradle",
-                        providerStr
-                    )
-                );
-            } else {
-                call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+            SocialProvider provider = this.socialProviderHashMap.get(providerStr);
+            if (provider == null) {
+                // Check if provider is disabled (dependencies not available)
+                if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
+                    call.reject(
+                        String.format(
+                            "Provider '%s' is disabled. Dependencies are not available. " +
+                                "Ensure required dependencies are included in your app's build.gradle",
+                            providerStr
+                        )
+                    );
+                } else {
+                    call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+                }
+                return;
             }
-            return;
-        }
 
-        provider.isLoggedIn(call);
+            provider.isLoggedIn(call);
+        });
     }
 
     @PluginMethod
     public void refresh(PluginCall call) {
-        String providerStr = call.getString("provider", "");
-        if (providerStr == null || providerStr.isEmpty()) {
-            call.reject("provider not provided");
-        }
+        runOnStateLoop(call, () -> {
+            String providerStr = call.getString("provider", "");
+            if (providerStr == null || providerStr.isEmpty()) {
+                call.reject("provider not provided");
+            }
 
-        SocialProvider provider = this.socialProviderHashMap.get(providerStr);
-        if (provider == null) {
-            // Check if provider is disabled (dependencies not available)
-            if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
-                call.reject(
-                    String.format(
-                        "Provider '%s' is disabled. Dependencies are not available. " +
-                            "Ensure required dependencies are included in your app's build.gradle",
-                        providerStr
-                    )
-                );
-            } else {
-                call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+            SocialProvider provider = this.socialProviderHashMap.get(providerStr);
+            if (provider == null) {
+                // Check if provider is disabled (dependencies not available)
+                if (!DependencyAvailabilityChecker.isProviderAvailable(providerStr)) {
+                    call.reject(
+                        String.format(
+                            "Provider '%s' is disabled. Dependencies are not available. " +
+                                "Ensure required dependencies are included in your app's build.gradle",
+                            providerStr
+                        )
+                    );
+                } else {
+                    call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+                }
+                return;
             }
-            return;
-        }
 
-        provider.refresh(call);
+            JSObject refreshOptions = call.getObject("options");
+            LoginTracer.getInstance()
+                .begin("refresh", providerStr, traceProviderId(providerStr, refreshOptions != null ? refreshOptions.getString("providerId") : null));
+            provider.refresh(call);
+        });
+    }
+
+    @PluginMethod
+    public void cancelLogin(PluginCall call) {
+        runOnStateLoop(call, () -> {
+            String providerStr = call.getString("provider", "");
+            SocialProvider provider = this.socialProviderHashMap.get(providerStr);
+            if (provider == null) {
+                call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", providerStr));
+                return;
+            }
+            if (!(provider instanceof LoginCancellable)) {
+                call.reject(String.format("Provider '%s' does not support cancelling a login", providerStr));
+                return;
+            }
+            // Cancel-to-ready: once cancelLogin returns, the provider accepts a new login.
+            long started = System.nanoTime();
+            boolean cancelled = ((LoginCancellable) provider).cancelLogin(call.getString("providerId"));
+            long cancelToReady = System.nanoTime() - started;
+            JSObject ret = new JSObject();
+            ret.put("cancelled", cancelled);
+            if (cancelled) {
+                CancellationScope.recordCancelToReady(cancelToReady);
+                ret.put("cancelToReadyMs", cancelToReady / 1_000_000.0);
+            }
+            call.resolve(ret);
+        });
     }
 
     @PluginMethod
     public void providerSpecificCall(PluginCall call) {
-        String customCall = call.getString("call");
-        if (customCall == null || customCall.isEmpty()) {
-            call.reject("Call is required");
-            return;
-        }
+        runOnStateLoop(call, () -> {
+            String customCall = call.getString("call");
+            if (customCall == null || customCall.isEmpty()) {
+                call.reject("Call is required");
+                return;
+            }
 
-        switch (customCall) {
-            case "facebook#getProfile":
-                JSObject options = call.getObject("options", new JSObject());
-                if (options == null) {
-                    call.reject("Options are required");
-                    return;
-                }
+            switch (customCall) {
+                case "facebook#getProfile":
+                    JSObject options = call.getObject("options", new JSObject());
+                    if (options == null) {
+                        call.reject("Options are required");
+                        return;
+                    }
 
-                JSONArray fieldsArray = null;
-                try {
-                    fieldsArray = options.getJSONArray("fields");
-                } catch (JSONException e) {
-                    call.reject("Fields array is required");
-                    return;
-                }
+                    JSONArray fieldsArray = null;
+                    try {
+                        fieldsArray = options.getJSONArray("fields");
+                    } catch (JSONException e) {
+                        call.reject("Fields array is required");
+                        return;
+                    }
 
-                SocialProvider provider = this.socialProviderHashMap.get("facebook");
-                if (provider == null || !(provider instanceof FacebookProvider)) {
-                    call.reject("Facebook provider not initialized");
-                    return;
-                }
+                    SocialProvider provider = this.socialProviderHashMap.get("facebook");
+                    if (provider == null || !(provider instanceof FacebookProvider)) {
+                        call.reject("Facebook provider not initialized");
+                        return;
+                    }
 
-                ((FacebookProvider) provider).getProfile(fieldsArray, call);
-                break;
-            default:
-                call.reject("Invalid call. Supported calls: facebook#getProfile");
-        }
+                    ((FacebookProvider) provider).getProfile(fieldsArray, call);
+                    break;
+                case "facebook#verifyIdToken":
+                    SocialProvider facebookProvider = this.socialProviderHashMap.get("facebook");
+                    if (!(facebookProvider instanceof FacebookProvider)) {
+                        call.reject("Facebook provider not initialized");
+                        return;
+                    }
+                    JSObject verifyOptions = call.getObject("options", new JSObject());
+                    ((FacebookProvider) facebookProvider).verifyIdToken(verifyOptions != null ? verifyOptions.getString("idToken") : null, call);
+                    break;
+                default:
+                    call.reject("Invalid call. Supported calls: facebook#getProfile, facebook#verifyIdToken");
+            }
+        });
     }
 
     @ActivityCallback
     private void handleOAuth2ActivityResult(PluginCall call, ActivityResult result) {
-        if (call == null) {
-            Log.e(LOG_TAG, "OAuth2 activity result: saved call is null");
-            return;
-        }
+        stateLoop().execute(() -> {
+            if (call == null) {
+                Log.e(LOG_TAG, "OAuth2 activity result: saved call is null");
+                return;
+            }
 
-        SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
-        if (!(oauth2Provider instanceof OAuth2Provider)) {
-            call.reject("OAuth2 provider not found");
-            return;
-        }
+            SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
+            if (!(oauth2Provider instanceof OAuth2Provider)) {
+                call.reject("OAuth2 provider not found");
+                return;
+            }
 
-        OAuth2Provider p = (OAuth2Provider) oauth2Provider;
-        if (p.getPendingCall() == null) {
-            p.setPendingCall(call);
-        }
+            OAuth2Provider p = (OAuth2Provider) oauth2Provider;
+            if (OAuth2LoginActivity.isLoginCancelled(result.getData())) {
+                // The WebView was closed by cancelLogin, which already rejected the call.
+                return;
+            }
+            p.restorePendingCall(call);
 
-        Intent data = result.getData();
-        int resultCode = result.getResultCode();
-        p.handleActivityResult(OAuth2Provider.REQUEST_CODE, resultCode, data);
+            Intent data = result.getData();
+            int resultCode = result.getResultCode();
+            p.handleActivityResult(OAuth2Provider.REQUEST_CODE, resultCode, data);
+        });
     }
 
     public void handleGoogleLoginIntent(int requestCode, Intent intent) {
-        try {
-            SocialProvider provider = socialProviderHashMap.get("google");
-            if (!(provider instanceof GoogleProvider)) {
-                Log.e(SocialLoginPlugin.LOG_TAG, "Provider is not a Google provider (could be null)");
-                return;
+        stateLoop().execute(() -> {
+            try {
+                SocialProvider provider = socialProviderHashMap.get("google");
+                if (!(provider instanceof GoogleProvider)) {
+                    Log.e(SocialLoginPlugin.LOG_TAG, "Provider is not a Google provider (could be null)");
+                    return;
+                }
+                ((GoogleProvider) provider).handleAuthorizationIntent(requestCode, intent);
+            } catch (Throwable t) {
+                Log.e(SocialLoginPlugin.LOG_TAG, "Cannot handle Google login intent");
             }
-            ((GoogleProvider) provider).handleAuthorizationIntent(requestCode, intent);
-        } catch (Throwable t) {
-            Log.e(SocialLoginPlugin.LOG_TAG, "Cannot handle Google login intent");
-        }
+        });
     }
 
     public void handleAppleLoginIntent(Intent intent) {
-        try {
-            SocialProvider provider = socialProviderHashMap.get("apple");
-            if (!(provider instanceof AppleProvider)) {
-                Log.e(SocialLoginPlugin.LOG_TAG, "Provider is not an apple provider (could be null)");
-                return;
+        stateLoop().execute(() -> {
+            try {
+                SocialProvider provider = socialProviderHashMap.get("apple");
+                if (!(provider instanceof AppleProvider)) {
+                    Log.e(SocialLoginPlugin.LOG_TAG, "Provider is not an apple provider (could be null)");
+                    return;
+                }
+                ((AppleProvider) provider).handleIntent(intent);
+            } catch (Throwable t) {
+                Log.e(SocialLoginPlugin.LOG_TAG, "Cannot handle apple login intent");
             }
-            ((AppleProvider) provider).handleIntent(intent);
-        } catch (Throwable t) {
-            Log.e(SocialLoginPlugin.LOG_TAG, "Cannot handle apple login intent");
-        }
+        });
     }
 
     @Override
     protected void handleOnActivityResult(int requestCode, int resultCode, Intent data) {
         super.handleOnActivityResult(requestCode, resultCode, data);
 
-        Log.d(LOG_TAG, "SocialLoginPlugin.handleOnActivityResult called (legacy fallback path)");
+        stateLoop().execute(() -> {
+            Log.d(LOG_TAG, "SocialLoginPlugin.handleOnActivityResult called (legacy fallback path)");
 
-        // Handle Facebook login result
-        SocialProvider facebookProvider = socialProviderHashMap.get("facebook");
-        if (facebookProvider instanceof FacebookProvider) {
-            boolean handled = ((FacebookProvider) facebookProvider).handleOnActivityResult(requestCode, resultCode, data);
-            if (handled) {
-                Log.d(LOG_TAG, "Facebook activity result handled");
-                return;
+            // Handle Facebook login result
+            SocialProvider facebookProvider = socialProviderHashMap.get("facebook");
+            if (facebookProvider instanceof FacebookProvider) {
+                boolean handled = ((FacebookProvider) facebookProvider).handleOnActivityResult(requestCode, resultCode, data);
+                if (handled) {
+                    Log.d(LOG_TAG, "Facebook activity result handled");
+                    return;
+                }
             }
-        }
 
-        SocialProvider twitterProvider = socialProviderHashMap.get("twitter");
-        if (twitterProvider instanceof TwitterProvider) {
-            boolean handled = ((TwitterProvider) twitterProvider).handleActivityResult(requestCode, resultCode, data);
-            if (handled) {
-                Log.d(LOG_TAG, "Twitter activity result handled");
-                return;
+            SocialProvider twitterProvider = socialProviderHashMap.get("twitter");
+            if (twitterProvider instanceof TwitterProvider) {
+                boolean handled = ((TwitterProvider) twitterProvider).handleActivityResult(requestCode, resultCode, data);
+                if (handled) {
+                    Log.d(LOG_TAG, "Twitter activity result handled");
+                    return;
+                }
             }
+
+            SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
+            if (oauth2Provider instanceof OAuth2Provider) {
+                boolean handled = ((OAuth2Provider) oauth2Provider).handleActivityResult(requestCode, resultCode, data);
+                if (handled) {
+                    Log.d(LOG_TAG, "OAuth2 activity result handled");
+                    return;
+                }
+            }
+
+            // Handle other providers' activity results if needed
+            Log.d(LOG_TAG, "Activity result not handled by any provider");
+        });
+    }
+
+    /**
+     * Future-based access to a provider for native callers, e.g. an app's own Java code composing a refresh with
+     * its API calls. The provider is looked up on the state loop for each call, so a call made before
+     * {@code provider} is initialized fails, and one made after a re-initialization reaches the new instance.
+     */
+    public AsyncSocialProvider getAsyncProvider(String provider) {
+        return new StateLoopProvider(provider);
+    }
+
+    /**
+     * Posts a native caller's provider calls to the state loop, as the bridge's calls are.
+     */
+    private final class StateLoopProvider implements AsyncSocialProvider {
+
+        private final String name;
+
+        StateLoopProvider(String name) {
+            this.name = name;
         }
 
-        SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
-        if (oauth2Provider instanceof OAuth2Provider) {
-            boolean handled = ((OAuth2Provider) oauth2Provider).handleActivityResult(requestCode, resultCode, data);
-            if (handled) {
-                Log.d(LOG_TAG, "OAuth2 activity result handled");
-                return;
+        @Override
+        public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+            return onStateLoop((provider) -> provider.loginAsync(options));
+        }
+
+        @Override
+        public CompletableFuture<Void> logoutAsync(JSONObject options) {
+            return onStateLoop((provider) -> provider.logoutAsync(options));
+        }
+
+        @Override
+        public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+            return onStateLoop((provider) -> provider.isLoggedInAsync(options));
+        }
+
+        @Override
+        public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+            return onStateLoop((provider) -> provider.refreshAsync(options));
+        }
+
+        @Override
+        public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+            return onStateLoop((provider) -> provider.getAuthorizationCodeAsync(options));
+        }
+
+        /**
+         * Start {@code call} on the state loop with the provider initialized there; a call that throws fails the
+         * future instead of leaving it pending.
+         */
+        private <T> CompletableFuture<T> onStateLoop(Function<AsyncSocialProvider, CompletableFuture<T>> call) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                stateLoop().execute(() -> {
+                    SocialProvider provider = socialProviderHashMap.get(name);
+                    if (!(provider instanceof AsyncSocialProvider)) {
+                        ProviderException.reject(result, String.format("Cannot find provider '%s'. Provider was not initialized.", name));
+                        return;
+                    }
+                    try {
+                        call.apply((AsyncSocialProvider) provider).whenComplete((value, error) -> {
+                            if (error != null) {
+                                result.completeExceptionally(
+                                    error instanceof CompletionException && error.getCause() != null ? error.getCause() : error
+                                );
+                            } else {
+                                result.complete(value);
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        Log.e(LOG_TAG, "Native provider call failed", e);
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                ProviderException.reject(result, PLUGIN_DESTROYED_MESSAGE, PLUGIN_DESTROYED_CODE, e);
             }
+            return result;
         }
+    }
 
-        // Handle other providers' activity results if needed
-        Log.d(LOG_TAG, "Activity result not handled by any provider");
+    /**
+     * @throws RejectedExecutionException once the plugin has been destroyed
+     */
+    private synchronized StateLoop stateLoop() {
+        if (destroyed) {
+            throw new RejectedExecutionException(PLUGIN_DESTROYED_MESSAGE);
+        }
+        if (stateLoop == null) {
+            stateThread = new HandlerThread("CapgoSocialLoginState");
+            stateThread.start();
+            Handler handler = new Handler(stateThread.getLooper());
+            stateLoop = new StateLoop(
+                (task) -> {
+                    // post() fails once the thread has quit; the task would otherwise be dropped silently.
+                    if (!handler.post(task)) {
+                        throw new RejectedExecutionException(PLUGIN_DESTROYED_MESSAGE);
+                    }
+                },
+                (e) -> Log.e(LOG_TAG, "State loop task failed", e)
+            );
+        }
+        return stateLoop;
+    }
+
+    /**
+     * Run {@code body} on the state loop. A body that throws rejects {@code call}, as the bridge does for plugin
+     * methods that throw, instead of leaving it unanswered; so does a plugin that has already been destroyed.
+     */
+    private void runOnStateLoop(PluginCall call, Runnable body) {
+        try {
+            stateLoop().execute(() -> {
+                try {
+                    body.run();
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Plugin call " + call.getMethodName() + " failed", e);
+                    call.reject(e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            call.reject(PLUGIN_DESTROYED_MESSAGE, PLUGIN_DESTROYED_CODE, e);
+        }
     }
 
     @PluginMethod
@@ -479,25 +761,131 @@ public class SocialLoginPlugin extends Plugin {
     }
 
     @PluginMethod
-    public void refreshToken(final PluginCall call) {
-        String provider = call.getString("provider", "");
-        if (!"oauth2".equals(provider)) {
-            call.reject("refreshToken is only implemented for oauth2");
+    public void getDiagnostics(final PluginCall call) {
+        runOnStateLoop(call, () -> {
+            try {
+                final JSObject ret = new JSObject();
+                ret.put("network", HttpResilience.getInstance().getStats());
+                ret.put("claimsCache", ClaimsCache.getInstance().getStats());
+                ret.put("sessionSnapshot", SessionSnapshot.getInstance(this.getContext()).getStats());
+                ret.put("graphProfileCache", GraphProfileCache.getInstance().getStats());
+                ret.put("cancellation", CancellationScope.getStats());
+                ret.put("stateLoop", stateLoop().getStats());
+                SocialProvider facebookProvider = socialProviderHashMap.get("facebook");
+                if (facebookProvider instanceof FacebookProvider) {
+                    ret.put("facebookBootstrap", ((FacebookProvider) facebookProvider).getBootstrapStats());
+                }
+                call.resolve(ret);
+            } catch (final Exception e) {
+                call.reject("Could not get diagnostics", e);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void getTraceTimeline(final PluginCall call) {
+        int limit = call.getInt("limit", 20);
+        if (limit <= 0) {
+            call.reject("limit must be greater than 0");
             return;
         }
-        String providerId = call.getString("providerId");
-        if (providerId == null || providerId.isEmpty()) {
-            call.reject("providerId is required for oauth2 refreshToken");
-            return;
+        JSObject ret = new JSObject();
+        ret.put("traces", LoginTracer.getInstance().getTimeline(limit));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void listAccounts(final PluginCall call) {
+        runOnStateLoop(call, () -> {
+            String provider = call.getString("provider", "");
+            String providerId = call.getString("providerId");
+            if (accountSwitchable(call, provider, providerId) == null) {
+                return;
+            }
+            JSObject ret = new JSObject();
+            ret.put("accounts", AccountStore.getInstance(getContext()).list(accountKey(provider, providerId)));
+            call.resolve(ret);
+        });
+    }
+
+    @PluginMethod
+    public void switchAccount(final PluginCall call) {
+        runOnStateLoop(call, () -> {
+            String provider = call.getString("provider", "");
+            String providerId = call.getString("providerId");
+            AccountSwitchable switchable = accountSwitchable(call, provider, providerId);
+            if (switchable == null) {
+                return;
+            }
+            String subject = call.getString("subject");
+            if (subject == null || subject.isEmpty()) {
+                call.reject("subject is required");
+                return;
+            }
+            JSONObject session = AccountStore.getInstance(getContext()).activate(accountKey(provider, providerId), subject);
+            if (session == null) {
+                call.reject(String.format("No stored account '%s' for provider '%s'", subject, provider));
+                return;
+            }
+            try {
+                switchable.restoreSession("oauth2".equals(provider) ? providerId : null, session);
+            } catch (JSONException e) {
+                call.reject("Failed to switch account", e);
+                return;
+            }
+            JSObject ret = new JSObject();
+            ret.put("subject", subject);
+            call.resolve(ret);
+        });
+    }
+
+    /**
+     * The initialized provider behind an account call, or null after rejecting {@code call}.
+     */
+    private AccountSwitchable accountSwitchable(PluginCall call, String provider, String providerId) {
+        if ("oauth2".equals(provider) && (providerId == null || providerId.isEmpty())) {
+            call.reject("providerId is required for oauth2 accounts");
+            return null;
         }
-        SocialProvider p = socialProviderHashMap.get("oauth2");
-        if (!(p instanceof OAuth2Provider)) {
-            call.reject("OAuth2 provider is not initialized");
-            return;
+        SocialProvider p = socialProviderHashMap.get(provider);
+        if (p == null) {
+            call.reject(String.format("Cannot find provider '%s'. Provider was not initialized.", provider));
+            return null;
+        }
+        if (!(p instanceof AccountSwitchable)) {
+            call.reject(String.format("Provider '%s' does not support multiple accounts", provider));
+            return null;
         }
-        String refreshToken = call.getString("refreshToken");
-        JSObject additionalParams = call.getObject("additionalParameters");
-        ((OAuth2Provider) p).refreshTokenRaw(call, providerId, refreshToken, additionalParams);
+        return (AccountSwitchable) p;
+    }
+
+    private static String accountKey(String provider, String providerId) {
+        return AccountStore.providerKey(provider, "oauth2".equals(provider) ? providerId : null);
+    }
+
+    @PluginMethod
+    public void refreshToken(final PluginCall call) {
+        runOnStateLoop(call, () -> {
+            String provider = call.getString("provider", "");
+            if (!"oauth2".equals(provider)) {
+                call.reject("refreshToken is only implemented for oauth2");
+                return;
+            }
+            String providerId = call.getString("providerId");
+            if (providerId == null || providerId.isEmpty()) {
+                call.reject("providerId is required for oauth2 refreshToken");
+                return;
+            }
+            SocialProvider p = socialProviderHashMap.get("oauth2");
+            if (!(p instanceof OAuth2Provider)) {
+                call.reject("OAuth2 provider is not initialized");
+                return;
+            }
+            String refreshToken = call.getString("refreshToken");
+            JSObject additionalParams = call.getObject("additionalParameters");
+            LoginTracer.getInstance().begin("refresh", "oauth2", providerId);
+            AsyncSocialProvider.answer(call, ((OAuth2Provider) p).refreshTokenRaw(providerId, refreshToken, additionalParams));
+        });
     }
 
     @PluginMethod
@@ -516,22 +904,22 @@ public class SocialLoginPlugin extends Plugin {
             return;
         }
         try {
-            String[] parts = idToken.split("\\\\.");
-            if (parts.length < 2) {
-                call.reject("Invalid JWT");
-                return;
-            }
-            byte[] decoded = Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
-            String json = new String(decoded, StandardCharsets.UTF_8);
-            JSONObject claims = new JSONObject(json);
+            JSONObject claims = ClaimsCache.getInstance().claims(idToken);
             JSObject ret = new JSObject();
             ret.put("claims", claims);
             call.resolve(ret);
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid JWT");
         } catch (Exception e) {
             call.reject("Failed to decode idToken", e);
         }
     }
 
+    // Only OAuth2 traces are scoped per providerId; the built-in providers have a single session each.
+    private static String traceProviderId(String provider, String providerId) {
+        return "oauth2".equals(provider) && providerId != null && !providerId.isEmpty() ? providerId : null;
+    }
+
     // Capacitor's PluginCall.getLong() only reads Java Long values. JS numbers that
     // fit in 32 bits cross the bridge as Integer, so Number coercion is required.
     static Long longOptionFromCall(PluginCall call, String key) {
@@ -583,24 +971,26 @@ public class SocialLoginPlugin extends Plugin {
 
     @PluginMethod
     public void openSecureWindow(PluginCall call) {
-        String authEndpoint = call.getString("authEndpoint");
+        runOnStateLoop(call, () -> {
+            String authEndpoint = call.getString("authEndpoint");
 
-        if (authEndpoint == null || authEndpoint.isEmpty()) {
-            call.reject("Auth endpoint is required");
-            return;
-        }
+            if (authEndpoint == null || authEndpoint.isEmpty()) {
+                call.reject("Auth endpoint is required");
+                return;
+            }
 
-        String redirectUri = call.getString("redirectUri");
-        if (redirectUri == null || redirectUri.isEmpty()) {
-            call.reject("Redirect URI is required");
-            return;
-        }
+            String redirectUri = call.getString("redirectUri");
+            if (redirectUri == null || redirectUri.isEmpty()) {
+                call.reject("Redirect URI is required");
+                return;
+            }
 
-        openSecureWindowSavedCall = call;
-        openSecureWindowRedirectUri = redirectUri;
+            openSecureWindowSavedCall = call;
+            openSecureWindowRedirectUri = redirectUri;
 
-        // Launch OAuth in custom tab
-        launchCustomTab(authEndpoint);
+            // Launch OAuth in custom tab
+            launchCustomTab(authEndpoint);
+        });
     }
 
     private void launchCustomTab(String url) {
@@ -624,15 +1014,32 @@ public class SocialLoginPlugin extends Plugin {
     protected void handleOnResume() {
         super.handleOnResume();
 
-        SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
-        if (oauth2Provider instanceof OAuth2Provider) {
-            ((OAuth2Provider) oauth2Provider).handleUserReturnedWithoutCallback();
-        }
+        stateLoop().execute(() -> {
+            SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
+            if (oauth2Provider instanceof OAuth2Provider) {
+                ((OAuth2Provider) oauth2Provider).handleUserReturnedWithoutCallback();
+            }
 
-        // If we have a saved call and user returned without callback, reject
-        if (openSecureWindowSavedCall != null) {
-            openSecureWindowSavedCall.reject("OAuth cancelled or no callback received");
-            openSecureWindowSavedCall = null;
+            // If we have a saved call and user returned without callback, reject
+            if (openSecureWindowSavedCall != null) {
+                openSecureWindowSavedCall.reject("OAuth cancelled or no callback received");
+                openSecureWindowSavedCall = null;
+            }
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        tokenLifecycleMonitor.shutdown();
+        synchronized (this) {
+            destroyed = true;
+            if (stateThread != null) {
+                // Calls already posted still run; anything posted after this is rejected.
+                stateThread.quitSafely();
+                stateThread = null;
+                stateLoop = null;
+            }
         }
     }
 
@@ -649,37 +1056,39 @@ public class SocialLoginPlugin extends Plugin {
             return;
         }
 
-        SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
-        if (oauth2Provider instanceof OAuth2Provider) {
-            if (((OAuth2Provider) oauth2Provider).handleRedirectUri(uri)) {
-                return;
+        stateLoop().execute(() -> {
+            SocialProvider oauth2Provider = socialProviderHashMap.get("oauth2");
+            if (oauth2Provider instanceof OAuth2Provider) {
+                if (((OAuth2Provider) oauth2Provider).handleRedirectUri(uri)) {
+                    return;
+                }
+            } else {
+                // Buffer until SocialLogin.initialize() registers the oauth2 provider
+                pendingOAuth2RedirectUri = uri;
             }
-        } else {
-            // Buffer until SocialLogin.initialize() registers the oauth2 provider
-            pendingOAuth2RedirectUri = uri;
-        }
 
-        if (openSecureWindowRedirectUri == null) {
-            return;
-        }
-
-        if (uri.getHost() == null || !uri.toString().startsWith(openSecureWindowRedirectUri)) {
-            return;
-        }
+            if (openSecureWindowRedirectUri == null) {
+                return;
+            }
 
-        try {
-            // Resolve the original call with the callback url
-            if (openSecureWindowSavedCall != null) {
-                final JSObject ret = new JSObject();
-                ret.put("redirectedUri", uri.toString());
-                openSecureWindowSavedCall.resolve(ret);
-                openSecureWindowSavedCall = null;
+            if (uri.getHost() == null || !uri.toString().startsWith(openSecureWindowRedirectUri)) {
+                return;
             }
-        } catch (Exception e) {
-            if (openSecureWindowSavedCall != null) {
-                openSecureWindowSavedCall.reject("Failed to process OAuth callback", e);
-                openSecureWindowSavedCall = null;
+
+            try {
+                // Resolve the original call with the callback url
+                if (openSecureWindowSavedCall != null) {
+                    final JSObject ret = new JSObject();
+                    ret.put("redirectedUri", uri.toString());
+                    openSecureWindowSavedCall.resolve(ret);
+                    openSecureWindowSavedCall = null;
+                }
+            } catch (Exception e) {
+                if (openSecureWindowSavedCall != null) {
+                    openSecureWindowSavedCall.reject("Failed to process OAuth callback", e);
+                    openSecureWindowSavedCall = null;
+                }
             }
-        }
+        });
     }
 }
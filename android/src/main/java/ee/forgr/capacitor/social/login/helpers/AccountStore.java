@@ -0,0 +1,280 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.content.Context;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Signed-in sessions per provider (and OAuth2 providerId) and subject, so switching accounts is a local
+ * lookup instead of a logout and a new login.
+ * <p>
+ * Providers keep writing their current session to their own storage as before and hand a copy to
+ * {@link #save}; {@link #activate} returns a stored copy for the provider to write back. Each provider keeps
+ * at most {@link #setMaxAccountsPerProvider max} accounts; saving one more evicts the least recently used.
+ */
+public final class AccountStore {
+
+    private static final String LOG_TAG = "AccountStore";
+    static final int DEFAULT_MAX_ACCOUNTS = 5;
+    private static final String PREFS_NAME = "CapgoSocialLoginAccounts";
+
+    private static AccountStore instance;
+
+    private static final class Account {
+
+        final String subject;
+        String label;
+        long lastUsedAt;
+        JSONObject session;
+
+        Account(String subject, String label, long lastUsedAt, JSONObject session) {
+            this.subject = subject;
+            this.label = label;
+            this.lastUsedAt = lastUsedAt;
+            this.session = session;
+        }
+    }
+
+    private static final class ProviderAccounts {
+
+        // Most recently used first.
+        final List<Account> accounts = new ArrayList<>();
+        String activeSubject;
+
+        Account find(String subject) {
+            for (Account account : accounts) {
+                if (account.subject.equals(subject)) {
+                    return account;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final PrefsStorage storage;
+    private final LongSupplier clock;
+    private final Map<String, ProviderAccounts> loaded = new HashMap<>();
+    private int maxAccountsPerProvider = DEFAULT_MAX_ACCOUNTS;
+
+    public static synchronized AccountStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new AccountStore(PrefsStorage.of(context, PREFS_NAME), System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    AccountStore(PrefsStorage storage, LongSupplier clock) {
+        this.storage = storage;
+        this.clock = clock;
+    }
+
+    /**
+     * Storage key of a provider: {@code provider}, or {@code oauth2:<providerId>}.
+     */
+    public static String providerKey(String provider, String providerId) {
+        return providerId == null ? provider : provider + ":" + providerId;
+    }
+
+    /**
+     * The {@code sub} claim of an ID token, or null when there is no readable token.
+     */
+    public static String subjectFromIdToken(String idToken) {
+        return claim(idToken, "sub");
+    }
+
+    /**
+     * A label for account pickers from an ID token: its email, else its name.
+     */
+    public static String labelFromIdToken(String idToken) {
+        String email = claim(idToken, "email");
+        return email != null ? email : claim(idToken, "name");
+    }
+
+    private static String claim(String idToken, String name) {
+        if (idToken == null || idToken.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = ClaimsCache.getInstance().claims(idToken).optString(name, "");
+            return value.isEmpty() ? null : value;
+        } catch (JSONException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies from the next {@link #save} on.
+     */
+    public synchronized void setMaxAccountsPerProvider(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("maxAccountsPerProvider must be greater than 0");
+        }
+        this.maxAccountsPerProvider = max;
+    }
+
+    /**
+     * Store {@code session} as {@code subject}'s current session and make it the active account.
+     *
+     * @param label optional human readable name (email, username) for account pickers
+     * @return subjects evicted to stay within the cap
+     */
+    public synchronized List<String> save(String providerKey, String subject, String label, JSONObject session) {
+        ProviderAccounts accounts = load(providerKey);
+        Account account = accounts.find(subject);
+        if (account == null) {
+            account = new Account(subject, label, clock.getAsLong(), session);
+        } else {
+            accounts.accounts.remove(account);
+            account.session = session;
+            account.lastUsedAt = clock.getAsLong();
+            if (label != null) {
+                account.label = label;
+            }
+        }
+        accounts.accounts.add(0, account);
+        accounts.activeSubject = subject;
+
+        List<String> evicted = new ArrayList<>();
+        while (accounts.accounts.size() > maxAccountsPerProvider) {
+            evicted.add(accounts.accounts.remove(accounts.accounts.size() - 1).subject);
+        }
+        store(providerKey, accounts);
+        return evicted;
+    }
+
+    /**
+     * Make {@code subject} the active account.
+     *
+     * @return its stored session, or null when the subject is unknown for this provider
+     */
+    public synchronized JSONObject activate(String providerKey, String subject) {
+        ProviderAccounts accounts = load(providerKey);
+        Account account = accounts.find(subject);
+        if (account == null) {
+            return null;
+        }
+        accounts.accounts.remove(account);
+        accounts.accounts.add(0, account);
+        account.lastUsedAt = clock.getAsLong();
+        accounts.activeSubject = subject;
+        store(providerKey, accounts);
+        return account.session;
+    }
+
+    public synchronized String activeSubject(String providerKey) {
+        return load(providerKey).activeSubject;
+    }
+
+    /**
+     * Forget the active account (logout). Other stored accounts are kept; none becomes active.
+     *
+     * @return the removed subject, or null when no account was active
+     */
+    public synchronized String removeActive(String providerKey) {
+        ProviderAccounts accounts = load(providerKey);
+        String subject = accounts.activeSubject;
+        if (subject == null) {
+            return null;
+        }
+        Account account = accounts.find(subject);
+        if (account != null) {
+            accounts.accounts.remove(account);
+        }
+        accounts.activeSubject = null;
+        store(providerKey, accounts);
+        return subject;
+    }
+
+    /**
+     * Stored accounts, most recently used first, without their sessions.
+     */
+    public synchronized JSONArray list(String providerKey) {
+        ProviderAccounts accounts = load(providerKey);
+        JSONArray result = new JSONArray();
+        for (Account account : accounts.accounts) {
+            result.put(
+                Stats.of(
+                    "subject",
+                    account.subject,
+                    "label",
+                    account.label,
+                    "lastUsedAt",
+                    account.lastUsedAt,
+                    "active",
+                    account.subject.equals(accounts.activeSubject)
+                )
+            );
+        }
+        return result;
+    }
+
+    private ProviderAccounts load(String providerKey) {
+        ProviderAccounts cached = loaded.get(providerKey);
+        if (cached != null) {
+            return cached;
+        }
+        ProviderAccounts accounts = new ProviderAccounts();
+        String raw = storage.read(providerKey);
+        if (raw != null && !raw.isEmpty()) {
+            try {
+                JSONObject object = new JSONObject(raw);
+                accounts.activeSubject = object.optString("active", null);
+                JSONArray entries = object.optJSONArray("accounts");
+                for (int i = 0; entries != null && i < entries.length(); i++) {
+                    JSONObject entry = entries.getJSONObject(i);
+                    accounts.accounts.add(
+                        new Account(
+                            entry.getString("subject"),
+                            entry.optString("label", null),
+                            entry.optLong("lastUsedAt", 0),
+                            entry.getJSONObject("session")
+                        )
+                    );
+                }
+                if (accounts.activeSubject != null && accounts.find(accounts.activeSubject) == null) {
+                    accounts.activeSubject = null;
+                }
+            } catch (JSONException e) {
+                Log.w(LOG_TAG, "Dropping unreadable accounts for " + providerKey, e);
+                accounts = new ProviderAccounts();
+            }
+        }
+        loaded.put(providerKey, accounts);
+        return accounts;
+    }
+
+    private void store(String providerKey, ProviderAccounts accounts) {
+        if (accounts.accounts.isEmpty()) {
+            storage.remove(providerKey);
+            return;
+        }
+        try {
+            JSONObject object = new JSONObject();
+            if (accounts.activeSubject != null) {
+                object.put("active", accounts.activeSubject);
+            }
+            JSONArray entries = new JSONArray();
+            for (Account account : accounts.accounts) {
+                JSONObject entry = new JSONObject();
+                entry.put("subject", account.subject);
+                if (account.label != null) {
+                    entry.put("label", account.label);
+                }
+                entry.put("lastUsedAt", account.lastUsedAt);
+                entry.put("session", account.session);
+                entries.put(entry);
+            }
+            object.put("accounts", entries);
+            storage.write(providerKey, object.toString());
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Failed to persist accounts for " + providerKey, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Providers that save their sessions to the {@link AccountStore} and can make a stored one current again.
+ */
+public interface AccountSwitchable {
+    /**
+     * Make {@code session}, as previously saved to the {@link AccountStore}, the provider's current session.
+     *
+     * @param providerId OAuth2 provider id, null for the built-in providers
+     */
+    void restoreSession(String providerId, JSONObject session) throws JSONException;
+}
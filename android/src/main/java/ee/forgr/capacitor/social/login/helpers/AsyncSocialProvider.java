@@ -0,0 +1,104 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Future-returning view of a {@link SocialProvider}, for composing provider calls from native code
+ * (refresh then fetch, checking every provider in parallel) without nesting {@code PluginCall} callbacks.
+ * <p>
+ * {@code options} are the options of the matching JS call, {@code providerId} included for OAuth2. Results have
+ * the shape the JS call resolves with; failures complete the future with a {@link ProviderException}.
+ * Providers implement the {@code *Async} methods; the {@code PluginCall} methods the bridge uses answer the call
+ * from those futures.
+ */
+public interface AsyncSocialProvider extends SocialProvider {
+    CompletableFuture<JSObject> loginAsync(JSONObject options);
+
+    CompletableFuture<Void> logoutAsync(JSONObject options);
+
+    CompletableFuture<Boolean> isLoggedInAsync(JSONObject options);
+
+    CompletableFuture<JSObject> refreshAsync(JSONObject options);
+
+    CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options);
+
+    @Override
+    default void login(PluginCall call, JSONObject config) {
+        answer(call, loginAsync(config != null ? config : optionsOf(call)));
+    }
+
+    @Override
+    default void logout(PluginCall call) {
+        answer(call, logoutAsync(optionsOf(call)).thenApply((ignored) -> new JSObject()));
+    }
+
+    @Override
+    default void getAuthorizationCode(PluginCall call) {
+        answer(call, getAuthorizationCodeAsync(optionsOf(call)));
+    }
+
+    @Override
+    default void isLoggedIn(PluginCall call) {
+        answer(call, isLoggedInAsync(optionsOf(call)).thenApply((loggedIn) -> new JSObject().put("isLoggedIn", loggedIn)));
+    }
+
+    @Override
+    default void refresh(PluginCall call) {
+        answer(call, refreshAsync(optionsOf(call)));
+    }
+
+    /**
+     * The options of a JS call in the shape the {@code *Async} methods take: its {@code options}, plus the
+     * top-level fields such as {@code providerId} that {@code options} does not set.
+     */
+    static JSONObject optionsOf(PluginCall call) {
+        JSONObject data = call.getData();
+        JSONObject nested = data.optJSONObject("options");
+        JSONObject options = new JSONObject();
+        try {
+            if (nested != null) {
+                Iterator<String> keys = nested.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    options.put(key, nested.get(key));
+                }
+            }
+            Iterator<String> keys = data.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!"options".equals(key) && !"provider".equals(key) && !options.has(key)) {
+                    options.put(key, data.get(key));
+                }
+            }
+        } catch (JSONException e) {
+            // Keys come from the objects themselves; this cannot happen.
+        }
+        return options;
+    }
+
+    /**
+     * Resolve or reject {@code call} once {@code result} completes; a {@link ProviderException} keeps its code.
+     */
+    static void answer(PluginCall call, CompletableFuture<JSObject> result) {
+        result.whenComplete((value, error) -> {
+            if (error == null) {
+                call.resolve(value != null ? value : new JSObject());
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof ProviderException) {
+                ProviderException rejection = (ProviderException) cause;
+                Throwable reason = rejection.getCause();
+                call.reject(rejection.getMessage(), rejection.getCode(), reason instanceof Exception ? (Exception) reason : null);
+            } else {
+                call.reject(cause.getMessage(), cause instanceof Exception ? (Exception) cause : null);
+            }
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Size-capped access to HTTP response bodies.
+ * <p>
+ * Bodies are read straight from the OkHttp source instead of being copied into a {@code String} first.
+ * Anything larger than {@link #getMaxBytes()} fails with {@link ResponseTooLargeException}, either up front
+ * from {@code Content-Length} or as soon as the cap is crossed while streaming.
+ * The cap is configured with {@code plugins.SocialLogin.maxResponseBytes} in the Capacitor config.
+ */
+public final class BoundedResponseBody {
+
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    static final int ERROR_PREVIEW_BYTES = 4096;
+
+    private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+
+    private BoundedResponseBody() {}
+
+    public static class ResponseTooLargeException extends IOException {
+
+        ResponseTooLargeException(long limit) {
+            super("Response body exceeds the " + limit + " byte limit (maxResponseBytes)");
+        }
+    }
+
+    /**
+     * Set the response size cap; values {@code <= 0} restore {@link #DEFAULT_MAX_BYTES}.
+     */
+    public static void setMaxBytes(long limit) {
+        maxBytes = limit > 0 ? limit : DEFAULT_MAX_BYTES;
+    }
+
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Source over {@code body} that throws once more than {@link #getMaxBytes()} bytes are read.
+     */
+    public static BufferedSource source(ResponseBody body) throws IOException {
+        final long limit = maxBytes;
+        if (body.contentLength() > limit) {
+            throw new ResponseTooLargeException(limit);
+        }
+        return Okio.buffer(
+            new ForwardingSource(body.source()) {
+                private long total = 0;
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        total += read;
+                        if (total > limit) {
+                            throw new ResponseTooLargeException(limit);
+                        }
+                    }
+                    return read;
+                }
+            }
+        );
+    }
+
+    /**
+     * Read only the requested top-level fields of a JSON object body.
+     */
+    public static JSONObject readFields(ResponseBody body, String... fields) throws IOException, JSONException {
+        try (BufferedSource source = source(body)) {
+            return JsonFieldReader.readFields(source, fields);
+        }
+    }
+
+    /**
+     * Read a whole JSON object body, still subject to the size cap.
+     */
+    public static JSONObject readObject(ResponseBody body) throws IOException, JSONException {
+        try (BufferedSource source = source(body)) {
+            return JsonFieldReader.readObject(source);
+        }
+    }
+
+    /**
+     * First few KiB of an error body for messages; never throws.
+     */
+    public static String errorPreview(ResponseBody body) {
+        if (body == null) {
+            return "";
+        }
+        try (BufferedSource source = body.source()) {
+            source.request(ERROR_PREVIEW_BYTES + 1);
+            Buffer buffer = source.getBuffer();
+            long size = Math.min(buffer.size(), ERROR_PREVIEW_BYTES);
+            String preview = buffer.readString(size, StandardCharsets.UTF_8);
+            return buffer.size() > 0 ? preview + "…" : preview;
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Call;
+import org.json.JSONObject;
+
+/**
+ * Everything one login has in flight, so that it can be cancelled as a whole.
+ * <p>
+ * {@link HttpResilience} registers each attempt it makes for the scope and stops retrying once the scope is
+ * cancelled; providers register what else must be torn down (a WebView, a Credential Manager request) with
+ * {@link #onCancel}. {@link #cancel} cancels the in-flight calls and runs those actions; callbacks that still
+ * arrive afterwards must check {@link #isCancelled} and drop their result, since the login was already rejected
+ * and a new one may be running.
+ * <p>
+ * Cancel-to-ready latency, from the cancel request until the provider accepts a new login, is recorded with
+ * {@link #recordCancelToReady} and reported by {@link #getStats}.
+ */
+public final class CancellationScope {
+
+    private static final AtomicLong cancels = new AtomicLong();
+    private static final AtomicLong callsCancelled = new AtomicLong();
+    private static final AtomicLong lastCancelToReadyNanos = new AtomicLong();
+    private static final AtomicLong maxCancelToReadyNanos = new AtomicLong();
+
+    private final Set<Call> calls = new HashSet<>();
+    private final List<Runnable> actions = new ArrayList<>();
+    private boolean cancelled = false;
+
+    /**
+     * Thrown to HTTP callbacks for attempts that were not started because their scope was already cancelled.
+     */
+    public static class CancelledException extends IOException {
+
+        CancelledException() {
+            super("Canceled");
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Register an in-flight call. A call registered after {@link #cancel} is cancelled right away.
+     *
+     * @return false when the scope was already cancelled
+     */
+    public boolean track(Call call) {
+        synchronized (this) {
+            if (!cancelled) {
+                calls.add(call);
+                return true;
+            }
+        }
+        call.cancel();
+        return false;
+    }
+
+    public synchronized void untrack(Call call) {
+        calls.remove(call);
+    }
+
+    /**
+     * Run {@code action} when the scope is cancelled, or now if it already was. Actions run on the thread that
+     * cancels; post to the main thread from the action for UI work.
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                actions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Cancel the registered calls and run the cancel actions. Only the first call has an effect.
+     *
+     * @return the number of calls that were in flight
+     */
+    public int cancel() {
+        List<Call> inFlight;
+        List<Runnable> pending;
+        synchronized (this) {
+            if (cancelled) {
+                return 0;
+            }
+            cancelled = true;
+            inFlight = new ArrayList<>(calls);
+            pending = new ArrayList<>(actions);
+            calls.clear();
+            actions.clear();
+        }
+        for (Call call : inFlight) {
+            call.cancel();
+        }
+        for (Runnable action : pending) {
+            action.run();
+        }
+        callsCancelled.addAndGet(inFlight.size());
+        return inFlight.size();
+    }
+
+    /**
+     * Record one cancelled login that took {@code nanos} from the cancel request until its provider was ready
+     * for a new login.
+     */
+    public static void recordCancelToReady(long nanos) {
+        cancels.incrementAndGet();
+        lastCancelToReadyNanos.set(nanos);
+        maxCancelToReadyNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public static JSONObject getStats() {
+        return Stats.of(
+            "cancels",
+            cancels.get(),
+            "callsCancelled",
+            callsCancelled.get(),
+            "lastCancelToReadyMs",
+            toMillis(lastCancelToReadyNanos.get()),
+            "maxCancelToReadyMs",
+            toMillis(maxCancelToReadyNanos.get())
+        );
+    }
+
+    /**
+     * Reset the counters (useful for testing).
+     */
+    static void resetStats() {
+        cancels.set(0);
+        callsCancelled.set(0);
+        lastCancelToReadyNanos.set(0);
+        maxCancelToReadyNanos.set(0);
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,140 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okio.ByteString;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Small LRU of decoded JWT payloads, keyed by the SHA-256 of the token so raw tokens are never held as keys.
+ * <p>
+ * Expiry checks and {@code decodeIdToken} hit the same few tokens over and over; after the first decode a
+ * repeat check is a digest plus a map lookup. Providers evict their tokens on logout.
+ * Returned claim objects are shared: callers must not mutate them.
+ */
+public final class ClaimsCache {
+
+    static final int DEFAULT_CAPACITY = 32;
+
+    private static final ClaimsCache INSTANCE = new ClaimsCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final LinkedHashMap<ByteString, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public static ClaimsCache getInstance() {
+        return INSTANCE;
+    }
+
+    static final class Entry {
+
+        final JSONObject claims;
+        final Long expiresAt;
+
+        Entry(JSONObject claims, Long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    ClaimsCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteString, Entry> eldest) {
+                if (size() > ClaimsCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Decoded payload claims of {@code jwt}.
+     *
+     * @throws IllegalArgumentException if the token is not a JWT
+     */
+    public JSONObject claims(String jwt) throws JSONException {
+        return entry(jwt).claims;
+    }
+
+    /**
+     * @return the {@code exp} claim in seconds, or null when missing or the token can't be decoded
+     */
+    public Long expiry(String jwt) {
+        if (jwt == null) {
+            return null;
+        }
+        try {
+            return entry(jwt).expiresAt;
+        } catch (JSONException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drop the cached claims of {@code jwt}, if any (call on logout).
+     */
+    public void evict(String jwt) {
+        if (jwt == null || jwt.isEmpty()) {
+            return;
+        }
+        ByteString key = digest(jwt);
+        synchronized (this) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Hit/miss counters, for diagnostics.
+     */
+    public synchronized JSONObject getStats() {
+        long lookups = hits + misses;
+        return Stats.of(
+            "hits",
+            hits,
+            "misses",
+            misses,
+            "evictions",
+            evictions,
+            "size",
+            entries.size(),
+            "capacity",
+            capacity,
+            "hitRate",
+            lookups == 0 ? 0.0 : (double) hits / lookups
+        );
+    }
+
+    private Entry entry(String jwt) throws JSONException {
+        ByteString key = digest(jwt);
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // Decode outside the lock; a racing miss for the same token just decodes twice.
+        JSONObject claims = JwtDecoder.decodePayload(jwt);
+        Entry entry = new Entry(claims, claims.has("exp") ? claims.optLong("exp") : null);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static ByteString digest(String jwt) {
+        return ByteString.encodeUtf8(jwt).sha256();
+    }
+}
@@ -0,0 +1,139 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Opens connections to the token (and resource) endpoints while the user is in the browser, so the
+ * code exchange that follows the redirect reuses a pooled connection instead of paying DNS, TCP and
+ * TLS from cold.
+ * <p>
+ * Warming is a best-effort HEAD request to the root of each origin, on the same {@link OkHttpClient} that
+ * will make the exchange (connections are pooled per origin and client, so the path doesn't matter and the
+ * token endpoint itself is never hit). While a login is pending the request is repeated every
+ * {@link #KEEP_WARM_INTERVAL_MS} so servers that drop idle connections early don't undo the work.
+ */
+public final class ConnectionPrewarmer {
+
+    static final long KEEP_WARM_INTERVAL_MS = 45_000;
+    static final long KEEP_WARM_MAX_MS = 10 * 60_000;
+
+    private static final ConnectionPrewarmer INSTANCE = new ConnectionPrewarmer();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "CapgoSocialLoginPrewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static ConnectionPrewarmer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Handle returned by {@link #keepWarm}; cancel it once the login completes or is abandoned.
+     */
+    public static final class Handle {
+
+        private ScheduledFuture<?> future;
+
+        private Handle() {}
+
+        public synchronized void cancel() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+
+    /**
+     * Warm a connection to the origin ({@code scheme://host:port/}) of each of {@code urls} now, then keep them warm until the
+     * handle is cancelled. Null, empty and non-HTTP(S) URLs are ignored.
+     */
+    public Handle keepWarm(OkHttpClient client, String... urls) {
+        List<HttpUrl> targets = distinctOrigins(urls);
+        Handle handle = new Handle();
+        if (targets.isEmpty()) {
+            return handle;
+        }
+        long startedAt = System.currentTimeMillis();
+        synchronized (handle) {
+            handle.future = scheduler.scheduleWithFixedDelay(
+                () -> {
+                    if (System.currentTimeMillis() - startedAt > KEEP_WARM_MAX_MS) {
+                        handle.cancel();
+                        return;
+                    }
+                    for (HttpUrl target : targets) {
+                        prewarm(client, target, null);
+                    }
+                },
+                0,
+                KEEP_WARM_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+            );
+        }
+        return handle;
+    }
+
+    /**
+     * Issue a single HEAD to {@code url}; {@code onComplete} (may be null) runs once the connection is
+     * back in the pool, whatever the outcome.
+     */
+    void prewarm(OkHttpClient client, HttpUrl url, Runnable onComplete) {
+        Request request = new Request.Builder().url(url).head().build();
+        client
+            .newCall(request)
+            .enqueue(
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        // Best effort: the real request will surface any error.
+                        if (onComplete != null) {
+                            onComplete.run();
+                        }
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        response.close();
+                        if (onComplete != null) {
+                            onComplete.run();
+                        }
+                    }
+                }
+            );
+    }
+
+    /**
+     * The distinct origins of {@code urls}, each as the {@code /} URL of that origin.
+     */
+    static List<HttpUrl> distinctOrigins(String... urls) {
+        List<HttpUrl> origins = new ArrayList<>();
+        List<String> seen = new ArrayList<>();
+        for (String url : urls) {
+            HttpUrl parsed = url == null ? null : HttpUrl.parse(url);
+            if (parsed == null) {
+                continue;
+            }
+            String origin = parsed.scheme() + "://" + parsed.host() + ":" + parsed.port();
+            if (!seen.contains(origin)) {
+                seen.add(origin);
+                origins.add(parsed.newBuilder().username("").password("").encodedPath("/").query(null).fragment(null).build());
+            }
+        }
+        return origins;
+    }
+}
@@ -3,23 +3,27 @@ package ee.forgr.capacitor.social.login.helpers;
 import android.util.Log;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
+import ee.forgr.capacitor.social.login.BuildConfig;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Helper class to check if required dependencies are available at runtime using reflection.
- * Results are cached to avoid repeated checks.
+ * Helper class to check if required dependencies are available at runtime.
+ * <p>
+ * Providers the build compiled in ({@code socialLogin.<provider>.include=true} with an {@code implementation}
+ * dependency) or replaced by a stub ({@code include=false}) are answered from the generated {@link BuildConfig}
+ * flags, which javac folds to constants. Only providers left to the app ({@code compileOnly}) are probed by
+ * reflection, once, and cached.
  */
 public class DependencyAvailabilityChecker {
 
     private static final String LOG_TAG = "DependencyAvailabilityChecker";
 
     // Static reference to plugin for config access
-    private static Plugin pluginInstance = null;
+    private static volatile Plugin pluginInstance = null;
 
-    // Cached availability flags
-    private static Boolean googleDependenciesAvailable = null;
-    private static Boolean facebookDependenciesAvailable = null;
-    private static Boolean appleDependenciesAvailable = null;
-    private static Boolean twitterDependenciesAvailable = null;
+    // Reflective probe results for providers the build did not compile in
+    private static final Map<String, Boolean> probed = new ConcurrentHashMap<>();
 
     /**
      * Set the plugin instance for config access
@@ -76,13 +80,23 @@ public class DependencyAvailabilityChecker {
 
         switch (providerName.toLowerCase()) {
             case "google":
-                return isGoogleAvailable();
+                return (
+                    BuildConfig.GOOGLE_COMPILED_IN ||
+                    (BuildConfig.GOOGLE_INCLUDED && probed.computeIfAbsent("google", (key) -> isGoogleAvailable()))
+                );
             case "facebook":
-                return isFacebookAvailable();
+                // Without the SDK the build swaps in a stub provider; the app's own SDK copy cannot help it.
+                return BuildConfig.FACEBOOK_COMPILED_IN;
             case "apple":
-                return isAppleAvailable();
+                return (
+                    BuildConfig.APPLE_COMPILED_IN ||
+                    (BuildConfig.APPLE_INCLUDED && probed.computeIfAbsent("apple", (key) -> isAppleAvailable()))
+                );
             case "twitter":
-                return isTwitterAvailable();
+                return (
+                    BuildConfig.TWITTER_COMPILED_IN ||
+                    (BuildConfig.TWITTER_INCLUDED && probed.computeIfAbsent("twitter", (key) -> isTwitterAvailable()))
+                );
             default:
                 Log.w(LOG_TAG, "Unknown provider: " + providerName);
                 return false;
@@ -92,13 +106,8 @@ public class DependencyAvailabilityChecker {
     /**
      * Check if Google Sign-In dependencies are available.
      * Checks multiple classes to be resilient.
-     * Result is cached after first check.
      */
     private static boolean isGoogleAvailable() {
-        if (googleDependenciesAvailable != null) {
-            return googleDependenciesAvailable;
-        }
-
         // Check multiple critical classes to be resilient
         String[] googleClasses = {
             "com.google.android.gms.auth.api.identity.AuthorizationRequest",
@@ -118,8 +127,6 @@ public class DependencyAvailabilityChecker {
             }
         }
 
-        googleDependenciesAvailable = allAvailable;
-
         if (!allAvailable) {
             Log.w(
                 LOG_TAG,
@@ -131,60 +138,13 @@ public class DependencyAvailabilityChecker {
         return allAvailable;
     }
 
-    /**
-     * Check if Facebook SDK dependencies are available.
-     * Checks multiple classes to be resilient.
-     * Result is cached after first check.
-     */
-    private static boolean isFacebookAvailable() {
-        if (facebookDependenciesAvailable != null) {
-            return facebookDependenciesAvailable;
-        }
-
-        // Check multiple critical classes to be resilient
-        String[] facebookClasses = {
-            "com.facebook.FacebookSdk",
-            "com.facebook.login.LoginManager",
-            "com.facebook.AccessToken",
-            "com.facebook.CallbackManager",
-            "com.facebook.GraphRequest",
-            "com.facebook.login.LoginResult"
-        };
-
-        boolean allAvailable = true;
-        for (String className : facebookClasses) {
-            if (!isClassAvailable(className)) {
-                allAvailable = false;
-                Log.w(LOG_TAG, "Facebook dependency class not available: " + className);
-            }
-        }
-
-        facebookDependenciesAvailable = allAvailable;
-
-        if (!allAvailable) {
-            Log.w(
-                LOG_TAG,
-                "Facebook SDK dependencies are not available. " +
-                    "Ensure Facebook Login dependencies are included in your app's build.gradle"
-            );
-        }
-
-        return allAvailable;
-    }
-
     /**
      * Check if Apple Sign-In dependencies are available.
      * Checks config first (for "fake disable"), then checks classes.
-     * Result is cached after first check.
      */
     private static boolean isAppleAvailable() {
-        if (appleDependenciesAvailable != null) {
-            return appleDependenciesAvailable;
-        }
-
         // First check config - if disabled via config, return false immediately
         if (!isProviderEnabledInConfig("apple")) {
-            appleDependenciesAvailable = false;
             Log.d(LOG_TAG, "Apple provider is disabled via config");
             return false;
         }
@@ -206,8 +166,6 @@ public class DependencyAvailabilityChecker {
             }
         }
 
-        appleDependenciesAvailable = allAvailable;
-
         if (!allAvailable) {
             Log.w(
                 LOG_TAG,
@@ -222,16 +180,10 @@ public class DependencyAvailabilityChecker {
     /**
      * Check if Twitter OAuth dependencies are available.
      * Checks config first (for "fake disable"), then checks classes.
-     * Result is cached after first check.
      */
     private static boolean isTwitterAvailable() {
-        if (twitterDependenciesAvailable != null) {
-            return twitterDependenciesAvailable;
-        }
-
         // First check config - if disabled via config, return false immediately
         if (!isProviderEnabledInConfig("twitter")) {
-            twitterDependenciesAvailable = false;
             Log.d(LOG_TAG, "Twitter provider is disabled via config");
             return false;
         }
@@ -248,8 +200,6 @@ public class DependencyAvailabilityChecker {
             }
         }
 
-        twitterDependenciesAvailable = allAvailable;
-
         if (!allAvailable) {
             Log.w(
                 LOG_TAG,
@@ -279,9 +229,6 @@ public class DependencyAvailabilityChecker {
      * Reset cached availability checks (useful for testing).
      */
     public static void resetCache() {
-        googleDependenciesAvailable = null;
-        facebookDependenciesAvailable = null;
-        appleDependenciesAvailable = null;
-        twitterDependenciesAvailable = null;
+        probed.clear();
     }
 }
@@ -0,0 +1,198 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Graph {@code /me} fields already fetched, per user, for the access token they were fetched with.
+ * <p>
+ * Login fetches the profile and {@code facebook#getProfile} used to fetch it again; with the cache a
+ * {@code getProfile} whose fields were all fetched before is served from memory, and a partial hit only asks
+ * Graph for the {@link #missing} fields. Values are kept per field spec, compared verbatim, so
+ * {@code picture.type(large)} and {@code picture.type(small)} are cached apart even though both answer as
+ * {@code picture}. A new access token for a user drops what was cached for the old one; tokens are kept as
+ * SHA-256 digests. Returned profiles are copies.
+ */
+public final class GraphProfileCache {
+
+    static final int DEFAULT_CAPACITY = 8;
+
+    private static final GraphProfileCache INSTANCE = new GraphProfileCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public static GraphProfileCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static final class Entry {
+
+        final ByteString token;
+        // Field spec to the value Graph answered it with; null when the field was absent from the response.
+        final Map<String, Object> values = new HashMap<>();
+        Object id;
+
+        Entry(ByteString token) {
+            this.token = token;
+        }
+    }
+
+    GraphProfileCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > GraphProfileCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * The cached {@code fields} of {@code userId} (plus {@code id}), or null unless every one of them was
+     * fetched with {@code token}.
+     */
+    public synchronized JSONObject get(String userId, String token, Collection<String> fields) {
+        Entry entry = entry(userId, token);
+        if (entry == null || !entry.values.keySet().containsAll(fields)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        JSONObject profile = Stats.of("id", entry.id);
+        for (String field : fields) {
+            Stats.put(profile, responseKey(field), copy(entry.values.get(field)));
+        }
+        return profile;
+    }
+
+    /**
+     * The subset of {@code fields} not yet fetched with {@code token}, in request order.
+     */
+    public synchronized List<String> missing(String userId, String token, Collection<String> fields) {
+        Entry entry = entry(userId, token);
+        List<String> missing = new ArrayList<>();
+        for (String field : fields) {
+            if ((entry == null || !entry.values.containsKey(field)) && !missing.contains(field)) {
+                missing.add(field);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Remember the Graph response to a {@code /me} request for {@code fields}. Fields the user did not grant
+     * (e.g. {@code email} without the permission) are absent from the response and are cached as absent.
+     * {@code fields} must answer under distinct keys, see {@link #partition}.
+     */
+    public synchronized void put(String userId, String token, Collection<String> fields, JSONObject response) {
+        if (userId == null || token == null || response == null) {
+            return;
+        }
+        ByteString digest = digest(token);
+        Entry entry = entries.get(userId);
+        if (entry == null || !entry.token.equals(digest)) {
+            entry = new Entry(digest);
+            entries.put(userId, entry);
+        }
+        if (response.opt("id") != null) {
+            entry.id = response.opt("id");
+        }
+        for (String field : fields) {
+            entry.values.put(field, copy(response.opt(responseKey(field))));
+        }
+    }
+
+    /**
+     * Split {@code fields} into lists that can each be asked for in one {@code /me} request: the response holds
+     * one value per key, so specs answering under the same key, like {@code picture.type(large)} and
+     * {@code picture.type(small)}, go in different lists.
+     */
+    public static List<List<String>> partition(Collection<String> fields) {
+        List<List<String>> requests = new ArrayList<>();
+        List<Set<String>> keys = new ArrayList<>();
+        for (String field : fields) {
+            String key = responseKey(field);
+            int i = 0;
+            while (i < requests.size() && keys.get(i).contains(key)) {
+                i++;
+            }
+            if (i == requests.size()) {
+                requests.add(new ArrayList<>());
+                keys.add(new HashSet<>());
+            }
+            requests.get(i).add(field);
+            keys.get(i).add(key);
+        }
+        return requests;
+    }
+
+    /**
+     * Forget every cached profile (call on logout).
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized JSONObject getStats() {
+        long lookups = hits + misses;
+        return Stats.of("hits", hits, "misses", misses, "users", entries.size(), "hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+    }
+
+    /**
+     * Key a field spec comes back under: {@code picture.type(large)} and {@code friends{name}} answer as
+     * {@code picture} and {@code friends}.
+     */
+    static String responseKey(String field) {
+        int end = field.length();
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '.' || c == '{' || c == '(') {
+                end = i;
+                break;
+            }
+        }
+        return field.substring(0, end).trim();
+    }
+
+    private Entry entry(String userId, String token) {
+        if (userId == null || token == null) {
+            return null;
+        }
+        Entry entry = entries.get(userId);
+        return entry != null && entry.token.equals(digest(token)) ? entry : null;
+    }
+
+    /**
+     * Graph values are JSON objects, arrays or primitives; nested ones are copied so callers cannot change the cache.
+     */
+    private static Object copy(Object value) {
+        try {
+            if (value instanceof JSONObject) {
+                return new JSONObject(value.toString());
+            }
+            if (value instanceof JSONArray) {
+                return new JSONArray(value.toString());
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cached Graph value is not valid JSON", e);
+        }
+        return value;
+    }
+
+    private static ByteString digest(String token) {
+        return ByteString.encodeUtf8(token).sha256();
+    }
+}
@@ -0,0 +1,31 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.app.Activity;
+import java.util.function.Supplier;
+
+/**
+ * The Activity the plugin is currently attached to, looked up on every use.
+ * <p>
+ * Providers keep this and the application {@code Context} instead of an Activity: the Activity they were
+ * initialized with is destroyed on rotation or recreation, and holding it would keep it and its view tree
+ * alive for as long as the provider. Resolve the Activity right before showing UI and do not store it.
+ */
+public final class HostActivity {
+
+    private final Supplier<Activity> supplier;
+
+    public HostActivity(Supplier<Activity> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * @return the current Activity, or null when there is none or it is finishing or destroyed
+     */
+    public Activity get() {
+        Activity activity = supplier.get();
+        if (activity == null || activity.isFinishing() || activity.isDestroyed()) {
+            return null;
+        }
+        return activity;
+    }
+}
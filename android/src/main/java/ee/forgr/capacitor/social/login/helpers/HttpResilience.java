@@ -0,0 +1,452 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Shared retry and circuit breaker layer for token, discovery and resource HTTP calls.
+ * <p>
+ * Idempotent requests (refresh, GET) are retried with exponential backoff and full jitter.
+ * Authorization code exchange gets a single guarded retry, and only when the request never
+ * reached the server (a code can only be redeemed once). Each endpoint has its own circuit
+ * breaker so calls fail fast while an IdP is down. An optional {@link OperationDeadlines.Deadline}
+ * bounds every attempt and drops retries whose backoff would not fit in the remaining budget, and an
+ * optional {@link CancellationScope} cancels the attempt in flight and any retry still to come.
+ */
+public final class HttpResilience {
+
+    public enum RetryPolicy {
+        /** Safe to replay: refresh_token grants and GET requests. */
+        IDEMPOTENT,
+        /** Replayed at most once, and only when the connection could not be established. */
+        SINGLE_GUARDED
+    }
+
+    static final int MAX_IDEMPOTENT_RETRIES = 3;
+    static final long BASE_DELAY_MS = 250;
+    static final long MAX_DELAY_MS = 4000;
+    static final int FAILURE_THRESHOLD = 5;
+    static final long OPEN_DURATION_MS = 30_000;
+
+    private static final HttpResilience INSTANCE = new HttpResilience();
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong trips = new AtomicLong();
+    private final AtomicLong shortCircuits = new AtomicLong();
+    private final AtomicLong deadlinesExceeded = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "CapgoSocialLoginRetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static HttpResilience getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Thrown to the callback when the endpoint's circuit is open.
+     */
+    public static class CircuitOpenException extends IOException {
+
+        CircuitOpenException(String endpoint) {
+            super("Circuit open for " + endpoint + ": identity provider is failing, retry later");
+        }
+    }
+
+    /**
+     * Enqueue {@code request} on {@code client}, retrying transient failures according to {@code policy}.
+     * The callback sees exactly one outcome: the final response or the final failure.
+     */
+    public void enqueue(OkHttpClient client, Request request, RetryPolicy policy, Callback callback) {
+        enqueue(client, request, policy, null, callback);
+    }
+
+    /**
+     * Same as {@link #enqueue(OkHttpClient, Request, RetryPolicy, Callback)}, with every attempt bounded by
+     * {@code deadline}. Once it runs out the callback fails with a
+     * {@link OperationDeadlines.DeadlineExceededException}.
+     */
+    public void enqueue(OkHttpClient client, Request request, RetryPolicy policy, OperationDeadlines.Deadline deadline, Callback callback) {
+        enqueue(client, request, policy, deadline, null, callback);
+    }
+
+    /**
+     * Same as {@link #enqueue(OkHttpClient, Request, RetryPolicy, OperationDeadlines.Deadline, Callback)}, with
+     * every attempt registered in {@code scope}. Once it is cancelled the callback fails with OkHttp's
+     * cancellation {@link IOException} (or a {@link CancellationScope.CancelledException} for a retry that had
+     * not started yet, with a null {@link Call}), without further retries.
+     */
+    public void enqueue(
+        OkHttpClient client,
+        Request request,
+        RetryPolicy policy,
+        OperationDeadlines.Deadline deadline,
+        CancellationScope scope,
+        Callback callback
+    ) {
+        attempt(client, request, policy, deadline, scope, callback, 0);
+    }
+
+    private void attempt(
+        OkHttpClient client,
+        Request request,
+        RetryPolicy policy,
+        OperationDeadlines.Deadline deadline,
+        CancellationScope scope,
+        Callback callback,
+        int attemptNumber
+    ) {
+        String endpoint = endpointKey(request.url());
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint, (key) -> new CircuitBreaker());
+        Call call = client.newCall(request);
+
+        if (scope != null && !scope.track(call)) {
+            deliverFailure(callback, call, new CancellationScope.CancelledException());
+            return;
+        }
+
+        if (deadline != null && deadline.isExpired()) {
+            deadlinesExceeded.incrementAndGet();
+            untrack(scope, call);
+            deliverFailure(callback, call, deadline.exceeded(null));
+            return;
+        }
+
+        if (!breaker.allowRequest(System.currentTimeMillis())) {
+            shortCircuits.incrementAndGet();
+            untrack(scope, call);
+            deliverFailure(callback, call, new CircuitOpenException(endpoint));
+            return;
+        }
+
+        if (deadline != null) {
+            // Overrides the client's callTimeout for this call only; covers connect, write and read.
+            call.timeout().timeout(Math.max(1, deadline.remainingMs()), TimeUnit.MILLISECONDS);
+        }
+
+        call.enqueue(
+            new Callback() {
+                @Override
+                public void onFailure(Call failedCall, IOException e) {
+                    untrack(scope, failedCall);
+                    if (deadline != null && (deadline.isExpired() || isCallTimeout(e))) {
+                        // Our own budget ran out; that says nothing about the endpoint's health.
+                        breaker.release();
+                        deadlinesExceeded.incrementAndGet();
+                        fail(callback, failedCall, deadline.exceeded(e));
+                        return;
+                    }
+                    if (failedCall.isCanceled() || (scope != null && scope.isCancelled())) {
+                        breaker.release();
+                        fail(callback, failedCall, e);
+                        return;
+                    }
+                    recordFailure(breaker);
+                    if (shouldRetryFailure(policy, e, attemptNumber)) {
+                        long delay = backoffDelay(attemptNumber);
+                        if (fitsDeadline(deadline, delay)) {
+                            scheduleRetry(client, request, policy, deadline, scope, callback, attemptNumber, delay);
+                            return;
+                        }
+                    }
+                    fail(callback, failedCall, e);
+                }
+
+                @Override
+                public void onResponse(Call respondedCall, Response response) throws IOException {
+                    untrack(scope, respondedCall);
+                    int code = response.code();
+                    if (code >= 500) {
+                        recordFailure(breaker);
+                    } else {
+                        breaker.recordSuccess();
+                    }
+                    if (shouldRetryResponse(policy, code, attemptNumber)) {
+                        long delay = retryAfterDelay(response.header("Retry-After"), attemptNumber);
+                        if (fitsDeadline(deadline, delay) && (scope == null || !scope.isCancelled())) {
+                            response.close();
+                            scheduleRetry(client, request, policy, deadline, scope, callback, attemptNumber, delay);
+                            return;
+                        }
+                    }
+                    try {
+                        callback.onResponse(respondedCall, response);
+                    } catch (RejectedExecutionException ignored) {
+                        // See fail().
+                        response.close();
+                    }
+                }
+            }
+        );
+    }
+
+    private static void untrack(CancellationScope scope, Call call) {
+        if (scope != null) {
+            scope.untrack(call);
+        }
+    }
+
+    /**
+     * Hand a failure to {@code callback}. A callback that can no longer post its result, because the state loop
+     * was shut down with the plugin, drops it: nobody is left to answer, and it must not kill OkHttp's thread.
+     */
+    private static void fail(Callback callback, Call call, IOException e) {
+        try {
+            callback.onFailure(call, e);
+        } catch (RejectedExecutionException ignored) {
+            // Dropped, see above.
+        }
+    }
+
+    private static void deliverFailure(Callback callback, Call call, IOException e) {
+        try {
+            callback.onFailure(call, e);
+        } catch (RuntimeException ignored) {
+            // Mirror OkHttp: callback exceptions must not escape into the caller.
+        }
+    }
+
+    private void recordFailure(CircuitBreaker breaker) {
+        if (breaker.recordFailure(System.currentTimeMillis())) {
+            trips.incrementAndGet();
+        }
+    }
+
+    private void scheduleRetry(
+        OkHttpClient client,
+        Request request,
+        RetryPolicy policy,
+        OperationDeadlines.Deadline deadline,
+        CancellationScope scope,
+        Callback callback,
+        int attemptNumber,
+        long delayMs
+    ) {
+        retries.incrementAndGet();
+        ScheduledFuture<?> retry = scheduler.schedule(
+            () -> attempt(client, request, policy, deadline, scope, callback, attemptNumber + 1),
+            delayMs,
+            TimeUnit.MILLISECONDS
+        );
+        if (scope != null) {
+            // Fail right away instead of at the end of the backoff; whoever wins the cancel() race reports.
+            scope.onCancel(() -> {
+                if (retry.cancel(false)) {
+                    deliverFailure(callback, null, new CancellationScope.CancelledException());
+                }
+            });
+        }
+    }
+
+    /**
+     * A retry is only worth scheduling when, after the backoff, some budget is left for the attempt itself.
+     */
+    static boolean fitsDeadline(OperationDeadlines.Deadline deadline, long delayMs) {
+        return deadline == null || deadline.remainingMs() > delayMs;
+    }
+
+    /**
+     * OkHttp reports an expired call timeout as a bare {@code InterruptedIOException("timeout")}.
+     */
+    static boolean isCallTimeout(IOException e) {
+        return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException) && "timeout".equals(e.getMessage());
+    }
+
+    static boolean shouldRetryFailure(RetryPolicy policy, IOException e, int attemptNumber) {
+        if (e instanceof CircuitOpenException) {
+            return false;
+        }
+        if (policy == RetryPolicy.SINGLE_GUARDED) {
+            return attemptNumber == 0 && isConnectFailure(e);
+        }
+        return attemptNumber < MAX_IDEMPOTENT_RETRIES;
+    }
+
+    static boolean shouldRetryResponse(RetryPolicy policy, int code, int attemptNumber) {
+        if (policy != RetryPolicy.IDEMPOTENT || attemptNumber >= MAX_IDEMPOTENT_RETRIES) {
+            return false;
+        }
+        return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * A failure is "connect-phase" when no request bytes could have reached the server,
+     * which is the only case where replaying an authorization code is safe.
+     */
+    static boolean isConnectFailure(IOException e) {
+        if (e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException) {
+            return true;
+        }
+        if (e instanceof SocketTimeoutException) {
+            String message = e.getMessage();
+            return message != null && (message.startsWith("failed to connect") || message.startsWith("connect timed out"));
+        }
+        return false;
+    }
+
+    /**
+     * Exponential backoff with full jitter: uniform in [0, min(MAX, BASE * 2^attempt)].
+     */
+    static long backoffDelay(int attemptNumber) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attemptNumber, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static long retryAfterDelay(String retryAfter, int attemptNumber) {
+        if (retryAfter != null) {
+            try {
+                long seconds = Long.parseLong(retryAfter.trim());
+                return Math.min(MAX_DELAY_MS, Math.max(0, seconds * 1000L));
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form is not worth parsing here; fall back to backoff.
+            }
+        }
+        return backoffDelay(attemptNumber);
+    }
+
+    static String endpointKey(HttpUrl url) {
+        return url.scheme() + "://" + url.host() + ":" + url.port() + url.encodedPath();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getTripCount() {
+        return trips.get();
+    }
+
+    public long getShortCircuitCount() {
+        return shortCircuits.get();
+    }
+
+    public long getDeadlineExceededCount() {
+        return deadlinesExceeded.get();
+    }
+
+    /**
+     * Snapshot of the retry and breaker counters, for diagnostics.
+     */
+    public JSONObject getStats() {
+        JSONArray endpoints = new JSONArray();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+            endpoints.put(
+                Stats.of(
+                    "endpoint",
+                    entry.getKey(),
+                    "state",
+                    entry.getValue().state(now),
+                    "consecutiveFailures",
+                    entry.getValue().consecutiveFailures()
+                )
+            );
+        }
+        return Stats.of(
+            "retries",
+            retries.get(),
+            "circuitTrips",
+            trips.get(),
+            "shortCircuits",
+            shortCircuits.get(),
+            "deadlinesExceeded",
+            deadlinesExceeded.get(),
+            "endpoints",
+            endpoints
+        );
+    }
+
+    /**
+     * Reset counters and breakers (useful for testing).
+     */
+    public void reset() {
+        breakers.clear();
+        retries.set(0);
+        trips.set(0);
+        shortCircuits.set(0);
+        deadlinesExceeded.set(0);
+    }
+
+    /**
+     * Closed -> open after {@link #FAILURE_THRESHOLD} consecutive failures; open -> half-open after
+     * {@link #OPEN_DURATION_MS}, letting one trial request through; the trial's outcome closes or re-opens it.
+     */
+    static final class CircuitBreaker {
+
+        private int consecutiveFailures = 0;
+        private long openedAt = -1;
+        private boolean trialInFlight = false;
+
+        synchronized boolean allowRequest(long now) {
+            if (openedAt < 0) {
+                return true;
+            }
+            if (now - openedAt < OPEN_DURATION_MS || trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            openedAt = -1;
+            trialInFlight = false;
+        }
+
+        /**
+         * @return true when this failure tripped the breaker open
+         */
+        synchronized boolean recordFailure(long now) {
+            consecutiveFailures++;
+            if (trialInFlight) {
+                trialInFlight = false;
+                openedAt = now;
+                return true;
+            }
+            if (openedAt < 0 && consecutiveFailures >= FAILURE_THRESHOLD) {
+                openedAt = now;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void release() {
+            trialInFlight = false;
+        }
+
+        synchronized String state(long now) {
+            if (openedAt < 0) {
+                return "closed";
+            }
+            return trialInFlight || now - openedAt >= OPEN_DURATION_MS ? "half-open" : "open";
+        }
+
+        synchronized int consecutiveFailures() {
+            return consecutiveFailures;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Minimal streaming JSON reader over an okio source.
+ * <p>
+ * {@link #readFields} pulls only the requested top-level members out of an object and skips everything
+ * else at the byte level (skipped strings and nested values are never decoded), returning as soon as all
+ * requested fields were seen. {@link #readObject} parses a full document for the few flows that need it.
+ */
+public final class JsonFieldReader {
+
+    private static final ByteString STRING_TERMINALS = ByteString.encodeUtf8("\"\\");
+    private static final int MAX_DEPTH = 64;
+
+    private final BufferedSource source;
+
+    private JsonFieldReader(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Read the given top-level fields of the JSON object in {@code source}. Missing fields are absent
+     * from the result; nested objects and arrays are returned as {@link JSONObject}/{@link JSONArray}.
+     */
+    public static JSONObject readFields(BufferedSource source, String... fields) throws IOException, JSONException {
+        Set<String> wanted = new HashSet<>(Arrays.asList(fields));
+        JSONObject result = new JSONObject();
+        JsonFieldReader reader = new JsonFieldReader(source);
+        reader.expect('{');
+        if (reader.peek() == '}') {
+            reader.source.readByte();
+            return result;
+        }
+        while (true) {
+            reader.expect('"');
+            String key = reader.readStringBody();
+            reader.expect(':');
+            if (wanted.contains(key)) {
+                result.put(key, reader.readValue(1));
+                if (result.length() == wanted.size()) {
+                    return result;
+                }
+            } else {
+                reader.skipValue();
+            }
+            byte next = reader.nextNonWhitespace();
+            if (next == '}') {
+                return result;
+            }
+            if (next != ',') {
+                throw reader.syntaxError("Expected ',' or '}'");
+            }
+        }
+    }
+
+    /**
+     * Read a complete JSON object from {@code source}.
+     */
+    public static JSONObject readObject(BufferedSource source) throws IOException, JSONException {
+        JsonFieldReader reader = new JsonFieldReader(source);
+        if (reader.peek() != '{') {
+            throw reader.syntaxError("Expected a JSON object");
+        }
+        return (JSONObject) reader.readValue(0);
+    }
+
+    private Object readValue(int depth) throws IOException, JSONException {
+        if (depth > MAX_DEPTH) {
+            throw syntaxError("Nesting too deep");
+        }
+        byte next = peek();
+        switch (next) {
+            case '{': {
+                source.readByte();
+                JSONObject object = new JSONObject();
+                if (peek() == '}') {
+                    source.readByte();
+                    return object;
+                }
+                while (true) {
+                    expect('"');
+                    String key = readStringBody();
+                    expect(':');
+                    object.put(key, readValue(depth + 1));
+                    byte separator = nextNonWhitespace();
+                    if (separator == '}') {
+                        return object;
+                    }
+                    if (separator != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                }
+            }
+            case '[': {
+                source.readByte();
+                JSONArray array = new JSONArray();
+                if (peek() == ']') {
+                    source.readByte();
+                    return array;
+                }
+                while (true) {
+                    array.put(readValue(depth + 1));
+                    byte separator = nextNonWhitespace();
+                    if (separator == ']') {
+                        return array;
+                    }
+                    if (separator != ',') {
+                        throw syntaxError("Expected ',' or ']'");
+                    }
+                }
+            }
+            case '"':
+                source.readByte();
+                return readStringBody();
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return JSONObject.NULL;
+            default:
+                return readNumber();
+        }
+    }
+
+    private void skipValue() throws IOException, JSONException {
+        byte next = peek();
+        if (next == '"') {
+            source.readByte();
+            skipStringBody();
+            return;
+        }
+        if (next != '{' && next != '[') {
+            // Literal or number: consume until a structural delimiter.
+            while (source.request(1)) {
+                byte b = source.getBuffer().getByte(0);
+                if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                    return;
+                }
+                source.readByte();
+            }
+            return;
+        }
+        int depth = 0;
+        do {
+            byte b = source.readByte();
+            if (b == '"') {
+                skipStringBody();
+            } else if (b == '{' || b == '[') {
+                if (++depth > MAX_DEPTH) {
+                    throw syntaxError("Nesting too deep");
+                }
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    /** Reads a string whose opening quote was already consumed. */
+    private String readStringBody() throws IOException, JSONException {
+        StringBuilder builder = null;
+        while (true) {
+            long index = source.indexOfElement(STRING_TERMINALS);
+            if (index == -1) {
+                throw new EOFException("Unterminated string");
+            }
+            if (builder == null && source.getBuffer().getByte(index) == '"') {
+                // Fast path: no escapes.
+                String value = source.readUtf8(index);
+                source.readByte();
+                return value;
+            }
+            if (builder == null) {
+                builder = new StringBuilder();
+            }
+            builder.append(source.readUtf8(index));
+            if (source.readByte() == '"') {
+                return builder.toString();
+            }
+            builder.append(readEscape());
+        }
+    }
+
+    private void skipStringBody() throws IOException {
+        while (true) {
+            long index = source.indexOfElement(STRING_TERMINALS);
+            if (index == -1) {
+                throw new EOFException("Unterminated string");
+            }
+            source.skip(index);
+            if (source.readByte() == '"') {
+                return;
+            }
+            byte escaped = source.readByte();
+            if (escaped == 'u') {
+                source.skip(4);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, JSONException {
+        byte escaped = source.readByte();
+        switch (escaped) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            case 'u':
+                String hex = source.readUtf8(4);
+                try {
+                    return (char) Integer.parseInt(hex, 16);
+                } catch (NumberFormatException e) {
+                    throw syntaxError("Invalid unicode escape \\u" + hex);
+                }
+            default:
+                throw syntaxError("Invalid escape \\" + (char) escaped);
+        }
+    }
+
+    private Number readNumber() throws IOException, JSONException {
+        Buffer digits = new Buffer();
+        boolean integral = true;
+        while (source.request(1)) {
+            byte b = source.getBuffer().getByte(0);
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+') {
+                digits.writeByte(source.readByte());
+            } else if (b == '.' || b == 'e' || b == 'E') {
+                integral = false;
+                digits.writeByte(source.readByte());
+            } else {
+                break;
+            }
+        }
+        String text = digits.readUtf8();
+        if (text.isEmpty()) {
+            throw syntaxError("Unexpected character");
+        }
+        try {
+            if (integral) {
+                long value = Long.parseLong(text);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            }
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + text);
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException, JSONException {
+        if (!source.rangeEquals(0, ByteString.encodeUtf8(literal))) {
+            throw syntaxError("Expected " + literal);
+        }
+        source.skip(literal.length());
+    }
+
+    private void expect(char expected) throws IOException, JSONException {
+        if (nextNonWhitespace() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+    }
+
+    private byte peek() throws IOException {
+        skipWhitespace();
+        source.require(1);
+        return source.getBuffer().getByte(0);
+    }
+
+    private byte nextNonWhitespace() throws IOException {
+        skipWhitespace();
+        return source.readByte();
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (source.request(1) && isWhitespace(source.getBuffer().getByte(0))) {
+            source.readByte();
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message);
+    }
+}
@@ -0,0 +1,326 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Verifies RS256 ID tokens against an issuer's published JWKS, with the key set cached in memory and on disk.
+ * <p>
+ * A token signed with a cached key is verified without any network call, including on cold start, so a stored
+ * session can be trusted on resume while offline. The key set is fetched when empty, when older than
+ * {@link #MAX_AGE_MS} (a stale set is still used if the fetch fails), and when a token names an unknown
+ * {@code kid} (rotation); never more than once per {@link #MIN_REFETCH_MS}.
+ * <p>
+ * Besides the signature, {@code iss}, {@code aud}, {@code exp} (with {@link #CLOCK_SKEW_MS} of leeway) and,
+ * when given, {@code nonce} are checked. Failures are reported with {@link #INVALID_TOKEN_CODE}, or
+ * {@link #JWKS_UNAVAILABLE_CODE} when no key could be obtained.
+ */
+public final class JwksVerifier {
+
+    public static final String INVALID_TOKEN_CODE = "INVALID_TOKEN";
+    public static final String JWKS_UNAVAILABLE_CODE = "JWKS_UNAVAILABLE";
+
+    static final long MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    static final long MIN_REFETCH_MS = 60 * 1000L;
+    static final long CLOCK_SKEW_MS = 60 * 1000L;
+
+    private static final String LOG_TAG = "JwksVerifier";
+    private static final String FACEBOOK_JWKS_URL = "https://limited.facebook.com/.well-known/oauth/openid/jwks/";
+    public static final Set<String> FACEBOOK_ISSUERS = Set.of("https://www.facebook.com", "https://limited.facebook.com");
+
+    private static JwksVerifier facebook;
+
+    public interface VerifyCallback {
+        void onVerified(JSONObject claims);
+        void onError(String message, String errorCode);
+    }
+
+    private final String jwksUrl;
+    // Holds {"fetchedAt": ms, "keys": [...]} under storageKey.
+    private final PrefsStorage storage;
+    private final String storageKey;
+    private final OkHttpClient httpClient;
+    private final LongSupplier clock;
+
+    // kid -> key; null until loaded from storage.
+    private Map<String, PublicKey> keys;
+    private long fetchedAt = 0;
+    private long lastFetchAttempt = Long.MIN_VALUE / 2;
+    private long fetches = 0;
+    private long verified = 0;
+    private long rejected = 0;
+
+    /**
+     * Verifier for Facebook Limited Login authentication tokens.
+     */
+    public static synchronized JwksVerifier facebook(Context context) {
+        if (facebook == null) {
+            facebook = new JwksVerifier(
+                FACEBOOK_JWKS_URL,
+                PrefsStorage.of(context, "CapgoSocialLoginJwks"),
+                "facebook",
+                new OkHttpClient(),
+                System::currentTimeMillis
+            );
+        }
+        return facebook;
+    }
+
+    JwksVerifier(String jwksUrl, PrefsStorage storage, String storageKey, OkHttpClient httpClient, LongSupplier clock) {
+        this.jwksUrl = jwksUrl;
+        this.storage = storage;
+        this.storageKey = storageKey;
+        this.httpClient = httpClient;
+        this.clock = clock;
+    }
+
+    /**
+     * Verify {@code jwt} and report its claims.
+     *
+     * @param issuers accepted {@code iss} values
+     * @param audience expected {@code aud}, i.e. the app's client id
+     * @param nonce expected {@code nonce}, or null to skip the check
+     */
+    public void verify(String jwt, Set<String> issuers, String audience, String nonce, VerifyCallback callback) {
+        String[] parts = jwt != null ? jwt.split("\\.", -1) : new String[0];
+        if (parts.length != 3) {
+            fail(callback, "Not a JWT", INVALID_TOKEN_CODE);
+            return;
+        }
+        JSONObject header;
+        try {
+            header = new JSONObject(decode(parts[0]).utf8());
+        } catch (JSONException | IllegalArgumentException e) {
+            fail(callback, "Unreadable JWT header", INVALID_TOKEN_CODE);
+            return;
+        }
+        if (!"RS256".equals(header.optString("alg"))) {
+            fail(callback, "Unsupported JWT algorithm: " + header.optString("alg"), INVALID_TOKEN_CODE);
+            return;
+        }
+        String kid = header.optString("kid", "");
+
+        PublicKey key;
+        boolean fetch;
+        synchronized (this) {
+            loadStoredKeys();
+            key = keys.get(kid);
+            long now = clock.getAsLong();
+            boolean stale = now - fetchedAt > MAX_AGE_MS;
+            fetch = (stale || key == null) && now - lastFetchAttempt >= MIN_REFETCH_MS;
+        }
+        if (key != null && !fetch) {
+            check(parts, key, issuers, audience, nonce, callback);
+            return;
+        }
+        if (!fetch) {
+            fail(callback, "No JWKS key for kid " + kid, INVALID_TOKEN_CODE);
+            return;
+        }
+
+        PublicKey cached = key;
+        fetchKeys((fetchError) -> {
+            PublicKey fresh;
+            synchronized (this) {
+                fresh = keys.get(kid);
+            }
+            if (fresh != null) {
+                check(parts, fresh, issuers, audience, nonce, callback);
+            } else if (cached != null) {
+                // Fetch failed: a stale key set still beats refusing an offline resume.
+                check(parts, cached, issuers, audience, nonce, callback);
+            } else if (fetchError != null) {
+                fail(callback, "Could not fetch JWKS: " + fetchError, JWKS_UNAVAILABLE_CODE);
+            } else {
+                fail(callback, "No JWKS key for kid " + kid, INVALID_TOKEN_CODE);
+            }
+        });
+    }
+
+    public synchronized JSONObject getStats() {
+        return Stats.of(
+            "keys",
+            keys != null ? keys.size() : 0,
+            "fetchedAt",
+            fetchedAt,
+            "fetches",
+            fetches,
+            "verified",
+            verified,
+            "rejected",
+            rejected
+        );
+    }
+
+    private void check(String[] parts, PublicKey key, Set<String> issuers, String audience, String nonce, VerifyCallback callback) {
+        JSONObject claims;
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(key);
+            signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(decode(parts[2]).toByteArray())) {
+                fail(callback, "Invalid JWT signature", INVALID_TOKEN_CODE);
+                return;
+            }
+            claims = new JSONObject(decode(parts[1]).utf8());
+        } catch (GeneralSecurityException | JSONException | IllegalArgumentException e) {
+            fail(callback, "Invalid JWT: " + e.getMessage(), INVALID_TOKEN_CODE);
+            return;
+        }
+
+        long now = clock.getAsLong();
+        String error = null;
+        if (!issuers.contains(claims.optString("iss"))) {
+            error = "Unexpected issuer: " + claims.optString("iss");
+        } else if (!hasAudience(claims, audience)) {
+            error = "Token was not issued for this app";
+        } else if (!claims.has("exp") || claims.optLong("exp") * 1000 + CLOCK_SKEW_MS < now) {
+            error = "Token expired";
+        } else if (nonce != null && !nonce.isEmpty() && !nonce.equals(claims.optString("nonce"))) {
+            error = "Nonce mismatch";
+        }
+        if (error != null) {
+            fail(callback, error, INVALID_TOKEN_CODE);
+            return;
+        }
+        synchronized (this) {
+            verified++;
+        }
+        callback.onVerified(claims);
+    }
+
+    private void fail(VerifyCallback callback, String message, String errorCode) {
+        synchronized (this) {
+            rejected++;
+        }
+        callback.onError(message, errorCode);
+    }
+
+    private static boolean hasAudience(JSONObject claims, String audience) {
+        JSONArray audiences = claims.optJSONArray("aud");
+        if (audiences == null) {
+            return audience != null && audience.equals(claims.optString("aud"));
+        }
+        for (int i = 0; i < audiences.length(); i++) {
+            if (audiences.optString(i).equals(audience)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Refresh the key set, then call {@code done} with null or the reason the fetch failed.
+     */
+    private void fetchKeys(Consumer<String> done) {
+        synchronized (this) {
+            lastFetchAttempt = clock.getAsLong();
+            fetches++;
+        }
+        Request request = new Request.Builder().url(jwksUrl).get().build();
+        HttpResilience.getInstance()
+            .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.IDEMPOTENT,
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        done.accept(e.getMessage());
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        String error = null;
+                        try (response) {
+                            if (!response.isSuccessful()) {
+                                error = "HTTP " + response.code();
+                            } else {
+                                JSONArray jwks = BoundedResponseBody.readFields(response.body(), "keys").optJSONArray("keys");
+                                if (jwks != null) {
+                                    storeKeys(jwks);
+                                } else {
+                                    error = "no keys in response";
+                                }
+                            }
+                        } catch (JSONException | IOException e) {
+                            error = "unreadable response: " + e.getMessage();
+                        }
+                        done.accept(error);
+                    }
+                }
+            );
+    }
+
+    private synchronized void storeKeys(JSONArray jwks) {
+        keys = parseKeys(jwks);
+        fetchedAt = clock.getAsLong();
+        storage.write(storageKey, Stats.of("fetchedAt", fetchedAt, "keys", jwks).toString());
+    }
+
+    private void loadStoredKeys() {
+        if (keys != null) {
+            return;
+        }
+        keys = new HashMap<>();
+        String raw = storage.read(storageKey);
+        if (raw == null || raw.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject stored = new JSONObject(raw);
+            keys = parseKeys(stored.getJSONArray("keys"));
+            fetchedAt = stored.optLong("fetchedAt", 0);
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Dropping unreadable stored JWKS", e);
+        }
+    }
+
+    private static Map<String, PublicKey> parseKeys(JSONArray jwks) {
+        Map<String, PublicKey> parsed = new HashMap<>();
+        for (int i = 0; i < jwks.length(); i++) {
+            JSONObject jwk = jwks.optJSONObject(i);
+            if (jwk == null || !"RSA".equals(jwk.optString("kty"))) {
+                continue;
+            }
+            try {
+                BigInteger modulus = new BigInteger(1, decode(jwk.getString("n")).toByteArray());
+                BigInteger exponent = new BigInteger(1, decode(jwk.getString("e")).toByteArray());
+                parsed.put(jwk.optString("kid", ""), KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            } catch (JSONException | GeneralSecurityException | IllegalArgumentException e) {
+                Log.w(LOG_TAG, "Skipping unusable JWK " + jwk.optString("kid"), e);
+            }
+        }
+        return parsed;
+    }
+
+    private static ByteString decode(String base64url) {
+        ByteString decoded = ByteString.decodeBase64(base64url);
+        if (decoded == null) {
+            throw new IllegalArgumentException("Invalid base64url");
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,141 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import okio.Buffer;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Decodes JWT payloads without splitting the token or materialising intermediate strings.
+ * <p>
+ * The payload segment is base64url-decoded straight from the token's chars into a pooled okio buffer and
+ * read with {@link JsonFieldReader}, so asking for a single claim (e.g. {@code exp}) stops as soon as that
+ * claim is found. Both base64url and standard base64 alphabets are accepted, with or without padding.
+ * No signature verification happens here.
+ */
+public final class JwtDecoder {
+
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+        }
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['+'] = 62;
+        DECODE_TABLE['_'] = 63;
+        DECODE_TABLE['/'] = 63;
+    }
+
+    private JwtDecoder() {}
+
+    /**
+     * Decode all payload claims.
+     *
+     * @throws IllegalArgumentException if the token is not a JWT
+     */
+    public static JSONObject decodePayload(String jwt) throws JSONException {
+        Buffer payload = payload(jwt);
+        try {
+            return JsonFieldReader.readObject(payload);
+        } catch (IOException e) {
+            throw new JSONException("Invalid JWT payload: " + e.getMessage());
+        } finally {
+            // Return unread segments to okio's pool.
+            payload.clear();
+        }
+    }
+
+    /**
+     * Decode only the given payload claims; claims that are not present are absent from the result.
+     *
+     * @throws IllegalArgumentException if the token is not a JWT
+     */
+    public static JSONObject readClaims(String jwt, String... claims) throws JSONException {
+        Buffer payload = payload(jwt);
+        try {
+            return JsonFieldReader.readFields(payload, claims);
+        } catch (IOException e) {
+            throw new JSONException("Invalid JWT payload: " + e.getMessage());
+        } finally {
+            // Return unread segments to okio's pool.
+            payload.clear();
+        }
+    }
+
+    /**
+     * @return the {@code exp} claim in seconds, or null when missing or the token can't be decoded
+     */
+    public static Long readExpiry(String jwt) {
+        try {
+            JSONObject claims = readClaims(jwt, "exp");
+            return claims.has("exp") ? claims.getLong("exp") : null;
+        } catch (JSONException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the {@code sub} claim, or null when missing or the token can't be decoded
+     */
+    public static String readSubject(String jwt) {
+        try {
+            JSONObject claims = readClaims(jwt, "sub");
+            return claims.has("sub") ? claims.getString("sub") : null;
+        } catch (JSONException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Buffer payload(String jwt) {
+        if (jwt == null) {
+            throw new IllegalArgumentException("Invalid JWT");
+        }
+        int start = jwt.indexOf('.');
+        if (start < 0) {
+            throw new IllegalArgumentException("Invalid JWT");
+        }
+        start++;
+        int end = jwt.indexOf('.', start);
+        if (end < 0) {
+            end = jwt.length();
+        }
+        if (end == start) {
+            throw new IllegalArgumentException("Invalid JWT");
+        }
+        return decodeBase64(jwt, start, end);
+    }
+
+    /**
+     * Base64 decode {@code chars[start, end)} into a buffer, ignoring trailing padding.
+     */
+    static Buffer decodeBase64(CharSequence chars, int start, int end) {
+        while (end > start && chars.charAt(end - 1) == '=') {
+            end--;
+        }
+        Buffer out = new Buffer();
+        int accumulator = 0;
+        int bits = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            int value = c < 128 ? DECODE_TABLE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid base64 character in JWT");
+            }
+            accumulator = ((accumulator << 6) | value) & 0xFFFF;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out.writeByte((accumulator >> bits) & 0xFF);
+            }
+        }
+        if (bits >= 6) {
+            // A single leftover sextet can't encode a byte.
+            throw new IllegalArgumentException("Invalid base64 length in JWT");
+        }
+        return out;
+    }
+}
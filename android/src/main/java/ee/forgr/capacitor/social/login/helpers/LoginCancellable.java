@@ -0,0 +1,15 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+/**
+ * Providers whose login can be cancelled while it runs: its HTTP calls are cancelled, its login UI is closed and
+ * its pending state is dropped, so that a new login can start right away.
+ */
+public interface LoginCancellable {
+    /**
+     * Cancel the running login and reject its call with {@code USER_CANCELLED}.
+     *
+     * @param providerId OAuth2 provider id to only cancel that provider's login, null for any
+     * @return false when no login was running
+     */
+    boolean cancelLogin(String providerId);
+}
@@ -0,0 +1,342 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.os.Build;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Traces login, refresh and logout operations end to end.
+ * <p>
+ * The plugin starts one trace per operation and provider (plus OAuth2 providerId); providers then open and
+ * close named spans (discovery, authorization, codeExchange, fetchResource, ...) and finish the trace when the
+ * call settles. Spans are addressed by name so a span can start in {@code login} and end in a redirect
+ * handler on another thread. Every span is mirrored into {@code android.os.Trace} as an async section
+ * (API 29+), so it shows up in Perfetto / systrace next to the app's own sections.
+ * <p>
+ * The last {@link #DEFAULT_CAPACITY} traces are kept in a ring buffer for {@code getTraceTimeline}.
+ * Calls for a provider without an active trace are ignored.
+ */
+public final class LoginTracer {
+
+    public static final String STATUS_IN_PROGRESS = "inProgress";
+    public static final String STATUS_SUCCESS = "success";
+    public static final String STATUS_ERROR = "error";
+    public static final String STATUS_CANCELLED = "cancelled";
+    /** A new operation started for the same provider before this one finished. */
+    public static final String STATUS_ABANDONED = "abandoned";
+
+    static final int DEFAULT_CAPACITY = 50;
+    private static final String SECTION_PREFIX = "SocialLogin/";
+    // android.os.Trace rejects section names longer than 127 chars.
+    private static final int MAX_SECTION_NAME = 127;
+
+    private static final LoginTracer INSTANCE = new LoginTracer(DEFAULT_CAPACITY, new PlatformTraceSink());
+
+    /**
+     * Receives span boundaries; {@link PlatformTraceSink} forwards them to {@code android.os.Trace}.
+     */
+    interface TraceSink {
+        void beginSection(String name, int cookie);
+        void endSection(String name, int cookie);
+    }
+
+    private static final class PlatformTraceSink implements TraceSink {
+
+        @Override
+        public void beginSection(String name, int cookie) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && android.os.Trace.isEnabled()) {
+                android.os.Trace.beginAsyncSection(name, cookie);
+            }
+        }
+
+        @Override
+        public void endSection(String name, int cookie) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && android.os.Trace.isEnabled()) {
+                android.os.Trace.endAsyncSection(name, cookie);
+            }
+        }
+    }
+
+    private static final class Span {
+
+        final String name;
+        final String sectionName;
+        final int cookie;
+        final long startNanos;
+        long endNanos = -1;
+        String error;
+
+        Span(String name, String sectionName, int cookie, long startNanos) {
+            this.name = name;
+            this.sectionName = sectionName;
+            this.cookie = cookie;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static final class TraceRecord {
+
+        final String traceId;
+        final String operation;
+        final String provider;
+        final String providerId;
+        final long startedAtMs;
+        final long startNanos;
+        final String sectionName;
+        final int cookie;
+        final List<Span> spans = new ArrayList<>();
+        long endNanos = -1;
+        String status = STATUS_IN_PROGRESS;
+        String error;
+
+        TraceRecord(
+            String traceId,
+            String operation,
+            String provider,
+            String providerId,
+            long startedAtMs,
+            long startNanos,
+            String sectionName,
+            int cookie
+        ) {
+            this.traceId = traceId;
+            this.operation = operation;
+            this.provider = provider;
+            this.providerId = providerId;
+            this.startedAtMs = startedAtMs;
+            this.startNanos = startNanos;
+            this.sectionName = sectionName;
+            this.cookie = cookie;
+        }
+    }
+
+    private final int capacity;
+    private final TraceSink sink;
+    private final SecureRandom random = new SecureRandom();
+    private final ArrayDeque<TraceRecord> timeline = new ArrayDeque<>();
+    private final Map<String, TraceRecord> active = new HashMap<>();
+    private int nextCookie = 1;
+
+    public static LoginTracer getInstance() {
+        return INSTANCE;
+    }
+
+    LoginTracer(int capacity, TraceSink sink) {
+        this.capacity = capacity;
+        this.sink = sink;
+    }
+
+    /**
+     * Start a trace for {@code operation} (login, refresh, logout). An unfinished trace for the same
+     * provider is closed as {@link #STATUS_ABANDONED}.
+     *
+     * @return the new trace id
+     */
+    public String begin(String operation, String provider, String providerId) {
+        String key = key(provider, providerId);
+        long now = System.nanoTime();
+        synchronized (this) {
+            TraceRecord previous = active.remove(key);
+            if (previous != null) {
+                finishLocked(previous, STATUS_ABANDONED, null, now);
+            }
+            String traceId = newTraceId();
+            TraceRecord trace = new TraceRecord(
+                traceId,
+                operation,
+                provider,
+                providerId,
+                System.currentTimeMillis(),
+                now,
+                sectionName(provider, operation),
+                nextCookie++
+            );
+            sink.beginSection(trace.sectionName, trace.cookie);
+            active.put(key, trace);
+            timeline.addLast(trace);
+            while (timeline.size() > capacity) {
+                timeline.removeFirst();
+            }
+            return traceId;
+        }
+    }
+
+    /**
+     * Open span {@code name} on the provider's active trace. Re-opening a span that is still open restarts it.
+     */
+    public synchronized void startSpan(String provider, String providerId, String name) {
+        TraceRecord trace = active.get(key(provider, providerId));
+        if (trace == null) {
+            return;
+        }
+        Span open = findOpenSpan(trace, name);
+        if (open != null) {
+            trace.spans.remove(open);
+            sink.endSection(open.sectionName, open.cookie);
+        }
+        Span span = new Span(name, sectionName(provider, name), nextCookie++, System.nanoTime());
+        sink.beginSection(span.sectionName, span.cookie);
+        trace.spans.add(span);
+    }
+
+    public void endSpan(String provider, String providerId, String name) {
+        endSpan(provider, providerId, name, null);
+    }
+
+    /**
+     * Close span {@code name}; a non-null {@code error} marks it failed.
+     */
+    public synchronized void endSpan(String provider, String providerId, String name, String error) {
+        TraceRecord trace = active.get(key(provider, providerId));
+        if (trace == null) {
+            return;
+        }
+        Span span = findOpenSpan(trace, name);
+        if (span == null) {
+            return;
+        }
+        endSpanLocked(span, error, System.nanoTime());
+    }
+
+    /**
+     * Record a zero-length span, for points in time such as a redirect arriving.
+     */
+    public synchronized void mark(String provider, String providerId, String name) {
+        TraceRecord trace = active.get(key(provider, providerId));
+        if (trace == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        Span span = new Span(name, null, 0, now);
+        span.endNanos = now;
+        trace.spans.add(span);
+    }
+
+    /**
+     * Finish the provider's active trace, closing any span still open. No-op when already finished.
+     */
+    public void finish(String provider, String providerId, String status) {
+        finish(provider, providerId, status, null);
+    }
+
+    public synchronized void finish(String provider, String providerId, String status, String error) {
+        TraceRecord trace = active.remove(key(provider, providerId));
+        if (trace != null) {
+            finishLocked(trace, status, error, System.nanoTime());
+        }
+    }
+
+    /**
+     * Most recent traces first, at most {@code limit}.
+     */
+    public synchronized JSONArray getTimeline(int limit) {
+        JSONArray result = new JSONArray();
+        long now = System.nanoTime();
+        Iterator<TraceRecord> iterator = timeline.descendingIterator();
+        while (iterator.hasNext() && result.length() < limit) {
+            result.put(toJson(iterator.next(), now));
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        timeline.clear();
+        active.clear();
+    }
+
+    private void finishLocked(TraceRecord trace, String status, String error, long now) {
+        for (Span span : trace.spans) {
+            if (span.endNanos < 0) {
+                endSpanLocked(span, STATUS_SUCCESS.equals(status) ? null : status, now);
+            }
+        }
+        trace.endNanos = now;
+        trace.status = status;
+        trace.error = error;
+        sink.endSection(trace.sectionName, trace.cookie);
+    }
+
+    private void endSpanLocked(Span span, String error, long now) {
+        span.endNanos = now;
+        span.error = error;
+        sink.endSection(span.sectionName, span.cookie);
+    }
+
+    private static Span findOpenSpan(TraceRecord trace, String name) {
+        for (int i = trace.spans.size() - 1; i >= 0; i--) {
+            Span span = trace.spans.get(i);
+            if (span.endNanos < 0 && span.name.equals(name)) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    private static JSONObject toJson(TraceRecord trace, long now) {
+        JSONArray spans = new JSONArray();
+        for (Span span : trace.spans) {
+            spans.put(
+                Stats.of(
+                    "name",
+                    span.name,
+                    "offsetMs",
+                    millis(span.startNanos - trace.startNanos),
+                    "durationMs",
+                    span.endNanos >= 0 ? millis(span.endNanos - span.startNanos) : null,
+                    "error",
+                    span.error
+                )
+            );
+        }
+        return Stats.of(
+            "traceId",
+            trace.traceId,
+            "operation",
+            trace.operation,
+            "provider",
+            trace.provider,
+            "providerId",
+            trace.providerId,
+            "startedAt",
+            trace.startedAtMs,
+            "durationMs",
+            millis((trace.endNanos < 0 ? now : trace.endNanos) - trace.startNanos),
+            "status",
+            trace.status,
+            "error",
+            trace.error,
+            "spans",
+            spans
+        );
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static String sectionName(String provider, String name) {
+        String section = SECTION_PREFIX + provider + "/" + name;
+        return section.length() > MAX_SECTION_NAME ? section.substring(0, MAX_SECTION_NAME) : section;
+    }
+
+    private String newTraceId() {
+        byte[] bytes = new byte[8];
+        random.nextBytes(bytes);
+        StringBuilder builder = new StringBuilder(16);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static String key(String provider, String providerId) {
+        return providerId == null ? provider : provider + ":" + providerId;
+    }
+}
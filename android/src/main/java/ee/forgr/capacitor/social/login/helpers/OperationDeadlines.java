@@ -0,0 +1,186 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.json.JSONObject;
+
+/**
+ * Per-operation time budgets for the HTTP legs of login, refresh and validation.
+ * <p>
+ * Each provider reads an optional {@code timeouts} object (milliseconds per operation) in {@code initialize}.
+ * A {@link Deadline} is started when an operation begins and passed down to every call it chains
+ * (discovery fallback, retries), so the whole step, retries and backoff included, stays within the budget.
+ * When it runs out the call fails with a {@link DeadlineExceededException} carrying the operation's error code.
+ */
+public final class OperationDeadlines {
+
+    public static final String DISCOVERY = "discovery";
+    public static final String CODE_EXCHANGE = "codeExchange";
+    public static final String REFRESH = "refresh";
+    public static final String RESOURCE = "resource";
+    public static final String VALIDATION = "validation";
+
+    static final Map<String, Long> DEFAULT_BUDGETS_MS;
+    private static final Map<String, String> ERROR_CODES;
+
+    static {
+        Map<String, Long> budgets = new LinkedHashMap<>();
+        budgets.put(DISCOVERY, 10_000L);
+        budgets.put(CODE_EXCHANGE, 15_000L);
+        budgets.put(REFRESH, 15_000L);
+        budgets.put(RESOURCE, 10_000L);
+        budgets.put(VALIDATION, 7_000L);
+        DEFAULT_BUDGETS_MS = Collections.unmodifiableMap(budgets);
+
+        Map<String, String> codes = new HashMap<>();
+        codes.put(DISCOVERY, "DISCOVERY_TIMEOUT");
+        codes.put(CODE_EXCHANGE, "CODE_EXCHANGE_TIMEOUT");
+        codes.put(REFRESH, "REFRESH_TIMEOUT");
+        codes.put(RESOURCE, "RESOURCE_TIMEOUT");
+        codes.put(VALIDATION, "VALIDATION_TIMEOUT");
+        ERROR_CODES = Collections.unmodifiableMap(codes);
+    }
+
+    private static final OperationDeadlines DEFAULTS = new OperationDeadlines(DEFAULT_BUDGETS_MS, System::nanoTime);
+
+    private final Map<String, Long> budgetsMs;
+    private final LongSupplier nanoClock;
+
+    /**
+     * Thrown to HTTP callbacks when an operation's budget ran out, either before an attempt or while one was in flight.
+     */
+    public static class DeadlineExceededException extends IOException {
+
+        private final String operation;
+        private final String code;
+
+        DeadlineExceededException(Deadline deadline, Throwable cause) {
+            super(deadline.operation + " did not complete within " + deadline.budgetMs + " ms", cause);
+            this.operation = deadline.operation;
+            this.code = deadline.errorCode;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * The remaining budget of one running operation.
+     */
+    public static final class Deadline {
+
+        final String operation;
+        final String errorCode;
+        final long budgetMs;
+        private final long expiresAtNanos;
+        private final LongSupplier nanoClock;
+
+        Deadline(String operation, String errorCode, long budgetMs, long expiresAtNanos, LongSupplier nanoClock) {
+            this.operation = operation;
+            this.errorCode = errorCode;
+            this.budgetMs = budgetMs;
+            this.expiresAtNanos = expiresAtNanos;
+            this.nanoClock = nanoClock;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getErrorCode() {
+            return errorCode;
+        }
+
+        /**
+         * Milliseconds left, never negative.
+         */
+        public long remainingMs() {
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - nanoClock.getAsLong()));
+        }
+
+        public boolean isExpired() {
+            return expiresAtNanos - nanoClock.getAsLong() <= 0;
+        }
+
+        public DeadlineExceededException exceeded(Throwable cause) {
+            return new DeadlineExceededException(this, cause);
+        }
+    }
+
+    public static OperationDeadlines defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Budgets from a provider's {@code timeouts} option; missing keys keep their defaults.
+     *
+     * @throws IllegalArgumentException for unknown operations or non-positive values
+     */
+    public static OperationDeadlines fromConfig(JSONObject timeouts) {
+        if (timeouts == null || timeouts.length() == 0) {
+            return DEFAULTS;
+        }
+        Map<String, Long> budgets = new LinkedHashMap<>(DEFAULT_BUDGETS_MS);
+        Iterator<String> keys = timeouts.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!budgets.containsKey(key)) {
+                throw new IllegalArgumentException("timeouts." + key + " is not a known operation");
+            }
+            long value = timeouts.optLong(key, -1);
+            if (value <= 0) {
+                throw new IllegalArgumentException("timeouts." + key + " must be a positive number of milliseconds");
+            }
+            budgets.put(key, value);
+        }
+        return new OperationDeadlines(budgets, System::nanoTime);
+    }
+
+    OperationDeadlines(Map<String, Long> budgetsMs, LongSupplier nanoClock) {
+        this.budgetsMs = budgetsMs;
+        this.nanoClock = nanoClock;
+    }
+
+    public long budgetMs(String operation) {
+        Long budget = budgetsMs.get(operation);
+        if (budget == null) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        return budget;
+    }
+
+    public Deadline start(String operation) {
+        return start(operation, null);
+    }
+
+    /**
+     * Start {@code operation} as part of {@code parent}: it ends at whichever budget runs out first,
+     * and reports the error code of that budget.
+     */
+    public Deadline start(String operation, Deadline parent) {
+        long budget = budgetMs(operation);
+        long expiresAt = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(budget);
+        if (parent != null && parent.expiresAtNanos - expiresAt <= 0) {
+            return parent;
+        }
+        return new Deadline(operation, ERROR_CODES.get(operation), budget, expiresAt, nanoClock);
+    }
+
+    /**
+     * Error code to reject with when {@code error} is a deadline failure, null otherwise.
+     */
+    public static String errorCode(Throwable error) {
+        return error instanceof DeadlineExceededException ? ((DeadlineExceededException) error).getCode() : null;
+    }
+}
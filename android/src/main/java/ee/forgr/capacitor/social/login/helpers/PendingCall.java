@@ -0,0 +1,65 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import com.getcapacitor.JSObject;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The result of the login a provider has not completed yet.
+ * <p>
+ * Several paths can finish a login (the redirect, the token exchange, a WebView message, {@code cancelLogin})
+ * and they run on OkHttp, UI and WebView threads. Only the path that takes the result completes it: {@link #take}
+ * hands it out once, so a login is never answered twice, and {@link #claim} lets a callback that captured its
+ * own result finish it only if no other path did and no newer login replaced it.
+ */
+public final class PendingCall {
+
+    private CompletableFuture<JSObject> call;
+
+    /**
+     * @return false, leaving {@code call} uncompleted, when another login is still pending
+     */
+    public synchronized boolean start(CompletableFuture<JSObject> call) {
+        if (this.call != null) {
+            return false;
+        }
+        this.call = call;
+        return true;
+    }
+
+    /**
+     * Replace the pending call, e.g. with one answering the call the bridge restored after process death.
+     */
+    public synchronized void set(CompletableFuture<JSObject> call) {
+        this.call = call;
+    }
+
+    public synchronized CompletableFuture<JSObject> peek() {
+        return call;
+    }
+
+    public synchronized boolean isPending() {
+        return call != null;
+    }
+
+    /**
+     * @return the pending result, now owned by the caller to complete, or null when there is none
+     */
+    public synchronized CompletableFuture<JSObject> take() {
+        CompletableFuture<JSObject> taken = call;
+        call = null;
+        return taken;
+    }
+
+    /**
+     * Take {@code call} if it is still the pending one.
+     *
+     * @return false when another path already took it
+     */
+    public synchronized boolean claim(CompletableFuture<JSObject> call) {
+        if (call == null || this.call != call) {
+            return false;
+        }
+        this.call = null;
+        return true;
+    }
+}
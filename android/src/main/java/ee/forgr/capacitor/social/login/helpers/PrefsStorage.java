@@ -0,0 +1,38 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * String values by key, persisted in a {@link SharedPreferences} file outside of tests.
+ */
+interface PrefsStorage {
+    String read(String key);
+
+    void write(String key, String value);
+
+    void remove(String key);
+
+    /**
+     * The app's preferences file {@code name}; writes are applied asynchronously.
+     */
+    static PrefsStorage of(Context context, String name) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(name, Context.MODE_PRIVATE);
+        return new PrefsStorage() {
+            @Override
+            public String read(String key) {
+                return prefs.getString(key, null);
+            }
+
+            @Override
+            public void write(String key, String value) {
+                prefs.edit().putString(key, value).apply();
+            }
+
+            @Override
+            public void remove(String key) {
+                prefs.edit().remove(key).apply();
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A provider rejection seen through {@link AsyncSocialProvider}: the message and error code the bridge
+ * rejects the {@code PluginCall} with.
+ */
+public class ProviderException extends Exception {
+
+    private final String code;
+
+    public ProviderException(String message, String code, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+
+    /**
+     * Fail {@code result} the way {@code PluginCall.reject(message, code, cause)} fails a call; {@code code} and
+     * {@code cause} may be null.
+     */
+    public static void reject(CompletableFuture<?> result, String message, String code, Throwable cause) {
+        result.completeExceptionally(new ProviderException(message, code, cause));
+    }
+
+    public static void reject(CompletableFuture<?> result, String message, String code) {
+        reject(result, message, code, null);
+    }
+
+    public static void reject(CompletableFuture<?> result, String message, Throwable cause) {
+        reject(result, message, null, cause);
+    }
+
+    public static void reject(CompletableFuture<?> result, String message) {
+        reject(result, message, null, null);
+    }
+
+    /**
+     * Error code, e.g. {@code USER_CANCELLED} or {@code REFRESH_TIMEOUT}; null when the provider gave none.
+     */
+    public String getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,264 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.content.Context;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Every provider's current session in one preferences entry, read and parsed once when the plugin initializes.
+ * <p>
+ * Cold start used to parse each provider's own stored JSON before the first {@code isLoggedIn} could answer;
+ * with the snapshot, those are map lookups. Providers keep writing their own storage (as
+ * {@code session.toString()}) and mirror every write here. The two are separate preferences files, so a kill
+ * between the writes can leave them apart: the snapshot keeps a fingerprint of what the provider stored, and
+ * the first lookup of each key checks it against the provider's storage, which wins when they disagree. A key
+ * the snapshot has never seen (first start after an upgrade) is seeded from the provider's storage the same way.
+ * <p>
+ * Sessions are copied in and out, so callers can neither change what the snapshot holds nor see it change.
+ */
+public final class SessionSnapshot {
+
+    private static final String LOG_TAG = "SessionSnapshot";
+    private static final String PREFS_NAME = "CapgoSocialLoginSessions";
+    private static final String PREFS_KEY = "snapshot";
+
+    private static SessionSnapshot instance;
+
+    private static final class Entry {
+
+        // Null records a provider known to be signed out.
+        final JSONObject session;
+        // hashCode of what the provider stored for this session, 0 when it stored nothing.
+        final int stored;
+
+        Entry(JSONObject session, int stored) {
+            this.session = session;
+            this.stored = stored;
+        }
+    }
+
+    private final PrefsStorage storage;
+    private Map<String, Entry> sessions;
+    // Keys checked against the provider's storage since the process started.
+    private final Set<String> verified = new HashSet<>();
+    private long loadNanos = 0;
+    private long seeded = 0;
+    private long replaceConflicts = 0;
+
+    public static synchronized SessionSnapshot getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionSnapshot(PrefsStorage.of(context, PREFS_NAME));
+        }
+        return instance;
+    }
+
+    SessionSnapshot(PrefsStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Read and parse the snapshot if that has not happened yet. Called at the start of {@code initialize} so
+     * providers restoring their state only hit memory; lookups load lazily otherwise.
+     */
+    public synchronized void load() {
+        if (sessions != null) {
+            return;
+        }
+        long started = System.nanoTime();
+        Map<String, Entry> parsed = new HashMap<>();
+        String raw = storage.read(PREFS_KEY);
+        if (raw != null && !raw.isEmpty()) {
+            try {
+                JSONObject object = new JSONObject(raw);
+                Iterator<String> keys = object.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    JSONObject entry = object.optJSONObject(key);
+                    if (entry != null && entry.has("stored")) {
+                        parsed.put(key, new Entry(entry.optJSONObject("session"), entry.optInt("stored")));
+                    }
+                }
+            } catch (JSONException e) {
+                // Providers' own storage is still there; every key gets seeded again.
+                Log.w(LOG_TAG, "Dropping unreadable session snapshot", e);
+                parsed.clear();
+            }
+        }
+        sessions = parsed;
+        loadNanos = System.nanoTime() - started;
+    }
+
+    /**
+     * A copy of the stored session for {@code key}, or null when signed out. {@code legacy} reads the provider's
+     * own stored JSON: once per key and process, to seed a key the snapshot does not know yet or to catch a
+     * snapshot that fell behind the provider's storage.
+     */
+    public synchronized JSONObject getOrSeed(String key, Supplier<String> legacy) {
+        load();
+        if (!verified.contains(key)) {
+            String raw = legacy.get();
+            Entry entry = sessions.get(key);
+            if (entry == null || entry.stored != fingerprint(raw)) {
+                seeded++;
+                sessions.put(key, new Entry(parse(key, raw), fingerprint(raw)));
+                persist();
+            }
+            verified.add(key);
+        }
+        return copy(sessions.get(key).session);
+    }
+
+    /**
+     * Record {@code key}'s current session, as the provider just stored it; null once it signed out.
+     */
+    public synchronized void put(String key, JSONObject session) {
+        load();
+        sessions.put(key, entry(session));
+        verified.add(key);
+        persist();
+    }
+
+    /**
+     * Record {@code session} in place of {@code expected}, the session it was derived from (a refresh of it),
+     * unless {@code key} changed in the meantime: signed out, signed in again or refreshed by someone else.
+     * {@code expected} is the session as returned by {@link #getOrSeed}.
+     *
+     * @return false when {@code key} changed and nothing was recorded
+     */
+    public synchronized boolean replace(String key, JSONObject expected, JSONObject session) {
+        load();
+        Entry current = sessions.get(key);
+        if (!sameContent(current != null ? current.session : null, expected)) {
+            replaceConflicts++;
+            return false;
+        }
+        sessions.put(key, entry(session));
+        persist();
+        return true;
+    }
+
+    private static Entry entry(JSONObject session) {
+        if (session == null) {
+            return new Entry(null, 0);
+        }
+        return new Entry(copy(session), fingerprint(session.toString()));
+    }
+
+    private static int fingerprint(String raw) {
+        return raw == null || raw.isEmpty() ? 0 : raw.hashCode();
+    }
+
+    private static JSONObject parse(String key, String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+        try {
+            return new JSONObject(raw);
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable stored session for " + key, e);
+            return null;
+        }
+    }
+
+    private static JSONObject copy(JSONObject session) {
+        return session == null ? null : (JSONObject) copyValue(session);
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject source = (JSONObject) value;
+            JSONObject copy = new JSONObject();
+            Iterator<String> keys = source.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Stats.put(copy, key, copyValue(source.opt(key)));
+            }
+            return copy;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray source = (JSONArray) value;
+            JSONArray copy = new JSONArray();
+            for (int i = 0; i < source.length(); i++) {
+                copy.put(copyValue(source.opt(i)));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private static boolean sameContent(Object a, Object b) {
+        if (a instanceof JSONObject && b instanceof JSONObject) {
+            JSONObject left = (JSONObject) a;
+            JSONObject right = (JSONObject) b;
+            if (left.length() != right.length()) {
+                return false;
+            }
+            Iterator<String> keys = left.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!right.has(key) || !sameContent(left.opt(key), right.opt(key))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof JSONArray && b instanceof JSONArray) {
+            JSONArray left = (JSONArray) a;
+            JSONArray right = (JSONArray) b;
+            if (left.length() != right.length()) {
+                return false;
+            }
+            for (int i = 0; i < left.length(); i++) {
+                if (!sameContent(left.opt(i), right.opt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void persist() {
+        JSONObject object = new JSONObject();
+        for (Map.Entry<String, Entry> entry : sessions.entrySet()) {
+            Entry value = entry.getValue();
+            Stats.put(
+                object,
+                entry.getKey(),
+                Stats.of("session", value.session != null ? value.session : JSONObject.NULL, "stored", value.stored)
+            );
+        }
+        storage.write(PREFS_KEY, object.toString());
+    }
+
+    public synchronized JSONObject getStats() {
+        int active = 0;
+        if (sessions != null) {
+            for (Entry entry : sessions.values()) {
+                if (entry.session != null) {
+                    active++;
+                }
+            }
+        }
+        return Stats.of(
+            "loaded",
+            sessions != null,
+            "loadMs",
+            loadNanos / 1_000_000.0,
+            "sessions",
+            active,
+            "seeded",
+            seeded,
+            "replaceConflicts",
+            replaceConflicts
+        );
+    }
+}
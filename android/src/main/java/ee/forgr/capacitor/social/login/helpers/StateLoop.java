@@ -0,0 +1,120 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.json.JSONObject;
+
+/**
+ * The one thread provider state changes run on.
+ * <p>
+ * Plugin calls, activity results, redirects and the results of providers' network and Credential Manager calls
+ * are posted here, so pending logins, token fields and the provider map are only ever touched by one thread at
+ * a time, in the order things happened. HTTP stays asynchronous: requests run and response bodies are read on
+ * OkHttp's threads, and only the state change that follows is posted. A task must never block on something
+ * that is itself posted here.
+ * <p>
+ * The plugin runs the loop on a {@code HandlerThread}; this class only needs an {@link Executor} that runs
+ * tasks one at a time, in order. {@link #inline()} runs tasks on the calling thread, for providers used
+ * without the plugin.
+ */
+public final class StateLoop implements Executor {
+
+    private static final StateLoop INLINE = new StateLoop(null, null);
+
+    private final Executor thread;
+    private final Consumer<RuntimeException> onFailure;
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    // Written on the loop thread only.
+    private volatile long ran = 0;
+    private volatile long failed = 0;
+    private volatile long waitNanos = 0;
+    private volatile long maxWaitNanos = 0;
+    private volatile long busyNanos = 0;
+
+    /**
+     * @param thread runs tasks one at a time, in the order they were posted; throws
+     *     {@link RejectedExecutionException} once it has been shut down
+     * @param onFailure told about tasks that threw; the loop itself keeps running
+     */
+    public StateLoop(Executor thread, Consumer<RuntimeException> onFailure) {
+        this.thread = thread;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * A loop that runs each task right away on the calling thread, with no ordering or stats.
+     */
+    public static StateLoop inline() {
+        return INLINE;
+    }
+
+    /**
+     * @throws RejectedExecutionException if the loop's thread has been shut down; the task will never run
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (thread == null) {
+            task.run();
+            return;
+        }
+        long postedAt = System.nanoTime();
+        posted.incrementAndGet();
+        maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+        try {
+            thread.execute(() -> run(task, postedAt));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            posted.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task, long postedAt) {
+        queued.decrementAndGet();
+        long started = System.nanoTime();
+        long waited = started - postedAt;
+        waitNanos += waited;
+        if (waited > maxWaitNanos) {
+            maxWaitNanos = waited;
+        }
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            failed++;
+            onFailure.accept(e);
+        } finally {
+            busyNanos += System.nanoTime() - started;
+            ran++;
+        }
+    }
+
+    /**
+     * Tasks posted and run, how long they waited in the queue and how long the loop was busy.
+     */
+    public JSONObject getStats() {
+        long ran = this.ran;
+        return Stats.of(
+            "posted",
+            posted.get(),
+            "ran",
+            ran,
+            "failed",
+            failed,
+            "queued",
+            queued.get(),
+            "maxQueued",
+            maxQueued.get(),
+            "avgWaitMs",
+            ran > 0 ? waitNanos / (double) ran / 1_000_000.0 : 0,
+            "maxWaitMs",
+            maxWaitNanos / 1_000_000.0,
+            "busyMs",
+            busyNanos / 1_000_000.0
+        );
+    }
+}
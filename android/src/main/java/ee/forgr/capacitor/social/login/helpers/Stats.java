@@ -0,0 +1,41 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds the JSON objects returned by the {@code getStats()} methods and diagnostics.
+ * <p>
+ * Values are primitives, strings or JSON, so {@link JSONObject#put} cannot fail on them except for a NaN or
+ * infinite number, which is a bug in the caller.
+ */
+public final class Stats {
+
+    private Stats() {}
+
+    /**
+     * An object of alternating keys and values, e.g. {@code Stats.of("hits", hits, "misses", misses)}. Null
+     * values are left out.
+     */
+    public static JSONObject of(Object... keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Stats.of takes key/value pairs");
+        }
+        JSONObject stats = new JSONObject();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            put(stats, (String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return stats;
+    }
+
+    /**
+     * {@code object.put(key, value)}; a null value removes the key.
+     */
+    public static JSONObject put(JSONObject object, String key, Object value) {
+        try {
+            return object.put(key, value);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid stats value for " + key, e);
+        }
+    }
+}
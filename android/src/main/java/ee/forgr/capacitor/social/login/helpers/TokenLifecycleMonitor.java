@@ -0,0 +1,274 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Pushes token lifecycle changes (issued, refreshed, expiringSoon, expired, revoked) per provider and
+ * OAuth2 providerId, so JS does not have to poll the expiry helpers.
+ * <p>
+ * All expiry deadlines live on a single hashed timer wheel (1 s ticks, {@link #WHEEL_SIZE} slots, with
+ * round counters for deadlines further out). Nothing runs between deadlines: one task is scheduled for the
+ * earliest pending deadline and moved whenever a session is tracked or cancelled. Tracking a session again
+ * replaces its previous deadlines.
+ */
+public final class TokenLifecycleMonitor {
+
+    public static final String ISSUED = "issued";
+    public static final String REFRESHED = "refreshed";
+    public static final String EXPIRING_SOON = "expiringSoon";
+    public static final String EXPIRED = "expired";
+    public static final String REVOKED = "revoked";
+
+    static final long TICK_MS = 1000;
+    static final int WHEEL_SIZE = 512;
+    static final long EXPIRING_SOON_LEAD_MS = 5 * 60_000;
+
+    public interface Listener {
+        /**
+         * @param providerId OAuth2 provider id, null for the built-in providers
+         * @param expiresAt expiry in epoch millis, null when unknown (e.g. revoked)
+         */
+        void onTokenLifecycleEvent(String type, String provider, String providerId, Long expiresAt);
+    }
+
+    private static final class Timeout {
+
+        final String key;
+        final String provider;
+        final String providerId;
+        final String type;
+        final long expiresAt;
+        final long deadlineTick;
+        final int slot;
+        long remainingRounds;
+
+        Timeout(String key, String provider, String providerId, String type, long expiresAt, long deadlineTick, long remainingRounds) {
+            this.key = key;
+            this.provider = provider;
+            this.providerId = providerId;
+            this.type = type;
+            this.expiresAt = expiresAt;
+            this.deadlineTick = deadlineTick;
+            this.slot = (int) (deadlineTick % WHEEL_SIZE);
+            this.remainingRounds = remainingRounds;
+        }
+    }
+
+    private final Listener listener;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService ticker;
+    private final List<LinkedList<Timeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Map<String, List<Timeout>> timeoutsByKey = new HashMap<>();
+    private final long startedAt;
+    private long currentTick = 0;
+    private int pending = 0;
+    private ScheduledFuture<?> tickerFuture;
+    private long tickerRunsAt = -1;
+
+    public TokenLifecycleMonitor(Listener listener) {
+        this(listener, System::currentTimeMillis, true);
+    }
+
+    TokenLifecycleMonitor(Listener listener, LongSupplier clock, boolean startTicker) {
+        this.listener = listener;
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new LinkedList<>());
+        }
+        this.ticker = startTicker
+            ? Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "CapgoSocialLoginTokenWheel");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    }
+
+    /**
+     * A new session was established (login).
+     */
+    public void issued(String provider, String providerId, Long expiresAt) {
+        track(provider, providerId, expiresAt);
+        listener.onTokenLifecycleEvent(ISSUED, provider, providerId, expiresAt);
+    }
+
+    /**
+     * The session's access token was refreshed.
+     */
+    public void refreshed(String provider, String providerId, Long expiresAt) {
+        track(provider, providerId, expiresAt);
+        listener.onTokenLifecycleEvent(REFRESHED, provider, providerId, expiresAt);
+    }
+
+    /**
+     * The session ended (logout or revocation).
+     */
+    public void revoked(String provider, String providerId) {
+        cancel(provider, providerId);
+        listener.onTokenLifecycleEvent(REVOKED, provider, providerId, null);
+    }
+
+    /**
+     * Schedule expiringSoon/expired for a session restored from storage, without emitting issued.
+     * A null expiry only clears previous deadlines.
+     */
+    public synchronized void track(String provider, String providerId, Long expiresAt) {
+        String key = key(provider, providerId);
+        cancelLocked(key);
+        if (expiresAt == null) {
+            reschedule();
+            return;
+        }
+        long now = clock.getAsLong();
+        if (pending == 0) {
+            // The ticker was idle: skip the empty ticks instead of replaying them.
+            currentTick = Math.max(currentTick, (now - startedAt) / TICK_MS);
+        }
+        List<Timeout> timeouts = new ArrayList<>(2);
+        long soonAt = expiresAt - EXPIRING_SOON_LEAD_MS;
+        if (soonAt > now) {
+            timeouts.add(schedule(key, provider, providerId, EXPIRING_SOON, expiresAt, soonAt));
+        }
+        timeouts.add(schedule(key, provider, providerId, EXPIRED, expiresAt, expiresAt));
+        timeoutsByKey.put(key, timeouts);
+        reschedule();
+    }
+
+    public synchronized void cancel(String provider, String providerId) {
+        cancelLocked(key(provider, providerId));
+        reschedule();
+    }
+
+    /**
+     * Stop the ticker and drop all deadlines.
+     */
+    public synchronized void shutdown() {
+        for (LinkedList<Timeout> bucket : wheel) {
+            bucket.clear();
+        }
+        timeoutsByKey.clear();
+        pending = 0;
+        stopTicker();
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    synchronized int pendingCount() {
+        return pending;
+    }
+
+    /**
+     * When the earliest pending deadline is due (start of its tick), -1 when nothing is pending.
+     */
+    synchronized long nextDeadlineAt() {
+        long earliestTick = Long.MAX_VALUE;
+        for (List<Timeout> timeouts : timeoutsByKey.values()) {
+            for (Timeout timeout : timeouts) {
+                earliestTick = Math.min(earliestTick, timeout.deadlineTick);
+            }
+        }
+        return earliestTick == Long.MAX_VALUE ? -1 : startedAt + earliestTick * TICK_MS;
+    }
+
+    /**
+     * Process every tick up to {@code now}, firing due deadlines. Listener calls happen outside the lock.
+     */
+    void advanceTo(long now) {
+        List<Timeout> due = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (now - startedAt) / TICK_MS;
+            while (currentTick <= targetTick) {
+                Iterator<Timeout> iterator = wheel.get((int) (currentTick % WHEEL_SIZE)).iterator();
+                while (iterator.hasNext()) {
+                    Timeout timeout = iterator.next();
+                    if (timeout.remainingRounds > 0) {
+                        timeout.remainingRounds--;
+                        continue;
+                    }
+                    iterator.remove();
+                    pending--;
+                    List<Timeout> siblings = timeoutsByKey.get(timeout.key);
+                    if (siblings != null) {
+                        siblings.remove(timeout);
+                        if (siblings.isEmpty()) {
+                            timeoutsByKey.remove(timeout.key);
+                        }
+                    }
+                    due.add(timeout);
+                }
+                currentTick++;
+            }
+            // Whatever ran us is done; aim the next run at the next deadline.
+            stopTicker();
+            reschedule();
+        }
+        for (Timeout timeout : due) {
+            listener.onTokenLifecycleEvent(timeout.type, timeout.provider, timeout.providerId, timeout.expiresAt);
+        }
+    }
+
+    private Timeout schedule(String key, String provider, String providerId, String type, long expiresAt, long fireAt) {
+        long deadlineTick = Math.max(currentTick, (fireAt - startedAt + TICK_MS - 1) / TICK_MS);
+        long ticksAway = deadlineTick - currentTick;
+        Timeout timeout = new Timeout(key, provider, providerId, type, expiresAt, deadlineTick, ticksAway / WHEEL_SIZE);
+        wheel.get(timeout.slot).add(timeout);
+        pending++;
+        return timeout;
+    }
+
+    private void cancelLocked(String key) {
+        List<Timeout> timeouts = timeoutsByKey.remove(key);
+        if (timeouts == null) {
+            return;
+        }
+        for (Timeout timeout : timeouts) {
+            if (wheel.get(timeout.slot).remove(timeout)) {
+                pending--;
+            }
+        }
+    }
+
+    /**
+     * Point the single ticker task at the earliest pending deadline, or stop it when there is none.
+     */
+    private void reschedule() {
+        if (ticker == null) {
+            return;
+        }
+        long runAt = nextDeadlineAt();
+        if (runAt == tickerRunsAt) {
+            return;
+        }
+        stopTicker();
+        if (runAt < 0 || ticker.isShutdown()) {
+            return;
+        }
+        long delay = Math.max(0, runAt - clock.getAsLong());
+        tickerFuture = ticker.schedule(() -> advanceTo(clock.getAsLong()), delay, TimeUnit.MILLISECONDS);
+        tickerRunsAt = runAt;
+    }
+
+    private void stopTicker() {
+        if (tickerFuture != null) {
+            tickerFuture.cancel(false);
+            tickerFuture = null;
+        }
+        tickerRunsAt = -1;
+    }
+
+    private static String key(String provider, String providerId) {
+        return providerId == null ? provider : provider + ":" + providerId;
+    }
+}
@@ -0,0 +1,46 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import org.json.JSONObject;
+
+/**
+ * The endpoints of an OpenID Connect discovery document ({@code /.well-known/openid-configuration}).
+ */
+public final class OidcDiscovery {
+
+    // Only these members are decoded from discovery responses; everything else is skipped.
+    public static final String[] FIELDS = { "authorization_endpoint", "token_endpoint", "end_session_endpoint" };
+
+    // Null when the document does not list them.
+    public final String authorizationEndpoint;
+    public final String tokenEndpoint;
+    public final String endSessionEndpoint;
+
+    private OidcDiscovery(String authorizationEndpoint, String tokenEndpoint, String endSessionEndpoint) {
+        this.authorizationEndpoint = authorizationEndpoint;
+        this.tokenEndpoint = tokenEndpoint;
+        this.endSessionEndpoint = endSessionEndpoint;
+    }
+
+    public static String documentUrl(String issuerUrl) {
+        int end = issuerUrl.length();
+        while (end > 0 && issuerUrl.charAt(end - 1) == '/') {
+            end--;
+        }
+        return issuerUrl.substring(0, end) + "/.well-known/openid-configuration";
+    }
+
+    public static OidcDiscovery parse(JSONObject document) {
+        return new OidcDiscovery(
+            document.optString("authorization_endpoint", null),
+            document.optString("token_endpoint", null),
+            document.optString("end_session_endpoint", null)
+        );
+    }
+
+    /**
+     * {@code configured} when set, else {@code discovered}.
+     */
+    public static String prefer(String configured, String discovered) {
+        return configured != null && !configured.isEmpty() ? configured : discovered;
+    }
+}
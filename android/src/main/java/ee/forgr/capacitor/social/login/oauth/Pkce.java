@@ -0,0 +1,46 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.UUID;
+import okio.ByteString;
+
+/**
+ * PKCE (RFC 7636) verifiers and S256 challenges, and login {@code state} values.
+ */
+public final class Pkce {
+
+    // Seeding a SecureRandom is the expensive part; one instance serves every login.
+    private static final SecureRandom random = new SecureRandom();
+
+    private Pkce() {}
+
+    /**
+     * A random 86-character verifier (64 bytes, base64url without padding).
+     */
+    public static String generateCodeVerifier() {
+        byte[] code = new byte[64];
+        random.nextBytes(code);
+        return base64UrlNoPadding(ByteString.of(code));
+    }
+
+    /**
+     * The S256 {@code code_challenge} for {@code verifier}.
+     */
+    public static String codeChallenge(String verifier) {
+        return base64UrlNoPadding(ByteString.encodeString(verifier, StandardCharsets.US_ASCII).sha256());
+    }
+
+    public static String generateState() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static String base64UrlNoPadding(ByteString bytes) {
+        String encoded = bytes.base64Url();
+        int end = encoded.length();
+        while (end > 0 && encoded.charAt(end - 1) == '=') {
+            end--;
+        }
+        return encoded.substring(0, end);
+    }
+}
@@ -0,0 +1,178 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import ee.forgr.capacitor.social.login.helpers.BoundedResponseBody;
+import ee.forgr.capacitor.social.login.helpers.Stats;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Single-flight refresh of one stored OAuth2 session: concurrent callers holding the same stale token wait for
+ * one refresh and share its result.
+ * <p>
+ * The session is stored as {@code {"accessToken", "tokenType", "expiresAt", "refreshToken", "idToken", "scope"}}
+ * and the token endpoint as {@code {"accessTokenEndpoint", "appId", "clientSecret", "additionalTokenParameters"}};
+ * where both live is up to the {@link Store}.
+ */
+public final class TokenRefresher {
+
+    /**
+     * Tokens this close to expiry are refreshed before use.
+     */
+    public static final long EXPIRY_SKEW_MS = 30_000;
+
+    public interface Store {
+        /**
+         * @return the stored session, or null when signed out
+         */
+        JSONObject readTokens();
+
+        /**
+         * Store {@code tokens} in place of {@code previous}, the session read by {@link #readTokens} they were
+         * refreshed from, unless the session changed in the meantime (signed out, signed in again).
+         *
+         * @return false when the session changed and nothing was stored
+         */
+        boolean replaceTokens(JSONObject previous, JSONObject tokens);
+
+        /**
+         * @return the token endpoint configuration, or null when none was recorded
+         */
+        JSONObject readRefreshConfig();
+    }
+
+    private final String name;
+    private final Store store;
+    private final OkHttpClient httpClient;
+    private final LongSupplier clock;
+    private long refreshes = 0;
+    private long coalesced = 0;
+    private long discarded = 0;
+
+    /**
+     * @param name used in error messages, e.g. the OAuth2 provider id
+     */
+    public TokenRefresher(String name, Store store, OkHttpClient httpClient, LongSupplier clock) {
+        this.name = name;
+        this.store = store;
+        this.httpClient = httpClient;
+        this.clock = clock;
+    }
+
+    /**
+     * The stored access token as is, or null when signed out.
+     */
+    public String getAccessToken() {
+        JSONObject tokens = store.readTokens();
+        String accessToken = tokens != null ? tokens.optString("accessToken", "") : "";
+        return accessToken.isEmpty() ? null : accessToken;
+    }
+
+    /**
+     * The stored access token, refreshed first if it expires within {@link #EXPIRY_SKEW_MS}. Blocks on the
+     * network when refreshing.
+     *
+     * @return null when signed out
+     * @throws IOException when a needed refresh fails
+     */
+    public String getFreshAccessToken() throws IOException {
+        JSONObject tokens = store.readTokens();
+        String accessToken = tokens != null ? tokens.optString("accessToken", "") : "";
+        if (accessToken.isEmpty()) {
+            return null;
+        }
+        long expiresAt = tokens.optLong("expiresAt", 0);
+        if (expiresAt > 0 && expiresAt - EXPIRY_SKEW_MS <= clock.getAsLong()) {
+            return refreshReplacing(accessToken);
+        }
+        return accessToken;
+    }
+
+    /**
+     * Replace {@code staleAccessToken}, unless a concurrent caller already did, in which case its result is
+     * returned without another request.
+     *
+     * @return the new access token, or null when signed out, also when that happened during the refresh
+     */
+    public synchronized String refreshReplacing(String staleAccessToken) throws IOException {
+        JSONObject tokens = store.readTokens();
+        if (tokens == null) {
+            return null;
+        }
+        String current = tokens.optString("accessToken", "");
+        long expiresAt = tokens.optLong("expiresAt", 0);
+        boolean currentUsable = expiresAt <= 0 || expiresAt - EXPIRY_SKEW_MS > clock.getAsLong();
+        if (!current.isEmpty() && !current.equals(staleAccessToken) && currentUsable) {
+            coalesced++;
+            return current;
+        }
+        String refreshToken = tokens.optString("refreshToken", "");
+        if (refreshToken.isEmpty()) {
+            throw new IOException("OAuth2 refresh token is not available for '" + name + "'");
+        }
+        JSONObject config = store.readRefreshConfig();
+        String tokenEndpoint = config != null ? config.optString("accessTokenEndpoint", "") : "";
+        if (tokenEndpoint.isEmpty()) {
+            throw new IOException("No token endpoint recorded for '" + name + "'; initialize the provider once first");
+        }
+
+        String clientSecret = config.optString("clientSecret", "");
+        Map<String, String> extra = null;
+        JSONObject additional = config.optJSONObject("additionalTokenParameters");
+        if (additional != null) {
+            extra = new HashMap<>();
+            Iterator<String> keys = additional.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                extra.put(key, additional.optString(key));
+            }
+        }
+
+        refreshes++;
+        Request request = new Request.Builder()
+            .url(tokenEndpoint)
+            .post(TokenRequests.refresh(config.optString("appId"), refreshToken, clientSecret.isEmpty() ? null : clientSecret, extra).build())
+            .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("OAuth2 refresh failed: HTTP " + response.code());
+            }
+            TokenResponse refreshed = TokenResponse.parse(
+                BoundedResponseBody.readFields(response.body(), TokenResponse.FIELDS),
+                3600,
+                clock.getAsLong()
+            );
+            JSONObject updated = new JSONObject(tokens.toString());
+            updated.put("accessToken", refreshed.accessToken);
+            updated.put("tokenType", refreshed.tokenType);
+            updated.put("expiresAt", refreshed.expiresAt);
+            updated.put("refreshToken", refreshed.refreshTokenOr(refreshToken));
+            if (refreshed.idToken != null) {
+                updated.put("idToken", refreshed.idToken);
+            }
+            if (!refreshed.scopes.isEmpty()) {
+                updated.put("scope", new JSONArray(refreshed.scopes));
+            }
+            if (!store.replaceTokens(tokens, updated)) {
+                // Signed out or in again while the request was in flight; that session wins.
+                discarded++;
+                return getAccessToken();
+            }
+            return refreshed.accessToken;
+        } catch (JSONException e) {
+            throw new IOException("Failed to parse OAuth2 refresh response", e);
+        }
+    }
+
+    public synchronized JSONObject getStats() {
+        return Stats.of("refreshes", refreshes, "coalesced", coalesced, "discarded", discarded);
+    }
+}
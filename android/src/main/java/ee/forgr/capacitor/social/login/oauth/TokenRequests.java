@@ -0,0 +1,64 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import java.util.Map;
+import okhttp3.FormBody;
+
+/**
+ * Form bodies for the token endpoint. Callers may add more parameters to the returned builders.
+ */
+public final class TokenRequests {
+
+    private TokenRequests() {}
+
+    /**
+     * {@code grant_type=authorization_code}.
+     *
+     * @param codeVerifier PKCE verifier, or null when PKCE is off
+     * @param clientSecret null for public clients
+     * @param extra additional token parameters, or null
+     */
+    public static FormBody.Builder authorizationCode(
+        String clientId,
+        String code,
+        String redirectUri,
+        String codeVerifier,
+        String clientSecret,
+        Map<String, String> extra
+    ) {
+        FormBody.Builder body = new FormBody.Builder()
+            .add("grant_type", "authorization_code")
+            .add("client_id", clientId)
+            .add("code", code)
+            .add("redirect_uri", redirectUri);
+        if (codeVerifier != null) {
+            body.add("code_verifier", codeVerifier);
+        }
+        return addClientParameters(body, clientSecret, extra);
+    }
+
+    /**
+     * {@code grant_type=refresh_token}.
+     *
+     * @param clientSecret null for public clients
+     * @param extra additional token parameters, or null
+     */
+    public static FormBody.Builder refresh(String clientId, String refreshToken, String clientSecret, Map<String, String> extra) {
+        FormBody.Builder body = new FormBody.Builder()
+            .add("grant_type", "refresh_token")
+            .add("refresh_token", refreshToken)
+            .add("client_id", clientId);
+        return addClientParameters(body, clientSecret, extra);
+    }
+
+    private static FormBody.Builder addClientParameters(FormBody.Builder body, String clientSecret, Map<String, String> extra) {
+        if (clientSecret != null) {
+            body.add("client_secret", clientSecret);
+        }
+        if (extra != null) {
+            for (Map.Entry<String, String> entry : extra.entrySet()) {
+                body.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return body;
+    }
+}
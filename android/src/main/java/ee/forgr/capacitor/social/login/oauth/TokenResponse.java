@@ -0,0 +1,72 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A token endpoint response, as read with {@code BoundedResponseBody.readFields(body, TokenResponse.FIELDS)}.
+ */
+public final class TokenResponse {
+
+    // Only these members are decoded from token responses; everything else is skipped.
+    public static final String[] FIELDS = { "access_token", "token_type", "expires_in", "refresh_token", "id_token", "scope" };
+
+    public final String accessToken;
+    public final String tokenType;
+    public final int expiresIn;
+    public final long expiresAt;
+    // Null when the response did not rotate it.
+    public final String refreshToken;
+    public final String idToken;
+    public final List<String> scopes;
+
+    private TokenResponse(
+        String accessToken,
+        String tokenType,
+        int expiresIn,
+        long expiresAt,
+        String refreshToken,
+        String idToken,
+        List<String> scopes
+    ) {
+        this.accessToken = accessToken;
+        this.tokenType = tokenType;
+        this.expiresIn = expiresIn;
+        this.expiresAt = expiresAt;
+        this.refreshToken = refreshToken;
+        this.idToken = idToken;
+        this.scopes = scopes;
+    }
+
+    /**
+     * @param defaultExpiresIn seconds to assume when the response has no {@code expires_in}
+     * @param now epoch milliseconds {@link #expiresAt} is counted from
+     * @throws JSONException when there is no {@code access_token}
+     */
+    public static TokenResponse parse(JSONObject payload, int defaultExpiresIn, long now) throws JSONException {
+        String accessToken = payload.getString("access_token");
+        int expiresIn = payload.optInt("expires_in", defaultExpiresIn);
+        String refreshToken = payload.optString("refresh_token", "");
+        String idToken = payload.optString("id_token", "");
+        String scope = payload.optString("scope", "");
+        return new TokenResponse(
+            accessToken,
+            payload.optString("token_type", "bearer"),
+            expiresIn,
+            now + expiresIn * 1000L,
+            refreshToken.isEmpty() ? null : refreshToken,
+            idToken.isEmpty() ? null : idToken,
+            scope.isEmpty() ? Collections.emptyList() : Arrays.asList(scope.split(" "))
+        );
+    }
+
+    /**
+     * The rotated refresh token, else {@code previous}.
+     */
+    public String refreshTokenOr(String previous) {
+        return refreshToken != null ? refreshToken : previous;
+    }
+}
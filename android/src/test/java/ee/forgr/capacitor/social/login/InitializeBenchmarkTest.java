@@ -0,0 +1,217 @@
+package ee.forgr.capacitor.social.login;
+
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import androidx.appcompat.app.AppCompatActivity;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.MessageHandler;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginConfig;
+import com.getcapacitor.PluginResult;
+import ee.forgr.capacitor.social.login.helpers.DependencyAvailabilityChecker;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+/**
+ * Wall time and allocations of {@code initialize} per provider combination and per number of OAuth2 tenants.
+ * <p>
+ * Runs on a plain JVM under Robolectric; skipped unless enabled:
+ * {@code ./gradlew testDebugUnitTest --tests '*InitializeBenchmarkTest' -PsocialLogin.benchmark=true}.
+ * Each row is the median of {@value #ROUNDS} runs on a fresh plugin after {@value #WARMUP} warm-up runs,
+ * with allocations counted on the calling thread. {@code cold} is the first run of a provider in this JVM and
+ * includes loading its classes; single-provider rows run first so each provider is loaded there.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class InitializeBenchmarkTest {
+
+    private static final int WARMUP = 3;
+    private static final int ROUNDS = 10;
+    private static final int[] OAUTH2_TENANTS = { 1, 10, 100, 1_000 };
+
+    private AppCompatActivity activity;
+    // Every plugin initialized, torn down after the test as the bridge does, which stops its state loop thread.
+    private final List<SocialLoginPlugin> plugins = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("benchmark disabled", Boolean.getBoolean("socialLogin.benchmark"));
+        ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+        controller.get().setTheme(androidx.appcompat.R.style.Theme_AppCompat);
+        activity = controller.setup().get();
+        // Load the plugin and shared helpers up front so cold rows only pay for the provider itself.
+        initialize(new JSObject());
+    }
+
+    @After
+    public void tearDown() {
+        for (SocialLoginPlugin plugin : plugins) {
+            plugin.handleOnDestroy();
+        }
+        plugins.clear();
+    }
+
+    @Test
+    public void testProviderCombinations() throws Exception {
+        // Providers compiled as stubs (socialLogin.<provider>.include=false) reject initialize; skip them.
+        List<String> available = new ArrayList<>();
+        for (String provider : new String[] { "google", "apple", "facebook", "twitter" }) {
+            if (DependencyAvailabilityChecker.isProviderAvailable(provider)) {
+                available.add(provider);
+            }
+        }
+        List<String[]> combinations = new ArrayList<>();
+        for (String provider : available) {
+            combinations.add(new String[] { provider });
+        }
+        if (available.size() > 1) {
+            combinations.add(available.toArray(new String[0]));
+        }
+        for (String[] providers : combinations) {
+            JSObject options = new JSObject();
+            for (String provider : providers) {
+                options.put(provider, providerOptions(provider));
+            }
+            report(String.join("+", providers), measure(options));
+        }
+    }
+
+    @Test
+    public void testOAuth2Tenants() throws Exception {
+        for (int tenants : OAUTH2_TENANTS) {
+            JSObject oauth2 = new JSObject();
+            for (int i = 0; i < tenants; i++) {
+                oauth2.put("tenant" + i, oauth2Options(i));
+            }
+            JSObject options = new JSObject();
+            options.put("oauth2", oauth2);
+            report("oauth2 x" + tenants, measure(options));
+        }
+    }
+
+    private long[] measure(JSObject options) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long coldStart = System.nanoTime();
+        initialize(options);
+        long cold = System.nanoTime() - coldStart;
+        for (int i = 1; i < WARMUP; i++) {
+            initialize(options);
+        }
+        long[] nanos = new long[ROUNDS];
+        long[] bytes = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            initialize(options);
+            nanos[i] = System.nanoTime() - start;
+            bytes[i] = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        }
+        return new long[] { median(nanos), median(bytes), cold };
+    }
+
+    /**
+     * One {@code initialize} on a fresh plugin, as the bridge would call it; fails on reject.
+     */
+    private void initialize(JSObject options) throws Exception {
+        SocialLoginPlugin plugin = spy(new SocialLoginPlugin());
+        plugins.add(plugin);
+        PluginConfig config = mock(PluginConfig.class);
+        when(config.getInt(anyString(), anyInt())).thenAnswer((invocation) -> invocation.getArgument(1));
+        when(config.getConfigJSON()).thenReturn(new JSONObject());
+        doReturn(config).when(plugin).getConfig();
+        doReturn(activity).when(plugin).getActivity();
+        doReturn(activity).when(plugin).getContext();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        MessageHandler handler = mock(MessageHandler.class);
+        doAnswer((invocation) -> {
+            PluginResult failure = invocation.getArgument(2);
+            if (failure != null) {
+                error.set(failure.toString());
+            }
+            return null;
+        })
+            .when(handler)
+            .sendResponseMessage(any(), any(), any());
+
+        plugin.initializeProviders(new PluginCall(handler, "SocialLogin", "benchmark", "initialize", new JSObject(options.toString())));
+        assertNull(error.get());
+    }
+
+    private static JSObject providerOptions(String provider) throws Exception {
+        JSObject options = new JSObject();
+        switch (provider) {
+            case "google":
+                options.put("webClientId", "1234567890-benchmark.apps.googleusercontent.com");
+                break;
+            case "apple":
+                options.put("clientId", "ee.forgr.benchmark");
+                options.put("redirectUrl", "https://example.com/apple/callback");
+                break;
+            case "facebook":
+                options.put("appId", "1234567890");
+                options.put("clientToken", "benchmark-client-token");
+                break;
+            case "twitter":
+                options.put("clientId", "benchmark-client-id");
+                options.put("redirectUrl", "ee.forgr.benchmark://twitter");
+                break;
+            default:
+                throw new IllegalArgumentException(provider);
+        }
+        return options;
+    }
+
+    private static JSObject oauth2Options(int index) throws Exception {
+        JSObject options = new JSObject();
+        options.put("appId", "client-" + index);
+        options.put("authorizationBaseUrl", "https://tenant" + index + ".example.com/oauth2/authorize");
+        options.put("accessTokenEndpoint", "https://tenant" + index + ".example.com/oauth2/token");
+        options.put("redirectUrl", "ee.forgr.benchmark://oauth2/" + index);
+        return options;
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println(
+            "initialize " +
+                label +
+                " (median of " +
+                ROUNDS +
+                "): " +
+                result[0] / 1_000 +
+                "us, " +
+                result[1] / 1_024 +
+                "KiB allocated, cold " +
+                result[2] / 1_000 +
+                "us"
+        );
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
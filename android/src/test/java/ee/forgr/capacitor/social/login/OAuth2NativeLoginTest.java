@@ -0,0 +1,82 @@
+package ee.forgr.capacitor.social.login;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.content.Intent;
+import androidx.appcompat.app.AppCompatActivity;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * A login from native code has no bridge call, which the plugin needs to route the WebView's result back; it must
+ * fail up front instead of opening a WebView whose result never arrives.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class OAuth2NativeLoginTest {
+
+    private final AtomicReference<Activity> current = new AtomicReference<>();
+    private final List<Intent> launched = new ArrayList<>();
+    private OAuth2Provider oauth2;
+
+    @Before
+    public void setUp() throws Exception {
+        AppCompatActivity activity = Robolectric.buildActivity(AppCompatActivity.class).setup().get();
+        current.set(activity);
+        oauth2 = new OAuth2Provider(new HostActivity(current::get), activity);
+        oauth2.initializeProviders(
+            new JSONObject().put(
+                "example",
+                new JSONObject()
+                    .put("appId", "client")
+                    .put("authorizationBaseUrl", "https://example.com/authorize")
+                    .put("accessTokenEndpoint", "https://example.com/token")
+                    .put("redirectUrl", "com.example.app://callback")
+            )
+        );
+        // As the plugin sets it: results only come back for logins started with a bridge call.
+        oauth2.setActivityLauncher((intent, requestCode) -> launched.add(intent));
+    }
+
+    @Test
+    public void testNativeWebViewLoginIsRejectedWithoutOpeningTheWebView() throws Exception {
+        assertEquals(OAuth2Provider.NATIVE_WEBVIEW_UNSUPPORTED_CODE, errorCode(login()));
+        assertTrue(launched.isEmpty());
+    }
+
+    @Test
+    public void testRejectedNativeLoginDoesNotBlockTheNextOne() throws Exception {
+        login();
+
+        // Not "Another OAuth2 login is already running."
+        assertEquals(OAuth2Provider.NATIVE_WEBVIEW_UNSUPPORTED_CODE, errorCode(login()));
+    }
+
+    private CompletableFuture<?> login() throws Exception {
+        return oauth2.loginAsync(new JSONObject().put("providerId", "example"));
+    }
+
+    private static String errorCode(CompletableFuture<?> result) throws Exception {
+        assertTrue("a native WebView login must not stay pending", result.isDone());
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            return ((ProviderException) e.getCause()).getCode();
+        }
+        throw new AssertionError("login succeeded");
+    }
+}
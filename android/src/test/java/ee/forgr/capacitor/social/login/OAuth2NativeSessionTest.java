@@ -0,0 +1,145 @@
+package ee.forgr.capacitor.social.login;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OAuth2NativeSessionTest {
+
+    private final AtomicReference<JSONObject> tokens = new AtomicReference<>();
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final AtomicLong tokenRequests = new AtomicLong();
+    private MockWebServer server;
+    private OAuth2NativeSession session;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(
+            new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if (request.getPath().equals("/token")) {
+                        tokenRequests.incrementAndGet();
+                        try {
+                            // Keep the refresh in flight long enough for the other 401s to queue up behind it.
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new MockResponse().setBody("{\"access_token\":\"fresh\",\"expires_in\":3600}");
+                    }
+                    boolean authorized = "Bearer fresh".equals(request.getHeader("Authorization"));
+                    return new MockResponse().setResponseCode(authorized ? 200 : 401).setBody(authorized ? "ok" : "");
+                }
+            }
+        );
+        server.start();
+        tokens.set(storedTokens("stale", now.get() + 600_000));
+        session = new OAuth2NativeSession(
+            "github",
+            new OAuth2NativeSession.Store() {
+                @Override
+                public JSONObject readTokens() {
+                    return tokens.get();
+                }
+
+                @Override
+                public boolean replaceTokens(JSONObject previous, JSONObject value) {
+                    return tokens.compareAndSet(previous, value);
+                }
+
+                @Override
+                public JSONObject readRefreshConfig() {
+                    try {
+                        return new JSONObject().put("appId", "client").put("accessTokenEndpoint", server.url("/token").toString());
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            },
+            new OkHttpClient(),
+            now::get
+        );
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testConcurrent401sShareOneRefresh() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(session.interceptor()).authenticator(session.authenticator()).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit((Callable<String>) () -> get(client)));
+        }
+        for (Future<String> result : results) {
+            assertEquals("ok", result.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals("fresh", tokens.get().getString("accessToken"));
+        assertEquals("refresh-token", tokens.get().getString("refreshToken"));
+        assertEquals(1, session.getStats().getInt("refreshes"));
+    }
+
+    @Test
+    public void testTokenAboutToExpireIsRefreshedBeforeUse() throws Exception {
+        tokens.set(storedTokens("stale", now.get() + OAuth2NativeSession.EXPIRY_SKEW_MS / 2));
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(session.interceptor()).build();
+
+        assertEquals("ok", get(client));
+        assertEquals(1, tokenRequests.get());
+        assertEquals("/token", server.takeRequest().getPath());
+        assertEquals("Bearer fresh", server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void testSignedOutRequestsGoOutUnchanged() throws Exception {
+        tokens.set(null);
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(session.interceptor()).authenticator(session.authenticator()).build();
+
+        try (Response response = client.newCall(new Request.Builder().url(server.url("/api")).build()).execute()) {
+            assertEquals(401, response.code());
+        }
+        assertNull(server.takeRequest().getHeader("Authorization"));
+        assertEquals(0, tokenRequests.get());
+    }
+
+    private String get(OkHttpClient client) throws Exception {
+        try (Response response = client.newCall(new Request.Builder().url(server.url("/api")).build()).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private static JSONObject storedTokens(String accessToken, long expiresAt) throws Exception {
+        return new JSONObject()
+            .put("accessToken", accessToken)
+            .put("refreshToken", "refresh-token")
+            .put("tokenType", "bearer")
+            .put("expiresAt", expiresAt);
+    }
+}
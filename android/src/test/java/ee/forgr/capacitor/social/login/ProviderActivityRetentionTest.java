@@ -0,0 +1,129 @@
+package ee.forgr.capacitor.social.login;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.app.Activity;
+import androidx.appcompat.app.AppCompatActivity;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.SocialProvider;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+/**
+ * Providers outlive the Activity they were initialized with; after a recreation nothing they hold may keep the
+ * old one reachable.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ProviderActivityRetentionTest {
+
+    // Stands in for Plugin.getActivity(), which follows the bridge to its current Activity.
+    private final AtomicReference<Activity> current = new AtomicReference<>();
+    private final HostActivity host = new HostActivity(current::get);
+
+    @Test
+    public void testRecreatedActivityIsNotRetained() throws Exception {
+        ActivityController<AppCompatActivity> controller = start();
+        List<SocialProvider> providers = createProviders(controller.get());
+        WeakReference<Activity> previous = new WeakReference<>(controller.get());
+
+        controller.recreate();
+        current.set(controller.get());
+        assertNotSame(previous.get(), controller.get());
+
+        for (int i = 0; i < 20 && previous.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertNull("the activity providers were created with is still reachable", previous.get());
+        assertNotNull(providers);
+        assertSame(controller.get(), host.get());
+    }
+
+    @Test
+    public void testDestroyedActivityIsNotHandedOut() {
+        ActivityController<AppCompatActivity> controller = start();
+        assertSame(controller.get(), host.get());
+
+        controller.pause().stop().destroy();
+        assertNull(host.get());
+
+        current.set(null);
+        assertNull(host.get());
+    }
+
+    private ActivityController<AppCompatActivity> start() {
+        ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+        controller.get().setTheme(androidx.appcompat.R.style.Theme_AppCompat);
+        controller.setup();
+        current.set(controller.get());
+        return controller;
+    }
+
+    /**
+     * Every provider as {@link SocialLoginPlugin#initialize} builds and initializes it, with minimal options, so
+     * what initialization binds or registers is covered too. Disabled ones are stubs with the same constructors.
+     */
+    private List<SocialProvider> createProviders(Activity activity) throws Exception {
+        List<SocialProvider> providers = new ArrayList<>();
+
+        OAuth2Provider oauth2 = new OAuth2Provider(host, activity);
+        oauth2.initializeProviders(
+            new JSONObject().put(
+                "example",
+                new JSONObject()
+                    .put("appId", "client")
+                    .put("authorizationBaseUrl", "https://example.com/authorize")
+                    .put("accessTokenEndpoint", "https://example.com/token")
+                    .put("redirectUrl", "com.example.app://callback")
+            )
+        );
+        providers.add(oauth2);
+
+        GoogleProvider google = new GoogleProvider(host, activity);
+        initialize(() -> google.initialize("client.apps.googleusercontent.com", GoogleProvider.GoogleProviderLoginType.ONLINE, null));
+        providers.add(google);
+
+        AppleProvider apple = new AppleProvider("https://example.com/callback", "com.example.app", host, activity, false, false);
+        initialize(apple::initialize);
+        providers.add(apple);
+
+        FacebookProvider facebook = new FacebookProvider(host, activity);
+        initialize(() -> facebook.initialize(new JSONObject().put("appId", "123").put("clientToken", "token")));
+        providers.add(facebook);
+
+        TwitterProvider twitter = new TwitterProvider(host, activity);
+        initialize(() -> twitter.initialize(new JSONObject().put("clientId", "client").put("redirectUrl", "https://example.com/callback")));
+        providers.add(twitter);
+        return providers;
+    }
+
+    private interface Initialization {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run {@code initialization}; a disabled provider's stub refuses to initialize, and the plugin never asks it to.
+     */
+    private static void initialize(Initialization initialization) throws Exception {
+        try {
+            initialization.run();
+        } catch (RuntimeException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("provider is disabled")) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccountStoreTest {
+
+    private static final String KEY = AccountStore.providerKey("oauth2", "github");
+
+    private final InMemoryPrefsStorage storage = new InMemoryPrefsStorage();
+    private final AtomicLong now = new AtomicLong(1_000);
+    private AccountStore store;
+
+    @Before
+    public void setUp() {
+        store = newStore();
+    }
+
+    @Test
+    public void testSavingPastTheCapEvictsLeastRecentlyUsed() throws Exception {
+        store.setMaxAccountsPerProvider(2);
+        store.save(KEY, "alice", "alice@example.com", session("a1"));
+        now.addAndGet(10);
+        store.save(KEY, "bob", null, session("b1"));
+        now.addAndGet(10);
+        // Using alice again makes bob the oldest.
+        assertEquals("a1", store.activate(KEY, "alice").getString("accessToken"));
+        now.addAndGet(10);
+
+        List<String> evicted = store.save(KEY, "carol", null, session("c1"));
+
+        assertEquals(List.of("bob"), evicted);
+        JSONArray accounts = store.list(KEY);
+        assertEquals(2, accounts.length());
+        assertEquals("carol", accounts.getJSONObject(0).getString("subject"));
+        assertTrue(accounts.getJSONObject(0).getBoolean("active"));
+        assertEquals("alice", accounts.getJSONObject(1).getString("subject"));
+        assertEquals("alice@example.com", accounts.getJSONObject(1).getString("label"));
+        assertFalse(accounts.getJSONObject(1).getBoolean("active"));
+        assertFalse(accounts.getJSONObject(1).has("session"));
+    }
+
+    @Test
+    public void testSaveReplacesSessionAndKeepsLabel() throws Exception {
+        store.save(KEY, "alice", "alice@example.com", session("a1"));
+        store.save(KEY, "alice", null, session("a2"));
+
+        JSONArray accounts = store.list(KEY);
+        assertEquals(1, accounts.length());
+        assertEquals("alice@example.com", accounts.getJSONObject(0).getString("label"));
+        assertEquals("a2", store.activate(KEY, "alice").getString("accessToken"));
+        assertNull(store.activate(KEY, "mallory"));
+    }
+
+    @Test
+    public void testLogoutForgetsOnlyTheActiveAccount() throws Exception {
+        store.save(KEY, "alice", null, session("a1"));
+        store.save(KEY, "bob", null, session("b1"));
+
+        assertEquals("bob", store.removeActive(KEY));
+        assertNull(store.activeSubject(KEY));
+        assertNull(store.removeActive(KEY));
+        assertEquals(1, store.list(KEY).length());
+        assertEquals(0, store.list(AccountStore.providerKey("oauth2", "azure")).length());
+
+        store.activate(KEY, "alice");
+        store.removeActive(KEY);
+        assertFalse(storage.contains(KEY));
+    }
+
+    @Test
+    public void testAccountsSurviveARestart() throws Exception {
+        store.save(KEY, "alice", "alice@example.com", session("a1"));
+        store.save(KEY, "bob", null, session("b1"));
+
+        AccountStore restarted = newStore();
+
+        assertEquals("bob", restarted.activeSubject(KEY));
+        assertEquals(2, restarted.list(KEY).length());
+        assertEquals("a1", restarted.activate(KEY, "alice").getString("accessToken"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveCap() {
+        store.setMaxAccountsPerProvider(0);
+    }
+
+    private AccountStore newStore() {
+        return new AccountStore(storage, now::get);
+    }
+
+    private static JSONObject session(String accessToken) throws Exception {
+        return new JSONObject().put("accessToken", accessToken);
+    }
+}
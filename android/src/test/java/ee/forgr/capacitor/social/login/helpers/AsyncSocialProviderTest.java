@@ -0,0 +1,177 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncSocialProviderTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLoginAsyncCompletesWithTheProviderResult() throws Exception {
+        JSObject result = new FakeProvider().loginAsync(new JSONObject().put("providerId", "github")).get(1, TimeUnit.SECONDS);
+        assertEquals("github", result.getString("providerId"));
+        assertEquals("token-github", result.getString("accessToken"));
+    }
+
+    @Test
+    public void testLoginCallResolvesFromLoginAsync() throws Exception {
+        RecordingCall call = new RecordingCall("login", new JSObject().put("provider", "oauth2"));
+        new FakeProvider().login(call, new JSONObject().put("providerId", "github"));
+        call.await();
+        assertNull(call.errorCode);
+        assertEquals("token-github", call.resolved.getString("accessToken"));
+    }
+
+    @Test
+    public void testRefreshCallRejectsWithTheErrorCode() throws Exception {
+        RecordingCall call = new RecordingCall("refresh", new JSObject().put("provider", "oauth2"));
+        new FakeProvider().refresh(call);
+        call.await();
+        assertNull(call.resolved);
+        assertEquals("REFRESH_TIMEOUT", call.errorCode);
+        assertEquals("Refresh timed out", call.errorMessage);
+
+        try {
+            new FakeProvider().refreshAsync(new JSONObject()).get(1, TimeUnit.SECONDS);
+            fail("refresh should fail");
+        } catch (ExecutionException e) {
+            assertEquals("REFRESH_TIMEOUT", ((ProviderException) e.getCause()).getCode());
+        }
+    }
+
+    @Test
+    public void testIsLoggedInCallResolvesWithTheJsShape() throws Exception {
+        RecordingCall call = new RecordingCall("isLoggedIn", new JSObject().put("provider", "oauth2").put("providerId", "github"));
+        new FakeProvider().isLoggedIn(call);
+        call.await();
+        assertTrue(call.resolved.getBoolean("isLoggedIn"));
+
+        assertFalse(new FakeProvider().isLoggedInAsync(new JSONObject().put("providerId", "azure")).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOptionsOfMergesTopLevelFields() throws Exception {
+        JSObject data = new JSObject()
+            .put("provider", "oauth2")
+            .put("providerId", "github")
+            .put("options", new JSObject().put("scope", "openid").put("providerId", "azure"));
+        JSONObject options = AsyncSocialProvider.optionsOf(new RecordingCall("refresh", data));
+        assertEquals("openid", options.getString("scope"));
+        // Nested options win over the top-level field of the same name.
+        assertEquals("azure", options.getString("providerId"));
+        assertFalse(options.has("provider"));
+        assertFalse(options.has("options"));
+    }
+
+    @Test
+    public void testCallsComposeInParallel() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        CompletableFuture<Boolean> github = provider.isLoggedInAsync(new JSONObject().put("providerId", "github"));
+        CompletableFuture<JSObject> login = provider.loginAsync(new JSONObject().put("providerId", "azure"));
+        CompletableFuture.allOf(github, login).get(1, TimeUnit.SECONDS);
+        assertTrue(github.get());
+        assertEquals("token-azure", login.get().getString("accessToken"));
+    }
+
+    /**
+     * Answers from a background thread, like providers waiting on network or UI; only "github" is signed in.
+     */
+    private class FakeProvider implements AsyncSocialProvider {
+
+        @Override
+        public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+            String providerId = options.optString("providerId");
+            return CompletableFuture.supplyAsync(
+                () -> {
+                    JSObject result = new JSObject();
+                    result.put("providerId", providerId);
+                    result.put("accessToken", "token-" + providerId);
+                    return result;
+                },
+                executor
+            );
+        }
+
+        @Override
+        public CompletableFuture<Void> logoutAsync(JSONObject options) {
+            return CompletableFuture.runAsync(() -> {}, executor);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+            return CompletableFuture.supplyAsync(() -> "github".equals(options.optString("providerId")), executor);
+        }
+
+        @Override
+        public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+            CompletableFuture<JSObject> result = new CompletableFuture<>();
+            executor.execute(() -> ProviderException.reject(result, "Refresh timed out", "REFRESH_TIMEOUT"));
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+            CompletableFuture<JSObject> result = new CompletableFuture<>();
+            ProviderException.reject(result, "Not implemented");
+            return result;
+        }
+    }
+
+    /**
+     * A call that records its answer instead of sending it to the bridge.
+     */
+    private static final class RecordingCall extends PluginCall {
+
+        private final CountDownLatch answered = new CountDownLatch(1);
+        volatile JSObject resolved;
+        volatile String errorMessage;
+        volatile String errorCode;
+
+        RecordingCall(String methodName, JSObject data) {
+            super(null, "SocialLogin", "test-" + methodName, methodName, data);
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(getMethodName() + " was not answered", answered.await(1, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void resolve() {
+            resolve(new JSObject());
+        }
+
+        @Override
+        public void resolve(JSObject data) {
+            resolved = data;
+            answered.countDown();
+        }
+
+        @Override
+        public void reject(String msg, String code, Exception ex, JSObject data) {
+            errorMessage = msg;
+            errorCode = code;
+            answered.countDown();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CancellationScopeTest {
+
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        HttpResilience.getInstance().reset();
+        CancellationScope.resetStats();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testCancelAbortsCallInFlight() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        CancellationScope scope = new CancellationScope();
+
+        CompletableFuture<IOException> failure = enqueue(scope, HttpResilience.RetryPolicy.IDEMPOTENT);
+        server.takeRequest(5, TimeUnit.SECONDS);
+        long started = System.nanoTime();
+        assertEquals(1, scope.cancel());
+
+        assertNotNull(failure.get(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 2000);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, HttpResilience.getInstance().getRetryCount());
+    }
+
+    @Test
+    public void testCancelDuringBackoffSkipsRetry() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+        server.enqueue(new MockResponse().setBody("{}"));
+        CancellationScope scope = new CancellationScope();
+
+        CompletableFuture<IOException> failure = enqueue(scope, HttpResilience.RetryPolicy.IDEMPOTENT);
+        server.takeRequest(5, TimeUnit.SECONDS);
+        // Let the 503 come back and the retry get scheduled.
+        Thread.sleep(200);
+        scope.cancel();
+
+        // Reported right away, not when the 1 s backoff ends.
+        assertTrue(failure.get(500, TimeUnit.MILLISECONDS) instanceof CancellationScope.CancelledException);
+        Thread.sleep(1200);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testCancelledScopeRunsLateRegistrationsRightAway() {
+        CancellationScope scope = new CancellationScope();
+        AtomicInteger runs = new AtomicInteger();
+        scope.onCancel(runs::incrementAndGet);
+
+        assertEquals(0, scope.cancel());
+        assertEquals(1, runs.get());
+        assertEquals(0, scope.cancel());
+        assertEquals(1, runs.get());
+
+        scope.onCancel(runs::incrementAndGet);
+        assertEquals(2, runs.get());
+        Call late = client.newCall(new Request.Builder().url(server.url("/late")).build());
+        assertFalse(scope.track(late));
+        assertTrue(late.isCanceled());
+    }
+
+    @Test
+    public void testStatsReportCancelToReadyLatency() throws Exception {
+        CancellationScope.recordCancelToReady(TimeUnit.MILLISECONDS.toNanos(3));
+        CancellationScope.recordCancelToReady(TimeUnit.MILLISECONDS.toNanos(1));
+
+        JSONObject stats = CancellationScope.getStats();
+        assertEquals(2, stats.getLong("cancels"));
+        assertEquals(1.0, stats.getDouble("lastCancelToReadyMs"), 0.001);
+        assertEquals(3.0, stats.getDouble("maxCancelToReadyMs"), 0.001);
+    }
+
+    private CompletableFuture<IOException> enqueue(CancellationScope scope, HttpResilience.RetryPolicy policy) {
+        CompletableFuture<IOException> failure = new CompletableFuture<>();
+        Request request = new Request.Builder().url(server.url("/token")).get().build();
+        HttpResilience.getInstance()
+            .enqueue(
+                client,
+                request,
+                policy,
+                null,
+                scope,
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        failure.complete(e);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        response.close();
+                        failure.completeExceptionally(new AssertionError("unexpected response " + response.code()));
+                    }
+                }
+            );
+        return failure;
+    }
+}
@@ -0,0 +1,66 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ClaimsCacheTest {
+
+    @Test
+    public void testRepeatLookupsHitTheCache() throws Exception {
+        ClaimsCache cache = new ClaimsCache(4);
+        String jwt = token("{\"sub\":\"a\",\"exp\":1735689600}");
+
+        JSONObject first = cache.claims(jwt);
+        assertEquals(Long.valueOf(1735689600L), cache.expiry(jwt));
+        assertSame(first, cache.claims(jwt));
+
+        JSONObject stats = cache.getStats();
+        assertEquals(1, stats.getLong("misses"));
+        assertEquals(2, stats.getLong("hits"));
+        assertEquals(2.0 / 3.0, stats.getDouble("hitRate"), 1e-9);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        ClaimsCache cache = new ClaimsCache(2);
+        String a = token("{\"sub\":\"a\"}");
+        String b = token("{\"sub\":\"b\"}");
+        String c = token("{\"sub\":\"c\"}");
+
+        cache.claims(a);
+        cache.claims(b);
+        cache.claims(a); // a is now most recently used
+        cache.claims(c); // evicts b
+
+        assertEquals(1, cache.getStats().getLong("evictions"));
+        cache.claims(a);
+        assertEquals("a should still be cached", 2, cache.getStats().getLong("hits"));
+        cache.claims(b);
+        assertEquals("b should have been evicted", 4, cache.getStats().getLong("misses"));
+    }
+
+    @Test
+    public void testEvictOnLogoutAndInvalidTokens() throws Exception {
+        ClaimsCache cache = new ClaimsCache(4);
+        String jwt = token("{\"sub\":\"a\",\"exp\":1}");
+
+        cache.expiry(jwt);
+        cache.evict(jwt);
+        assertEquals(0, cache.getStats().getInt("size"));
+
+        assertNull(cache.expiry("garbage"));
+        assertNull(cache.expiry(null));
+        cache.evict(null);
+    }
+
+    private static String token(String payloadJson) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return "eyJhbGciOiJub25lIn0." + encoder.encodeToString(payloadJson.getBytes(StandardCharsets.UTF_8)) + ".";
+    }
+}
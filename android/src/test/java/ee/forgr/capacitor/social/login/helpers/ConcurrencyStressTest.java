@@ -0,0 +1,288 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import ee.forgr.capacitor.social.login.oauth.TokenRefresher;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Login, cancel, refresh, logout and status racing each other on the state providers share: the pending login
+ * call ({@link PendingCall}) and the stored session ({@link SessionSnapshot} behind a {@link TokenRefresher}).
+ */
+public class ConcurrencyStressTest {
+
+    private static final String KEY = "oauth2:stress";
+    private static final long NOW = 1_700_000_000_000L;
+
+    // Every access token is "at-<n>", n drawn here by logins and by the token endpoint alike.
+    private final AtomicLong issued = new AtomicLong();
+    private MockWebServer server;
+    private StressHarness harness;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(
+            new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    // Vary how long the refresh stays in flight, so logouts and logins land on both sides of it.
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    return new MockResponse().setBody(
+                        "{\"access_token\":\"at-" + issued.incrementAndGet() + "\",\"expires_in\":3600,\"refresh_token\":\"rt\"}"
+                    );
+                }
+            }
+        );
+        server.start();
+        harness = new StressHarness(8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        harness.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void testEveryLoginCallIsAnsweredExactlyOnce() throws Exception {
+        for (int round = 0; round < StressHarness.ROUNDS; round++) {
+            PendingCall pending = new PendingCall();
+            StressHarness.CountingCall first = new StressHarness.CountingCall("login");
+            StressHarness.CountingCall second = new StressHarness.CountingCall("login");
+            CompletableFuture<JSObject> firstLogin = answering(first);
+            CompletableFuture<JSObject> secondLogin = answering(second);
+            harness.round(
+                () -> login(pending, firstLogin),
+                () -> login(pending, secondLogin),
+                // cancelLogin
+                () -> complete(pending.take(), "Login cancelled"),
+                // Token exchange callback that captured the first login.
+                () -> {
+                    if (pending.claim(firstLogin)) {
+                        complete(firstLogin, null);
+                    }
+                },
+                // Redirect handler answering whichever login is pending.
+                () -> complete(pending.take(), null)
+            );
+            // Whatever no actor took is still owned by the provider and answered later; answer it here.
+            complete(pending.take(), "drained");
+            for (StressHarness.CountingCall call : new StressHarness.CountingCall[] { first, second }) {
+                if (call.getAnswers() > 1) {
+                    harness.violation(StressHarness.DOUBLE_RESOLVE, call.getCallbackId() + " answered " + call.getAnswers() + " times");
+                } else if (call.getAnswers() == 0) {
+                    harness.violation(StressHarness.UNANSWERED, call.getCallbackId());
+                }
+            }
+        }
+        harness.assertClean();
+    }
+
+    @Test
+    public void testRefreshNeverUndoesLogoutOrLogin() throws Exception {
+        SessionSnapshot snapshot = new SessionSnapshot(new InMemoryPrefsStorage());
+        // Access tokens that made it into the store; a refresh must not hand out any other.
+        Set<String> stored = ConcurrentHashMap.newKeySet();
+        JSONObject config = new JSONObject().put("appId", "client").put("accessTokenEndpoint", server.url("/token").toString());
+        TokenRefresher refresher = new TokenRefresher(
+            "stress",
+            new TokenRefresher.Store() {
+                @Override
+                public JSONObject readTokens() {
+                    return snapshot.getOrSeed(KEY, () -> null);
+                }
+
+                @Override
+                public boolean replaceTokens(JSONObject previous, JSONObject tokens) {
+                    synchronized (stored) {
+                        if (!snapshot.replace(KEY, previous, tokens)) {
+                            return false;
+                        }
+                        stored.add(tokens.optString("accessToken"));
+                        return true;
+                    }
+                }
+
+                @Override
+                public JSONObject readRefreshConfig() {
+                    return config;
+                }
+            },
+            new OkHttpClient(),
+            () -> NOW
+        );
+        // Lineage of the last login or logout, recorded together with the write.
+        AtomicReference<String> lastWrite = new AtomicReference<>();
+
+        for (int round = 0; round < StressHarness.ROUNDS; round++) {
+            String initial = "r" + round + "-initial";
+            String login = "r" + round + "-login";
+            String signedOut = "r" + round + "-signed-out";
+            JSONObject session = session(initial, NOW);
+            snapshot.put(KEY, session);
+            stored.add(session.getString("accessToken"));
+            String stale = session.getString("accessToken");
+            lastWrite.set(initial);
+
+            Runnable refresh = () -> {
+                try {
+                    String token = refresher.refreshReplacing(stale);
+                    if (token != null && !stored.contains(token)) {
+                        harness.violation(StressHarness.LOST_UPDATE, "refresh returned " + token + ", which was never stored");
+                    }
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            };
+            Runnable status = () -> {
+                Set<String> left = new HashSet<>();
+                String lineage = null;
+                long last = -1;
+                for (int i = 0; i < 50; i++) {
+                    JSONObject current = snapshot.getOrSeed(KEY, () -> null);
+                    String seen = current != null ? current.optString("lineage") : signedOut;
+                    long number = current != null ? tokenNumber(current.optString("accessToken")) : -1;
+                    if (!seen.equals(lineage)) {
+                        if (left.contains(seen)) {
+                            harness.violation(StressHarness.STALE_READ, "saw " + seen + " again after " + lineage);
+                        }
+                        if (lineage != null) {
+                            left.add(lineage);
+                        }
+                        lineage = seen;
+                    } else if (number < last) {
+                        harness.violation(StressHarness.STALE_READ, seen + " went from at-" + last + " back to at-" + number);
+                    }
+                    last = number;
+                    Thread.yield();
+                }
+            };
+            harness.round(
+                refresh,
+                refresh,
+                () -> {
+                    try {
+                        refresher.getFreshAccessToken();
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                },
+                status,
+                status,
+                () -> {
+                    synchronized (stored) {
+                        snapshot.put(KEY, null);
+                        lastWrite.set(signedOut);
+                    }
+                },
+                () -> {
+                    synchronized (stored) {
+                        try {
+                            JSONObject fresh = session(login, NOW + 3_600_000L);
+                            snapshot.put(KEY, fresh);
+                            stored.add(fresh.optString("accessToken"));
+                            lastWrite.set(login);
+                        } catch (JSONException e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                }
+            );
+
+            JSONObject last = snapshot.getOrSeed(KEY, () -> null);
+            String lineage = last != null ? last.optString("lineage") : signedOut;
+            if (!lineage.equals(lastWrite.get())) {
+                harness.violation(StressHarness.LOST_UPDATE, "ended on " + lineage + " after " + lastWrite.get() + " was written last");
+            }
+        }
+        harness.assertClean();
+        assertTrue(refresher.getStats().getLong("refreshes") > 0);
+    }
+
+    @Test
+    public void testReplaceConflictsAreCountedInSnapshotStats() throws Exception {
+        SessionSnapshot snapshot = new SessionSnapshot(new InMemoryPrefsStorage());
+        JSONObject before = session("a", NOW);
+        snapshot.put(KEY, before);
+        snapshot.put(KEY, null);
+
+        assertFalse(snapshot.replace(KEY, before, session("a", NOW + 1)));
+        assertEquals(1, snapshot.getStats().getLong("replaceConflicts"));
+    }
+
+    @Test
+    public void testHarnessReportsViolations() {
+        harness.violation(StressHarness.DOUBLE_RESOLVE, "example");
+        try {
+            harness.assertClean();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("double resolve, round 0: example"));
+            return;
+        }
+        throw new AssertionError("assertClean() passed with a violation recorded");
+    }
+
+    /**
+     * A login result answering {@code call}, as the {@link AsyncSocialProvider} adapters wire it.
+     */
+    private static CompletableFuture<JSObject> answering(PluginCall call) {
+        CompletableFuture<JSObject> login = new CompletableFuture<>();
+        AsyncSocialProvider.answer(call, login);
+        return login;
+    }
+
+    private void login(PendingCall pending, CompletableFuture<JSObject> login) {
+        if (!pending.start(login)) {
+            complete(login, "Another OAuth2 login is already running.");
+        }
+    }
+
+    /**
+     * Resolve {@code login}, or reject it with {@code error}; a login completed before is a double resolve.
+     */
+    private void complete(CompletableFuture<JSObject> login, String error) {
+        if (login == null) {
+            return;
+        }
+        boolean completed = error == null
+            ? login.complete(new JSObject())
+            : login.completeExceptionally(new ProviderException(error, null, null));
+        if (!completed) {
+            harness.violation(StressHarness.DOUBLE_RESOLVE, "login completed twice");
+        }
+    }
+
+    private JSONObject session(String lineage, long expiresAt) throws JSONException {
+        return new JSONObject()
+            .put("lineage", lineage)
+            .put("accessToken", "at-" + issued.incrementAndGet())
+            .put("refreshToken", "rt")
+            .put("expiresAt", expiresAt);
+    }
+
+    private static long tokenNumber(String accessToken) {
+        return Long.parseLong(accessToken.substring("at-".length()));
+    }
+}
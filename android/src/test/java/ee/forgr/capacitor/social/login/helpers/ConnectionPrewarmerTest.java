@@ -0,0 +1,110 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPrewarmerTest {
+
+    private static final int ROUNDS = 5;
+
+    private MockWebServer server;
+    private HandshakeCertificates clientCertificates;
+
+    @Before
+    public void setUp() throws Exception {
+        HeldCertificate localhost = new HeldCertificate.Builder().addSubjectAlternativeName("localhost").build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder().heldCertificate(localhost).build();
+        clientCertificates = new HandshakeCertificates.Builder().addTrustedCertificate(localhost.certificate()).build();
+
+        server = new MockWebServer();
+        server.useHttps(serverCertificates.sslSocketFactory(), false);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testExchangeReusesPrewarmedConnection() throws Exception {
+        HttpUrl tokenUrl = server.url("/oauth/token");
+
+        for (int i = 0; i < ROUNDS; i++) {
+            // Cold: the exchange opens its own connection (TCP + TLS).
+            server.enqueue(tokenResponse());
+            exchange(newClient(), tokenUrl);
+            assertEquals("cold exchange should open a new connection", 0, server.takeRequest().getSequenceNumber());
+
+            // Warm: HEAD to the origin first, then the exchange rides the pooled connection.
+            OkHttpClient client = newClient();
+            server.enqueue(new MockResponse().setResponseCode(405));
+            server.enqueue(tokenResponse());
+            CountDownLatch warmed = new CountDownLatch(1);
+            HttpUrl origin = ConnectionPrewarmer.distinctOrigins(tokenUrl.toString()).get(0);
+            ConnectionPrewarmer.getInstance().prewarm(client, origin, warmed::countDown);
+            assertTrue(warmed.await(5, TimeUnit.SECONDS));
+            exchange(client, tokenUrl);
+
+            RecordedRequest head = server.takeRequest();
+            RecordedRequest post = server.takeRequest();
+            assertEquals("HEAD", head.getMethod());
+            assertEquals("/", head.getPath());
+            assertEquals("POST", post.getMethod());
+            assertEquals("exchange should reuse the prewarmed connection", 1, post.getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void testDistinctOriginsSkipsDuplicatesAndInvalidUrls() {
+        List<HttpUrl> origins = ConnectionPrewarmer.distinctOrigins(
+            "https://idp.example.com/oauth/token?client_id=abc",
+            "https://idp.example.com/userinfo",
+            null,
+            "not a url",
+            "https://api.example.com:8443/me#profile"
+        );
+
+        assertEquals(2, origins.size());
+        // Only the origin is warmed, never the endpoint path itself.
+        assertEquals("https://idp.example.com/", origins.get(0).toString());
+        assertEquals("https://api.example.com:8443/", origins.get(1).toString());
+    }
+
+    private OkHttpClient newClient() {
+        return new OkHttpClient.Builder()
+            .sslSocketFactory(clientCertificates.sslSocketFactory(), clientCertificates.trustManager())
+            .build();
+    }
+
+    private static MockResponse tokenResponse() {
+        return new MockResponse().setBody("{\"access_token\":\"at\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+    }
+
+    private static void exchange(OkHttpClient client, HttpUrl tokenUrl) throws Exception {
+        Request request = new Request.Builder()
+            .url(tokenUrl)
+            .post(new FormBody.Builder().add("grant_type", "authorization_code").add("code", "abc").build())
+            .build();
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+    }
+}
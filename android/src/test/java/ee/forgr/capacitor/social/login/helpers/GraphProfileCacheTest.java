@@ -0,0 +1,113 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class GraphProfileCacheTest {
+
+    private static final List<String> LOGIN_FIELDS = List.of("id", "name", "email", "picture.type(large)");
+
+    private final GraphProfileCache cache = new GraphProfileCache(GraphProfileCache.DEFAULT_CAPACITY);
+
+    @Test
+    public void testCoveredFieldsAreServedFromMemory() throws Exception {
+        cache.put("42", "token-a", LOGIN_FIELDS, loginResponse());
+
+        JSONObject profile = cache.get("42", "token-a", List.of("name", "picture.type(large)"));
+
+        assertEquals("42", profile.getString("id"));
+        assertEquals("Ada", profile.getString("name"));
+        assertEquals("https://example.com/ada.png", profile.getJSONObject("picture").getJSONObject("data").getString("url"));
+        assertFalse(profile.has("email"));
+        assertEquals(1, cache.getStats().getInt("hits"));
+    }
+
+    @Test
+    public void testPartialHitOnlyReportsMissingFields() throws Exception {
+        cache.put("42", "token-a", LOGIN_FIELDS, loginResponse());
+        List<String> wanted = List.of("name", "first_name", "picture.type(small)");
+
+        assertNull(cache.get("42", "token-a", wanted));
+        assertEquals(List.of("first_name", "picture.type(small)"), cache.missing("42", "token-a", wanted));
+
+        cache.put("42", "token-a", List.of("first_name", "picture.type(small)"), new JSONObject().put("id", "42").put("first_name", "Ada"));
+        JSONObject profile = cache.get("42", "token-a", wanted);
+        assertEquals("Ada", profile.getString("first_name"));
+        assertFalse(profile.has("picture"));
+    }
+
+    @Test
+    public void testSpecsSharingAResponseKeyAreCachedApart() throws Exception {
+        cache.put("42", "token-a", LOGIN_FIELDS, loginResponse());
+        cache.put("42", "token-a", List.of("picture.type(small)"), new JSONObject().put("id", "42").put("picture", picture("small.png")));
+
+        JSONObject large = cache.get("42", "token-a", List.of("picture.type(large)"));
+        JSONObject small = cache.get("42", "token-a", List.of("picture.type(small)"));
+        assertEquals("https://example.com/ada.png", large.getJSONObject("picture").getJSONObject("data").getString("url"));
+        assertEquals("small.png", small.getJSONObject("picture").getJSONObject("data").getString("url"));
+    }
+
+    @Test
+    public void testReturnedProfilesAreCopies() throws Exception {
+        cache.put("42", "token-a", LOGIN_FIELDS, loginResponse());
+        cache.get("42", "token-a", LOGIN_FIELDS).getJSONObject("picture").put("data", "changed");
+
+        assertEquals(
+            "https://example.com/ada.png",
+            cache.get("42", "token-a", LOGIN_FIELDS).getJSONObject("picture").getJSONObject("data").getString("url")
+        );
+    }
+
+    @Test
+    public void testPartitionSeparatesSpecsSharingAResponseKey() {
+        assertEquals(
+            List.of(List.of("name", "picture.type(large)", "email"), List.of("picture.type(small)")),
+            GraphProfileCache.partition(List.of("name", "picture.type(large)", "picture.type(small)", "email"))
+        );
+        assertEquals(List.of(List.of("name")), GraphProfileCache.partition(List.of("name")));
+    }
+
+    @Test
+    public void testNewTokenDropsWhatWasCached() throws Exception {
+        cache.put("42", "token-a", LOGIN_FIELDS, loginResponse());
+
+        assertNull(cache.get("42", "token-b", List.of("name")));
+        assertEquals(List.of("name"), cache.missing("42", "token-b", List.of("name", "name")));
+
+        cache.put("42", "token-b", List.of("name"), new JSONObject().put("id", "42").put("name", "Ada L."));
+        assertNull(cache.get("42", "token-a", List.of("name")));
+        assertEquals("Ada L.", cache.get("42", "token-b", List.of("name")).getString("name"));
+    }
+
+    @Test
+    public void testClearForgetsEveryUser() throws Exception {
+        cache.put("42", "token-a", LOGIN_FIELDS, loginResponse());
+        cache.clear();
+        assertNull(cache.get("42", "token-a", List.of("name")));
+        assertEquals(0, cache.getStats().getInt("users"));
+    }
+
+    @Test
+    public void testResponseKey() {
+        assertEquals("picture", GraphProfileCache.responseKey("picture.type(large)"));
+        assertEquals("friends", GraphProfileCache.responseKey("friends{name}"));
+        assertEquals("email", GraphProfileCache.responseKey("email"));
+    }
+
+    private static JSONObject loginResponse() throws Exception {
+        return new JSONObject()
+            .put("id", "42")
+            .put("name", "Ada")
+            .put("email", "ada@example.com")
+            .put("picture", picture("https://example.com/ada.png"));
+    }
+
+    private static JSONObject picture(String url) throws Exception {
+        return new JSONObject().put("data", new JSONObject().put("url", url));
+    }
+}
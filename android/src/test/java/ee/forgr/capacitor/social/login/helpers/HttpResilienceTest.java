@@ -0,0 +1,79 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import org.junit.Test;
+
+public class HttpResilienceTest {
+
+    @Test
+    public void testCodeExchangeOnlyRetriesConnectFailuresOnce() {
+        HttpResilience.RetryPolicy policy = HttpResilience.RetryPolicy.SINGLE_GUARDED;
+
+        assertTrue(HttpResilience.shouldRetryFailure(policy, new ConnectException("refused"), 0));
+        assertTrue(HttpResilience.shouldRetryFailure(policy, new UnknownHostException("idp.example"), 0));
+        assertFalse("second attempt must not replay the code", HttpResilience.shouldRetryFailure(policy, new ConnectException(), 1));
+        // A read timeout means the server may already have redeemed the code.
+        assertFalse(HttpResilience.shouldRetryFailure(policy, new SocketTimeoutException("timeout"), 0));
+        assertFalse(HttpResilience.shouldRetryFailure(policy, new IOException("unexpected end of stream"), 0));
+        assertFalse(HttpResilience.shouldRetryResponse(policy, 503, 0));
+    }
+
+    @Test
+    public void testIdempotentRetriesTransientFailuresUpToLimit() {
+        HttpResilience.RetryPolicy policy = HttpResilience.RetryPolicy.IDEMPOTENT;
+
+        assertTrue(HttpResilience.shouldRetryFailure(policy, new SocketTimeoutException("timeout"), 0));
+        assertTrue(HttpResilience.shouldRetryResponse(policy, 503, 0));
+        assertTrue(HttpResilience.shouldRetryResponse(policy, 429, 2));
+        assertFalse(HttpResilience.shouldRetryResponse(policy, 400, 0));
+        assertFalse(HttpResilience.shouldRetryResponse(policy, 503, HttpResilience.MAX_IDEMPOTENT_RETRIES));
+        assertFalse(HttpResilience.shouldRetryFailure(policy, new IOException(), HttpResilience.MAX_IDEMPOTENT_RETRIES));
+    }
+
+    @Test
+    public void testBackoffStaysWithinCeiling() {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long ceiling = Math.min(HttpResilience.MAX_DELAY_MS, HttpResilience.BASE_DELAY_MS << attempt);
+            for (int i = 0; i < 50; i++) {
+                long delay = HttpResilience.backoffDelay(attempt);
+                assertTrue(delay >= 0 && delay <= ceiling);
+            }
+        }
+        assertEquals(2000, HttpResilience.retryAfterDelay("2", 0));
+        assertEquals(HttpResilience.MAX_DELAY_MS, HttpResilience.retryAfterDelay("3600", 0));
+    }
+
+    @Test
+    public void testCircuitBreakerOpensAndRecoversThroughHalfOpen() {
+        HttpResilience.CircuitBreaker breaker = new HttpResilience.CircuitBreaker();
+        long now = 1_000_000L;
+
+        for (int i = 1; i < HttpResilience.FAILURE_THRESHOLD; i++) {
+            assertFalse(breaker.recordFailure(now));
+        }
+        assertTrue("threshold failure trips the breaker", breaker.recordFailure(now));
+        assertEquals("open", breaker.state(now));
+        assertFalse(breaker.allowRequest(now + 1));
+
+        long later = now + HttpResilience.OPEN_DURATION_MS;
+        assertTrue("one trial request is let through", breaker.allowRequest(later));
+        assertFalse("concurrent requests wait for the trial", breaker.allowRequest(later));
+        assertEquals("half-open", breaker.state(later));
+
+        assertTrue("failed trial re-opens", breaker.recordFailure(later));
+        assertFalse(breaker.allowRequest(later + 1));
+
+        long muchLater = later + HttpResilience.OPEN_DURATION_MS;
+        assertTrue(breaker.allowRequest(muchLater));
+        breaker.recordSuccess();
+        assertEquals("closed", breaker.state(muchLater));
+        assertTrue(breaker.allowRequest(muchLater));
+    }
+}
@@ -0,0 +1,42 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link PrefsStorage} kept in memory, counting reads.
+ */
+final class InMemoryPrefsStorage implements PrefsStorage {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public String read(String key) {
+        reads.incrementAndGet();
+        return values.get(key);
+    }
+
+    @Override
+    public void write(String key, String value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void remove(String key) {
+        values.remove(key);
+    }
+
+    boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    int reads() {
+        return reads.get();
+    }
+
+    void resetReads() {
+        reads.set(0);
+    }
+}
@@ -0,0 +1,182 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JwksVerifierTest {
+
+    private static final Set<String> ISSUERS = Set.of("https://www.facebook.com");
+    private static final String APP_ID = "1234567890";
+
+    private final InMemoryPrefsStorage storage = new InMemoryPrefsStorage();
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private MockWebServer server;
+    private KeyPair keys;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keys = generator.generateKeyPair();
+        HttpResilience.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testStoredKeysVerifyWithoutNetwork() throws Exception {
+        storage.write("facebook", new JSONObject().put("fetchedAt", now.get()).put("keys", jwks("k1")).toString());
+
+        JSONObject claims = verify(newVerifier(), token("k1", claims()), "n-1").get(5, TimeUnit.SECONDS);
+
+        assertEquals("42", claims.getString("sub"));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void testRejectsTokensThatDoNotCheckOut() throws Exception {
+        storage.write("facebook", new JSONObject().put("fetchedAt", now.get()).put("keys", jwks("k1")).toString());
+        JwksVerifier verifier = newVerifier();
+
+        assertEquals("Invalid JWT signature", error(verifier, tamper(token("k1", claims())), null));
+        assertEquals("Token was not issued for this app", error(verifier, token("k1", claims().put("aud", "other")), null));
+        assertEquals("Token expired", error(verifier, token("k1", claims().put("exp", now.get() / 1000 - 3600)), null));
+        assertEquals("Nonce mismatch", error(verifier, token("k1", claims()), "n-2"));
+        assertEquals(4, verifier.getStats().getInt("rejected"));
+    }
+
+    @Test
+    public void testUnknownKidFetchesAndPersistsKeys() throws Exception {
+        storage.write("facebook", new JSONObject().put("fetchedAt", now.get()).put("keys", new JSONArray()).toString());
+        server.enqueue(new MockResponse().setBody(new JSONObject().put("keys", jwks("k2")).toString()));
+
+        assertNotNull(verify(newVerifier(), token("k2", claims()), null).get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+
+        // A restart verifies from the persisted set.
+        assertNotNull(verify(newVerifier(), token("k2", claims()), null).get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testStaleKeysStillVerifyWhenFetchFails() throws Exception {
+        storage.write("facebook", new JSONObject().put("fetchedAt", now.get()).put("keys", jwks("k1")).toString());
+        now.addAndGet(JwksVerifier.MAX_AGE_MS + 1);
+        JSONObject fresh = claims().put("exp", now.get() / 1000 + 3600);
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        assertNotNull(verify(newVerifier(), token("k1", fresh), null).get(5, TimeUnit.SECONDS));
+        assertTrue(server.getRequestCount() >= 1);
+    }
+
+    private JwksVerifier newVerifier() {
+        return new JwksVerifier(
+            server.url("/jwks").toString(),
+            storage,
+            "facebook",
+            new OkHttpClient(),
+            now::get
+        );
+    }
+
+    private static CompletableFuture<JSONObject> verify(JwksVerifier verifier, String jwt, String nonce) {
+        CompletableFuture<JSONObject> result = new CompletableFuture<>();
+        verifier.verify(
+            jwt,
+            ISSUERS,
+            APP_ID,
+            nonce,
+            new JwksVerifier.VerifyCallback() {
+                @Override
+                public void onVerified(JSONObject claims) {
+                    result.complete(claims);
+                }
+
+                @Override
+                public void onError(String message, String errorCode) {
+                    result.completeExceptionally(new ProviderException(message, errorCode, null));
+                }
+            }
+        );
+        return result;
+    }
+
+    private static String error(JwksVerifier verifier, String jwt, String nonce) throws Exception {
+        try {
+            verify(verifier, jwt, nonce).get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertEquals(JwksVerifier.INVALID_TOKEN_CODE, ((ProviderException) e.getCause()).getCode());
+            return e.getCause().getMessage();
+        }
+    }
+
+    private JSONObject claims() throws Exception {
+        return new JSONObject()
+            .put("iss", "https://www.facebook.com")
+            .put("aud", APP_ID)
+            .put("sub", "42")
+            .put("nonce", "n-1")
+            .put("exp", now.get() / 1000 + 3600);
+    }
+
+    private String token(String kid, JSONObject claims) throws Exception {
+        String header = base64url(new JSONObject().put("alg", "RS256").put("kid", kid).toString().getBytes(StandardCharsets.UTF_8));
+        String payload = base64url(claims.toString().getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keys.getPrivate());
+        signature.update((header + "." + payload).getBytes(StandardCharsets.US_ASCII));
+        return header + "." + payload + "." + base64url(signature.sign());
+    }
+
+    private static String tamper(String jwt) {
+        char last = jwt.charAt(jwt.length() - 2);
+        return jwt.substring(0, jwt.length() - 2) + (last == 'A' ? 'B' : 'A') + jwt.charAt(jwt.length() - 1);
+    }
+
+    private JSONArray jwks(String kid) throws Exception {
+        RSAPublicKey key = (RSAPublicKey) keys.getPublic();
+        return new JSONArray()
+            .put(
+                new JSONObject()
+                    .put("kty", "RSA")
+                    .put("kid", kid)
+                    .put("alg", "RS256")
+                    .put("n", base64url(unsigned(key.getModulus().toByteArray())))
+                    .put("e", base64url(unsigned(key.getPublicExponent().toByteArray())))
+            );
+    }
+
+    private static byte[] unsigned(byte[] bytes) {
+        return bytes.length > 1 && bytes[0] == 0 ? java.util.Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private static String base64url(byte[] bytes) {
+        return ByteString.of(bytes).base64Url().replace("=", "");
+    }
+}
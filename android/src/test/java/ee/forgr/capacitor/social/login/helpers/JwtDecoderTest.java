@@ -0,0 +1,72 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JwtDecoderTest {
+
+    private static final String HEADER = encode("{\"alg\":\"RS256\",\"kid\":\"k1\"}");
+
+    @Test
+    public void testDecodesUrlSafePayload() throws Exception {
+        // "?>" and "ü" force '-' / '_' characters and multi-byte UTF-8 in the base64url payload.
+        String jwt = token("{\"sub\":\"1234\",\"name\":\"Jürgen ?>?>\",\"exp\":1735689600,\"aud\":[\"a\",\"b\"]}");
+
+        JSONObject claims = JwtDecoder.decodePayload(jwt);
+
+        assertEquals("1234", claims.getString("sub"));
+        assertEquals("Jürgen ?>?>", claims.getString("name"));
+        assertEquals(2, claims.getJSONArray("aud").length());
+        assertEquals(Long.valueOf(1735689600L), JwtDecoder.readExpiry(jwt));
+        assertEquals("1234", JwtDecoder.readSubject(jwt));
+    }
+
+    @Test
+    public void testReadClaimsOnlyReturnsRequestedClaims() throws Exception {
+        JSONObject claims = JwtDecoder.readClaims(token("{\"sub\":\"s\",\"email\":\"e@x.io\",\"iss\":\"i\"}"), "sub", "email");
+
+        assertEquals("s", claims.getString("sub"));
+        assertEquals("e@x.io", claims.getString("email"));
+        assertFalse(claims.has("iss"));
+    }
+
+    @Test
+    public void testAcceptsPaddingAndStandardAlphabet() throws Exception {
+        String json = "{\"sub\":\"??>>\"}";
+        String padded = HEADER + "." + Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8)) + ".sig";
+
+        assertEquals("??>>", JwtDecoder.readSubject(padded));
+        // Two-segment tokens (no signature) decode too, like the previous decodeIdToken behaviour.
+        assertEquals("??>>", JwtDecoder.readSubject(HEADER + "." + encode(json)));
+    }
+
+    @Test
+    public void testMissingClaimsAndInvalidTokens() throws Exception {
+        assertNull(JwtDecoder.readExpiry(token("{\"sub\":\"s\"}")));
+        assertNull(JwtDecoder.readExpiry("not-a-jwt"));
+        assertNull(JwtDecoder.readExpiry(HEADER + ".!!!.sig"));
+        assertNull(JwtDecoder.readSubject(null));
+
+        try {
+            JwtDecoder.decodePayload("only.");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    private static String token(String payloadJson) {
+        return HEADER + "." + encode(payloadJson) + ".c2lnbmF0dXJl";
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
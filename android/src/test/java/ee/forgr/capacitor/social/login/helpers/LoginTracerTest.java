@@ -0,0 +1,121 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoginTracerTest {
+
+    private final List<String> sections = new ArrayList<>();
+    private LoginTracer tracer;
+
+    @Before
+    public void setUp() {
+        tracer = new LoginTracer(
+            3,
+            new LoginTracer.TraceSink() {
+                @Override
+                public void beginSection(String name, int cookie) {
+                    sections.add("B " + name + " " + cookie);
+                }
+
+                @Override
+                public void endSection(String name, int cookie) {
+                    sections.add("E " + name + " " + cookie);
+                }
+            }
+        );
+    }
+
+    @Test
+    public void testRecordsSpansAcrossCallsAndMirrorsSections() throws Exception {
+        String traceId = tracer.begin("login", "oauth2", "github");
+        tracer.startSpan("oauth2", "github", "authorization");
+        tracer.mark("oauth2", "github", "redirectReceived");
+        tracer.endSpan("oauth2", "github", "authorization");
+        tracer.startSpan("oauth2", "github", "codeExchange");
+        tracer.endSpan("oauth2", "github", "codeExchange", "HTTP 500");
+        tracer.finish("oauth2", "github", LoginTracer.STATUS_ERROR, "HTTP 500");
+
+        JSONObject trace = tracer.getTimeline(10).getJSONObject(0);
+        assertEquals(traceId, trace.getString("traceId"));
+        assertEquals(16, traceId.length());
+        assertEquals("login", trace.getString("operation"));
+        assertEquals("github", trace.getString("providerId"));
+        assertEquals(LoginTracer.STATUS_ERROR, trace.getString("status"));
+
+        JSONArray spans = trace.getJSONArray("spans");
+        assertEquals(3, spans.length());
+        assertEquals("authorization", spans.getJSONObject(0).getString("name"));
+        assertEquals("redirectReceived", spans.getJSONObject(1).getString("name"));
+        assertEquals(0.0, spans.getJSONObject(1).getDouble("durationMs"), 0.0);
+        assertEquals("HTTP 500", spans.getJSONObject(2).getString("error"));
+
+        // Every begun async section is ended with the same name and cookie.
+        assertEquals(
+            List.of(
+                "B SocialLogin/oauth2/login 1",
+                "B SocialLogin/oauth2/authorization 2",
+                "E SocialLogin/oauth2/authorization 2",
+                "B SocialLogin/oauth2/codeExchange 3",
+                "E SocialLogin/oauth2/codeExchange 3",
+                "E SocialLogin/oauth2/login 1"
+            ),
+            sections
+        );
+    }
+
+    @Test
+    public void testFinishClosesOpenSpansAndIsIdempotent() throws Exception {
+        tracer.begin("login", "twitter", null);
+        tracer.startSpan("twitter", null, "authorization");
+        tracer.finish("twitter", null, LoginTracer.STATUS_CANCELLED);
+        tracer.finish("twitter", null, LoginTracer.STATUS_ERROR);
+        tracer.startSpan("twitter", null, "late");
+
+        JSONObject trace = tracer.getTimeline(1).getJSONObject(0);
+        assertEquals(LoginTracer.STATUS_CANCELLED, trace.getString("status"));
+        JSONArray spans = trace.getJSONArray("spans");
+        assertEquals(1, spans.length());
+        assertTrue(spans.getJSONObject(0).has("durationMs"));
+        assertEquals(LoginTracer.STATUS_CANCELLED, spans.getJSONObject(0).getString("error"));
+    }
+
+    @Test
+    public void testNewOperationAbandonsUnfinishedOneAndKeepsProvidersApart() throws Exception {
+        String first = tracer.begin("login", "oauth2", "github");
+        tracer.begin("login", "oauth2", "azure");
+        String second = tracer.begin("refresh", "oauth2", "github");
+        assertNotEquals(first, second);
+
+        JSONArray timeline = tracer.getTimeline(10);
+        assertEquals(3, timeline.length());
+        assertEquals(LoginTracer.STATUS_IN_PROGRESS, timeline.getJSONObject(0).getString("status"));
+        assertEquals(LoginTracer.STATUS_IN_PROGRESS, timeline.getJSONObject(1).getString("status"));
+        assertEquals(first, timeline.getJSONObject(2).getString("traceId"));
+        assertEquals(LoginTracer.STATUS_ABANDONED, timeline.getJSONObject(2).getString("status"));
+    }
+
+    @Test
+    public void testRingBufferKeepsMostRecentFirst() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            tracer.begin("logout", "google", null);
+            tracer.finish("google", null, LoginTracer.STATUS_SUCCESS);
+        }
+        String latest = tracer.begin("login", "apple", null);
+
+        JSONArray timeline = tracer.getTimeline(10);
+        assertEquals(3, timeline.length());
+        assertEquals(latest, timeline.getJSONObject(0).getString("traceId"));
+        assertEquals(1, tracer.getTimeline(1).length());
+        assertFalse(timeline.getJSONObject(0).has("providerId"));
+    }
+}
@@ -0,0 +1,153 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OperationDeadlinesTest {
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        HttpResilience.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testConfigOverridesDefaultsAndRejectsBadValues() throws Exception {
+        OperationDeadlines deadlines = OperationDeadlines.fromConfig(new JSONObject().put("codeExchange", 4000));
+        assertEquals(4000, deadlines.budgetMs(OperationDeadlines.CODE_EXCHANGE));
+        assertEquals(
+            (long) OperationDeadlines.DEFAULT_BUDGETS_MS.get(OperationDeadlines.REFRESH),
+            deadlines.budgetMs(OperationDeadlines.REFRESH)
+        );
+        assertSame(OperationDeadlines.defaults(), OperationDeadlines.fromConfig(null));
+
+        for (JSONObject invalid : new JSONObject[] { new JSONObject().put("refresh", 0), new JSONObject().put("exchange", 1000) }) {
+            try {
+                OperationDeadlines.fromConfig(invalid);
+                fail("expected " + invalid + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().startsWith("timeouts."));
+            }
+        }
+    }
+
+    @Test
+    public void testChainedOperationKeepsTheTighterBudget() {
+        AtomicLong now = new AtomicLong(0);
+        OperationDeadlines deadlines = new OperationDeadlines(
+            Map.of(OperationDeadlines.DISCOVERY, 10_000L, OperationDeadlines.CODE_EXCHANGE, 15_000L),
+            now::get
+        );
+        OperationDeadlines.Deadline exchange = deadlines.start(OperationDeadlines.CODE_EXCHANGE);
+
+        // Early on discovery gets its own, shorter budget.
+        assertEquals("DISCOVERY_TIMEOUT", deadlines.start(OperationDeadlines.DISCOVERY, exchange).getErrorCode());
+
+        // Late in the exchange, discovery may only use what the exchange has left.
+        now.set(TimeUnit.SECONDS.toNanos(12));
+        OperationDeadlines.Deadline discovery = deadlines.start(OperationDeadlines.DISCOVERY, exchange);
+        assertSame(exchange, discovery);
+        assertEquals(3000, discovery.remainingMs());
+        assertFalse(discovery.isExpired());
+
+        now.set(TimeUnit.SECONDS.toNanos(15));
+        assertTrue(exchange.isExpired());
+        assertEquals(0, exchange.remainingMs());
+        assertEquals("CODE_EXCHANGE_TIMEOUT", OperationDeadlines.errorCode(exchange.exceeded(null)));
+        assertNull(OperationDeadlines.errorCode(new IOException("boom")));
+    }
+
+    @Test
+    public void testSlowResponseFailsWithTheOperationCode() throws Exception {
+        server.enqueue(new MockResponse().setHeadersDelay(5, TimeUnit.SECONDS).setBody("{}"));
+        OperationDeadlines deadlines = OperationDeadlines.fromConfig(new JSONObject().put("refresh", 300));
+
+        long started = System.nanoTime();
+        Outcome outcome = enqueue(HttpResilience.RetryPolicy.IDEMPOTENT, deadlines.start(OperationDeadlines.REFRESH));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(String.valueOf(outcome.failure.get()), outcome.failure.get() instanceof OperationDeadlines.DeadlineExceededException);
+        assertEquals("REFRESH_TIMEOUT", OperationDeadlines.errorCode(outcome.failure.get()));
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 2000);
+        assertEquals(1, HttpResilience.getInstance().getDeadlineExceededCount());
+    }
+
+    @Test
+    public void testRetryThatDoesNotFitIsSkipped() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "3"));
+        server.enqueue(new MockResponse().setBody("{}"));
+        OperationDeadlines deadlines = OperationDeadlines.fromConfig(new JSONObject().put("resource", 1000));
+
+        Outcome outcome = enqueue(HttpResilience.RetryPolicy.IDEMPOTENT, deadlines.start(OperationDeadlines.RESOURCE));
+
+        // The 3 s Retry-After would overshoot the budget: the caller gets the 503 right away.
+        assertEquals(Integer.valueOf(503), outcome.code.get());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, HttpResilience.getInstance().getRetryCount());
+    }
+
+    private Outcome enqueue(HttpResilience.RetryPolicy policy, OperationDeadlines.Deadline deadline) throws InterruptedException {
+        Outcome outcome = new Outcome();
+        Request request = new Request.Builder().url(server.url("/token")).build();
+        HttpResilience.getInstance()
+            .enqueue(
+                new OkHttpClient(),
+                request,
+                policy,
+                deadline,
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        outcome.failure.set(e);
+                        outcome.done.countDown();
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        outcome.code.set(response.code());
+                        response.close();
+                        outcome.done.countDown();
+                    }
+                }
+            );
+        assertTrue(outcome.done.await(10, TimeUnit.SECONDS));
+        return outcome;
+    }
+
+    private static final class Outcome {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final AtomicReference<Integer> code = new AtomicReference<>();
+    }
+}
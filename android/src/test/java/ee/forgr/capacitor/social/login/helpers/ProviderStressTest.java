@@ -0,0 +1,455 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.net.Uri;
+import androidx.appcompat.app.AppCompatActivity;
+import com.getcapacitor.JSObject;
+import ee.forgr.capacitor.social.login.AppleProvider;
+import ee.forgr.capacitor.social.login.GoogleProvider;
+import ee.forgr.capacitor.social.login.OAuth2Provider;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+/**
+ * The real providers raced through login, the redirect completing it, refresh, logout and isLoggedIn on a state
+ * loop, as the plugin runs them. Every call must be answered, and what isLoggedIn reports, during a round and
+ * after it, must follow from the last state change that succeeded before it.
+ * <p>
+ * The OAuth2 token endpoint is a {@link MockWebServer}. Apple's redirect carries its tokens, and Google signs
+ * in by restoring a saved session, so neither needs the network; Credential Manager has no provider here, so a
+ * Google logout fails, and must leave the session alone. Providers compiled as stubs are skipped.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ProviderStressTest {
+
+    private static final String LOOP_FAILURE = "loop task failed";
+    private static final long ANSWER_TIMEOUT_MS = 5_000;
+    private static final String REDIRECT_URL = "app.stress://callback";
+
+    // Orders when calls ran and were answered; advanced on the state loop, so the order is the loop's.
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong issued = new AtomicLong();
+    private ExecutorService loopThread;
+    private StateLoop loop;
+    private StressHarness harness;
+    private MockWebServer server;
+    private HostActivity host;
+    private Activity activity;
+
+    @Before
+    public void setUp() throws Exception {
+        ActivityController<AppCompatActivity> controller = Robolectric.buildActivity(AppCompatActivity.class);
+        controller.get().setTheme(androidx.appcompat.R.style.Theme_AppCompat);
+        activity = controller.setup().get();
+        host = new HostActivity(() -> activity);
+
+        harness = new StressHarness(5);
+        loopThread = Executors.newSingleThreadExecutor();
+        loop = new StateLoop(loopThread, (e) -> harness.violation(LOOP_FAILURE, e.toString()));
+
+        server = new MockWebServer();
+        server.setDispatcher(
+            new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    // The connection prewarmer's probe.
+                    if ("HEAD".equals(request.getMethod())) {
+                        return new MockResponse().setResponseCode(405);
+                    }
+                    // Vary how long exchanges and refreshes stay in flight, so logouts land on both sides of them.
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    return new MockResponse().setBody(
+                        "{\"access_token\":\"at-" +
+                        issued.incrementAndGet() +
+                        "\",\"token_type\":\"Bearer\",\"expires_in\":3600,\"refresh_token\":\"rt\"}"
+                    );
+                }
+            }
+        );
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        harness.close();
+        loopThread.shutdownNow();
+        loopThread.awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdown();
+    }
+
+    @Test
+    public void testOAuth2() throws Exception {
+        OAuth2Provider provider = new OAuth2Provider(host, activity);
+        provider.setStateLoop(loop);
+        // The WebView is never opened; the redirect actor delivers its result.
+        provider.setActivityLauncher((intent, requestCode) -> {});
+        provider.initializeProviders(
+            new JSONObject().put(
+                "stress",
+                new JSONObject()
+                    .put("appId", "client")
+                    .put("authorizationBaseUrl", server.url("/authorize").toString())
+                    .put("accessTokenEndpoint", server.url("/token").toString())
+                    .put("redirectUrl", REDIRECT_URL)
+            )
+        );
+        JSONObject options = new JSONObject().put("providerId", "stress");
+
+        stress(
+            new Scenario(provider) {
+                @Override
+                CompletableFuture<?> login() {
+                    try {
+                        return provider.loginAsync(new JSONObject().put("providerId", "stress").put("state", "s"));
+                    } catch (JSONException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                void redirect() {
+                    provider.handleActivityResult(
+                        OAuth2Provider.REQUEST_CODE,
+                        Activity.RESULT_OK,
+                        new Intent().putExtra("state", "s").putExtra("code", "c")
+                    );
+                }
+
+                @Override
+                CompletableFuture<?> refresh() {
+                    return provider.refreshAsync(options);
+                }
+
+                @Override
+                CompletableFuture<?> logout() {
+                    return provider.logoutAsync(options);
+                }
+
+                @Override
+                CompletableFuture<Boolean> isLoggedIn() {
+                    return provider.isLoggedInAsync(options);
+                }
+            }
+        );
+    }
+
+    @Test
+    public void testApple() throws Exception {
+        AppleProvider provider = new AppleProvider(REDIRECT_URL, "client", host, activity, true, false);
+        provider.setStateLoop(loop);
+        initialize(provider::initialize);
+        JSONObject options = new JSONObject();
+
+        stress(
+            new Scenario(provider) {
+                @Override
+                CompletableFuture<?> login() {
+                    return provider.loginAsync(new JSONObject());
+                }
+
+                @Override
+                void redirect() {
+                    String url = REDIRECT_URL + "?success=true&access_token=at&refresh_token=rt&id_token=" + idToken("apple-user");
+                    provider.handleIntent(new Intent(Intent.ACTION_VIEW, Uri.parse(url)));
+                }
+
+                @Override
+                CompletableFuture<?> refresh() {
+                    return provider.refreshAsync(options);
+                }
+
+                @Override
+                CompletableFuture<?> logout() {
+                    return provider.logoutAsync(options);
+                }
+
+                @Override
+                CompletableFuture<Boolean> isLoggedIn() {
+                    return provider.isLoggedInAsync(options);
+                }
+            }
+        );
+    }
+
+    @Test
+    public void testGoogle() throws Exception {
+        GoogleProvider provider = new GoogleProvider(host, activity);
+        provider.setStateLoop(loop);
+        initialize(() -> provider.initialize("client.apps.googleusercontent.com", GoogleProvider.GoogleProviderLoginType.ONLINE, null));
+        JSONObject options = new JSONObject();
+        // An access token with a known expiry is validated without tokeninfo.
+        JSONObject session = new JSONObject()
+            .put("idToken", idToken("google-user"))
+            .put("accessToken", "at")
+            .put("accessTokenExpiresAt", System.currentTimeMillis() + 3_600_000)
+            .put("scopes", new JSONArray().put("openid"));
+
+        stress(
+            new Scenario(provider) {
+                @Override
+                CompletableFuture<?> login() {
+                    CompletableFuture<Void> result = new CompletableFuture<>();
+                    try {
+                        // Credential Manager's account picker has no stand-in here; switching accounts signs in too.
+                        ((AccountSwitchable) provider).restoreSession("google", session);
+                        result.complete(null);
+                    } catch (JSONException e) {
+                        result.completeExceptionally(e);
+                    }
+                    return result;
+                }
+
+                @Override
+                CompletableFuture<?> refresh() {
+                    return provider.refreshAsync(options);
+                }
+
+                @Override
+                CompletableFuture<?> logout() {
+                    return provider.logoutAsync(options);
+                }
+
+                @Override
+                CompletableFuture<Boolean> isLoggedIn() {
+                    return provider.isLoggedInAsync(options);
+                }
+            }
+        );
+    }
+
+    private void stress(Scenario scenario) throws Exception {
+        // Sessions saved by earlier tests in this JVM may still be there.
+        Step<Boolean> initial = new Step<>("isLoggedIn before");
+        post(initial, scenario::isLoggedIn);
+        await(initial);
+        boolean loggedIn = Boolean.TRUE.equals(initial.value());
+        for (int i = 0; i < StressHarness.ROUNDS; i++) {
+            Step<Object> login = new Step<>("login");
+            Step<Object> redirect = new Step<>("redirect");
+            Step<Object> refresh = new Step<>("refresh");
+            Step<Object> logout = new Step<>("logout");
+            Step<Boolean> isLoggedIn = new Step<>("isLoggedIn");
+            harness.round(
+                () -> post(login, scenario::login),
+                () -> post(redirect, scenario::redirected),
+                () -> post(refresh, scenario::refresh),
+                () -> post(logout, scenario::logout),
+                () -> post(isLoggedIn, scenario::isLoggedIn)
+            );
+            // Everything posted so far has run once this has.
+            Step<Object> barrier = new Step<>("barrier");
+            post(barrier, () -> CompletableFuture.completedFuture(null));
+            await(barrier);
+
+            // A redirect that came before the login it belongs to was dropped; the browser delivers it again.
+            if (redirect.ranAt < login.ranAt) {
+                Step<Object> late = new Step<>("late redirect");
+                post(late, scenario::redirected);
+                await(late);
+            }
+
+            boolean answered = true;
+            for (Step<?> step : new Step<?>[] { login, refresh, logout, isLoggedIn }) {
+                answered &= await(step);
+            }
+            if (!answered) {
+                scenario.cancel();
+                break;
+            }
+
+            Boolean during = isLoggedIn.value();
+            boolean expected = stateAt(isLoggedIn.answeredAt, loggedIn, login, refresh, logout);
+            if (during != null && during != expected) {
+                harness.violation(
+                    StressHarness.STALE_READ,
+                    "isLoggedIn " + during + ", expected " + expected + " after " + describe(login, refresh, logout, isLoggedIn)
+                );
+            }
+
+            loggedIn = stateAt(Long.MAX_VALUE, loggedIn, login, refresh, logout);
+            Step<Boolean> after = new Step<>("isLoggedIn after");
+            post(after, scenario::isLoggedIn);
+            if (await(after) && after.value() != null && after.value() != loggedIn) {
+                harness.violation(
+                    StressHarness.LOST_UPDATE,
+                    "logged in " + after.value() + ", expected " + loggedIn + " after " + describe(login, refresh, logout)
+                );
+            }
+        }
+        harness.assertClean();
+    }
+
+    /**
+     * The session state as of {@code at}: set by the last login or refresh, or cleared by the last logout, that
+     * succeeded before then; {@code before} when none did.
+     */
+    private static boolean stateAt(long at, boolean before, Step<?> login, Step<?> refresh, Step<?> logout) {
+        Step<?> last = null;
+        for (Step<?> change : new Step<?>[] { login, refresh, logout }) {
+            if (change.succeeded() && change.answeredAt < at && (last == null || change.answeredAt > last.answeredAt)) {
+                last = change;
+            }
+        }
+        return last == null ? before : last != logout;
+    }
+
+    private static String describe(Step<?>... steps) {
+        StringBuilder description = new StringBuilder();
+        for (Step<?> step : steps) {
+            if (description.length() > 0) {
+                description.append(", ");
+            }
+            description.append(step);
+        }
+        return description.toString();
+    }
+
+    /**
+     * Run {@code call} on the state loop, recording when it ran and when it was answered.
+     */
+    private <T> void post(Step<T> step, Supplier<? extends CompletableFuture<? extends T>> call) {
+        loop.execute(() -> {
+            step.ranAt = clock.incrementAndGet();
+            call
+                .get()
+                .whenComplete((value, error) -> {
+                    step.answeredAt = clock.incrementAndGet();
+                    if (error != null) {
+                        step.result.completeExceptionally(error);
+                    } else {
+                        step.result.complete(value);
+                    }
+                });
+        });
+    }
+
+    private boolean await(Step<?> step) throws InterruptedException {
+        try {
+            step.result.get(ANSWER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            harness.violation(StressHarness.UNANSWERED, step.name + " after " + ANSWER_TIMEOUT_MS + " ms");
+            return false;
+        } catch (ExecutionException e) {
+            // Rejected; an answer all the same.
+        }
+        return true;
+    }
+
+    private static void initialize(Runnable initialization) {
+        try {
+            initialization.run();
+        } catch (RuntimeException e) {
+            Assume.assumeFalse(e.getMessage(), e.getMessage() != null && e.getMessage().contains("provider is disabled"));
+            throw e;
+        }
+    }
+
+    /**
+     * An unsigned ID token for {@code subject}, expiring in an hour.
+     */
+    private static String idToken(String subject) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"RS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        String claims = new JSObject()
+            .put("sub", subject)
+            .put("email", subject + "@example.com")
+            .put("exp", System.currentTimeMillis() / 1000 + 3600)
+            .toString();
+        return header + "." + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+    }
+
+    /**
+     * What the actors do to one provider; the login and the redirect completing it are separate actors.
+     */
+    private abstract static class Scenario {
+
+        private final Object provider;
+
+        Scenario(Object provider) {
+            this.provider = provider;
+        }
+
+        abstract CompletableFuture<?> login();
+
+        /**
+         * Deliver the login's redirect; nothing for providers that sign in without one.
+         */
+        void redirect() {}
+
+        abstract CompletableFuture<?> refresh();
+
+        abstract CompletableFuture<?> logout();
+
+        abstract CompletableFuture<Boolean> isLoggedIn();
+
+        final CompletableFuture<Void> redirected() {
+            redirect();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        /**
+         * Cancel a login left unanswered, so the next test does not find it running.
+         */
+        final void cancel() {
+            if (provider instanceof LoginCancellable) {
+                ((LoginCancellable) provider).cancelLogin(null);
+            }
+        }
+    }
+
+    /**
+     * One call of a round: when it ran on the loop, when it was answered and with what.
+     */
+    private static final class Step<T> {
+
+        final String name;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        volatile long ranAt = Long.MAX_VALUE;
+        volatile long answeredAt = Long.MAX_VALUE;
+
+        Step(String name) {
+            this.name = name;
+        }
+
+        boolean succeeded() {
+            return result.isDone() && !result.isCompletedExceptionally();
+        }
+
+        T value() {
+            return succeeded() ? result.getNow(null) : null;
+        }
+
+        @Override
+        public String toString() {
+            String outcome = !result.isDone() ? "unanswered" : succeeded() ? "ok" : "failed";
+            return name + " ran " + ranAt + " answered " + answeredAt + " " + outcome;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionSnapshotTest {
+
+    private final InMemoryPrefsStorage storage = new InMemoryPrefsStorage();
+    // What each provider wrote to its own preferences, as session.toString().
+    private final Map<String, String> providerStorage = new ConcurrentHashMap<>();
+    private final AtomicInteger legacyReads = new AtomicInteger();
+    private SessionSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        snapshot = newSnapshot();
+    }
+
+    @Test
+    public void testLoadsOnceForEveryProvider() throws Exception {
+        save(snapshot, "google", new JSONObject().put("idToken", "g"));
+        save(snapshot, AccountStore.providerKey("oauth2", "github"), new JSONObject().put("accessToken", "o"));
+
+        SessionSnapshot restarted = newSnapshot();
+        storage.resetReads();
+        restarted.load();
+        restarted.load();
+
+        assertEquals("g", restarted.getOrSeed("google", legacy("google")).getString("idToken"));
+        assertEquals("o", restarted.getOrSeed("oauth2:github", legacy("oauth2:github")).getString("accessToken"));
+        assertEquals("g", restarted.getOrSeed("google", legacy("google")).getString("idToken"));
+        assertEquals(1, storage.reads());
+        // Each provider's own storage is checked once per process, not on every lookup.
+        assertEquals(2, legacyReads.get());
+        assertEquals(0, restarted.getStats().getInt("seeded"));
+        assertEquals(2, restarted.getStats().getInt("sessions"));
+    }
+
+    @Test
+    public void testUnknownKeyIsSeededFromLegacyStorageOnce() throws Exception {
+        providerStorage.put("twitter", "{\"accessToken\":\"t\"}");
+        JSONObject seeded = snapshot.getOrSeed("twitter", legacy("twitter"));
+        assertEquals("t", seeded.getString("accessToken"));
+        assertEquals("t", snapshot.getOrSeed("twitter", legacy("twitter")).getString("accessToken"));
+        assertEquals(1, legacyReads.get());
+        assertEquals(1, snapshot.getStats().getInt("seeded"));
+    }
+
+    @Test
+    public void testSignedOutProvidersAreRememberedAsSuch() throws Exception {
+        save(snapshot, "apple", new JSONObject().put("idToken", "a"));
+        save(snapshot, "apple", null);
+        // A provider with nothing stored is recorded too.
+        assertNull(snapshot.getOrSeed("google", legacy("google")));
+
+        SessionSnapshot restarted = newSnapshot();
+        assertNull(restarted.getOrSeed("apple", legacy("apple")));
+        assertNull(restarted.getOrSeed("google", legacy("google")));
+        assertEquals(0, restarted.getStats().getInt("seeded"));
+        assertEquals(0, restarted.getStats().getInt("sessions"));
+    }
+
+    @Test
+    public void testProviderStorageWinsWhenSnapshotFellBehind() throws Exception {
+        save(snapshot, "google", new JSONObject().put("idToken", "old"));
+        // The app is killed after the provider wrote its session but before the snapshot did.
+        providerStorage.put("google", new JSONObject().put("idToken", "new").toString());
+
+        SessionSnapshot restarted = newSnapshot();
+        assertEquals("new", restarted.getOrSeed("google", legacy("google")).getString("idToken"));
+        assertEquals(1, restarted.getStats().getInt("seeded"));
+
+        // The same happens for a sign out the snapshot missed.
+        providerStorage.remove("google");
+        assertNull(newSnapshot().getOrSeed("google", legacy("google")));
+    }
+
+    @Test
+    public void testSessionsAreCopiedInAndOut() throws Exception {
+        JSONObject session = new JSONObject().put("idToken", "g").put("profile", new JSONObject().put("name", "n"));
+        save(snapshot, "google", session);
+        session.put("idToken", "changed");
+
+        JSONObject returned = snapshot.getOrSeed("google", legacy("google"));
+        returned.put("idToken", "changed");
+        returned.getJSONObject("profile").put("name", "changed");
+
+        JSONObject again = snapshot.getOrSeed("google", legacy("google"));
+        assertEquals("g", again.getString("idToken"));
+        assertEquals("n", again.getJSONObject("profile").getString("name"));
+    }
+
+    @Test
+    public void testReplaceComparesContent() throws Exception {
+        save(snapshot, "google", new JSONObject().put("idToken", "g"));
+        JSONObject seen = snapshot.getOrSeed("google", legacy("google"));
+
+        assertTrue(snapshot.replace("google", seen, new JSONObject().put("idToken", "g2")));
+        assertFalse(snapshot.replace("google", seen, new JSONObject().put("idToken", "g3")));
+        assertEquals("g2", snapshot.getOrSeed("google", legacy("google")).getString("idToken"));
+        assertEquals(1, snapshot.getStats().getInt("replaceConflicts"));
+    }
+
+    @Test
+    public void testStatsBeforeLoad() throws Exception {
+        JSONObject stats = snapshot.getStats();
+        assertFalse(stats.getBoolean("loaded"));
+        snapshot.load();
+        assertTrue(snapshot.getStats().getBoolean("loaded"));
+    }
+
+    /**
+     * Writes {@code session} the way the providers do: to their own storage, then to the snapshot.
+     */
+    private void save(SessionSnapshot target, String key, JSONObject session) {
+        if (session == null) {
+            providerStorage.remove(key);
+        } else {
+            providerStorage.put(key, session.toString());
+        }
+        target.put(key, session);
+    }
+
+    private Supplier<String> legacy(String key) {
+        return () -> {
+            legacyReads.incrementAndGet();
+            return providerStorage.get(key);
+        };
+    }
+
+    private SessionSnapshot newSnapshot() {
+        return new SessionSnapshot(storage);
+    }
+}
@@ -0,0 +1,160 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateLoopTest {
+
+    private final List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<>());
+    private ExecutorService thread;
+    private StateLoop loop;
+
+    @Before
+    public void setUp() {
+        thread = Executors.newSingleThreadExecutor();
+        loop = new StateLoop(thread, failures::add);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        thread.shutdownNow();
+        thread.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTasksRunInOrderOnOneThread() throws Exception {
+        List<Integer> order = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            loop.execute(() -> {
+                order.add(n);
+                threads.add(Thread.currentThread());
+            });
+        }
+        drain();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+            assertSame(threads.get(0), threads.get(i));
+        }
+    }
+
+    @Test
+    public void testStateChangedOnlyThroughTheLoopNeedsNoLock() throws Exception {
+        int[] counter = { 0 };
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        for (int i = 0; i < 8; i++) {
+            callers.execute(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 1000; j++) {
+                    loop.execute(() -> counter[0]++);
+                }
+            });
+        }
+        go.countDown();
+        callers.shutdown();
+        callers.awaitTermination(10, TimeUnit.SECONDS);
+        drain();
+
+        assertEquals(8000, counter[0]);
+    }
+
+    @Test
+    public void testThrowingTaskIsReportedAndLoopKeepsRunning() throws Exception {
+        IllegalStateException thrown = new IllegalStateException("boom");
+        loop.execute(() -> {
+            throw thrown;
+        });
+        CompletableFuture<Boolean> after = new CompletableFuture<>();
+        loop.execute(() -> after.complete(true));
+
+        assertEquals(true, after.get(5, TimeUnit.SECONDS));
+        assertEquals(1, failures.size());
+        assertSame(thrown, failures.get(0));
+        assertEquals(1, loop.getStats().getLong("failed"));
+    }
+
+    @Test
+    public void testStatsCountPostedAndQueuedTasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        loop.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+        loop.execute(() -> {});
+        loop.execute(() -> {});
+        // Read from the loop itself, so every task before it has been counted as run.
+        CompletableFuture<JSONObject> seen = new CompletableFuture<>();
+        loop.execute(() -> seen.complete(loop.getStats()));
+        assertEquals(3, loop.getStats().getInt("queued"));
+
+        release.countDown();
+
+        JSONObject stats = seen.get(5, TimeUnit.SECONDS);
+        assertEquals(4, stats.getLong("posted"));
+        assertEquals(3, stats.getLong("ran"));
+        assertEquals(0, stats.getInt("queued"));
+        assertEquals(3, stats.getInt("maxQueued"));
+        assertEquals(0, stats.getLong("failed"));
+    }
+
+    @Test
+    public void testShutDownThreadRejectsTasks() throws Exception {
+        thread.shutdown();
+        try {
+            loop.execute(() -> {});
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+            // The caller answers for the task; the loop must not count it as queued.
+        }
+
+        assertEquals(0, loop.getStats().getLong("posted"));
+        assertEquals(0, loop.getStats().getInt("queued"));
+    }
+
+    @Test
+    public void testInlineRunsOnCallingThread() {
+        AtomicReference<Thread> ran = new AtomicReference<>();
+        StateLoop.inline().execute(() -> ran.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), ran.get());
+        assertEquals(0, StateLoop.inline().getStats().getLong("posted"));
+    }
+
+    /**
+     * Wait until everything posted so far has run.
+     */
+    private void drain() throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        loop.execute(() -> done.complete(null));
+        done.get(5, TimeUnit.SECONDS);
+    }
+}
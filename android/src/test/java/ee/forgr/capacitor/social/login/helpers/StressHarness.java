@@ -0,0 +1,137 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs rounds of actors that start at the same instant and tallies the invariant violations they report.
+ * <p>
+ * Rounds default to 200; pass {@code -PsocialLogin.stressRounds=5000} to Gradle for a longer soak.
+ */
+final class StressHarness implements AutoCloseable {
+
+    static final String LOST_UPDATE = "lost update";
+    static final String DOUBLE_RESOLVE = "double resolve";
+    static final String STALE_READ = "stale read";
+    static final String UNANSWERED = "unanswered call";
+
+    static final int ROUNDS = Integer.getInteger("socialLogin.stressRounds", 200);
+
+    // Examples kept per kind, so a failure shows what happened without flooding the report.
+    private static final int SAMPLES = 5;
+
+    private final ExecutorService pool;
+    private final Map<String, Integer> counts = new TreeMap<>();
+    private final Map<String, List<String>> samples = new TreeMap<>();
+    private int rounds = 0;
+
+    StressHarness(int threads) {
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Run {@code actors} concurrently, released together, and wait for all of them.
+     */
+    void round(Runnable... actors) throws Exception {
+        CountDownLatch ready = new CountDownLatch(actors.length);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> running = new ArrayList<>(actors.length);
+        for (Runnable actor : actors) {
+            running.add(
+                pool.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    actor.run();
+                    return null;
+                })
+            );
+        }
+        ready.await(10, TimeUnit.SECONDS);
+        go.countDown();
+        for (Future<?> future : running) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw new AssertionError("Actor failed in round " + rounds, e.getCause());
+            }
+        }
+        rounds++;
+    }
+
+    synchronized void violation(String kind, String detail) {
+        counts.merge(kind, 1, Integer::sum);
+        List<String> examples = samples.computeIfAbsent(kind, (k) -> new ArrayList<>());
+        if (examples.size() < SAMPLES) {
+            examples.add("round " + rounds + ": " + detail);
+        }
+    }
+
+    /**
+     * Fails with every violation kind, its count and a few examples.
+     */
+    synchronized void assertClean() {
+        if (counts.isEmpty()) {
+            return;
+        }
+        StringBuilder report = new StringBuilder().append(counts).append(" in ").append(rounds).append(" rounds");
+        for (Map.Entry<String, List<String>> entry : samples.entrySet()) {
+            for (String example : entry.getValue()) {
+                report.append("\n  ").append(entry.getKey()).append(", ").append(example);
+            }
+        }
+        fail(report.toString());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A call that counts its answers instead of keeping the first, so answering twice is visible.
+     */
+    static final class CountingCall extends PluginCall {
+
+        private static final AtomicLong nextId = new AtomicLong();
+
+        private final AtomicInteger answers = new AtomicInteger();
+
+        CountingCall(String methodName) {
+            super(null, "SocialLogin", "stress-" + nextId.incrementAndGet(), methodName, new JSObject());
+        }
+
+        int getAnswers() {
+            return answers.get();
+        }
+
+        @Override
+        public void resolve() {
+            answers.incrementAndGet();
+        }
+
+        @Override
+        public void resolve(JSObject data) {
+            answers.incrementAndGet();
+        }
+
+        @Override
+        public void reject(String msg, String code, Exception ex, JSObject data) {
+            answers.incrementAndGet();
+        }
+    }
+}
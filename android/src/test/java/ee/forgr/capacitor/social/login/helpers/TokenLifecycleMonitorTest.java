@@ -0,0 +1,141 @@
+package ee.forgr.capacitor.social.login.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokenLifecycleMonitorTest {
+
+    private static final long START = 1_735_686_000_000L;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final List<String> events = new ArrayList<>();
+    private TokenLifecycleMonitor monitor;
+
+    @Before
+    public void setUp() {
+        monitor = new TokenLifecycleMonitor(
+            (type, provider, providerId, expiresAt) -> events.add(type + " " + provider + (providerId != null ? ":" + providerId : "")),
+            now::get,
+            false
+        );
+    }
+
+    @Test
+    public void testFiresExpiringSoonThenExpired() {
+        long expiresAt = START + 10 * 60_000;
+        monitor.issued("oauth2", "github", expiresAt);
+        assertEquals(List.of("issued oauth2:github"), events);
+        assertEquals(2, monitor.pendingCount());
+
+        advance(expiresAt - TokenLifecycleMonitor.EXPIRING_SOON_LEAD_MS - 1000);
+        assertEquals(1, events.size());
+
+        advance(expiresAt - TokenLifecycleMonitor.EXPIRING_SOON_LEAD_MS);
+        assertEquals("expiringSoon oauth2:github", events.get(1));
+
+        advance(expiresAt);
+        assertEquals(List.of("issued oauth2:github", "expiringSoon oauth2:github", "expired oauth2:github"), events);
+        assertEquals(0, monitor.pendingCount());
+    }
+
+    @Test
+    public void testDeadlinesBeyondOneWheelRotation() {
+        // Several full rotations away: the round counter must keep it from firing early.
+        long expiresAt = START + 3L * TokenLifecycleMonitor.WHEEL_SIZE * TokenLifecycleMonitor.TICK_MS + 7_000;
+        monitor.track("twitter", null, expiresAt);
+        monitor.track("google", null, START + 2_000);
+
+        advance(START + 2_000);
+        // Already inside the lead window: only expired fires.
+        assertEquals(List.of("expired google"), events);
+
+        advance(expiresAt - TokenLifecycleMonitor.EXPIRING_SOON_LEAD_MS - 1000);
+        assertEquals(1, events.size());
+
+        advance(expiresAt);
+        assertEquals(List.of("expired google", "expiringSoon twitter", "expired twitter"), events);
+    }
+
+    @Test
+    public void testRefreshReplacesDeadlines() {
+        monitor.issued("apple", null, START + 6 * 60_000);
+        monitor.refreshed("apple", null, START + 60 * 60_000);
+        assertEquals(2, monitor.pendingCount());
+
+        advance(START + 10 * 60_000);
+        assertEquals(List.of("issued apple", "refreshed apple"), events);
+    }
+
+    @Test
+    public void testRevokeCancelsPendingDeadlines() {
+        monitor.issued("oauth2", "azure", START + 60_000);
+        monitor.issued("oauth2", "github", START + 60_000);
+        monitor.revoked("oauth2", "azure");
+        assertEquals(1, monitor.pendingCount());
+
+        advance(START + 60_000);
+        assertEquals(List.of("issued oauth2:azure", "issued oauth2:github", "revoked oauth2:azure", "expired oauth2:github"), events);
+    }
+
+    @Test
+    public void testAlreadyExpiredSessionFiresOnNextTick() {
+        monitor.track("twitter", null, START - 1000);
+        monitor.track("facebook", null, null);
+        assertEquals(1, monitor.pendingCount());
+
+        advance(START);
+        assertEquals(List.of("expired twitter"), events);
+    }
+
+    @Test
+    public void testNextDeadlineFollowsTrackAndCancel() {
+        assertEquals(-1, monitor.nextDeadlineAt());
+
+        long expiresAt = START + 60 * 60_000;
+        monitor.track("google", null, expiresAt);
+        assertEquals(expiresAt - TokenLifecycleMonitor.EXPIRING_SOON_LEAD_MS, monitor.nextDeadlineAt());
+
+        monitor.track("apple", null, START + 2_500);
+        // Rounded up to the tick the deadline falls in.
+        assertEquals(START + 3_000, monitor.nextDeadlineAt());
+
+        monitor.cancel("apple", null);
+        assertEquals(expiresAt - TokenLifecycleMonitor.EXPIRING_SOON_LEAD_MS, monitor.nextDeadlineAt());
+
+        advance(expiresAt - TokenLifecycleMonitor.EXPIRING_SOON_LEAD_MS);
+        assertEquals(expiresAt, monitor.nextDeadlineAt());
+
+        advance(expiresAt);
+        assertEquals(-1, monitor.nextDeadlineAt());
+    }
+
+    @Test
+    public void testTickerWakesOnlyAtDeadlines() throws Exception {
+        List<String> fired = Collections.synchronizedList(new ArrayList<>());
+        TokenLifecycleMonitor live = new TokenLifecycleMonitor((type, provider, providerId, expiresAt) -> fired.add(type + " " + provider));
+        try {
+            live.track("twitter", null, System.currentTimeMillis() + 1_500);
+            live.track("google", null, System.currentTimeMillis() + 60 * 60_000);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (fired.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(List.of("expired twitter"), fired);
+            assertEquals(2, live.pendingCount());
+        } finally {
+            live.shutdown();
+        }
+    }
+
+    private void advance(long to) {
+        now.set(to);
+        monitor.advanceTo(to);
+    }
+}
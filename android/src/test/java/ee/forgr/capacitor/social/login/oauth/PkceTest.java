@@ -0,0 +1,26 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PkceTest {
+
+    @Test
+    public void testChallengeMatchesRfc7636Example() {
+        // RFC 7636, Appendix B.
+        assertEquals("E9Melhoa2OwvFrEMTJguCHaoeK1t8URWbuGJSstw-cM", Pkce.codeChallenge("dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk"));
+    }
+
+    @Test
+    public void testVerifierIsUnpaddedBase64Url() {
+        String verifier = Pkce.generateCodeVerifier();
+
+        assertEquals(86, verifier.length());
+        assertTrue(verifier, verifier.matches("[A-Za-z0-9_-]+"));
+        assertNotEquals(verifier, Pkce.generateCodeVerifier());
+        assertEquals(43, Pkce.codeChallenge(verifier).length());
+    }
+}
@@ -0,0 +1,67 @@
+package ee.forgr.capacitor.social.login.oauth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import okhttp3.FormBody;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Token request bodies, token response parsing and discovery URLs.
+ */
+public class TokenEndpointTest {
+
+    @Test
+    public void testParsesFullResponse() throws Exception {
+        JSONObject payload = new JSONObject(
+            "{\"access_token\":\"at\",\"token_type\":\"Bearer\",\"expires_in\":120,\"refresh_token\":\"rt\"," +
+                "\"id_token\":\"it\",\"scope\":\"openid email\"}"
+        );
+
+        TokenResponse tokens = TokenResponse.parse(payload, 3600, 1_000L);
+
+        assertEquals("at", tokens.accessToken);
+        assertEquals("Bearer", tokens.tokenType);
+        assertEquals(120, tokens.expiresIn);
+        assertEquals(121_000L, tokens.expiresAt);
+        assertEquals("rt", tokens.refreshTokenOr("old"));
+        assertEquals("it", tokens.idToken);
+        assertEquals(Arrays.asList("openid", "email"), tokens.scopes);
+    }
+
+    @Test
+    public void testMissingMembersFallBack() throws Exception {
+        TokenResponse tokens = TokenResponse.parse(new JSONObject("{\"access_token\":\"at\",\"refresh_token\":\"\"}"), 3600, 0L);
+
+        assertEquals("bearer", tokens.tokenType);
+        assertEquals(3_600_000L, tokens.expiresAt);
+        assertNull(tokens.refreshToken);
+        assertEquals("old", tokens.refreshTokenOr("old"));
+        assertNull(tokens.idToken);
+        assertTrue(tokens.scopes.isEmpty());
+    }
+
+    @Test(expected = org.json.JSONException.class)
+    public void testRejectsResponseWithoutAccessToken() throws Exception {
+        TokenResponse.parse(new JSONObject("{\"token_type\":\"bearer\"}"), 3600, 0L);
+    }
+
+    @Test
+    public void testAuthorizationCodeBodyOmitsUnsetParameters() {
+        FormBody body = TokenRequests.authorizationCode("client", "code", "app://cb", null, null, Map.of("audience", "api")).build();
+
+        assertEquals(5, body.size());
+        assertEquals("grant_type", body.name(0));
+        assertEquals("authorization_code", body.value(0));
+        assertEquals("audience", body.name(4));
+    }
+
+    @Test
+    public void testDiscoveryUrlIgnoresTrailingSlashes() {
+        assertEquals("https://id.example.com/realm/.well-known/openid-configuration", OidcDiscovery.documentUrl("https://id.example.com/realm//"));
+    }
+}
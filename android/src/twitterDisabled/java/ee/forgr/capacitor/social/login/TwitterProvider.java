@@ -0,0 +1,83 @@
+package ee.forgr.capacitor.social.login;
+
+import android.content.Context;
+import android.content.Intent;
+import com.getcapacitor.JSObject;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compile-time stub used when Twitter is disabled via provider pinning
+ * ({@code socialLogin.twitter.include=false}).
+ * <p>
+ * Replaces the OAuth 2.0 PKCE flow so disabled builds do not dex or verify it.
+ */
+public class TwitterProvider implements AsyncSocialProvider {
+
+    private static final String DISABLED_MESSAGE =
+        "Twitter provider is disabled. Dependencies are not available. Ensure OkHttp dependencies are included in your app's build.gradle";
+
+    public static final int REQUEST_CODE = 9401;
+
+    public TwitterProvider(HostActivity host, Context context) {
+        // Stub - host and context unused
+    }
+
+    public void initialize(JSONObject config) throws JSONException {
+        throw new IllegalArgumentException(DISABLED_MESSAGE);
+    }
+
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        // Stub - no Twitter sessions to report
+    }
+
+    public void setAccountStore(AccountStore store) {
+        // Stub - no accounts to store
+    }
+
+    public void setStateLoop(StateLoop loop) {
+        // Stub - no state to confine
+    }
+
+    public boolean handleActivityResult(int requestCode, int resultCode, Intent data) {
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<JSObject> loginAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        return disabled();
+    }
+
+    @Override
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        return disabled();
+    }
+
+    private static <T> CompletableFuture<T> disabled() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ProviderException.reject(result, DISABLED_MESSAGE);
+        return result;
+    }
+}
@@ -0,0 +1,750 @@
+package ee.forgr.capacitor.social.login;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import ee.forgr.capacitor.social.login.helpers.AccountStore;
+import ee.forgr.capacitor.social.login.helpers.AccountSwitchable;
+import ee.forgr.capacitor.social.login.helpers.AsyncSocialProvider;
+import ee.forgr.capacitor.social.login.helpers.BoundedResponseBody;
+import ee.forgr.capacitor.social.login.helpers.CancellationScope;
+import ee.forgr.capacitor.social.login.helpers.ConnectionPrewarmer;
+import ee.forgr.capacitor.social.login.helpers.HostActivity;
+import ee.forgr.capacitor.social.login.helpers.HttpResilience;
+import ee.forgr.capacitor.social.login.helpers.LoginCancellable;
+import ee.forgr.capacitor.social.login.helpers.LoginTracer;
+import ee.forgr.capacitor.social.login.helpers.OperationDeadlines;
+import ee.forgr.capacitor.social.login.helpers.ProviderException;
+import ee.forgr.capacitor.social.login.helpers.SessionSnapshot;
+import ee.forgr.capacitor.social.login.helpers.StateLoop;
+import ee.forgr.capacitor.social.login.helpers.TokenLifecycleMonitor;
+import ee.forgr.capacitor.social.login.oauth.Pkce;
+import ee.forgr.capacitor.social.login.oauth.TokenRequests;
+import ee.forgr.capacitor.social.login.oauth.TokenResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+public class TwitterProvider implements AsyncSocialProvider, AccountSwitchable, LoginCancellable {
+
+    public static final int REQUEST_CODE = 9401;
+    private static final String LOG_TAG = "TwitterProvider";
+    private static final String USER_CANCELLED_CODE = "USER_CANCELLED";
+    private static final String TOKEN_ENDPOINT = "https://api.x.com/2/oauth2/token";
+    private static final String PROFILE_ENDPOINT = "https://api.x.com/2/users/me";
+    private static final String PREFS_NAME = "CapgoTwitterProviderPrefs";
+    private static final String PREFS_KEY = "TwitterTokens";
+
+    private final HostActivity host;
+    private final Context context;
+    private final OkHttpClient httpClient;
+
+    private String clientId;
+    private String redirectUri;
+    private List<String> defaultScopes = Arrays.asList("tweet.read", "users.read");
+    private boolean forceLogin = false;
+    private String audience;
+
+    // The running login; only touched on the state loop.
+    private CompletableFuture<JSObject> pendingLogin;
+    private TwitterPendingState pendingState;
+    private CancellationScope loginCancellation;
+    // Login activities closed by cancelLogin whose (already settled) result has not come back yet.
+    private int cancelledActivities = 0;
+    private ConnectionPrewarmer.Handle prewarmHandle;
+    private TokenLifecycleMonitor tokenLifecycleMonitor;
+    private OperationDeadlines deadlines = OperationDeadlines.defaults();
+    private AccountStore accountStore;
+    private StateLoop stateLoop = StateLoop.inline();
+    private final SessionSnapshot sessionSnapshot;
+
+    private static class TwitterPendingState {
+
+        final String state;
+        final String codeVerifier;
+        final String redirectUri;
+        final List<String> scopes;
+
+        TwitterPendingState(String state, String codeVerifier, String redirectUri, List<String> scopes) {
+            this.state = state;
+            this.codeVerifier = codeVerifier;
+            this.redirectUri = redirectUri;
+            this.scopes = scopes;
+        }
+    }
+
+    public TwitterProvider(HostActivity host, Context context) {
+        this.host = host;
+        this.context = context.getApplicationContext();
+        this.sessionSnapshot = SessionSnapshot.getInstance(this.context);
+        // Backstop only: token and profile calls are bounded by their OperationDeadlines budget.
+        this.httpClient = new OkHttpClient.Builder().connectTimeout(30, TimeUnit.SECONDS).readTimeout(30, TimeUnit.SECONDS).build();
+    }
+
+    public void initialize(JSONObject config) throws JSONException {
+        this.clientId = config.getString("clientId");
+        this.redirectUri = config.getString("redirectUrl");
+        if (config.has("defaultScopes")) {
+            JSONArray scopesArray = config.getJSONArray("defaultScopes");
+            this.defaultScopes = jsonArrayToList(scopesArray);
+        }
+        this.forceLogin = config.optBoolean("forceLogin", false);
+        this.audience = config.optString("audience", null);
+        this.deadlines = OperationDeadlines.fromConfig(config.optJSONObject("timeouts"));
+
+        if (tokenLifecycleMonitor != null) {
+            TwitterStoredTokens stored = loadStoredTokens();
+            if (stored != null && stored.expiresAt > 0) {
+                tokenLifecycleMonitor.track("twitter", null, stored.expiresAt);
+            }
+        }
+    }
+
+    public void setTokenLifecycleMonitor(TokenLifecycleMonitor monitor) {
+        this.tokenLifecycleMonitor = monitor;
+    }
+
+    public void setAccountStore(AccountStore store) {
+        this.accountStore = store;
+    }
+
+    /**
+     * Where token and profile responses are handled; the plugin's state loop, which also runs the calls.
+     */
+    public void setStateLoop(StateLoop loop) {
+        this.stateLoop = loop;
+    }
+
+    @Override
+    public CompletableFuture<JSObject> loginAsync(JSONObject config) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        if (clientId == null || redirectUri == null) {
+            ProviderException.reject(result, "Twitter provider is not initialized. Call initialize() first.");
+            return result;
+        }
+        if (pendingLogin != null) {
+            ProviderException.reject(result, "Another Twitter login is already running.");
+            return result;
+        }
+
+        List<String> scopes = defaultScopes;
+        if (config != null && config.has("scopes")) {
+            try {
+                scopes = jsonArrayToList(config.getJSONArray("scopes"));
+            } catch (JSONException e) {
+                ProviderException.reject(result, "Invalid scopes format", e);
+                return result;
+            }
+        }
+        boolean forceLoginOverride = config != null && config.has("forceLogin") ? config.optBoolean("forceLogin", forceLogin) : forceLogin;
+        String redirect = redirectUri;
+        if (config != null && config.has("redirectUrl")) {
+            redirect = config.optString("redirectUrl", redirectUri);
+        }
+
+        String state = config != null && config.has("state") ? config.optString("state", Pkce.generateState()) : Pkce.generateState();
+        String codeVerifier = Pkce.generateCodeVerifier();
+        String codeChallenge = Pkce.codeChallenge(codeVerifier);
+
+        Activity activity = host.get();
+        if (activity == null) {
+            ProviderException.reject(result, "No activity to open the login in");
+            return result;
+        }
+
+        pendingState = new TwitterPendingState(state, codeVerifier, redirect, scopes);
+        pendingLogin = result;
+        loginCancellation = new CancellationScope();
+        // Token and profile endpoints share api.x.com; warm it while the user authorizes.
+        prewarmHandle = ConnectionPrewarmer.getInstance().keepWarm(httpClient, TOKEN_ENDPOINT);
+
+        Uri.Builder builder = Uri.parse("https://x.com/i/oauth2/authorize")
+            .buildUpon()
+            .appendQueryParameter("response_type", "code")
+            .appendQueryParameter("client_id", clientId)
+            .appendQueryParameter("redirect_uri", redirect)
+            .appendQueryParameter("scope", TextUtils.join(" ", scopes))
+            .appendQueryParameter("state", state)
+            .appendQueryParameter("code_challenge", codeChallenge)
+            .appendQueryParameter("code_challenge_method", "S256");
+        if (forceLoginOverride) {
+            builder.appendQueryParameter("force_login", "true");
+        }
+        if (audience != null && !audience.isEmpty()) {
+            builder.appendQueryParameter("audience", audience);
+        }
+
+        Intent intent = new Intent(activity, TwitterLoginActivity.class);
+        intent.putExtra(TwitterLoginActivity.EXTRA_AUTH_URL, builder.build().toString());
+        intent.putExtra(TwitterLoginActivity.EXTRA_REDIRECT_URL, redirect);
+        LoginTracer.getInstance().startSpan("twitter", null, "authorization");
+        activity.startActivityForResult(intent, REQUEST_CODE);
+        loginCancellation.onCancel(() -> {
+            // The login activity reports to whichever Activity is current by now.
+            Activity current = host.get();
+            if (current != null) {
+                cancelledActivities++;
+                current.runOnUiThread(() -> current.finishActivity(REQUEST_CODE));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cancel the running login: the login WebView is closed and a code exchange or profile fetch in flight is
+     * cancelled.
+     */
+    @Override
+    public boolean cancelLogin(String providerId) {
+        if (pendingLogin == null) {
+            return false;
+        }
+        CompletableFuture<JSObject> login = pendingLogin;
+        if (loginCancellation != null) {
+            loginCancellation.cancel();
+        }
+        LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_CANCELLED);
+        ProviderException.reject(login, "Twitter login cancelled", USER_CANCELLED_CODE);
+        cleanupPending();
+        return true;
+    }
+
+    private static boolean isCancelled(CancellationScope cancellation) {
+        return cancellation != null && cancellation.isCancelled();
+    }
+
+    @Override
+    public CompletableFuture<Void> logoutAsync(JSONObject options) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().remove(PREFS_KEY).apply();
+        sessionSnapshot.put("twitter", null);
+        if (tokenLifecycleMonitor != null) {
+            tokenLifecycleMonitor.revoked("twitter", null);
+        }
+        if (accountStore != null) {
+            accountStore.removeActive("twitter");
+        }
+        LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_SUCCESS);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<JSObject> getAuthorizationCodeAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        TwitterStoredTokens tokens = loadStoredTokens();
+        if (tokens == null) {
+            ProviderException.reject(result, "Twitter access token not available");
+            return result;
+        }
+        JSObject response = new JSObject();
+        response.put("accessToken", tokens.accessToken);
+        if (tokens.refreshToken != null) {
+            response.put("refreshToken", tokens.refreshToken);
+        }
+        response.put("tokenType", tokens.tokenType);
+        result.complete(response);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLoggedInAsync(JSONObject options) {
+        TwitterStoredTokens tokens = loadStoredTokens();
+        return CompletableFuture.completedFuture(tokens != null && tokens.expiresAt > System.currentTimeMillis());
+    }
+
+    @Override
+    public CompletableFuture<JSObject> refreshAsync(JSONObject options) {
+        CompletableFuture<JSObject> result = new CompletableFuture<>();
+        TwitterStoredTokens tokens = loadStoredTokens();
+        if (tokens == null || tokens.refreshToken == null) {
+            ProviderException.reject(result, "Twitter refresh token is not available. Make sure offline.access scope is granted.");
+            return result;
+        }
+        refreshWithToken(result, tokens.refreshToken);
+        return result;
+    }
+
+    public boolean handleActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode != REQUEST_CODE) {
+            return false;
+        }
+        if (resultCode != Activity.RESULT_OK && cancelledActivities > 0) {
+            cancelledActivities--;
+            return true;
+        }
+        if (pendingLogin == null || pendingState == null) {
+            return true;
+        }
+        LoginTracer.getInstance().endSpan("twitter", null, "authorization");
+
+        if (resultCode != Activity.RESULT_OK) {
+            boolean userCancelled = data != null && data.getBooleanExtra(TwitterLoginActivity.EXTRA_USER_CANCELLED, false);
+            String error = data != null ? data.getStringExtra("error") : "User cancelled";
+            String message = error != null ? error : "User cancelled";
+            if (userCancelled) {
+                LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_CANCELLED);
+                ProviderException.reject(pendingLogin, message, USER_CANCELLED_CODE);
+            } else {
+                LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, message);
+                ProviderException.reject(pendingLogin, message);
+            }
+            cleanupPending();
+            return true;
+        }
+
+        String returnedState = data.getStringExtra("state");
+        if (returnedState == null || !returnedState.equals(pendingState.state)) {
+            LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "state mismatch");
+            ProviderException.reject(pendingLogin, "State mismatch during Twitter login");
+            cleanupPending();
+            return true;
+        }
+
+        String error = data.getStringExtra("error");
+        if (error != null) {
+            String description = data.getStringExtra("error_description");
+            String message = description != null ? description : error;
+            if (isUserDeniedRedirect(error, description)) {
+                LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_CANCELLED);
+                ProviderException.reject(pendingLogin, message, USER_CANCELLED_CODE);
+            } else {
+                LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, message);
+                ProviderException.reject(pendingLogin, message);
+            }
+            cleanupPending();
+            return true;
+        }
+
+        String code = data.getStringExtra("code");
+        if (code == null) {
+            LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "authorization code missing");
+            ProviderException.reject(pendingLogin, "Authorization code missing");
+            cleanupPending();
+            return true;
+        }
+
+        exchangeAuthorizationCode(code);
+        return true;
+    }
+
+    private boolean isUserDeniedRedirect(String error, String description) {
+        if ("access_denied".equalsIgnoreCase(error)) {
+            return true;
+        }
+        if (description == null) {
+            return false;
+        }
+        String normalizedDescription = description.toLowerCase();
+        return normalizedDescription.contains("access_denied") || normalizedDescription.contains("access denied");
+    }
+
+    private void exchangeAuthorizationCode(String code) {
+        if (pendingState == null) {
+            if (pendingLogin != null) {
+                ProviderException.reject(pendingLogin, "Internal error: missing pending state");
+                cleanupPending();
+            }
+            return;
+        }
+
+        FormBody body = TokenRequests.authorizationCode(
+            clientId,
+            code,
+            pendingState.redirectUri,
+            pendingState.codeVerifier,
+            null,
+            null
+        ).build();
+
+        Request request = new Request.Builder().url(TOKEN_ENDPOINT).post(body).build();
+        CancellationScope cancellation = loginCancellation;
+        LoginTracer.getInstance().startSpan("twitter", null, "codeExchange");
+        HttpResilience.getInstance()
+            .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.SINGLE_GUARDED,
+                deadlines.start(OperationDeadlines.CODE_EXCHANGE),
+                cancellation,
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        stateLoop.execute(() -> {
+                            if (isCancelled(cancellation)) {
+                                return;
+                            }
+                            LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "token exchange failed");
+                            if (pendingLogin != null) {
+                                ProviderException.reject(pendingLogin, "Twitter token exchange failed", OperationDeadlines.errorCode(e), e);
+                            }
+                            cleanupPending();
+                        });
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        if (isCancelled(cancellation)) {
+                            response.close();
+                            return;
+                        }
+                        if (!response.isSuccessful()) {
+                            String errorBody = BoundedResponseBody.errorPreview(response.body());
+                            int code = response.code();
+                            stateLoop.execute(() -> {
+                                if (isCancelled(cancellation)) {
+                                    return;
+                                }
+                                LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "HTTP " + code);
+                                if (pendingLogin != null) {
+                                    ProviderException.reject(pendingLogin, "Twitter token exchange failed: " + errorBody);
+                                }
+                                cleanupPending();
+                            });
+                            return;
+                        }
+                        JSONObject tokenPayload;
+                        try {
+                            tokenPayload = BoundedResponseBody.readFields(response.body(), TokenResponse.FIELDS);
+                        } catch (JSONException | IOException e) {
+                            stateLoop.execute(() -> rejectTokenResponse(cancellation, e));
+                            return;
+                        }
+                        stateLoop.execute(() -> {
+                            if (isCancelled(cancellation)) {
+                                return;
+                            }
+                            LoginTracer.getInstance().endSpan("twitter", null, "codeExchange");
+                            try {
+                                handleTokenSuccess(tokenPayload);
+                            } catch (JSONException e) {
+                                rejectTokenResponse(cancellation, e);
+                            }
+                        });
+                    }
+                }
+            );
+    }
+
+    private void rejectTokenResponse(CancellationScope cancellation, Exception e) {
+        if (isCancelled(cancellation)) {
+            return;
+        }
+        LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "invalid token response");
+        if (pendingLogin != null) {
+            ProviderException.reject(pendingLogin, "Failed to parse Twitter token response", e);
+        }
+        cleanupPending();
+    }
+
+    private void refreshWithToken(final CompletableFuture<JSObject> result, String refreshToken) {
+        FormBody body = TokenRequests.refresh(clientId, refreshToken, null, null).build();
+
+        Request request = new Request.Builder().url(TOKEN_ENDPOINT).post(body).build();
+        LoginTracer.getInstance().startSpan("twitter", null, "tokenRefresh");
+        HttpResilience.getInstance()
+            .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.IDEMPOTENT,
+                deadlines.start(OperationDeadlines.REFRESH),
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        stateLoop.execute(() -> {
+                            LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "refresh failed");
+                            ProviderException.reject(result, "Twitter refresh failed", OperationDeadlines.errorCode(e), e);
+                        });
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        if (!response.isSuccessful()) {
+                            String errorBody = BoundedResponseBody.errorPreview(response.body());
+                            int code = response.code();
+                            stateLoop.execute(() -> {
+                                LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "HTTP " + code);
+                                ProviderException.reject(result, "Twitter refresh failed: " + errorBody);
+                            });
+                            return;
+                        }
+                        JSONObject tokenPayload;
+                        try {
+                            tokenPayload = BoundedResponseBody.readFields(response.body(), TokenResponse.FIELDS);
+                        } catch (JSONException | IOException e) {
+                            stateLoop.execute(() -> rejectRefreshResponse(result, e));
+                            return;
+                        }
+                        LoginTracer.getInstance().endSpan("twitter", null, "tokenRefresh");
+                        stateLoop.execute(() -> {
+                            try {
+                                handleTokenSuccess(tokenPayload, result, true, null, null);
+                            } catch (JSONException e) {
+                                rejectRefreshResponse(result, e);
+                            }
+                        });
+                    }
+                }
+            );
+    }
+
+    private static void rejectRefreshResponse(CompletableFuture<JSObject> result, Exception e) {
+        LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, "invalid refresh response");
+        ProviderException.reject(result, "Failed to parse Twitter refresh response", e);
+    }
+
+    private void handleTokenSuccess(JSONObject tokenPayload) throws JSONException {
+        // The login stays pending, and cancellable, until the profile fetch is done.
+        CancellationScope cancellation = loginCancellation;
+        if (pendingLogin == null) {
+            cleanupPending();
+            return;
+        }
+        handleTokenSuccess(tokenPayload, pendingLogin, false, cancellation, () -> {
+            if (!isCancelled(cancellation)) {
+                cleanupPending();
+            }
+        });
+    }
+
+    /**
+     * @param cancellation the login the profile fetch belongs to, null for refreshes
+     * @param onComplete run once {@code answer} was completed, or null
+     */
+    private void handleTokenSuccess(
+        JSONObject tokenPayload,
+        CompletableFuture<JSObject> answer,
+        boolean refreshed,
+        CancellationScope cancellation,
+        Runnable onComplete
+    ) throws JSONException {
+        if (answer == null) {
+            return;
+        }
+        final TokenResponse tokens = TokenResponse.parse(tokenPayload, 0, System.currentTimeMillis());
+        final String accessToken = tokens.accessToken;
+        final String tokenType = tokens.tokenType;
+        final int expiresIn = tokens.expiresIn;
+        final String refreshToken = tokens.refreshToken;
+        final List<String> scopes = tokens.scopes;
+
+        fetchProfile(
+            accessToken,
+            cancellation,
+            new ProfileCallback() {
+                @Override
+                public void onSuccess(JSONObject profile) {
+                    if (isCancelled(cancellation)) {
+                        return;
+                    }
+                    persistTokens(accessToken, refreshToken, tokenType, expiresIn, profile);
+                    if (tokenLifecycleMonitor != null) {
+                        Long expiresAt = expiresIn > 0 ? System.currentTimeMillis() + (long) expiresIn * 1000L : null;
+                        if (refreshed) {
+                            tokenLifecycleMonitor.refreshed("twitter", null, expiresAt);
+                        } else {
+                            tokenLifecycleMonitor.issued("twitter", null, expiresAt);
+                        }
+                    }
+                    JSObject accessTokenObject = new JSObject();
+                    accessTokenObject.put("token", accessToken);
+                    accessTokenObject.put("tokenType", tokenType);
+                    accessTokenObject.put("expiresIn", expiresIn);
+                    if (refreshToken != null) {
+                        accessTokenObject.put("refreshToken", refreshToken);
+                    }
+
+                    JSObject result = new JSObject();
+                    result.put("accessToken", accessTokenObject);
+                    result.put("profile", profile);
+                    result.put("scope", new JSArray(scopes));
+                    result.put("tokenType", tokenType);
+                    result.put("expiresIn", expiresIn);
+
+                    JSObject response = new JSObject();
+                    response.put("provider", "twitter");
+                    response.put("result", result);
+                    LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_SUCCESS);
+                    answer.complete(response);
+                    if (onComplete != null) {
+                        onComplete.run();
+                    }
+                }
+
+                @Override
+                public void onError(String message, String errorCode) {
+                    if (isCancelled(cancellation)) {
+                        return;
+                    }
+                    LoginTracer.getInstance().finish("twitter", null, LoginTracer.STATUS_ERROR, message);
+                    ProviderException.reject(answer, message, errorCode);
+                    if (onComplete != null) {
+                        onComplete.run();
+                    }
+                }
+            }
+        );
+    }
+
+    private interface ProfileCallback {
+        void onSuccess(JSONObject profile);
+        void onError(String message, String errorCode);
+    }
+
+    /**
+     * @param callback called on the state loop
+     */
+    private void fetchProfile(String accessToken, CancellationScope cancellation, ProfileCallback callback) {
+        Uri uri = Uri.parse(PROFILE_ENDPOINT)
+            .buildUpon()
+            .appendQueryParameter("user.fields", "profile_image_url,verified,name,username")
+            .build();
+        Request request = new Request.Builder().url(uri.toString()).addHeader("Authorization", "Bearer " + accessToken).build();
+
+        LoginTracer.getInstance().startSpan("twitter", null, "fetchProfile");
+        HttpResilience.getInstance()
+            .enqueue(
+                httpClient,
+                request,
+                HttpResilience.RetryPolicy.IDEMPOTENT,
+                deadlines.start(OperationDeadlines.RESOURCE),
+                cancellation,
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        String message = "Failed to fetch Twitter profile: " + e.getMessage();
+                        stateLoop.execute(() -> callback.onError(message, OperationDeadlines.errorCode(e)));
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        if (!response.isSuccessful()) {
+                            String errorBody = BoundedResponseBody.errorPreview(response.body());
+                            stateLoop.execute(() -> callback.onError("Failed to fetch Twitter profile: " + errorBody, null));
+                            return;
+                        }
+                        try {
+                            JSONObject payload = BoundedResponseBody.readFields(response.body(), "data");
+                            JSONObject data = payload.getJSONObject("data");
+                            JSONObject profile = new JSONObject();
+                            profile.put("id", data.optString("id"));
+                            profile.put("username", data.optString("username"));
+                            profile.put("name", data.optString("name"));
+                            profile.put("profileImageUrl", data.optString("profile_image_url", ""));
+                            profile.put("verified", data.optBoolean("verified", false));
+                            if (data.has("email")) {
+                                profile.put("email", data.optString("email", null));
+                            } else {
+                                profile.put("email", JSONObject.NULL);
+                            }
+                            LoginTracer.getInstance().endSpan("twitter", null, "fetchProfile");
+                            stateLoop.execute(() -> callback.onSuccess(profile));
+                        } catch (JSONException e) {
+                            stateLoop.execute(() -> callback.onError("Failed to parse Twitter profile response", null));
+                        } catch (IOException e) {
+                            String message = "Failed to read Twitter profile response: " + e.getMessage();
+                            stateLoop.execute(() -> callback.onError(message, null));
+                        }
+                    }
+                }
+            );
+    }
+
+    private void persistTokens(String accessToken, String refreshToken, String tokenType, int expiresIn, JSONObject profile) {
+        try {
+            JSONObject stored = new JSONObject();
+            stored.put("accessToken", accessToken);
+            stored.put("tokenType", tokenType);
+            stored.put("expiresAt", System.currentTimeMillis() + (long) expiresIn * 1000L);
+            stored.put("refreshToken", refreshToken);
+            stored.put("userId", profile.optString("id"));
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            prefs.edit().putString(PREFS_KEY, stored.toString()).apply();
+            sessionSnapshot.put("twitter", stored);
+            String userId = profile.optString("id", "");
+            if (accountStore != null && !userId.isEmpty()) {
+                accountStore.save("twitter", userId, profile.optString("username", null), stored);
+            }
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Failed to persist Twitter tokens", e);
+        }
+    }
+
+    @Override
+    public void restoreSession(String providerId, JSONObject session) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().putString(PREFS_KEY, session.toString()).apply();
+        sessionSnapshot.put("twitter", session);
+        if (tokenLifecycleMonitor != null) {
+            long expiresAt = session.optLong("expiresAt", 0);
+            tokenLifecycleMonitor.track("twitter", null, expiresAt > 0 ? expiresAt : null);
+        }
+    }
+
+    private TwitterStoredTokens loadStoredTokens() {
+        JSONObject object = sessionSnapshot.getOrSeed("twitter", () ->
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(PREFS_KEY, null)
+        );
+        if (object == null) {
+            return null;
+        }
+        String accessToken = object.optString("accessToken", null);
+        if (accessToken == null || accessToken.isEmpty()) {
+            return null;
+        }
+        return new TwitterStoredTokens(
+            accessToken,
+            object.optString("refreshToken", null),
+            object.optLong("expiresAt", 0L),
+            object.optString("tokenType", "bearer")
+        );
+    }
+
+    private void cleanupPending() {
+        if (prewarmHandle != null) {
+            prewarmHandle.cancel();
+            prewarmHandle = null;
+        }
+        pendingLogin = null;
+        pendingState = null;
+        loginCancellation = null;
+    }
+
+    private static List<String> jsonArrayToList(JSONArray array) throws JSONException {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            list.add(array.getString(i));
+        }
+        return list;
+    }
+
+    private static class TwitterStoredTokens {
+
+        final String accessToken;
+        final String refreshToken;
+        final long expiresAt;
+        final String tokenType;
+
+        TwitterStoredTokens(String accessToken, String refreshToken, long expiresAt, String tokenType) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresAt = expiresAt;
+            this.tokenType = tokenType;
+        }
+    }
+}
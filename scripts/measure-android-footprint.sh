@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+#
+# Dex size and initialize cost of the Android library for each provider configuration.
+#
+# Builds the release AAR with socialLogin.<provider>.include switched per configuration, dexes its classes.jar
+# with d8 and runs InitializeBenchmarkTest (Robolectric) against the same configuration; its "cold" column is
+# the first initialize of each provider, class loading included.
+#
+# Usage: scripts/measure-android-footprint.sh
+# Requires ANDROID_HOME (build-tools for d8, a platform android.jar) and installed node_modules.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../android"
+
+: "${ANDROID_HOME:?ANDROID_HOME must point to the Android SDK}"
+D8="$(ls -d "$ANDROID_HOME"/build-tools/* | sort -V | tail -1)/d8"
+ANDROID_JAR="$(ls -d "$ANDROID_HOME"/platforms/android-* | sort -V | tail -1)/android.jar"
+WORK="$(mktemp -d)"
+trap 'rm -rf "$WORK"' EXIT
+
+# name:disabled providers
+CONFIGURATIONS=(
+  "all enabled:"
+  "google disabled:google"
+  "facebook disabled:facebook"
+  "apple disabled:apple"
+  "twitter disabled:twitter"
+  "all disabled:google facebook apple twitter"
+)
+
+for configuration in "${CONFIGURATIONS[@]}"; do
+  name="${configuration%%:*}"
+  disabled=" ${configuration#*:} "
+  flags=()
+  for provider in google facebook apple twitter; do
+    if [[ "$disabled" == *" $provider "* ]]; then
+      flags+=("-PsocialLogin.$provider.include=false")
+    else
+      flags+=("-PsocialLogin.$provider.include=true")
+    fi
+  done
+
+  ./gradlew -q assembleRelease "${flags[@]}"
+  rm -rf "$WORK/aar" "$WORK/dex"
+  mkdir -p "$WORK/aar" "$WORK/dex"
+  unzip -q -o build/outputs/aar/*-release.aar classes.jar -d "$WORK/aar"
+  "$D8" --release --min-api 24 --lib "$ANDROID_JAR" --output "$WORK/dex" "$WORK/aar/classes.jar" 2>/dev/null
+  classes=$(unzip -l "$WORK/aar/classes.jar" | grep -c '\.class$')
+  dex_bytes=$(wc -c <"$WORK/dex/classes.dex" | tr -d ' ')
+
+  echo "== $name: classes.dex ${dex_bytes} bytes, ${classes} classes"
+  ./gradlew -q testDebugUnitTest --tests '*InitializeBenchmarkTest.testProviderCombinations' -i \
+    -PsocialLogin.benchmark=true "${flags[@]}" | grep -E '^\s*initialize ' || true
+done
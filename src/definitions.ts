@@ -1,3 +1,5 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
 /**
  * Configuration for a single OAuth2 provider instance
  */
@@ -163,6 +165,50 @@ export interface OAuth2ProviderConfig {
    * @default false
    */
   logsEnabled?: boolean;
+  /**
+   * Time budgets for this provider's discovery, code exchange, refresh and resource calls.
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  timeouts?: OperationTimeouts;
+}
+
+/**
+ * Time budget per network operation, in milliseconds.
+ *
+ * Each budget covers the whole operation, retries and a discovery fallback included.
+ * When it runs out the call rejects with the matching code, e.g. `CODE_EXCHANGE_TIMEOUT`.
+ *
+ * Android only.
+ * @since 8.5.0
+ */
+export interface OperationTimeouts {
+  /**
+   * OpenID Connect discovery (`.well-known/openid-configuration`).
+   * @default 10000
+   */
+  discovery?: number;
+  /**
+   * Exchanging the authorization code for tokens.
+   * @default 15000
+   */
+  codeExchange?: number;
+  /**
+   * Refresh token grant.
+   * @default 15000
+   */
+  refresh?: number;
+  /**
+   * Profile or resource fetch after login.
+   * @default 10000
+   */
+  resource?: number;
+  /**
+   * Access token validation (Google `tokeninfo`).
+   * @default 7000
+   */
+  validation?: number;
 }
 
 export interface InitializeOptions {
@@ -176,6 +222,15 @@ export interface InitializeOptions {
    * }
    */
   oauth2?: Record<string, OAuth2ProviderConfig>;
+  /**
+   * How many signed-in accounts to keep per provider (per OAuth2 providerId) for `switchAccount`.
+   * Signing in one more evicts the least recently used account.
+   *
+   * Android only.
+   * @default 5
+   * @since 8.5.0
+   */
+  maxAccountsPerProvider?: number;
   twitter?: {
     /**
      * The OAuth 2.0 client identifier issued by X (Twitter) Developer Portal
@@ -204,6 +259,13 @@ export interface InitializeOptions {
      * Optional audience value when your application has been approved for multi-tenant access.
      */
     audience?: string;
+    /**
+     * Time budgets for the code exchange, refresh and profile calls.
+     *
+     * Android only.
+     * @since 8.5.0
+     */
+    timeouts?: OperationTimeouts;
   };
   facebook?: {
     /**
@@ -224,6 +286,21 @@ export interface InitializeOptions {
      * @example 'fr_FR'
      */
     locale?: string;
+    /**
+     * Overrides the manifest's `com.facebook.sdk.AutoInitEnabled`. Android only.
+     * @since 8.5.0
+     */
+    autoInit?: boolean;
+    /**
+     * Overrides the manifest's `com.facebook.sdk.AutoLogAppEventsEnabled`. Android only.
+     * @since 8.5.0
+     */
+    autoLogAppEvents?: boolean;
+    /**
+     * Overrides the manifest's `com.facebook.sdk.AdvertiserIDCollectionEnabled`. Android only.
+     * @since 8.5.0
+     */
+    advertiserIDCollection?: boolean;
   };
 
   google?: {
@@ -282,6 +359,13 @@ export interface InitializeOptions {
      * Google Redirect URL, should be your backend url that is configured in your google app
      */
     redirectUrl?: string;
+    /**
+     * Time budget for access token validation (`validation`).
+     *
+     * Android only.
+     * @since 8.5.0
+     */
+    timeouts?: OperationTimeouts;
   };
   apple?: {
     /**
@@ -355,6 +439,13 @@ export interface InitializeOptions {
      * // Result: Traditional URL redirect flow with server-side setup
      */
     useBroadcastChannel?: boolean;
+    /**
+     * Time budget for the token exchange when `useProperTokenExchange` is enabled (`codeExchange`).
+     *
+     * Android only.
+     * @since 8.5.0
+     */
+    timeouts?: OperationTimeouts;
   };
 }
 
@@ -400,6 +491,13 @@ export interface FacebookLoginOptions {
    * @description A custom nonce to use for the login request
    */
   nonce?: string;
+  /**
+   * Extra Graph fields to fetch with the login profile, so later `facebook#getProfile` calls for them are
+   * answered from memory instead of another Graph request. Android only.
+   * @example ['first_name', 'last_name', 'birthday']
+   * @since 8.5.0
+   */
+  profileFields?: string[];
 }
 
 export interface TwitterLoginOptions {
@@ -798,6 +896,13 @@ export interface FacebookLoginResponse {
    * @see https://developers.facebook.com/docs/facebook-login/limited-login/token/validating/
    */
   idToken: string | null;
+  /**
+   * Claims of `idToken`, present only when the plugin verified it on device against Facebook's JWKS
+   * (signature, `iss`, `aud`, `exp` and nonce). Android only.
+   *
+   * @since 8.5.0
+   */
+  idTokenClaims?: Record<string, any>;
   profile: {
     userID: string;
     /**
@@ -880,7 +985,7 @@ export interface isLoggedInOptions {
 }
 
 // Define the provider-specific call types
-export type ProviderSpecificCall = 'facebook#getProfile' | 'facebook#requestTracking';
+export type ProviderSpecificCall = 'facebook#getProfile' | 'facebook#requestTracking' | 'facebook#verifyIdToken';
 
 // Define the options and response types for each specific call
 export interface FacebookGetProfileOptions {
@@ -936,6 +1041,326 @@ export interface OpenSecureWindowResponse {
   redirectedUri: string;
 }
 
+export interface NetworkEndpointDiagnostics {
+  /**
+   * Endpoint key (`scheme://host:port/path`)
+   */
+  endpoint: string;
+  /**
+   * Circuit breaker state for this endpoint
+   */
+  state: 'closed' | 'open' | 'half-open';
+  /**
+   * Failures since the last successful response
+   */
+  consecutiveFailures: number;
+}
+
+export interface NetworkDiagnostics {
+  /**
+   * Number of retried token, discovery and resource requests
+   */
+  retries: number;
+  /**
+   * Number of times a circuit breaker opened
+   */
+  circuitTrips: number;
+  /**
+   * Number of requests rejected without hitting the network because the circuit was open
+   */
+  shortCircuits: number;
+  endpoints: NetworkEndpointDiagnostics[];
+}
+
+export interface ClaimsCacheDiagnostics {
+  hits: number;
+  misses: number;
+  evictions: number;
+  size: number;
+  capacity: number;
+  /**
+   * hits / (hits + misses), 0 before the first lookup
+   */
+  hitRate: number;
+}
+
+export interface FacebookBootstrapDiagnostics {
+  /**
+   * Whether the SDK finished starting; Facebook calls made before wait for it (up to 10 seconds)
+   */
+  ready: boolean;
+  /**
+   * Time the SDK took to start, once done
+   */
+  bootstrapMs?: number;
+  /**
+   * Why the SDK failed to start
+   */
+  error?: string;
+}
+
+export interface GraphProfileCacheDiagnostics {
+  hits: number;
+  misses: number;
+  /**
+   * Facebook users with cached fields
+   */
+  users: number;
+  /**
+   * hits / (hits + misses), 0 before the first lookup
+   */
+  hitRate: number;
+}
+
+export interface CancellationDiagnostics {
+  /**
+   * Logins cancelled with `cancelLogin`
+   */
+  cancels: number;
+  /**
+   * HTTP calls (discovery, code exchange, resource or profile fetch) that were in flight when their login was cancelled
+   */
+  callsCancelled: number;
+  /**
+   * Time from the last `cancelLogin` until its provider accepted a new login
+   */
+  lastCancelToReadyMs: number;
+  maxCancelToReadyMs: number;
+}
+
+export interface StateLoopDiagnostics {
+  /**
+   * Tasks posted to the state loop: plugin calls, activity results, redirects and provider callbacks
+   */
+  posted: number;
+  ran: number;
+  /**
+   * Provider callbacks that threw; a plugin call that throws is rejected instead and not counted here
+   */
+  failed: number;
+  /**
+   * Tasks waiting to run right now, and the most that ever waited at once
+   */
+  queued: number;
+  maxQueued: number;
+  /**
+   * Time tasks waited in the queue before running
+   */
+  avgWaitMs: number;
+  maxWaitMs: number;
+  /**
+   * Total time spent running tasks
+   */
+  busyMs: number;
+}
+
+export interface SessionSnapshotDiagnostics {
+  /**
+   * Whether the snapshot has been read (on `initialize`, or on the first session lookup)
+   */
+  loaded: boolean;
+  /**
+   * Time spent reading and parsing the snapshot
+   */
+  loadMs: number;
+  /**
+   * Providers with a stored session
+   */
+  sessions: number;
+  /**
+   * Sessions copied from a provider's own storage because the snapshot did not have them or disagreed with it (first start after an update, or the app was killed between the two writes)
+   */
+  seeded: number;
+  /**
+   * Refresh results that were dropped because the session changed while the refresh was in flight (logout, new login)
+   */
+  replaceConflicts: number;
+}
+
+export interface SocialLoginDiagnostics {
+  /**
+   * Retry and circuit breaker counters for token calls
+   */
+  network: NetworkDiagnostics;
+  /**
+   * Decoded ID token claims cache (used by expiry checks and `decodeIdToken`)
+   */
+  claimsCache: ClaimsCacheDiagnostics;
+  /**
+   * Stored sessions restored on cold start
+   *
+   * @since 8.5.0
+   */
+  sessionSnapshot: SessionSnapshotDiagnostics;
+  /**
+   * Facebook Graph profile fields cached since login (used by `facebook#getProfile`). Android only.
+   *
+   * @since 8.5.0
+   */
+  graphProfileCache?: GraphProfileCacheDiagnostics;
+  /**
+   * Facebook SDK startup, which runs in the background after `initialize`; only when Facebook is initialized.
+   * Android only.
+   *
+   * @since 8.5.0
+   */
+  facebookBootstrap?: FacebookBootstrapDiagnostics;
+  /**
+   * Logins cancelled with `cancelLogin`. Android only.
+   *
+   * @since 8.5.0
+   */
+  cancellation?: CancellationDiagnostics;
+  /**
+   * The thread every provider state change runs on. Android only.
+   *
+   * @since 8.5.0
+   */
+  stateLoop?: StateLoopDiagnostics;
+}
+
+export interface TraceSpan {
+  /**
+   * Phase name, e.g. `discovery`, `browserLaunch`, `authorization`, `redirectReceived`, `codeExchange`, `fetchResource`.
+   * Apple on Android also marks `browserWarm` or `browserCold` (whether the Custom Tab was pre-bound and prefetched)
+   * and times `authPageLoad`, from launch until the sign-in page finished loading (warm launches only).
+   */
+  name: string;
+  /**
+   * Start of the span relative to the start of the trace
+   */
+  offsetMs: number;
+  /**
+   * Missing while the span is still open; 0 for point-in-time marks such as `redirectReceived`
+   */
+  durationMs?: number;
+  error?: string;
+}
+
+export interface LoginTrace {
+  traceId: string;
+  operation: 'login' | 'refresh' | 'logout';
+  provider: 'apple' | 'google' | 'facebook' | 'twitter' | 'oauth2';
+  /**
+   * OAuth2 provider id, only set for `oauth2`
+   */
+  providerId?: string;
+  /**
+   * Start time in milliseconds since epoch
+   */
+  startedAt: number;
+  /**
+   * Total duration so far for traces still in progress
+   */
+  durationMs: number;
+  /**
+   * `abandoned` means another operation started for the same provider before this one finished
+   */
+  status: 'inProgress' | 'success' | 'error' | 'cancelled' | 'abandoned';
+  error?: string;
+  spans: TraceSpan[];
+}
+
+export interface TraceTimelineOptions {
+  /**
+   * Maximum number of traces to return, most recent first
+   * @default 20
+   */
+  limit?: number;
+}
+
+export interface TraceTimelineResponse {
+  traces: LoginTrace[];
+}
+
+export interface AccountsOptions {
+  /**
+   * Providers keeping several accounts; Facebook sessions are owned by the Facebook SDK and are not supported
+   */
+  provider: 'apple' | 'google' | 'twitter' | 'oauth2';
+  /**
+   * Required for `oauth2`
+   */
+  providerId?: string;
+}
+
+export interface CancelLoginOptions {
+  /**
+   * Facebook logins run in the Facebook SDK and cannot be cancelled
+   */
+  provider: 'apple' | 'google' | 'twitter' | 'oauth2';
+  /**
+   * For `oauth2`: only cancel the login of this provider. Any running OAuth2 login is cancelled when omitted.
+   */
+  providerId?: string;
+}
+
+export interface CancelLoginResponse {
+  /**
+   * False when no login was running
+   */
+  cancelled: boolean;
+  /**
+   * Time until the provider accepted a new login, only set when a login was cancelled
+   */
+  cancelToReadyMs?: number;
+}
+
+export interface StoredAccount {
+  /**
+   * Stable account id: the ID token `sub`, or the provider's user id
+   */
+  subject: string;
+  /**
+   * Email or username, when known
+   */
+  label?: string;
+  /**
+   * Last login, refresh or switch, in milliseconds since epoch
+   */
+  lastUsedAt: number;
+  /**
+   * Whether this is the provider's current session
+   */
+  active: boolean;
+}
+
+export interface ListAccountsResponse {
+  /**
+   * Most recently used first
+   */
+  accounts: StoredAccount[];
+}
+
+export interface SwitchAccountOptions extends AccountsOptions {
+  /**
+   * `subject` of one of the accounts returned by `listAccounts`
+   */
+  subject: string;
+}
+
+export interface SwitchAccountResponse {
+  subject: string;
+}
+
+export type TokenLifecycleEventType = 'issued' | 'refreshed' | 'expiringSoon' | 'expired' | 'revoked';
+
+export interface TokenLifecycleEvent {
+  /**
+   * `expiringSoon` fires 5 minutes before `expiresAt`, `expired` at `expiresAt`
+   */
+  type: TokenLifecycleEventType;
+  provider: 'apple' | 'google' | 'facebook' | 'twitter' | 'oauth2';
+  /**
+   * OAuth2 provider id, only set for `oauth2`
+   */
+  providerId?: string;
+  /**
+   * Token expiry in milliseconds since epoch, when known
+   */
+  expiresAt?: number;
+}
+
 export type FacebookRequestTrackingOptions = Record<string, never>;
 
 export interface FacebookRequestTrackingResponse {
@@ -945,15 +1370,31 @@ export interface FacebookRequestTrackingResponse {
   status: 'authorized' | 'denied' | 'notDetermined' | 'restricted';
 }
 
+export interface FacebookVerifyIdTokenOptions {
+  /**
+   * Limited Login authentication token to verify; defaults to the current one
+   */
+  idToken?: string;
+}
+
+export interface FacebookVerifyIdTokenResponse {
+  /**
+   * Claims of the verified token
+   */
+  claims: Record<string, any>;
+}
+
 // Map call strings to their options and response types
 export type ProviderSpecificCallOptionsMap = {
   'facebook#getProfile': FacebookGetProfileOptions;
   'facebook#requestTracking': FacebookRequestTrackingOptions;
+  'facebook#verifyIdToken': FacebookVerifyIdTokenOptions;
 };
 
 export type ProviderSpecificCallResponseMap = {
   'facebook#getProfile': FacebookGetProfileResponse;
   'facebook#requestTracking': FacebookRequestTrackingResponse;
+  'facebook#verifyIdToken': FacebookVerifyIdTokenResponse;
 };
 
 // Add a helper type to map providers to their response types
@@ -967,9 +1408,22 @@ export type ProviderResponseMap = {
 
 /**
  * Error codes returned by the plugin.
+ *
+ * The `*_TIMEOUT` codes mean the operation ran out of its `timeouts` budget (Android only, since 8.5.0).
+ * `INVALID_TOKEN` and `JWKS_UNAVAILABLE` come from `facebook#verifyIdToken` (Android only, since 8.5.0).
+ * `SDK_NOT_READY` means the Facebook SDK failed to start or is still starting (Android only, since 8.5.0).
  * @since 8.3.x
  */
-export type SocialLoginErrorCode = 'USER_CANCELLED';
+export type SocialLoginErrorCode =
+  | 'USER_CANCELLED'
+  | 'DISCOVERY_TIMEOUT'
+  | 'CODE_EXCHANGE_TIMEOUT'
+  | 'REFRESH_TIMEOUT'
+  | 'RESOURCE_TIMEOUT'
+  | 'VALIDATION_TIMEOUT'
+  | 'INVALID_TOKEN'
+  | 'JWKS_UNAVAILABLE'
+  | 'SDK_NOT_READY';
 
 /**
  * Errors thrown by SocialLogin methods.
@@ -1152,6 +1606,62 @@ export interface SocialLoginPlugin {
    */
   getPluginVersion(): Promise<{ version: string }>;
 
+  /**
+   * Get runtime diagnostics (retry and circuit breaker counters for token calls, claims cache hit rate).
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  getDiagnostics(): Promise<SocialLoginDiagnostics>;
+
+  /**
+   * Get the per-phase timeline of the most recent login, refresh and logout operations (the last 50 are kept).
+   * The same spans are emitted as `android.os.Trace` async sections (API 29+), prefixed with `SocialLogin/`, for Perfetto.
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  getTraceTimeline(options?: TraceTimelineOptions): Promise<TraceTimelineResponse>;
+
+  /**
+   * List the accounts signed in with a provider, as kept for `switchAccount`.
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  listAccounts(options: AccountsOptions): Promise<ListAccountsResponse>;
+
+  /**
+   * Make a previously signed-in account the provider's current session, without a network call.
+   * The restored tokens may be expired; check `isLoggedIn` or call `refresh` as usual afterwards.
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  switchAccount(options: SwitchAccountOptions): Promise<SwitchAccountResponse>;
+
+  /**
+   * Cancel a running login: its HTTP calls (discovery, code exchange, resource fetch) are cancelled, its WebView or
+   * Credential Manager sheet is closed, and its `login` call rejects with `USER_CANCELLED`. A new login can start as
+   * soon as this resolves. A Custom Tabs page cannot be closed by the app; it stays open, but its redirect is ignored.
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  cancelLogin(options: CancelLoginOptions): Promise<CancelLoginResponse>;
+
+  /**
+   * Listen for token lifecycle changes (issued, refreshed, expiringSoon, expired, revoked) instead of
+   * polling `isLoggedIn` or the access token expiry helpers. Sessions restored at `initialize` are tracked too.
+   *
+   * Android only.
+   * @since 8.5.0
+   */
+  addListener(
+    eventName: 'tokenLifecycle',
+    listenerFunc: (event: TokenLifecycleEvent) => void,
+  ): Promise<PluginListenerHandle>;
+
   /**
    * Opens a secured window for OAuth2 authentication.
    * For web, you should have the code in the redirected page to use a broadcast channel to send the redirected url to the app
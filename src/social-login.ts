@@ -1,12 +1,17 @@
 import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
 
 // Eagerly finish OAuth popup redirects before plugin lazy-load (COOP-safe)
 import './oauth-popup-redirect';
 
 import type {
+  AccountsOptions,
   AuthorizationCode,
   AuthorizationCodeOptions,
+  CancelLoginOptions,
+  CancelLoginResponse,
   InitializeOptions,
+  ListAccountsResponse,
   LoginOptions,
   OpenSecureWindowOptions,
   OpenSecureWindowResponse,
@@ -15,7 +20,13 @@ import type {
   ProviderSpecificCall,
   ProviderSpecificCallOptionsMap,
   ProviderSpecificCallResponseMap,
+  SocialLoginDiagnostics,
   SocialLoginPlugin,
+  SwitchAccountOptions,
+  SwitchAccountResponse,
+  TokenLifecycleEvent,
+  TraceTimelineOptions,
+  TraceTimelineResponse,
   isLoggedInOptions,
 } from './definitions';
 
@@ -111,6 +122,33 @@ class SocialLoginClient implements SocialLoginPlugin {
     return rawSocialLogin.getPluginVersion();
   }
 
+  async getDiagnostics(): Promise<SocialLoginDiagnostics> {
+    return rawSocialLogin.getDiagnostics();
+  }
+
+  async getTraceTimeline(options?: TraceTimelineOptions): Promise<TraceTimelineResponse> {
+    return rawSocialLogin.getTraceTimeline(options);
+  }
+
+  async listAccounts(options: AccountsOptions): Promise<ListAccountsResponse> {
+    return rawSocialLogin.listAccounts(options);
+  }
+
+  async switchAccount(options: SwitchAccountOptions): Promise<SwitchAccountResponse> {
+    return rawSocialLogin.switchAccount(options);
+  }
+
+  async cancelLogin(options: CancelLoginOptions): Promise<CancelLoginResponse> {
+    return rawSocialLogin.cancelLogin(options);
+  }
+
+  async addListener(
+    eventName: 'tokenLifecycle',
+    listenerFunc: (event: TokenLifecycleEvent) => void,
+  ): Promise<PluginListenerHandle> {
+    return rawSocialLogin.addListener(eventName, listenerFunc);
+  }
+
   async openSecureWindow(options: OpenSecureWindowOptions): Promise<OpenSecureWindowResponse> {
     return rawSocialLogin.openSecureWindow(options);
   }
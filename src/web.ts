@@ -18,6 +18,11 @@ import type {
   OAuth2LoginResponse,
   OpenSecureWindowOptions,
   OpenSecureWindowResponse,
+  SocialLoginDiagnostics,
+  TraceTimelineResponse,
+  ListAccountsResponse,
+  SwitchAccountResponse,
+  CancelLoginResponse,
 } from './definitions';
 import { inferUserCancelledError } from './errors';
 import { FacebookSocialLogin } from './facebook-provider';
@@ -376,6 +381,26 @@ export class SocialLoginWeb extends WebPlugin implements SocialLoginPlugin {
     return { version: 'web' };
   }
 
+  async getDiagnostics(): Promise<SocialLoginDiagnostics> {
+    throw new Error('getDiagnostics is only available on Android');
+  }
+
+  async getTraceTimeline(): Promise<TraceTimelineResponse> {
+    throw new Error('getTraceTimeline is only available on Android');
+  }
+
+  async listAccounts(): Promise<ListAccountsResponse> {
+    throw new Error('listAccounts is only available on Android');
+  }
+
+  async switchAccount(): Promise<SwitchAccountResponse> {
+    throw new Error('switchAccount is only available on Android');
+  }
+
+  async cancelLogin(): Promise<CancelLoginResponse> {
+    throw new Error('cancelLogin is only available on Android');
+  }
+
   async openSecureWindow(options: OpenSecureWindowOptions): Promise<OpenSecureWindowResponse> {
     const w = 600;
     const h = 550;